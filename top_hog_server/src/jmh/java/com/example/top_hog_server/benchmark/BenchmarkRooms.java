@@ -0,0 +1,57 @@
+package com.example.top_hog_server.benchmark;
+
+import com.example.top_hog_server.model.GameRoom;
+import com.example.top_hog_server.model.GameState;
+import com.example.top_hog_server.model.Player;
+import com.example.top_hog_server.service.game.TopHogGameEngine;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 基准测试使用的房间构造工具，不依赖 Spring。
+ */
+final class BenchmarkRooms {
+
+    private BenchmarkRooms() {
+    }
+
+    static String sessionId(int seat) {
+        return "SEAT_" + seat;
+    }
+
+    /**
+     * 创建一个全部由机器人组成、尚未发牌的房间，洗牌种子随机。
+     */
+    static GameRoom emptyRoom(String roomId, int players) {
+        GameRoom room = new GameRoom(roomId, "Benchmark");
+        room.setMaxPlayers(players);
+        room.setGameSeed(ThreadLocalRandom.current().nextLong());
+        for (int i = 0; i < players; i++) {
+            Player player = new Player(sessionId(i), "Bot" + i);
+            player.setRobot(true);
+            player.setTrustee(true);
+            player.setReady(true);
+            room.addPlayer(player);
+        }
+        return room;
+    }
+
+    /**
+     * 创建一个已发牌、处于出牌阶段的房间；前一半玩家已经打出本手的牌。
+     */
+    static GameRoom playingRoom(String roomId, int players) {
+        GameRoom room = emptyRoom(roomId, players);
+        TopHogGameEngine engine = new TopHogGameEngine();
+        engine.initializeGame(room);
+        engine.startNewRound(room);
+        room.setGameState(GameState.PLAYING);
+        int seat = 0;
+        for (Player player : room.getPlayers().values()) {
+            if (seat++ >= players / 2) {
+                break;
+            }
+            room.getPlayedCardsThisTurn().put(player.getSessionId(), player.getHand().remove(0));
+        }
+        return room;
+    }
+}
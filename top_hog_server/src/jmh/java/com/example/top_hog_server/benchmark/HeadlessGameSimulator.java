@@ -0,0 +1,258 @@
+package com.example.top_hog_server.benchmark;
+
+import com.example.top_hog_server.model.BotDifficulty;
+import com.example.top_hog_server.model.Card;
+import com.example.top_hog_server.model.GameRoom;
+import com.example.top_hog_server.model.GameRow;
+import com.example.top_hog_server.model.GameState;
+import com.example.top_hog_server.model.Player;
+import com.example.top_hog_server.service.game.PlayTipEngine;
+import com.example.top_hog_server.service.game.PlayTipSnapshot;
+import com.example.top_hog_server.service.game.TopHogGameEngine;
+import com.example.top_hog_server.service.game.bot.BotStrategy;
+import com.example.top_hog_server.service.game.bot.HeuristicBotStrategy;
+import com.example.top_hog_server.service.game.bot.LowestCardBotStrategy;
+import com.example.top_hog_server.service.game.bot.SearchBotStrategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无 Spring、无 WebSocket 的机器人对局模拟器。
+ * <p>
+ * 直接驱动 {@link TopHogGameEngine}（发牌、找行、收行）和机器人策略，
+ * 出牌按规则同时揭示、从小到大结算，必须选行时选猪头最少的一行（与托管超时逻辑一致）。
+ * 用于回归检测（对局吞吐）、上线前的硬件评估以及比较不同难度机器人的强弱。
+ * <p>
+ * 用法（参数均可省略）：
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.mainClass=com.example.top_hog_server.benchmark.HeadlessGameSimulator \
+ *     -Djmh.args="games=1000000 threads=8 seats=normal,normal,easy,easy seed=42"
+ * </pre>
+ * 第 n 局的洗牌种子由 seed 和 n 导出，给定 seed 时发牌序列可复现（HARD 座位的蒙特卡洛搜索本身仍带随机性）；
+ * 不给时每次运行取一个随机的 seed。
+ */
+public final class HeadlessGameSimulator {
+
+    // 单局最多打多少轮，防止异常规则下死循环
+    private static final int MAX_ROUNDS = 20;
+    private static final int TURNS_PER_ROUND = 10;
+    // 黄金比例常数，把相邻局号散开成互不相关的种子
+    private static final long SEED_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final TopHogGameEngine engine = new TopHogGameEngine();
+    private final BotStrategy[] seats;
+
+    public HeadlessGameSimulator(BotStrategy[] seats) {
+        this.seats = seats.clone();
+    }
+
+    /**
+     * 模拟一整局。
+     *
+     * @param seed 本局洗牌种子
+     * @return 各座位最终猪头数
+     */
+    public int[] playGame(String roomId, long seed) {
+        GameRoom room = BenchmarkRooms.emptyRoom(roomId, seats.length);
+        room.setGameSeed(seed);
+        Player[] players = new Player[seats.length];
+        for (int i = 0; i < seats.length; i++) {
+            players[i] = room.getPlayers().get(BenchmarkRooms.sessionId(i));
+        }
+        engine.initializeGame(room);
+        room.setGameState(GameState.PLAYING);
+
+        List<GameRow> rows = room.getRows();
+        int[] played = new int[seats.length];
+        int[] order = new int[seats.length];
+        rounds:
+        for (int round = 1; round <= MAX_ROUNDS; round++) {
+            room.setCurrentRound(round);
+            for (Player player : players) {
+                player.resetForNewRound();
+            }
+            engine.startNewRound(room);
+            if (players[0].getHand().isEmpty()) {
+                break; // 牌堆不足，和服务端一样结束
+            }
+            for (int turn = 1; turn <= TURNS_PER_ROUND; turn++) {
+                room.setCurrentTurnNumber(turn);
+                // 所有座位先各自决策，再同时亮牌
+                for (int i = 0; i < seats.length; i++) {
+                    PlayTipSnapshot snapshot = PlayTipSnapshot.of(room, players[i].getSessionId(), false);
+                    played[i] = seats[i].chooseCard(snapshot, Long.MAX_VALUE);
+                }
+                for (int i = 0; i < seats.length; i++) {
+                    Card card = removeFromHand(players[i], played[i]);
+                    room.getPlayedCardsThisTurn().put(players[i].getSessionId(), card);
+                    order[i] = i;
+                }
+                sortByPlayedCard(order, played);
+                for (int seat : order) {
+                    resolve(room, rows, players[seat], room.getPlayedCardsThisTurn().get(players[seat].getSessionId()));
+                }
+                room.getPlayedCardsThisTurn().clear();
+                for (Player player : players) {
+                    if (player.getScore() >= room.getTargetScore()) {
+                        break rounds;
+                    }
+                }
+            }
+        }
+
+        int[] scores = new int[seats.length];
+        for (int i = 0; i < seats.length; i++) {
+            scores[i] = players[i].getScore();
+        }
+        return scores;
+    }
+
+    private void resolve(GameRoom room, List<GameRow> rows, Player player, Card card) {
+        int target = TopHogGameEngine.findTargetRowIndex(rows, card.getNumber());
+        if (target < 0) {
+            engine.executeTakeRow(room, player, TopHogGameEngine.findRowWithMinBullheads(rows), card);
+        } else if (rows.get(target).isFull()) {
+            engine.executeTakeRow(room, player, target, card);
+        } else {
+            rows.get(target).addCard(card);
+        }
+    }
+
+    private static Card removeFromHand(Player player, int number) {
+        List<Card> hand = player.getHand();
+        for (int i = 0; i < hand.size(); i++) {
+            if (hand.get(i).getNumber() == number) {
+                return hand.remove(i);
+            }
+        }
+        throw new IllegalStateException("牌 " + number + " 不在玩家 " + player.getSessionId() + " 手中");
+    }
+
+    // 座位按所出牌号升序排列（插入排序，最多 10 个座位）
+    private static void sortByPlayedCard(int[] order, int[] played) {
+        for (int i = 1; i < order.length; i++) {
+            int seat = order[i];
+            int j = i - 1;
+            while (j >= 0 && played[order[j]] > played[seat]) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = seat;
+        }
+    }
+
+    // 按难度创建座位策略；模拟时按采样数而不是时间截断搜索
+    private static BotStrategy[] strategies(BotDifficulty[] seats, PlayTipEngine playTipEngine) {
+        BotStrategy[] strategies = new BotStrategy[seats.length];
+        for (int i = 0; i < seats.length; i++) {
+            strategies[i] = switch (seats[i]) {
+                case EASY -> new LowestCardBotStrategy();
+                case NORMAL -> new HeuristicBotStrategy();
+                case HARD -> new SearchBotStrategy(playTipEngine);
+            };
+        }
+        return strategies;
+    }
+
+    // 第 game 局的洗牌种子（SplitMix64 的混合步骤）
+    static long gameSeed(long baseSeed, long game) {
+        long z = baseSeed + (game + 1) * SEED_GAMMA;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            for (String token : arg.trim().split("\\s+")) {
+                int eq = token.indexOf('=');
+                if (eq > 0) {
+                    options.put(token.substring(0, eq), token.substring(eq + 1));
+                }
+            }
+        }
+        long games = Long.parseLong(options.getOrDefault("games", "100000"));
+        int threads = Integer.parseInt(options.getOrDefault("threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        String seatSpec = options.getOrDefault("seats", "normal,normal,normal,normal");
+        long baseSeed = options.containsKey("seed") ? Long.parseLong(options.get("seed"))
+                : ThreadLocalRandom.current().nextLong();
+
+        int hardSamples = Integer.parseInt(options.getOrDefault("hardSamples", "200"));
+        String[] seatNames = seatSpec.split(",");
+        BotDifficulty[] seats = new BotDifficulty[seatNames.length];
+        for (int i = 0; i < seatNames.length; i++) {
+            seats[i] = BotDifficulty.fromCode(seatNames[i].trim());
+            if (seats[i] == null) {
+                throw new IllegalArgumentException("未知的机器人难度: " + seatNames[i]);
+            }
+        }
+
+        LongAdder[] totalScores = new LongAdder[seats.length];
+        LongAdder[] wins = new LongAdder[seats.length];
+        for (int i = 0; i < seats.length; i++) {
+            totalScores[i] = new LongAdder();
+            wins[i] = new LongAdder();
+        }
+        AtomicLong nextGame = new AtomicLong();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(pool.submit(() -> {
+                // 每个对局线程各用一个单线程搜索引擎，HARD 座位的搜索随对局线程数并行
+                PlayTipEngine playTipEngine = Arrays.asList(seats).contains(BotDifficulty.HARD)
+                        ? new PlayTipEngine(60_000, 2, hardSamples, 1) : null;
+                try {
+                    HeadlessGameSimulator simulator = new HeadlessGameSimulator(strategies(seats, playTipEngine));
+                    long game;
+                    while ((game = nextGame.getAndIncrement()) < games) {
+                        int[] scores = simulator.playGame("SIM_" + game, gameSeed(baseSeed, game));
+                        int best = Integer.MAX_VALUE;
+                        for (int i = 0; i < scores.length; i++) {
+                            totalScores[i].add(scores[i]);
+                            best = Math.min(best, scores[i]);
+                        }
+                        // 并列最少猪头的座位都记为胜
+                        for (int i = 0; i < scores.length; i++) {
+                            if (scores[i] == best) {
+                                wins[i].increment();
+                            }
+                        }
+                    }
+                } finally {
+                    if (playTipEngine != null) {
+                        playTipEngine.shutdown();
+                    }
+                }
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        pool.shutdown();
+
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("对局数: %d, 线程: %d, 种子: %d, 耗时: %.2fs, 吞吐: %.0f 局/分钟%n",
+                games, threads, baseSeed, seconds, games / seconds * 60);
+        for (int i = 0; i < seats.length; i++) {
+            System.out.printf("座位 %d [%s]: 平均猪头 %.2f, 胜率 %.2f%%%n", i, seats[i].getCode(),
+                    totalScores[i].sum() / (double) games, wins[i].sum() * 100.0 / games);
+        }
+        pool.awaitTermination(1, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.top_hog_server.benchmark;
+
+import com.example.top_hog_server.model.GameRoom;
+import com.example.top_hog_server.model.Player;
+import com.example.top_hog_server.service.game.PlayTipEngine;
+import com.example.top_hog_server.service.game.PlayTipSnapshot;
+import com.example.top_hog_server.service.game.bot.HeuristicBotStrategy;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * getPlayTip 的两个阶段：房间锁内的快照构建和锁外的蒙特卡洛搜索；
+ * 以及机器人启发式决策，作为房间锁内允许的开销参照。
+ * 搜索使用固定采样数（时间预算放宽），测量的是单位工作量的耗时而不是预算本身。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PlayTipBenchmark {
+
+    @Param({"4", "10"})
+    private int players;
+
+    @Param({"500", "5000"})
+    private int samples;
+
+    private PlayTipEngine engine;
+    private HeuristicBotStrategy heuristic;
+    private GameRoom room;
+    private String sessionId;
+    private PlayTipSnapshot snapshot;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        engine = new PlayTipEngine(60_000, 2, samples, 1);
+        heuristic = new HeuristicBotStrategy();
+        room = BenchmarkRooms.playingRoom("BENCH", players);
+        // 选一个尚未出牌的玩家
+        sessionId = room.getPlayers().values().stream()
+                .map(Player::getSessionId)
+                .filter(id -> !room.getPlayedCardsThisTurn().containsKey(id))
+                .findFirst()
+                .orElseThrow();
+        snapshot = PlayTipSnapshot.of(room, sessionId);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public PlayTipSnapshot snapshot() {
+        return PlayTipSnapshot.of(room, sessionId);
+    }
+
+    @Benchmark
+    public PlayTipEngine.PlayTip suggest() {
+        return engine.suggest(snapshot);
+    }
+
+    @Benchmark
+    public int heuristicBotDecision() {
+        return heuristic.chooseCard(PlayTipSnapshot.of(room, sessionId, false), Long.MAX_VALUE);
+    }
+}
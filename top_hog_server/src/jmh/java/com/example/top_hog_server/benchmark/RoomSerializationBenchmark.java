@@ -0,0 +1,91 @@
+package com.example.top_hog_server.benchmark;
+
+import com.example.top_hog_server.handler.CborMessageCodec;
+import com.example.top_hog_server.handler.GameStateFrameEncoder;
+import com.example.top_hog_server.handler.RoomStateDeltaEncoder;
+import com.example.top_hog_server.model.GameRoom;
+import com.example.top_hog_server.model.Player;
+import com.example.top_hog_server.payload.dto.response.GameRoomDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * broadcastGameState 的序列化开销：按玩家逐个序列化 DTO（原实现）、
+ * 一次编码后按玩家拼接帧、tophog.cbor 二进制帧，以及增量 roomPatch 编码。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RoomSerializationBenchmark {
+
+    @Param({"4", "10"})
+    private int players;
+
+    private ObjectMapper objectMapper;
+    private GameStateFrameEncoder frameEncoder;
+    private RoomStateDeltaEncoder deltaEncoder;
+    private GameRoom room;
+    private Player toggled;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        CborMessageCodec cborMessageCodec = new CborMessageCodec(objectMapper);
+        frameEncoder = new GameStateFrameEncoder(objectMapper, cborMessageCodec);
+        deltaEncoder = new RoomStateDeltaEncoder(objectMapper, cborMessageCodec);
+        room = BenchmarkRooms.playingRoom("BENCH", players);
+        toggled = room.getPlayers().values().iterator().next();
+    }
+
+    @Benchmark
+    public GameRoomDTO dtoFrom() {
+        return GameRoomDTO.from(room, BenchmarkRooms.sessionId(0));
+    }
+
+    /**
+     * 每个接收者各自构建并序列化一次 DTO。
+     */
+    @Benchmark
+    public void broadcastPerPlayerDto(Blackhole blackhole) throws Exception {
+        for (Player player : room.getPlayers().values()) {
+            blackhole.consume(objectMapper.writeValueAsString(GameRoomDTO.from(room, player.getSessionId())));
+        }
+    }
+
+    /**
+     * 一次编码公共部分，再为每个接收者拼接帧。
+     */
+    @Benchmark
+    public void broadcastEncodedFrames(Blackhole blackhole) throws Exception {
+        GameStateFrameEncoder.GameStateFrames frames = frameEncoder.encode(room, "benchmark");
+        for (Player player : room.getPlayers().values()) {
+            blackhole.consume(frames.frameFor(player));
+        }
+    }
+
+    /**
+     * 所有接收者都协商了 tophog.cbor 时，为每个接收者编码二进制帧。
+     */
+    @Benchmark
+    public void broadcastBinaryFrames(Blackhole blackhole) throws Exception {
+        GameStateFrameEncoder.GameStateFrames frames = frameEncoder.encode(room, "benchmark");
+        for (Player player : room.getPlayers().values()) {
+            blackhole.consume(frames.binaryFrameFor(player));
+        }
+    }
+
+    /**
+     * 每次有一个玩家状态变化时的增量编码。
+     */
+    @Benchmark
+    public Object broadcastDelta() throws Exception {
+        toggled.setReady(!toggled.isReady());
+        return deltaEncoder.encode(room, "benchmark");
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.top_hog_server.benchmark;
+
+import com.example.top_hog_server.model.Card;
+import com.example.top_hog_server.model.CardTable;
+import com.example.top_hog_server.model.GameRoom;
+import com.example.top_hog_server.model.GameRow;
+import com.example.top_hog_server.model.Player;
+import com.example.top_hog_server.service.game.TopHogGameEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 猪头王引擎热点路径：洗牌发牌、查找目标行、放牌/收行。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TopHogEngineBenchmark {
+
+    // 预生成的出牌序列长度（2 的幂，便于取模）
+    private static final int PLAYS = 1 << 12;
+
+    @Param({"4", "10"})
+    private int players;
+
+    private TopHogGameEngine engine;
+    private GameRoom room;
+    private List<GameRow> rows;
+    private Player collector;
+    private int[] plays;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        engine = new TopHogGameEngine();
+        room = BenchmarkRooms.emptyRoom("BENCH", players);
+        engine.initializeGame(room);
+        rows = room.getRows();
+        collector = new Player("COLLECTOR", "Collector");
+        plays = new int[PLAYS];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < PLAYS; i++) {
+            plays[i] = random.nextInt(CardTable.MIN_CARD_NUMBER, CardTable.MAX_CARD_NUMBER + 1);
+        }
+    }
+
+    /**
+     * 新开一局：洗牌、发起始牌、给每个玩家发 10 张。每局换一个种子，与线上每局不同的牌序一致。
+     */
+    @Benchmark
+    public int dealRound() {
+        room.setGameSeed(room.getGameSeed() + 1);
+        engine.initializeGame(room);
+        for (Player player : room.getPlayers().values()) {
+            player.resetForNewRound();
+        }
+        engine.startNewRound(room);
+        return room.getDeck().size();
+    }
+
+    @Benchmark
+    public int findTargetRow() {
+        return TopHogGameEngine.findTargetRowIndex(rows, plays[cursor++ & (PLAYS - 1)]);
+    }
+
+    /**
+     * 按规则结算一张牌：正常放置、第 6 张收行或必须选行（选猪头最少的一行）。
+     */
+    @Benchmark
+    public int placeOrTake() {
+        Card card = CardTable.card(plays[cursor++ & (PLAYS - 1)]);
+        int target = TopHogGameEngine.findTargetRowIndex(rows, card.getNumber());
+        int taken = 0;
+        if (target < 0) {
+            taken = engine.executeTakeRow(room, collector, TopHogGameEngine.findRowWithMinBullheads(rows), card);
+        } else if (rows.get(target).isFull()) {
+            taken = engine.executeTakeRow(room, collector, target, card);
+        } else {
+            rows.get(target).addCard(card);
+        }
+        if (collector.getCollectedCards().size() > 4096) {
+            collector.getCollectedCards().clear();
+        }
+        return taken;
+    }
+}
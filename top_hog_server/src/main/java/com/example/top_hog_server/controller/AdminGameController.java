@@ -1,11 +1,20 @@
 package com.example.top_hog_server.controller;
 
+import com.example.top_hog_server.handler.GameWebSocketHandler;
 import com.example.top_hog_server.service.AdminGameService;
+import com.example.top_hog_server.service.game.bot.BotDecisionService;
+import com.example.top_hog_server.service.history.GameHistoryWriter;
+import com.example.top_hog_server.service.journal.GameJournal;
+import com.example.top_hog_server.service.matchmaking.MatchmakingService;
+import com.example.top_hog_server.service.replay.ReplayService;
+import com.example.top_hog_server.service.room.GameTimerWheel;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
@@ -27,6 +36,166 @@ public class AdminGameController {
     @Autowired
     private AdminGameService adminGameService;
 
+    @Autowired
+    private BotDecisionService botDecisionService;
+
+    @Autowired
+    private GameTimerWheel gameTimerWheel;
+
+    @Autowired
+    private GameHistoryWriter gameHistoryWriter;
+
+    @Autowired
+    private MatchmakingService matchmakingService;
+
+    @Autowired
+    private GameJournal gameJournal;
+
+    @Autowired
+    private ReplayService replayService;
+
+    @Autowired
+    private GameWebSocketHandler gameWebSocketHandler;
+
+    /**
+     * 获取战绩异步写入统计（队列积压、溢出落盘、失败批次）
+     */
+    @GetMapping("/history-writer-metrics")
+    @Operation(summary = "获取战绩写入统计")
+    // @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getHistoryWriterMetrics() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", gameHistoryWriter.metrics());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 获取游戏日志统计（快照/事件数、写入字节数、刷盘与压缩次数）
+     */
+    @GetMapping("/journal-metrics")
+    @Operation(summary = "获取游戏日志统计")
+    // @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getJournalMetrics() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", gameJournal.metrics());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 获取对局回放存储统计（归档局数、平均每局字节数、段文件数）
+     */
+    @GetMapping("/replay-metrics")
+    @Operation(summary = "获取对局回放统计")
+    // @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getReplayMetrics() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", replayService.metrics());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 房间内进行过的对局（最近的在前）
+     */
+    @GetMapping("/replays")
+    @Operation(summary = "按房间查询对局回放")
+    // @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getRoomReplays(@RequestParam String roomId,
+                                            @RequestParam(defaultValue = "20") Integer limit) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", replayService.listForRoom(roomId, Math.max(1, Math.min(limit, 100))));
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 回放对局的第 round 轮第 turn 手（不限参与者）
+     */
+    @GetMapping("/replays/{gameId}/state")
+    @Operation(summary = "回放对局的某一手")
+    // @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getReplayState(@PathVariable String gameId,
+                                            @RequestParam int round,
+                                            @RequestParam int turn) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", replayService.frame(gameId, round, turn));
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 下载回放记录的原始二进制编码，供离线分析
+     */
+    @GetMapping("/replays/{gameId}/raw")
+    @Operation(summary = "下载回放原始记录")
+    // @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<byte[]> getReplayRaw(@PathVariable String gameId) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentDispositionFormData("attachment", gameId + ".replay");
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(replayService.raw(gameId));
+    }
+
+    /**
+     * 获取 WebSocket 出站队列统计（排队字节数、合并的状态帧、驱逐的慢消费者）
+     */
+    @GetMapping("/outbound-metrics")
+    @Operation(summary = "获取WebSocket出站队列统计")
+    // @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getOutboundMetrics() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", gameWebSocketHandler.outboundMetrics());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 获取匹配队列统计（排队人数、等待时间、成局数）
+     */
+    @GetMapping("/matchmaking-metrics")
+    @Operation(summary = "获取匹配队列统计")
+    // @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getMatchmakingMetrics() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", matchmakingService.metrics());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 获取游戏计时器统计（等待中的计时器数、触发延迟）
+     */
+    @GetMapping("/timer-metrics")
+    @Operation(summary = "获取游戏计时器统计")
+    // @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getTimerMetrics() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", gameTimerWheel.metrics());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 获取机器人决策耗时统计
+     */
+    @GetMapping("/bot-metrics")
+    @Operation(summary = "获取机器人决策耗时统计")
+    // @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getBotMetrics() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("budgetMs", botDecisionService.getDecisionBudgetNanos() / 1_000_000);
+        data.put("strategies", botDecisionService.getMetrics().snapshot());
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", data);
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * 获取所有活跃房间
      */
@@ -161,6 +161,38 @@ public class AdminUserController {
         }
     }
 
+    /**
+     * 批量发放奖励(活动奖励)
+     */
+    @PostMapping("/grant-batch")
+    @Operation(summary = "批量发放金币/钻石(活动奖励)")
+    // @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> grantBatch(@RequestBody Map<String, Object> request) {
+        try {
+            List<Long> userIds = ((List<?>) request.get("userIds")).stream()
+                    .map(id -> Long.valueOf(id.toString()))
+                    .toList();
+            String currency = (String) request.get("currency"); // COINS or DIAMONDS
+            Long amount = Long.valueOf(request.get("amount").toString());
+            String reason = (String) request.getOrDefault("reason", "活动奖励");
+
+            int granted = adminUserService.grantBatch(userIds, currency, amount, reason);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", granted);
+            response.put("message", "批量发放成功");
+
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("批量发放奖励失败", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
     /**
      * 获取用户充值记录
      */
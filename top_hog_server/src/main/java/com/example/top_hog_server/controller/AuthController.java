@@ -9,8 +9,11 @@ import com.example.top_hog_server.payload.dto.response.JwtResponse;
 import com.example.top_hog_server.payload.dto.response.WechatLoginResponse;
 import com.example.top_hog_server.repository.UserRepository;
 import com.example.top_hog_server.security.jwt.JwtUtils;
+import com.example.top_hog_server.security.services.PrincipalCache;
 import com.example.top_hog_server.security.services.UserDetailsImpl;
+import com.example.top_hog_server.service.AnalyticsService;
 import com.example.top_hog_server.service.EmailService;
+import com.example.top_hog_server.service.TaskProgressService;
 import com.example.top_hog_server.service.VerificationCodeService;
 import com.example.top_hog_server.service.WechatService;
 import org.slf4j.Logger;
@@ -56,6 +59,15 @@ public class AuthController {
     @Autowired
     private WechatService wechatService;
 
+    @Autowired
+    private AnalyticsService analyticsService; // 数据分析事件
+
+    @Autowired
+    private PrincipalCache principalCache; // 已认证用户缓存
+
+    @Autowired
+    private TaskProgressService taskProgressService; // 每日任务进度
+
     /**
      * 验证Token有效性接口。
      * 需要携带有效Token访问。如果Token无效，会被Filter拦截返回401。
@@ -98,6 +110,7 @@ public class AuthController {
         // In real app, verify code here. For now, assume code is valid.
         user.setPhone(request.getPhone());
         userRepository.save(user);
+        principalCache.invalidateUser(user.getId());
 
         Map<String, String> data = new HashMap<>();
         data.put("phone", user.getPhone());
@@ -144,6 +157,8 @@ public class AuthController {
                     userDetails.getInviteCode(),
                     userDetails.getVipStatus(),
                     user.isGuideCompleted());
+            analyticsService.recordLogin(user.getId());
+            taskProgressService.onLogin(user.getId());
             logger.info("用户 {} 登录成功", loginRequest.getUsername());
             return ApiResponse.success(jwtResponse);
         } catch (BadCredentialsException e) {
@@ -222,6 +237,7 @@ public class AuthController {
         user.setEmailVerified(true); // 邮箱已通过验证码校验
 
         userRepository.save(user);
+        analyticsService.recordRegistration(user.getId());
         String successMessage = "用户 " + signUpRequest.getUsername() + " 注册成功!";
         logger.info(successMessage);
         return ApiResponse.success(successMessage, successMessage);
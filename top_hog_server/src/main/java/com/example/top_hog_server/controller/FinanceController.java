@@ -11,6 +11,7 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -142,33 +143,50 @@ public class FinanceController {
     }
 
     /**
-     * 导出财务数据
+     * 导出财务数据：逐页查询直接写入响应流，可选 gzip 压缩
      */
     @GetMapping("/export")
-    @Operation(summary = "导出财务数据(CSV)")
+    @Operation(summary = "导出财务数据(CSV，可选gzip)")
     // @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> exportFinanceData(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
-
-        try {
-            String csvData = financeService.exportFinanceData(startDate, endDate);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.parseMediaType("text/csv"));
-            headers.setContentDispositionFormData("attachment",
-                    "finance_report_" + startDate + "_" + endDate + ".csv");
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "false") boolean gzip) {
 
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(csvData);
-        } catch (Exception e) {
-            log.error("导出财务数据失败", e);
+        if (endDate.isBefore(startDate)) {
             Map<String, Object> response = new HashMap<>();
             response.put("success", false);
-            response.put("message", e.getMessage());
+            response.put("message", "结束日期不能早于开始日期");
             return ResponseEntity.badRequest().body(response);
         }
+
+        String fileName = "finance_report_" + startDate + "_" + endDate + (gzip ? ".csv.gz" : ".csv");
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(gzip ? MediaType.parseMediaType("application/gzip")
+                : MediaType.parseMediaType("text/csv;charset=UTF-8"));
+        headers.setContentDispositionFormData("attachment", fileName);
+
+        StreamingResponseBody body = out -> {
+            long rows = financeService.exportFinanceData(startDate, endDate, out, gzip);
+            log.info("导出财务数据 {} ~ {}: {} 条", startDate, endDate, rows);
+        };
+
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(body);
+    }
+
+    /**
+     * 最近的每日定时对账结果
+     */
+    @GetMapping("/reconciliation/recent")
+    @Operation(summary = "最近的每日定时对账结果")
+    // @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getRecentReconciliations() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", financeService.getRecentReconciliations());
+        return ResponseEntity.ok(response);
     }
 
     /**
@@ -1,11 +1,13 @@
 package com.example.top_hog_server.controller;
 
+import com.example.top_hog_server.security.services.UserDetailsImpl;
 import com.example.top_hog_server.service.LeaderboardService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
@@ -44,4 +46,28 @@ public class LeaderboardController {
             return ResponseEntity.badRequest().body(response);
         }
     }
+
+    @GetMapping("/me")
+    @Operation(summary = "获取当前用户在排行榜中的名次")
+    public ResponseEntity<?> getMyRank(
+            @RequestParam(defaultValue = "TOTAL_SCORE") String type,
+            @RequestParam(defaultValue = "ALL") String period) {
+
+        try {
+            UserDetailsImpl user = (UserDetailsImpl) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+            Map<String, Object> rank = leaderboardService.getUserRank(type, period, user.getId());
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", rank);
+
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("获取个人排名失败", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
 }
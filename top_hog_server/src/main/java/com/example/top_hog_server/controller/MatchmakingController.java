@@ -0,0 +1,60 @@
+package com.example.top_hog_server.controller;
+
+import com.example.top_hog_server.payload.dto.response.ApiResponse;
+import com.example.top_hog_server.security.services.UserDetailsImpl;
+import com.example.top_hog_server.service.matchmaking.MatchmakingService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * 按水平匹配的排队接口。
+ * 加入队列后客户端轮询 /status，状态变为 MATCHED 时用返回的 roomId 和 roomPassword 加入房间。
+ */
+@RestController
+@RequestMapping("/api/room/matchmaking")
+public class MatchmakingController {
+
+    private final MatchmakingService matchmakingService;
+
+    @Autowired
+    public MatchmakingController(MatchmakingService matchmakingService) {
+        this.matchmakingService = matchmakingService;
+    }
+
+    /**
+     * 加入匹配队列，已在排队时保持原来的排队时间。
+     *
+     * @return 当前匹配状态
+     */
+    @PostMapping("/join")
+    public ApiResponse<Map<String, Object>> join() {
+        Long userId = currentUserId();
+        matchmakingService.enqueue(userId);
+        return ApiResponse.success(matchmakingService.statusOf(userId));
+    }
+
+    /**
+     * 查询匹配状态。
+     */
+    @GetMapping("/status")
+    public ApiResponse<Map<String, Object>> status() {
+        return ApiResponse.success(matchmakingService.statusOf(currentUserId()));
+    }
+
+    /**
+     * 取消排队。已经匹配成功时 cancelled 为 false。
+     */
+    @PostMapping("/cancel")
+    public ApiResponse<Map<String, Object>> cancel() {
+        boolean cancelled = matchmakingService.cancel(currentUserId());
+        return ApiResponse.success(Map.of("cancelled", cancelled));
+    }
+
+    private static Long currentUserId() {
+        UserDetailsImpl user = (UserDetailsImpl) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        return user.getId();
+    }
+}
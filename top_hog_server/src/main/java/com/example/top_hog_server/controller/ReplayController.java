@@ -0,0 +1,68 @@
+package com.example.top_hog_server.controller;
+
+import com.example.top_hog_server.exception.BusinessException;
+import com.example.top_hog_server.exception.ErrorCode;
+import com.example.top_hog_server.payload.dto.response.ApiResponse;
+import com.example.top_hog_server.security.services.UserDetailsImpl;
+import com.example.top_hog_server.service.replay.ReplayService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 对局回放接口：只能查看自己参与过的对局。
+ * 服务端按开局种子和操作记录重新运行规则，返回任意一手结算前后的状态。
+ */
+@RestController
+@RequestMapping("/api/replays")
+public class ReplayController {
+
+    private final ReplayService replayService;
+
+    @Autowired
+    public ReplayController(ReplayService replayService) {
+        this.replayService = replayService;
+    }
+
+    /**
+     * 自己最近参与过的对局（最近的在前）。
+     */
+    @GetMapping("/mine")
+    public ApiResponse<List<Map<String, Object>>> mine(@RequestParam(defaultValue = "20") int limit) {
+        return ApiResponse.success(replayService.listForUser(currentUserId(), Math.max(1, Math.min(limit, 100))));
+    }
+
+    /**
+     * 整局概要：座位、最终分数、进行的轮数。
+     */
+    @GetMapping("/{gameId}")
+    public ApiResponse<Map<String, Object>> summary(@PathVariable String gameId) {
+        checkParticipant(gameId);
+        return ApiResponse.success(replayService.summary(gameId));
+    }
+
+    /**
+     * 第 round 轮第 turn 手（均从 1 开始）结算前后的状态。
+     */
+    @GetMapping("/{gameId}/state")
+    public ApiResponse<Map<String, Object>> state(@PathVariable String gameId,
+                                                  @RequestParam int round,
+                                                  @RequestParam int turn) {
+        checkParticipant(gameId);
+        return ApiResponse.success(replayService.frame(gameId, round, turn));
+    }
+
+    private void checkParticipant(String gameId) {
+        if (!replayService.isParticipant(gameId, currentUserId())) {
+            throw new BusinessException(ErrorCode.FORBIDDEN, "只能查看自己参与过的对局");
+        }
+    }
+
+    private static Long currentUserId() {
+        UserDetailsImpl user = (UserDetailsImpl) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        return user.getId();
+    }
+}
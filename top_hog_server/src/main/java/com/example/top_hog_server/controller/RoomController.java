@@ -1,5 +1,6 @@
 package com.example.top_hog_server.controller;
 
+import com.example.top_hog_server.model.BotDifficulty;
 import com.example.top_hog_server.model.GameRoom;
 import com.example.top_hog_server.model.Player;
 import com.example.top_hog_server.payload.dto.request.AddBotsRequest;
@@ -49,16 +50,22 @@ public class RoomController {
      * 创建一个人机对战房间 (PvE)。
      * 此接口作为快速创建并填充机器人的快捷方式。
      *
-     * @param payload 包含机器人数量等信息的请求对象
+     * @param payload 包含机器人数量、机器人难度等信息的请求对象
      * @return 包含新创建的 PvE GameRoom 对象的 ApiResponse
      */
     @PostMapping("/create-pve")
     public ApiResponse<GameRoom> createPveRoom(@RequestBody CreatePveRoomRequest payload) {
+        BotDifficulty difficulty = BotDifficulty.fromCode(payload.getDifficulty());
+        if (payload.getDifficulty() != null && difficulty == null) {
+            return ApiResponse.error(400, "Unknown bot difficulty: " + payload.getDifficulty());
+        }
+
         // 1. 创建一个普通房间
         Map<String, Object> roomPayload = new HashMap<>();
         roomPayload.put("roomName", "PvE Room");
         roomPayload.put("maxPlayers", 6); // 默认大小
         GameRoom room = gameRoomService.createRoom(roomPayload);
+        room.setBotDifficulty(difficulty);
 
         // 2. 添加请求数量的机器人
         int botCount = payload.getBotCount();
@@ -127,9 +134,10 @@ public class RoomController {
 
     /**
      * 获取所有当前可用的游戏房间列表。
-     * 支持分页和仅显示可用房间的过滤。
+     * 支持分页和仅显示可用房间的过滤，房间按创建时间排序。
+     * 请求中带 cursor 字段时使用键集分页（首页传空字符串），响应中的 nextCursor 用于请求下一页，为 null 表示没有下一页。
      *
-     * @param payload 包含分页参数 (page, pageSize) 和过滤条件 (onlyAvailable) 的 Map
+     * @param payload 包含分页参数 (page, pageSize 或 cursor, pageSize) 和过滤条件 (onlyAvailable) 的 Map
      * @return 包含房间列表和总数的 ApiResponse
      */
     @PostMapping("/list")
@@ -138,6 +146,16 @@ public class RoomController {
         int pageSize = (Integer) payload.getOrDefault("pageSize", 20);
         boolean onlyAvailable = (Boolean) payload.getOrDefault("onlyAvailable", false);
 
+        if (payload.containsKey("cursor")) {
+            GameRoomService.LobbyPage lobbyPage = gameRoomService.listRooms(
+                    (String) payload.get("cursor"), pageSize, onlyAvailable);
+            Map<String, Object> data = new HashMap<>();
+            data.put("list", lobbyPage.getList());
+            data.put("total", lobbyPage.getTotal());
+            data.put("nextCursor", lobbyPage.getNextCursor());
+            return ApiResponse.success(data);
+        }
+
         List<GameRoom> list = gameRoomService.listRooms(page, pageSize, onlyAvailable);
 
         return ApiResponse.success(Map.of("list", list, "total", list.size()));
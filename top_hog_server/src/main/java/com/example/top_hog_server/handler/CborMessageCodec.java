@@ -0,0 +1,51 @@
+package com.example.top_hog_server.handler;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+/**
+ * tophog.cbor 子协议的下行编码器。
+ * <p>
+ * 客户端握手时在 {@code Sec-WebSocket-Protocol} 中声明 {@value #SUBPROTOCOL}，服务端即以 CBOR（RFC 8949）二进制帧下发
+ * 所有消息，消息结构与 JSON 协议相同，只有编码不同：
+ * <ul>
+ *     <li>整数按最小长度编码，牌面和牛头数各占 1~2 字节；</li>
+ *     <li>枚举（如 gameState）写为序号而不是名称；</li>
+ *     <li>同一帧内重复出现的字段名和字符串通过 stringref 扩展（tag 256/25）只传一次，之后以序号引用。</li>
+ * </ul>
+ * 上行消息仍为 JSON 文本帧；未声明子协议的旧客户端继续收到 JSON。
+ */
+@Component
+public class CborMessageCodec {
+
+    public static final String SUBPROTOCOL = "tophog.cbor";
+
+    private final ObjectWriter writer;
+
+    @Autowired
+    public CborMessageCodec(ObjectMapper objectMapper) {
+        // 沿用应用 ObjectMapper 的模块和序列化配置，只替换底层格式
+        this.writer = objectMapper.copyWith(new CBORFactory()).writer()
+                .with(SerializationFeature.WRITE_ENUMS_USING_INDEX)
+                .with(CBORGenerator.Feature.STRINGREF);
+    }
+
+    /**
+     * 会话是否在握手时协商了二进制子协议。
+     */
+    public static boolean isBinary(WebSocketSession session) {
+        return SUBPROTOCOL.equals(session.getAcceptedProtocol());
+    }
+
+    public BinaryMessage encode(Object message) throws JsonProcessingException {
+        return new BinaryMessage(writer.writeValueAsBytes(message));
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.top_hog_server.handler;
+
+import com.example.top_hog_server.model.Card;
+import com.example.top_hog_server.model.GameRoom;
+import com.example.top_hog_server.model.GameRow;
+import com.example.top_hog_server.model.Player;
+import com.example.top_hog_server.payload.dto.response.GameRoomDTO;
+import com.example.top_hog_server.payload.dto.response.PlayerDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * gameStateUpdate 广播帧编码器。
+ * 每次状态变更只序列化一次公共部分（房间信息、牌列、其他玩家的公开视图），
+ * 针对每个玩家只拼接其私有部分（自己的手牌、自己尚未翻开的出牌）。
+ * 输出的 JSON 与 {@link GameRoomDTO#from(GameRoom, String)} 的序列化结果保持一致。
+ * 协商了 tophog.cbor 子协议的会话收到同样结构的 CBOR 帧，见 {@link CborMessageCodec}。
+ */
+@Component
+public class GameStateFrameEncoder {
+
+    // 未翻开的牌对其他玩家显示为 -1
+    private static final Card HIDDEN_CARD = new Card(-1, 0);
+
+    private final ObjectMapper objectMapper;
+    private final CborMessageCodec cborMessageCodec;
+
+    @Autowired
+    public GameStateFrameEncoder(ObjectMapper objectMapper, CborMessageCodec cborMessageCodec) {
+        this.objectMapper = objectMapper;
+        this.cborMessageCodec = cborMessageCodec;
+    }
+
+    /**
+     * 编码当前房间状态的公共部分。
+     *
+     * @param room    房间（调用方需持有房间的执行上下文）
+     * @param message 附带的提示消息
+     * @return 可为各玩家生成帧的对象
+     */
+    public GameStateFrames encode(GameRoom room, String message) throws JsonProcessingException {
+        boolean reveal = GameRoomDTO.isPlayedCardsRevealed(room);
+
+        List<GameRoomDTO.GameRowDTO> rowDTOs = new ArrayList<>();
+        if (room.getRows() != null) {
+            for (GameRow row : room.getRows()) {
+                rowDTOs.add(GameRoomDTO.GameRowDTO.from(row));
+            }
+        }
+
+        StringBuilder head = new StringBuilder(1024);
+        head.append("{\"type\":\"gameStateUpdate\",\"message\":").append(json(message))
+                .append(",\"roomState\":{\"roomId\":").append(json(room.getRoomId()))
+                .append(",\"roomName\":").append(json(room.getRoomName()))
+                .append(",\"gameState\":").append(json(room.getGameState()))
+                .append(",\"maxPlayers\":").append(room.getMaxPlayers())
+                .append(",\"maxRounds\":").append(room.getMaxRounds())
+                .append(",\"targetScore\":").append(room.getTargetScore())
+                .append(",\"currentRound\":").append(room.getCurrentRound())
+                .append(",\"currentTurnNumber\":").append(room.getCurrentTurnNumber())
+                .append(",\"rows\":").append(json(rowDTOs))
+                .append(",\"winnerDisplayName\":").append(json(room.getWinnerDisplayName()))
+                .append(",\"playerChoosingRowSessionId\":").append(json(room.getPlayerChoosingRowSessionId()))
+                .append(",\"stateVersion\":").append(room.getStateVersion());
+
+        Map<String, String> publicPlayers = new LinkedHashMap<>();
+        for (Map.Entry<String, Player> entry : room.getPlayers().entrySet()) {
+            publicPlayers.put(entry.getKey(), field(entry.getKey(), PlayerDTO.from(entry.getValue(), false)));
+        }
+
+        Map<String, String> publicCards = new LinkedHashMap<>();
+        for (Map.Entry<String, Card> entry : room.getPlayedCardsThisTurn().entrySet()) {
+            publicCards.put(entry.getKey(), field(entry.getKey(), reveal ? entry.getValue() : HIDDEN_CARD));
+        }
+
+        return new GameStateFrames(room, message, reveal, head.toString(), publicPlayers, publicCards);
+    }
+
+    private String json(Object value) throws JsonProcessingException {
+        return objectMapper.writeValueAsString(value);
+    }
+
+    // 生成 "key":value 形式的 JSON 片段
+    private String field(String key, Object value) throws JsonProcessingException {
+        return json(key) + ':' + json(value);
+    }
+
+    /**
+     * 某一次状态变更的已编码帧。公共视图帧只生成一次并在会话间复用。
+     */
+    public final class GameStateFrames {
+        private final GameRoom room;
+        private final String message;
+        private final boolean reveal;
+        private final String head;
+        private final Map<String, String> publicPlayers;
+        private final Map<String, String> publicCards;
+        private TextMessage publicFrame;
+        private BinaryMessage publicBinaryFrame;
+
+        private GameStateFrames(GameRoom room, String message, boolean reveal, String head,
+                Map<String, String> publicPlayers, Map<String, String> publicCards) {
+            this.room = room;
+            this.message = message;
+            this.reveal = reveal;
+            this.head = head;
+            this.publicPlayers = publicPlayers;
+            this.publicCards = publicCards;
+        }
+
+        /**
+         * 不含任何私有信息的帧（观战者或无用户ID的会话）。
+         */
+        public TextMessage publicFrame() {
+            if (publicFrame == null) {
+                publicFrame = new TextMessage(assemble(null, null));
+            }
+            return publicFrame;
+        }
+
+        /**
+         * 为指定玩家生成帧：公共部分复用，只序列化该玩家自己的手牌和出牌。
+         */
+        public TextMessage frameFor(Player recipient) throws JsonProcessingException {
+            if (recipient == null || recipient.getUserId() == null) {
+                return publicFrame();
+            }
+            Long userId = recipient.getUserId();
+            Map<String, String> privatePlayers = new LinkedHashMap<>();
+            Map<String, String> privateCards = new LinkedHashMap<>();
+            for (Map.Entry<String, Player> entry : room.getPlayers().entrySet()) {
+                Player p = entry.getValue();
+                if (!userId.equals(p.getUserId())) {
+                    continue;
+                }
+                privatePlayers.put(entry.getKey(), field(entry.getKey(), PlayerDTO.from(p, true)));
+                Card ownCard = room.getPlayedCardsThisTurn().get(entry.getKey());
+                if (ownCard != null && !reveal) {
+                    privateCards.put(entry.getKey(), field(entry.getKey(), ownCard));
+                }
+            }
+            if (privatePlayers.isEmpty()) {
+                return publicFrame();
+            }
+            return new TextMessage(assemble(privatePlayers, privateCards));
+        }
+
+        /**
+         * 按会话协商的编码生成帧。
+         */
+        public WebSocketMessage<?> frameFor(Player recipient, WebSocketSession session) throws JsonProcessingException {
+            return CborMessageCodec.isBinary(session) ? binaryFrameFor(recipient) : frameFor(recipient);
+        }
+
+        /**
+         * 为 tophog.cbor 会话生成帧。二进制帧整体编码以便字段名去重，公共视图帧同样只编码一次。
+         */
+        public BinaryMessage binaryFrameFor(Player recipient) throws JsonProcessingException {
+            if (recipient == null || recipient.getUserId() == null) {
+                if (publicBinaryFrame == null) {
+                    publicBinaryFrame = encodeBinary(null);
+                }
+                return publicBinaryFrame;
+            }
+            return encodeBinary(String.valueOf(recipient.getUserId()));
+        }
+
+        private BinaryMessage encodeBinary(String requestingUserId) throws JsonProcessingException {
+            Map<String, Object> frame = new LinkedHashMap<>();
+            frame.put("type", "gameStateUpdate");
+            frame.put("message", message);
+            frame.put("roomState", GameRoomDTO.from(room, requestingUserId));
+            return cborMessageCodec.encode(frame);
+        }
+
+        private String assemble(Map<String, String> privatePlayers, Map<String, String> privateCards) {
+            StringBuilder sb = new StringBuilder(head.length() + 256 * (publicPlayers.size() + 1));
+            sb.append(head).append(",\"players\":{");
+            appendEntries(sb, publicPlayers, privatePlayers);
+            sb.append("},\"playedCardsThisTurn\":{");
+            appendEntries(sb, publicCards, privateCards);
+            sb.append("}}}");
+            return sb.toString();
+        }
+
+        private void appendEntries(StringBuilder sb, Map<String, String> shared, Map<String, String> overrides) {
+            boolean first = true;
+            for (Map.Entry<String, String> entry : shared.entrySet()) {
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                String value = overrides != null ? overrides.getOrDefault(entry.getKey(), entry.getValue())
+                        : entry.getValue();
+                sb.append(value);
+            }
+        }
+    }
+}
@@ -1,6 +1,10 @@
 // src/main/java/com/example/top_hog_server/handler/GameWebSocketHandler.java
 package com.example.top_hog_server.handler;
 
+import com.example.top_hog_server.handler.inbound.GameCommand;
+import com.example.top_hog_server.handler.inbound.InboundMessage;
+import com.example.top_hog_server.handler.inbound.InboundMessageHandler;
+import com.example.top_hog_server.handler.inbound.InboundMessageRegistry;
 import com.example.top_hog_server.model.GameRoom;
 // 确保引入Player
 import com.example.top_hog_server.model.Player;
@@ -9,60 +13,138 @@ import com.example.top_hog_server.model.User;
 // 确保引入UserRepository
 import com.example.top_hog_server.repository.UserRepository;
 import com.example.top_hog_server.service.GameLogicService;
+import com.example.top_hog_server.service.metrics.GameMetrics;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * /ws-game 端点。上行消息为 JSON 文本帧；下行默认为 JSON 文本帧，
+ * 握手时协商了 {@value CborMessageCodec#SUBPROTOCOL} 子协议的会话改收 CBOR 二进制帧。
+ */
 @Component
-public class GameWebSocketHandler extends TextWebSocketHandler {
+public class GameWebSocketHandler extends TextWebSocketHandler implements SubProtocolCapable {
 
     private static final Logger logger = LoggerFactory.getLogger(GameWebSocketHandler.class);
     private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+    // 会话 ID -> 出站队列；所有出站消息都经由队列异步发送
+    private final Map<String, SessionOutbox> outboxes = new ConcurrentHashMap<>();
     private final Map<String, Set<String>> roomSessionIds = new ConcurrentHashMap<>();
 
     private final GameLogicService gameLogicService;
     // 注入UserRepository
     private final UserRepository userRepository;
     private final ObjectMapper objectMapper;
+    // 入站消息计数
+    private final GameMetrics gameMetrics;
+    // 入站消息类型 -> 记录类和处理器；未注册的类型在指标中统一记为 unknown
+    private final InboundMessageRegistry inboundMessages;
+    // 二进制子协议的下行编码；关闭时握手不再接受该子协议
+    private final CborMessageCodec cborMessageCodec;
+    private final boolean binaryEnabled;
+
+    // 出站队列：每个会话的排队字节数上限、单次发送的时间上限，以及所有会话共用的写线程
+    private final int outboundBufferBytes;
+    private final long outboundSendTimeLimitMs;
+    private final ExecutorService outboundWriter;
+    // 关闭会话和驱逐后的离开处理：可能阻塞在卡住的连接上，不占用写线程
+    private final ExecutorService sessionCloser;
+
+    // 出站统计
+    private final LongAdder outboundEnqueued = new LongAdder();
+    private final LongAdder outboundCoalesced = new LongAdder();
+    private final LongAdder outboundDropped = new LongAdder();
+    private final LongAdder slowConsumerEvictions = new LongAdder();
+    private final LongAdder outboundTextBytes = new LongAdder();
+    private final LongAdder outboundBinaryBytes = new LongAdder();
 
     @Autowired
     public GameWebSocketHandler(@Lazy GameLogicService gameLogicService,
                                 // 注入
                                 UserRepository userRepository,
-                                ObjectMapper objectMapper) {
+                                ObjectMapper objectMapper,
+                                GameMetrics gameMetrics,
+                                InboundMessageRegistry inboundMessages,
+                                CborMessageCodec cborMessageCodec,
+                                @Value("${game.ws.binary.enabled:true}") boolean binaryEnabled,
+                                @Value("${game.ws.outbound.bufferBytes:524288}") int outboundBufferBytes,
+                                @Value("${game.ws.outbound.sendTimeLimitMs:5000}") long outboundSendTimeLimitMs,
+                                @Value("${game.ws.outbound.writerThreads:4}") int outboundWriterThreads) {
         this.gameLogicService = gameLogicService;
         // 初始化
         this.userRepository = userRepository;
         this.objectMapper = objectMapper;
+        this.gameMetrics = gameMetrics;
+        this.inboundMessages = inboundMessages;
+        this.cborMessageCodec = cborMessageCodec;
+        this.binaryEnabled = binaryEnabled;
+        this.outboundBufferBytes = Math.max(1024, outboundBufferBytes);
+        this.outboundSendTimeLimitMs = Math.max(1, outboundSendTimeLimitMs);
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.outboundWriter = Executors.newFixedThreadPool(Math.max(1, outboundWriterThreads), r -> {
+            Thread t = new Thread(r, "ws-outbound-writer-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        AtomicInteger closerIndex = new AtomicInteger();
+        this.sessionCloser = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "ws-session-closer-" + closerIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        registerBuiltInMessages();
+        gameMetrics.registerInboundTypes(inboundMessages.registeredTypes());
+    }
+
+    /**
+     * 握手时可协商的子协议。客户端在 Sec-WebSocket-Protocol 中声明 tophog.cbor 即改收二进制帧，未声明的客户端仍收 JSON。
+     */
+    @Override
+    public List<String> getSubProtocols() {
+        return binaryEnabled ? List.of(CborMessageCodec.SUBPROTOCOL) : List.of();
     }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
         Long userId = (Long) session.getAttributes().get(UserHandshakeInterceptorRaw.USER_IDENTIFIER_SESSION_KEY);
-        logger.info("WebSocket 连接已建立: SessionId={}, UserId={}, Uri={}",
-                session.getId(), userId, session.getUri());
+        logger.info("WebSocket 连接已建立: SessionId={}, UserId={}, Uri={}, Protocol={}",
+                session.getId(), userId, session.getUri(), session.getAcceptedProtocol());
         sessions.put(session.getId(), session);
+        outboxes.put(session.getId(),
+                new SessionOutbox(session, outboundWriter, sessionCloser, outboundBufferBytes, outboundSendTimeLimitMs));
 
         if (userId == null) {
             logger.warn("会话 {} 的 UserIdentifier 为空。用户可能无法正确识别。发送错误并关闭。", session.getId());
             sendErrorMessage(session, null, "用户标识丢失。请使用用户标识重新连接。");
-            session.close(CloseStatus.POLICY_VIOLATION.withReason("需要用户标识"));
+            closeSession(session, CloseStatus.POLICY_VIOLATION.withReason("需要用户标识"));
             return;
         }
 
@@ -109,8 +191,10 @@ public class GameWebSocketHandler extends TextWebSocketHandler {
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
         String payload = message.getPayload();
         Long userId = (Long) session.getAttributes().get(UserHandshakeInterceptorRaw.USER_IDENTIFIER_SESSION_KEY);
-        logger.info("收到来自用户 '{}' (会话 {}) 的消息: {}",
-                userId, session.getId(), payload.substring(0, Math.min(payload.length(), 200)));
+        if (logger.isDebugEnabled()) {
+            logger.debug("收到来自用户 '{}' (会话 {}) 的消息: {}",
+                    userId, session.getId(), payload.substring(0, Math.min(payload.length(), 200)));
+        }
 
         if (userId == null) {
             sendErrorMessage(session, null, "此会话的用户身份未建立。消息被忽略。");
@@ -118,176 +202,28 @@ public class GameWebSocketHandler extends TextWebSocketHandler {
         }
 
         try {
-            Map<String, Object> messageData = objectMapper.readValue(payload, Map.class);
-            String type = (String) messageData.get("type");
-            String roomId = (String) messageData.get("roomId");
+            InboundMessageRegistry.Header header = inboundMessages.readHeader(payload);
+            String type = header.type();
 
             if (type == null) {
-                sendErrorMessage(session, roomId, "消息类型丢失。");
+                sendErrorMessage(session, header.roomId(), "消息类型丢失。");
+                return;
+            }
+            InboundMessageRegistry.Route<?> route = inboundMessages.route(type);
+            gameMetrics.countInboundMessage(route != null ? type : GameMetrics.UNKNOWN_MESSAGE_TYPE);
+            if (route == null) {
+                logger.warn("未知消息类型 '{}' 来自用户 '{}' (会话 {})", type, userId, session.getId());
+                sendErrorMessage(session, header.roomId(), "未知的消息类型: " + type);
                 return;
             }
 
-            switch (type) {
-                case "requestRejoinInfo":
-                    String clientProvidedRoomId = (String) messageData.get("roomId");
-                    logger.info("收到来自用户 {} 的 requestRejoinInfo 请求，客户端提供的房间ID: {}", userId, clientProvidedRoomId);
-                    GameRoom rejoinedRoomFromRequest = gameLogicService.checkAndRejoinPlayerOnConnectRaw(session, userId);
-
-                    if (rejoinedRoomFromRequest != null) {
-                        if (clientProvidedRoomId != null && !clientProvidedRoomId.equals(rejoinedRoomFromRequest.getRoomId())) {
-                            logger.warn("客户端请求重返房间 {}，但实际重返到房间 {}。", clientProvidedRoomId, rejoinedRoomFromRequest.getRoomId());
-                        }
-                        addSessionToRoom(rejoinedRoomFromRequest.getRoomId(), session.getId());
-                        Map<String, Object> rejoinSuccessMap = new HashMap<>();
-                        rejoinSuccessMap.put("type", "rejoinSuccess");
-                        rejoinSuccessMap.put("roomState", rejoinedRoomFromRequest);
-                        sendMessageToSession(session, rejoinSuccessMap);
-                        logger.info("用户 {} (通过 explicit requestRejoinInfo) 成功重返房间 {}", userId, rejoinedRoomFromRequest.getRoomId());
-                    } else {
-                        Map<String, Object> rejoinFailedMap = new HashMap<>();
-                        rejoinFailedMap.put("type", "rejoinFailed");
-                        rejoinFailedMap.put("message", "无法重返房间 (服务器未找到可重返的托管状态)。");
-                        if (clientProvidedRoomId != null) {
-                            rejoinFailedMap.put("requestedRoomId", clientProvidedRoomId);
-                        }
-                        sendMessageToSession(session, rejoinFailedMap);
-                        logger.info("用户 {} explicit rejoin 请求 (房间 {}) 失败 (或未找到托管状态)。", userId, clientProvidedRoomId);
-                    }
-                    break;
-                case "joinRoom":
-                    if (roomId != null) {
-                        addSessionToRoom(roomId, session.getId());
-                        gameLogicService.playerJoinsRaw(roomId, session, userId);
-                    } else {
-                        sendErrorMessage(session, null, "加入房间请求缺少 roomId。");
-                    }
-                    break;
-                case "playerReady":
-                    if (roomId != null) {
-                        gameLogicService.togglePlayerReadyStatusRaw(roomId, session, userId);
-                    } else {
-                        sendErrorMessage(session, null, "切换准备状态请求缺少 roomId。");
-                    }
-                    break;
-                case "startGame":
-                    if (roomId != null) {
-                        gameLogicService.startGame(roomId, session.getId());
-                    } else {
-                        sendErrorMessage(session, null, "开始游戏请求缺少 roomId。");
-                    }
-                    break;
-                case "playCard":
-                    if (roomId != null && messageData.get("data") instanceof Map) {
-                        @SuppressWarnings("unchecked")
-                        Map<String, Object> cardData = (Map<String, Object>) messageData.get("data");
-                        Object cardNumberObj = cardData.get("cardNumber");
-                        if (cardNumberObj instanceof Integer) {
-                            Integer cardNumber = (Integer) cardNumberObj;
-                            gameLogicService.playerPlaysCardRaw(roomId, session, userId, cardNumber);
-                        } else {
-                            sendErrorMessage(session, roomId, "出牌请求中的 cardNumber 无效。");
-                        }
-                    } else {
-                        sendErrorMessage(session, roomId, "出牌请求缺少 roomId 或有效的 data 负载。");
-                    }
-                    break;
-                case "requestPlayTip": // 处理会员的出牌提示请求
-                    if (roomId != null) {
-                        Map<String, Object> tip = gameLogicService.getPlayTip(roomId, session.getId());
-                        Map<String, Object> tipResponsePayload = new HashMap<>();
-                        tipResponsePayload.put("type", "playTipResponse");
-                        if (tip != null) {
-                            tipResponsePayload.put("success", true);
-                            tipResponsePayload.put("tip", tip);
-                            logger.info("向玩家 {} 发送出牌提示: {}", userId, tip);
-                        } else {
-                            tipResponsePayload.put("success", false);
-                            tipResponsePayload.put("message", "无法生成提示或您不是会员。");
-                            logger.info("无法为玩家 {} 生成出牌提示或非会员。", userId);
-                        }
-                        sendMessageToSession(session, tipResponsePayload);
-                    } else {
-                        sendErrorMessage(session, null, "请求出牌提示缺少 roomId。");
-                    }
-                    break;
-                case "chat":
-                    if (roomId != null && messageData.get("data") instanceof Map) {
-                        @SuppressWarnings("unchecked")
-                        Map<String, Object> chatData = (Map<String, Object>) messageData.get("data");
-                        String chatText = (String) chatData.get("text");
-                        if (chatText != null) {
-                            Map<String, Object> chatMessagePayload = new HashMap<>();
-                            chatMessagePayload.put("type", "chatMessage");
-                            chatMessagePayload.put("sender", userId);
-                            chatMessagePayload.put("text", chatText);
-                            chatMessagePayload.put("roomId", roomId);
-                            broadcastToRoom(roomId, chatMessagePayload);
-                        } else {
-                            sendErrorMessage(session, roomId, "聊天消息文本为空。");
-                        }
-                    } else {
-                        sendErrorMessage(session, roomId, "聊天请求缺少 roomId 或有效的 data 负载。");
-                    }
-                    break;
-                case "playerChoosesRow": // 已弃用/旧版
-                case "selectRow": // 新需求
-                    if (roomId != null) {
-                        Integer rowIndex = null;
-                        if (messageData.containsKey("rowIndex")) {
-                            // 直接字段 (Requirement 2.2 style)
-                            Object idxObj = messageData.get("rowIndex");
-                            if (idxObj instanceof Integer) rowIndex = (Integer) idxObj;
-                        } else if (messageData.get("data") instanceof Map) {
-                            // 旧版嵌套数据
-                            @SuppressWarnings("unchecked")
-                            Map<String, Object> choiceData = (Map<String, Object>) messageData.get("data");
-                            if (choiceData.get("chosenRowIndex") instanceof Integer) {
-                                rowIndex = (Integer) choiceData.get("chosenRowIndex");
-                            }
-                        }
-
-                        if (rowIndex != null) {
-                            gameLogicService.playerChoosesRowRaw(roomId, session, userId, rowIndex);
-                        } else {
-                            sendErrorMessage(session, roomId, "选择牌列的消息中 rowIndex 无效。");
-                        }
-                    } else {
-                        sendErrorMessage(session, roomId, "选择牌列的消息缺少 roomId。");
-                    }
-                    break;
-                case "requestNewGame":
-                    if (roomId != null) {
-                        gameLogicService.handleRequestNewGame(roomId, session, userId);
-                    } else {
-                        sendErrorMessage(session, null, "“再来一局”请求缺少 roomId。");
-                    }
-                    break;
-                case "toggleAutoPlay":
-                case "toggleHosting":
-                    if (roomId != null) {
-                        gameLogicService.togglePlayerAutoPlay(roomId, session.getId());
-                    } else {
-                        sendErrorMessage(session, null, "托管状态切换请求缺少 roomId。");
-                    }
-                    break;
-                case "leaveRoom":
-                    if (roomId != null) {
-                        logger.info("用户 {} (会话 {}) 主动离开房间 {}", userId, session.getId(), roomId);
-                        removeSessionFromRoom(roomId, session.getId());
-                        // Use playerRequestsLeave to properly mark as explicit leave
-                        gameLogicService.playerRequestsLeave(roomId, userId);
-                        Map<String, Object> leftRoomMap = new HashMap<>();
-                        leftRoomMap.put("type", "leftRoomSuccess");
-                        leftRoomMap.put("roomId", roomId);
-                        sendMessageToSession(session, leftRoomMap);
-                    } else {
-                        sendErrorMessage(session, null, "离开房间请求缺少 roomId。");
-                    }
-                    break;
-                default:
-                    logger.warn("未知消息类型 '{}' 来自用户 '{}' (会话 {})", type, userId, session.getId());
-                    sendErrorMessage(session, roomId, "未知的消息类型: " + type);
+            InboundMessage command = route.decode(payload);
+            String error = command.validate();
+            if (error != null) {
+                sendErrorMessage(session, command.roomId(), error);
+                return;
             }
+            route.dispatch(session, userId, command);
         } catch (JsonProcessingException e) {
             logger.error("JSON 处理错误，来自用户 '{}' (会话 {}) 的消息: {}", userId, session.getId(), payload, e);
             sendErrorMessage(session, null, "无法解析消息格式 (非JSON或格式错误).");
@@ -297,12 +233,109 @@ public class GameWebSocketHandler extends TextWebSocketHandler {
         }
     }
 
+    // 注册服务端内置的入站消息类型
+    private void registerBuiltInMessages() {
+        inboundMessages.register("requestRejoinInfo", GameCommand.RequestRejoinInfo.class, this::onRequestRejoinInfo);
+        inboundMessages.register("joinRoom", GameCommand.JoinRoom.class, (session, userId, m) -> {
+            addSessionToRoom(m.roomId(), session.getId());
+            gameLogicService.playerJoinsRaw(m.roomId(), session, userId);
+        });
+        inboundMessages.register("playerReady", GameCommand.PlayerReady.class,
+                (session, userId, m) -> gameLogicService.togglePlayerReadyStatusRaw(m.roomId(), session, userId));
+        inboundMessages.register("startGame", GameCommand.StartGame.class,
+                (session, userId, m) -> gameLogicService.startGame(m.roomId(), session.getId()));
+        inboundMessages.register("playCard", GameCommand.PlayCard.class,
+                (session, userId, m) -> gameLogicService.playerPlaysCardRaw(m.roomId(), session, userId, m.cardNumber()));
+        inboundMessages.register("requestPlayTip", GameCommand.RequestPlayTip.class, this::onRequestPlayTip);
+        inboundMessages.register("chat", GameCommand.Chat.class, (session, userId, m) -> {
+            Map<String, Object> chatMessagePayload = new HashMap<>();
+            chatMessagePayload.put("type", "chatMessage");
+            chatMessagePayload.put("sender", userId);
+            chatMessagePayload.put("text", m.text());
+            chatMessagePayload.put("roomId", m.roomId());
+            broadcastToRoom(m.roomId(), chatMessagePayload);
+        });
+        // playerChoosesRow 为旧版，selectRow 为新版，两者共用同一个记录类
+        InboundMessageHandler<GameCommand.SelectRow> selectRow =
+                (session, userId, m) -> gameLogicService.playerChoosesRowRaw(m.roomId(), session, userId, m.chosenRow());
+        inboundMessages.register("playerChoosesRow", GameCommand.SelectRow.class, selectRow);
+        inboundMessages.register("selectRow", GameCommand.SelectRow.class, selectRow);
+        inboundMessages.register("requestNewGame", GameCommand.RequestNewGame.class,
+                (session, userId, m) -> gameLogicService.handleRequestNewGame(m.roomId(), session, userId));
+        InboundMessageHandler<GameCommand.ToggleAutoPlay> toggleAutoPlay =
+                (session, userId, m) -> gameLogicService.togglePlayerAutoPlay(m.roomId(), session.getId());
+        inboundMessages.register("toggleAutoPlay", GameCommand.ToggleAutoPlay.class, toggleAutoPlay);
+        inboundMessages.register("toggleHosting", GameCommand.ToggleAutoPlay.class, toggleAutoPlay);
+        inboundMessages.register("syncState", GameCommand.SyncState.class, (session, userId, m) -> {
+            RoomStateDeltaEncoder.markSent(session, null);
+            gameLogicService.resyncRoomState(m.roomId(), session);
+        });
+        inboundMessages.register("leaveRoom", GameCommand.LeaveRoom.class, this::onLeaveRoom);
+    }
+
+    private void onRequestRejoinInfo(WebSocketSession session, Long userId, GameCommand.RequestRejoinInfo m) throws IOException {
+        String clientProvidedRoomId = m.roomId();
+        logger.info("收到来自用户 {} 的 requestRejoinInfo 请求，客户端提供的房间ID: {}", userId, clientProvidedRoomId);
+        GameRoom rejoinedRoomFromRequest = gameLogicService.checkAndRejoinPlayerOnConnectRaw(session, userId);
+
+        if (rejoinedRoomFromRequest != null) {
+            if (clientProvidedRoomId != null && !clientProvidedRoomId.equals(rejoinedRoomFromRequest.getRoomId())) {
+                logger.warn("客户端请求重返房间 {}，但实际重返到房间 {}。", clientProvidedRoomId, rejoinedRoomFromRequest.getRoomId());
+            }
+            addSessionToRoom(rejoinedRoomFromRequest.getRoomId(), session.getId());
+            Map<String, Object> rejoinSuccessMap = new HashMap<>();
+            rejoinSuccessMap.put("type", "rejoinSuccess");
+            rejoinSuccessMap.put("roomState", rejoinedRoomFromRequest);
+            sendMessageToSession(session, rejoinSuccessMap);
+            logger.info("用户 {} (通过 explicit requestRejoinInfo) 成功重返房间 {}", userId, rejoinedRoomFromRequest.getRoomId());
+        } else {
+            Map<String, Object> rejoinFailedMap = new HashMap<>();
+            rejoinFailedMap.put("type", "rejoinFailed");
+            rejoinFailedMap.put("message", "无法重返房间 (服务器未找到可重返的托管状态)。");
+            if (clientProvidedRoomId != null) {
+                rejoinFailedMap.put("requestedRoomId", clientProvidedRoomId);
+            }
+            sendMessageToSession(session, rejoinFailedMap);
+            logger.info("用户 {} explicit rejoin 请求 (房间 {}) 失败 (或未找到托管状态)。", userId, clientProvidedRoomId);
+        }
+    }
+
+    // 处理会员的出牌提示请求
+    private void onRequestPlayTip(WebSocketSession session, Long userId, GameCommand.RequestPlayTip m) throws IOException {
+        Map<String, Object> tip = gameLogicService.getPlayTip(m.roomId(), session.getId());
+        Map<String, Object> tipResponsePayload = new HashMap<>();
+        tipResponsePayload.put("type", "playTipResponse");
+        if (tip != null) {
+            tipResponsePayload.put("success", true);
+            tipResponsePayload.put("tip", tip);
+            logger.info("向玩家 {} 发送出牌提示: {}", userId, tip);
+        } else {
+            tipResponsePayload.put("success", false);
+            tipResponsePayload.put("message", "无法生成提示或您不是会员。");
+            logger.info("无法为玩家 {} 生成出牌提示或非会员。", userId);
+        }
+        sendMessageToSession(session, tipResponsePayload);
+    }
+
+    private void onLeaveRoom(WebSocketSession session, Long userId, GameCommand.LeaveRoom m) throws IOException {
+        String roomId = m.roomId();
+        logger.info("用户 {} (会话 {}) 主动离开房间 {}", userId, session.getId(), roomId);
+        removeSessionFromRoom(roomId, session.getId());
+        // Use playerRequestsLeave to properly mark as explicit leave
+        gameLogicService.playerRequestsLeave(roomId, userId);
+        Map<String, Object> leftRoomMap = new HashMap<>();
+        leftRoomMap.put("type", "leftRoomSuccess");
+        leftRoomMap.put("roomId", roomId);
+        sendMessageToSession(session, leftRoomMap);
+    }
+
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
         Long userId = (Long) session.getAttributes().get(UserHandshakeInterceptorRaw.USER_IDENTIFIER_SESSION_KEY);
         logger.info("WebSocket 连接已关闭: SessionId={}, UserId={}, Status: {}",
                 session.getId(), userId, status.toString());
         sessions.remove(session.getId());
+        closeOutbox(session.getId());
 
         String roomIdAssociated = removeSessionFromAllRooms(session.getId());
 
@@ -322,39 +355,222 @@ public class GameWebSocketHandler extends TextWebSocketHandler {
         logger.error("WebSocket 传输错误，用户 '{}' (会话 {}): {}",
                 userId, session.getId(), exception.getMessage(), exception);
         sessions.remove(session.getId());
+        closeOutbox(session.getId());
         removeSessionFromAllRooms(session.getId());
     }
 
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
     public WebSocketSession getSessionById(String sessionId) {
         return sessions.get(sessionId);
     }
 
     public void sendMessageToSession(WebSocketSession session, Object messageDto) throws IOException {
-        if (session != null && session.isOpen()) {
+        if (session != null && session.isOpen() && CborMessageCodec.isBinary(session)) {
+            enqueue(session, cborMessageCodec.encode(messageDto), false, false);
+        } else if (session != null && session.isOpen()) {
             String jsonMessage = objectMapper.writeValueAsString(messageDto);
-            session.sendMessage(new TextMessage(jsonMessage));
+            enqueue(session, new TextMessage(jsonMessage), false, false);
             logger.trace("已发送消息到会话 {}: {}", session.getId(), jsonMessage.substring(0, Math.min(jsonMessage.length(), 200)));
         } else {
             logger.warn("尝试向一个null、已关闭或不存在的会话发送消息 (ID: {}).", session != null ? session.getId() : "null");
         }
     }
 
+    // 发送已编码好的消息帧（同一帧可在多个会话间复用，避免重复序列化）
+    public void sendPreparedMessage(WebSocketSession session, TextMessage message) throws IOException {
+        if (session != null && session.isOpen()) {
+            enqueue(session, message, false, false);
+        } else {
+            logger.warn("尝试向一个null、已关闭或不存在的会话发送消息 (ID: {}).", session != null ? session.getId() : "null");
+        }
+    }
+
+    /**
+     * 发送房间状态帧。snapshot 为 true 表示完整快照，会取代该会话队列中尚未发出的旧状态帧。
+     */
+    public void sendStateFrame(WebSocketSession session, WebSocketMessage<?> frame, boolean snapshot) {
+        if (session != null && session.isOpen()) {
+            enqueue(session, frame, true, snapshot);
+        }
+    }
+
+    /**
+     * 会话的出站队列中是否有尚未发出的状态帧。此时应改发完整快照，以便取代积压的帧。
+     */
+    public boolean hasPendingStateFrame(WebSocketSession session) {
+        SessionOutbox outbox = session != null ? outboxes.get(session.getId()) : null;
+        return outbox != null && outbox.hasPendingState();
+    }
+
+    /**
+     * 发完已排队的消息后关闭会话（例如先发送“被移出房间”的通知再断开）。
+     */
+    public void closeSession(WebSocketSession session, CloseStatus status) {
+        SessionOutbox outbox = outboxes.get(session.getId());
+        if (outbox != null) {
+            outbox.closeAfterFlush(status);
+        } else {
+            try {
+                session.close(status);
+            } catch (IOException e) {
+                logger.warn("关闭会话 {} 失败: {}", session.getId(), e.getMessage());
+            }
+        }
+    }
+
+    private void enqueue(WebSocketSession session, WebSocketMessage<?> message, boolean state, boolean snapshot) {
+        SessionOutbox outbox = outboxes.get(session.getId());
+        if (outbox == null) {
+            logger.warn("会话 {} 没有出站队列（可能已断开），消息被丢弃。", session.getId());
+            outboundDropped.increment();
+            return;
+        }
+        switch (outbox.offer(message, state, snapshot)) {
+            case QUEUED:
+                outboundEnqueued.increment();
+                countOutboundBytes(message);
+                break;
+            case COALESCED:
+                outboundEnqueued.increment();
+                outboundCoalesced.increment();
+                countOutboundBytes(message);
+                break;
+            case OVERFLOW:
+                outboundDropped.increment();
+                evictSlowConsumer(outbox, "出站队列超限");
+                break;
+            case CLOSED:
+                outboundDropped.increment();
+                break;
+        }
+    }
+
+    private void countOutboundBytes(WebSocketMessage<?> message) {
+        if (message instanceof BinaryMessage) {
+            outboundBinaryBytes.add(message.getPayloadLength());
+        } else {
+            outboundTextBytes.add(message.getPayloadLength());
+        }
+    }
+
+    /**
+     * 定期检查所有会话：正在进行的发送超过时间上限（客户端长时间不读取）的会话按慢消费者驱逐。
+     */
+    @Scheduled(fixedDelayString = "${game.ws.outbound.sweepMs:1000}")
+    public void evictSlowConsumers() {
+        long now = System.nanoTime();
+        for (SessionOutbox outbox : outboxes.values()) {
+            if (outbox.isLagging(now)) {
+                evictSlowConsumer(outbox, "发送超时");
+            }
+        }
+    }
+
+    // 驱逐慢消费者：丢弃积压的消息并断开连接，玩家按意外断线处理（转为托管，可重连恢复），不拖慢房间内其他人
+    private void evictSlowConsumer(SessionOutbox outbox, String reason) {
+        WebSocketSession session = outbox.getSession();
+        String sessionId = session.getId();
+        if (outboxes.remove(sessionId) == null) {
+            return; // 已被其他线程驱逐
+        }
+        int dropped = outbox.close();
+        slowConsumerEvictions.increment();
+        sessions.remove(sessionId);
+        String roomId = removeSessionFromAllRooms(sessionId);
+        Long userId = (Long) session.getAttributes().get(UserHandshakeInterceptorRaw.USER_IDENTIFIER_SESSION_KEY);
+        logger.warn("会话 {} (用户 {}) 跟不上出站消息（{}），丢弃 {} 字节并断开，房间 {} 中的玩家转为托管。",
+                sessionId, userId, reason, dropped, roomId);
+        // 调用方可能正在房间上下文中广播，离开处理和关闭连接（可能阻塞在卡住的连接上）都放到关闭线程中执行
+        sessionCloser.execute(() -> {
+            if (roomId != null && userId != null) {
+                gameLogicService.playerLeavesRaw(roomId, sessionId, userId);
+            }
+            outbox.closeQuietly(CloseStatus.SESSION_NOT_RELIABLE.withReason("slow consumer"));
+        });
+    }
+
+    private void closeOutbox(String sessionId) {
+        SessionOutbox outbox = outboxes.remove(sessionId);
+        if (outbox != null) {
+            outbox.close();
+        }
+    }
+
+    /**
+     * 当前所有出站队列中排队的字节数。
+     */
+    public long getOutboundQueuedBytes() {
+        long total = 0;
+        for (SessionOutbox outbox : outboxes.values()) {
+            total += outbox.getQueuedBytes();
+        }
+        return total;
+    }
+
+    public long getSlowConsumerEvictions() {
+        return slowConsumerEvictions.sum();
+    }
+
+    /**
+     * 导出出站队列的统计快照：入队、合并、丢弃的消息数，驱逐的慢消费者数、当前排队的字节数，
+     * 以及二进制子协议的会话数和文本/二进制两种帧累计入队的字节数。
+     */
+    public Map<String, Object> outboundMetrics() {
+        int binarySessions = 0;
+        for (SessionOutbox outbox : outboxes.values()) {
+            if (CborMessageCodec.isBinary(outbox.getSession())) {
+                binarySessions++;
+            }
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("sessions", outboxes.size());
+        result.put("binarySessions", binarySessions);
+        result.put("queuedBytes", getOutboundQueuedBytes());
+        result.put("enqueued", outboundEnqueued.sum());
+        result.put("coalesced", outboundCoalesced.sum());
+        result.put("dropped", outboundDropped.sum());
+        result.put("slowConsumerEvictions", slowConsumerEvictions.sum());
+        result.put("textBytes", outboundTextBytes.sum());
+        result.put("binaryBytes", outboundBinaryBytes.sum());
+        result.put("bufferBytesLimit", outboundBufferBytes);
+        result.put("sendTimeLimitMs", outboundSendTimeLimitMs);
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        outboundWriter.shutdown();
+        sessionCloser.shutdown();
+    }
+
     public void broadcastToRoom(String roomId, Object messageDto) throws IOException {
         Set<String> sessionIdsInRoom = roomSessionIds.get(roomId);
         if (sessionIdsInRoom != null && !sessionIdsInRoom.isEmpty()) {
-            String jsonMessage = objectMapper.writeValueAsString(messageDto);
-            logger.debug("向房间 {} ({} 个会话) 广播消息: {}", roomId, sessionIdsInRoom.size(), jsonMessage.substring(0, Math.min(jsonMessage.length(), 200)));
             int sentCount = 0;
+            // 同一编码的会话共用同一个消息帧，每种编码只在有会话需要时序列化一次；只入队不等待发送
+            TextMessage textMessage = null;
+            BinaryMessage binaryMessage = null;
             Set<String> sessionIdsCopy = new HashSet<>(sessionIdsInRoom);
             for (String sessionId : sessionIdsCopy) {
                 WebSocketSession sessionInRoom = sessions.get(sessionId);
                 if (sessionInRoom != null && sessionInRoom.isOpen()) {
-                    try {
-                        sessionInRoom.sendMessage(new TextMessage(jsonMessage));
-                        sentCount++;
-                    } catch (IOException e) {
-                        logger.error("向房间 {} 中的会话 {} 发送消息时发生IOException: {}", roomId, sessionId, e.getMessage());
+                    if (CborMessageCodec.isBinary(sessionInRoom)) {
+                        if (binaryMessage == null) {
+                            binaryMessage = cborMessageCodec.encode(messageDto);
+                        }
+                        enqueue(sessionInRoom, binaryMessage, false, false);
+                    } else {
+                        if (textMessage == null) {
+                            String jsonMessage = objectMapper.writeValueAsString(messageDto);
+                            logger.debug("向房间 {} ({} 个会话) 广播消息: {}", roomId, sessionIdsInRoom.size(), jsonMessage.substring(0, Math.min(jsonMessage.length(), 200)));
+                            textMessage = new TextMessage(jsonMessage);
+                        }
+                        enqueue(sessionInRoom, textMessage, false, false);
                     }
+                    sentCount++;
                 } else {
                     logger.warn("房间 {} 中的会话 {} 为null或未打开。跳过广播到此会话。", roomId, sessionId);
                 }
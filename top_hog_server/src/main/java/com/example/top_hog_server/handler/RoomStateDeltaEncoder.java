@@ -0,0 +1,469 @@
+package com.example.top_hog_server.handler;
+
+import com.example.top_hog_server.model.Card;
+import com.example.top_hog_server.model.GameRoom;
+import com.example.top_hog_server.model.GameRow;
+import com.example.top_hog_server.model.GameState;
+import com.example.top_hog_server.model.Player;
+import com.example.top_hog_server.payload.dto.response.GameRoomDTO;
+import com.example.top_hog_server.payload.dto.response.PlayerDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 房间状态增量编码器（roomPatch 协议）。
+ * 每次广播时房间状态版本号递增，并与上一次广播的快照比较，生成紧凑的补丁事件：
+ * roomStatus、playerJoined、playerLeft、playerUpdated、playerReady、scoreChanged、
+ * cardPlaced、rowTaken、cardPlayed、playedCardRemoved、playedCleared，以及仅发给本人的 handChanged。
+ * <p>
+ * 只有握手时声明 {@code stateProtocol=delta} 且上一次收到的版本号正好等于补丁基线版本的会话才会收到补丁，
+ * 其他情况（首次加入、重连、发送失败、客户端报告版本缺口）一律回退为完整的 gameStateUpdate 快照。
+ * 协商了 tophog.cbor 子协议的会话收到同样结构的 CBOR 补丁帧，见 {@link CborMessageCodec}。
+ */
+@Component
+public class RoomStateDeltaEncoder {
+
+    // 会话属性：该会话最近一次收到的房间状态版本号
+    public static final String LAST_STATE_VERSION_SESSION_KEY = "lastStateVersion_websocket_session_attr";
+
+    private static final Card HIDDEN_CARD = new Card(-1, 0);
+
+    private final ObjectMapper objectMapper;
+    private final CborMessageCodec cborMessageCodec;
+    // roomId -> 上一次广播时的房间快照
+    private final Map<String, RoomSnapshot> lastSnapshots = new ConcurrentHashMap<>();
+
+    @Autowired
+    public RoomStateDeltaEncoder(ObjectMapper objectMapper, CborMessageCodec cborMessageCodec) {
+        this.objectMapper = objectMapper;
+        this.cborMessageCodec = cborMessageCodec;
+    }
+
+    /**
+     * 递增房间状态版本号，并生成相对上一次广播的补丁。
+     *
+     * @param room    房间（调用方需持有房间的执行上下文）
+     * @param message 附带的提示消息
+     * @return 本次状态变更的补丁；没有可用基线时 {@link RoomDelta#hasPatch()} 为 false
+     */
+    public RoomDelta encode(GameRoom room, String message) throws JsonProcessingException {
+        long baseVersion = room.getStateVersion();
+        long version = room.nextStateVersion();
+        RoomSnapshot current = RoomSnapshot.of(room, version);
+        RoomSnapshot previous = lastSnapshots.put(room.getRoomId(), current);
+
+        if (previous == null || previous.version != baseVersion) {
+            return new RoomDelta(room.getRoomId(), baseVersion, version, message, null,
+                    Collections.emptyMap(), Collections.emptyMap());
+        }
+
+        List<PatchEvent> events = new ArrayList<>();
+        Map<String, Map<Integer, PatchEvent>> privateOverrides = new HashMap<>();
+        Map<String, List<PatchEvent>> privateEvents = new HashMap<>();
+
+        diffRoomStatus(previous, current, events);
+        diffPlayers(room, previous, current, events, privateOverrides, privateEvents);
+        diffRows(previous, current, events);
+        diffPlayedCards(previous, current, events, privateOverrides);
+
+        return new RoomDelta(room.getRoomId(), baseVersion, version, message, events, privateOverrides, privateEvents);
+    }
+
+    /**
+     * 房间销毁时丢弃其快照。
+     */
+    public void forget(String roomId) {
+        if (roomId != null) {
+            lastSnapshots.remove(roomId);
+        }
+    }
+
+    /**
+     * 会话是否声明支持增量协议。
+     */
+    public static boolean isDeltaEnabled(WebSocketSession session) {
+        return Boolean.TRUE.equals(session.getAttributes().get(UserHandshakeInterceptorRaw.DELTA_PROTOCOL_SESSION_KEY));
+    }
+
+    /**
+     * 记录会话最近一次收到的状态版本号；传入 null 表示下一次必须发送完整快照。
+     */
+    public static void markSent(WebSocketSession session, Long version) {
+        if (version == null) {
+            session.getAttributes().remove(LAST_STATE_VERSION_SESSION_KEY);
+        } else {
+            session.getAttributes().put(LAST_STATE_VERSION_SESSION_KEY, version);
+        }
+    }
+
+    private void diffRoomStatus(RoomSnapshot previous, RoomSnapshot current, List<PatchEvent> events)
+            throws JsonProcessingException {
+        if (previous.gameState == current.gameState
+                && previous.currentRound == current.currentRound
+                && previous.currentTurnNumber == current.currentTurnNumber
+                && Objects.equals(previous.winnerDisplayName, current.winnerDisplayName)
+                && Objects.equals(previous.playerChoosingRowSessionId, current.playerChoosingRowSessionId)) {
+            return;
+        }
+        Map<String, Object> event = event("roomStatus");
+        event.put("gameState", current.gameState);
+        event.put("currentRound", current.currentRound);
+        event.put("currentTurnNumber", current.currentTurnNumber);
+        event.put("winnerDisplayName", current.winnerDisplayName);
+        event.put("playerChoosingRowSessionId", current.playerChoosingRowSessionId);
+        events.add(patchEvent(event));
+    }
+
+    private void diffPlayers(GameRoom room, RoomSnapshot previous, RoomSnapshot current, List<PatchEvent> events,
+            Map<String, Map<Integer, PatchEvent>> privateOverrides, Map<String, List<PatchEvent>> privateEvents)
+            throws JsonProcessingException {
+        for (String sessionId : previous.players.keySet()) {
+            if (!current.players.containsKey(sessionId)) {
+                Map<String, Object> event = event("playerLeft");
+                event.put("sessionId", sessionId);
+                events.add(patchEvent(event));
+            }
+        }
+
+        for (Map.Entry<String, PlayerSnapshot> entry : current.players.entrySet()) {
+            String sessionId = entry.getKey();
+            PlayerSnapshot now = entry.getValue();
+            PlayerSnapshot before = previous.players.get(sessionId);
+            Player player = room.getPlayers().get(sessionId);
+
+            if (before == null || !before.sameIdentity(now)) {
+                // 新加入或身份信息变化：发送公开视图，本人额外带上手牌
+                String type = before == null ? "playerJoined" : "playerUpdated";
+                Map<String, Object> event = event(type);
+                event.put("player", PlayerDTO.from(player, false));
+                events.add(patchEvent(event));
+                event.put("player", PlayerDTO.from(player, true));
+                privateOverrides.computeIfAbsent(sessionId, k -> new HashMap<>()).put(events.size() - 1, patchEvent(event));
+                continue;
+            }
+
+            if (before.ready != now.ready) {
+                Map<String, Object> event = event("playerReady");
+                event.put("sessionId", sessionId);
+                event.put("isReady", now.ready);
+                events.add(patchEvent(event));
+            }
+            if (before.score != now.score) {
+                Map<String, Object> event = event("scoreChanged");
+                event.put("sessionId", sessionId);
+                event.put("score", now.score);
+                events.add(patchEvent(event));
+            }
+            if (!before.hand.equals(now.hand)) {
+                Map<String, Object> event = event("handChanged");
+                event.put("hand", now.hand);
+                privateEvents.computeIfAbsent(sessionId, k -> new ArrayList<>()).add(patchEvent(event));
+            }
+        }
+    }
+
+    private void diffRows(RoomSnapshot previous, RoomSnapshot current, List<PatchEvent> events)
+            throws JsonProcessingException {
+        for (int i = 0; i < current.rows.size(); i++) {
+            List<Card> now = current.rows.get(i);
+            List<Card> before = i < previous.rows.size() ? previous.rows.get(i) : Collections.emptyList();
+            if (before.equals(now)) {
+                continue;
+            }
+            boolean appended = now.size() > before.size() && now.subList(0, before.size()).equals(before);
+            Map<String, Object> event = event(appended ? "cardPlaced" : "rowTaken");
+            event.put("row", i);
+            // cardPlaced 只携带新追加的牌，rowTaken 携带整列的新内容
+            event.put("cards", appended ? now.subList(before.size(), now.size()) : now);
+            event.put("totalBullheads", now.stream().mapToInt(Card::getBullheads).sum());
+            events.add(patchEvent(event));
+        }
+    }
+
+    private void diffPlayedCards(RoomSnapshot previous, RoomSnapshot current, List<PatchEvent> events,
+            Map<String, Map<Integer, PatchEvent>> privateOverrides) throws JsonProcessingException {
+        if (current.playedCards.isEmpty()) {
+            if (!previous.playedCards.isEmpty()) {
+                events.add(patchEvent(event("playedCleared")));
+            }
+            return;
+        }
+
+        for (String sessionId : previous.playedCards.keySet()) {
+            if (!current.playedCards.containsKey(sessionId)) {
+                Map<String, Object> event = event("playedCardRemoved");
+                event.put("sessionId", sessionId);
+                events.add(patchEvent(event));
+            }
+        }
+
+        for (Map.Entry<String, Card> entry : current.playedCards.entrySet()) {
+            String sessionId = entry.getKey();
+            Card card = entry.getValue();
+            Card before = previous.playedCards.get(sessionId);
+            Card visibleNow = current.reveal ? card : HIDDEN_CARD;
+            Card visibleBefore = before == null ? null : (previous.reveal ? before : HIDDEN_CARD);
+            if (visibleNow.equals(visibleBefore)) {
+                continue;
+            }
+            Map<String, Object> event = event("cardPlayed");
+            event.put("sessionId", sessionId);
+            event.put("card", visibleNow);
+            events.add(patchEvent(event));
+            if (!current.reveal) {
+                // 未翻牌时，出牌者本人看到的是自己的真实牌面
+                event.put("card", card);
+                privateOverrides.computeIfAbsent(sessionId, k -> new HashMap<>()).put(events.size() - 1, patchEvent(event));
+            }
+        }
+    }
+
+    private static Map<String, Object> event(String type) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("type", type);
+        return event;
+    }
+
+    private String json(Object value) throws JsonProcessingException {
+        return objectMapper.writeValueAsString(value);
+    }
+
+    // 事件的字段在序列化后可能继续被修改（生成本人视图），因此保留一份副本供二进制帧使用
+    private PatchEvent patchEvent(Map<String, Object> event) throws JsonProcessingException {
+        return new PatchEvent(new LinkedHashMap<>(event), json(event));
+    }
+
+    /**
+     * 某一次状态变更的补丁。公共事件只序列化一次，各会话只替换/追加自己的私有事件。
+     */
+    public final class RoomDelta {
+        private final String roomId;
+        private final long baseVersion;
+        private final long version;
+        private final String message;
+        private final List<PatchEvent> events;
+        private final Map<String, Map<Integer, PatchEvent>> privateOverrides;
+        private final Map<String, List<PatchEvent>> privateEvents;
+        private String head;
+        private TextMessage publicFrame;
+        private BinaryMessage publicBinaryFrame;
+
+        private RoomDelta(String roomId, long baseVersion, long version, String message, List<PatchEvent> events,
+                Map<String, Map<Integer, PatchEvent>> privateOverrides, Map<String, List<PatchEvent>> privateEvents) {
+            this.roomId = roomId;
+            this.baseVersion = baseVersion;
+            this.version = version;
+            this.message = message;
+            this.events = events;
+            this.privateOverrides = privateOverrides;
+            this.privateEvents = privateEvents;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public boolean hasPatch() {
+            return events != null;
+        }
+
+        /**
+         * 该会话能否直接应用本补丁：声明支持增量协议，且已持有补丁的基线版本。
+         */
+        public boolean appliesTo(WebSocketSession session) {
+            return hasPatch() && isDeltaEnabled(session)
+                    && Long.valueOf(baseVersion).equals(session.getAttributes().get(LAST_STATE_VERSION_SESSION_KEY));
+        }
+
+        /**
+         * 为指定会话生成补丁帧。
+         */
+        public TextMessage frameFor(String sessionId) throws JsonProcessingException {
+            if (!hasPatch()) {
+                throw new IllegalStateException("房间 " + roomId + " 的版本 " + version + " 没有可用的补丁基线");
+            }
+            Map<Integer, PatchEvent> overrides = privateOverrides.get(sessionId);
+            List<PatchEvent> extra = privateEvents.get(sessionId);
+            if (overrides == null && extra == null) {
+                if (publicFrame == null) {
+                    publicFrame = new TextMessage(assemble(null, null));
+                }
+                return publicFrame;
+            }
+            return new TextMessage(assemble(overrides, extra));
+        }
+
+        /**
+         * 按会话协商的编码生成补丁帧。
+         */
+        public WebSocketMessage<?> frameFor(WebSocketSession session) throws JsonProcessingException {
+            return CborMessageCodec.isBinary(session) ? binaryFrameFor(session.getId()) : frameFor(session.getId());
+        }
+
+        /**
+         * 为 tophog.cbor 会话生成补丁帧，公共补丁帧只编码一次。
+         */
+        public BinaryMessage binaryFrameFor(String sessionId) throws JsonProcessingException {
+            if (!hasPatch()) {
+                throw new IllegalStateException("房间 " + roomId + " 的版本 " + version + " 没有可用的补丁基线");
+            }
+            Map<Integer, PatchEvent> overrides = privateOverrides.get(sessionId);
+            List<PatchEvent> extra = privateEvents.get(sessionId);
+            if (overrides == null && extra == null) {
+                if (publicBinaryFrame == null) {
+                    publicBinaryFrame = encodeBinary(null, null);
+                }
+                return publicBinaryFrame;
+            }
+            return encodeBinary(overrides, extra);
+        }
+
+        private BinaryMessage encodeBinary(Map<Integer, PatchEvent> overrides, List<PatchEvent> extra)
+                throws JsonProcessingException {
+            List<Map<String, Object>> eventFields = new ArrayList<>(events.size() + (extra != null ? extra.size() : 0));
+            for (int i = 0; i < events.size(); i++) {
+                PatchEvent override = overrides != null ? overrides.get(i) : null;
+                eventFields.add((override != null ? override : events.get(i)).fields);
+            }
+            if (extra != null) {
+                for (PatchEvent event : extra) {
+                    eventFields.add(event.fields);
+                }
+            }
+            Map<String, Object> frame = new LinkedHashMap<>();
+            frame.put("type", "roomPatch");
+            frame.put("roomId", roomId);
+            frame.put("baseVersion", baseVersion);
+            frame.put("version", version);
+            frame.put("message", message);
+            frame.put("events", eventFields);
+            return cborMessageCodec.encode(frame);
+        }
+
+        private String assemble(Map<Integer, PatchEvent> overrides, List<PatchEvent> extra) throws JsonProcessingException {
+            if (head == null) {
+                head = "{\"type\":\"roomPatch\",\"roomId\":" + json(roomId)
+                        + ",\"baseVersion\":" + baseVersion
+                        + ",\"version\":" + version
+                        + ",\"message\":" + json(message)
+                        + ",\"events\":[";
+            }
+            StringBuilder sb = new StringBuilder(head.length() + 64 * (events.size() + 1));
+            sb.append(head);
+            for (int i = 0; i < events.size(); i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                PatchEvent override = overrides != null ? overrides.get(i) : null;
+                sb.append((override != null ? override : events.get(i)).json);
+            }
+            if (extra != null) {
+                for (PatchEvent event : extra) {
+                    if (sb.charAt(sb.length() - 1) != '[') {
+                        sb.append(',');
+                    }
+                    sb.append(event.json);
+                }
+            }
+            return sb.append("]}").toString();
+        }
+    }
+
+    /**
+     * 一个补丁事件：JSON 片段在生成时序列化一次，二进制帧需要时再整体编码字段。
+     */
+    private static final class PatchEvent {
+        private final Map<String, Object> fields;
+        private final String json;
+
+        private PatchEvent(Map<String, Object> fields, String json) {
+            this.fields = fields;
+            this.json = json;
+        }
+    }
+
+    /**
+     * 房间在某个版本时的紧凑快照，只保留生成补丁所需的字段。
+     */
+    private static final class RoomSnapshot {
+        private final long version;
+        private final GameState gameState;
+        private final int currentRound;
+        private final int currentTurnNumber;
+        private final String winnerDisplayName;
+        private final String playerChoosingRowSessionId;
+        private final boolean reveal;
+        private final List<List<Card>> rows = new ArrayList<>(4);
+        private final Map<String, PlayerSnapshot> players = new LinkedHashMap<>();
+        private final Map<String, Card> playedCards = new LinkedHashMap<>();
+
+        private RoomSnapshot(GameRoom room, long version) {
+            this.version = version;
+            this.gameState = room.getGameState();
+            this.currentRound = room.getCurrentRound();
+            this.currentTurnNumber = room.getCurrentTurnNumber();
+            this.winnerDisplayName = room.getWinnerDisplayName();
+            this.playerChoosingRowSessionId = room.getPlayerChoosingRowSessionId();
+            this.reveal = GameRoomDTO.isPlayedCardsRevealed(room);
+        }
+
+        static RoomSnapshot of(GameRoom room, long version) {
+            RoomSnapshot snapshot = new RoomSnapshot(room, version);
+            if (room.getRows() != null) {
+                for (GameRow row : room.getRows()) {
+                    snapshot.rows.add(new ArrayList<>(row.getCards()));
+                }
+            }
+            for (Map.Entry<String, Player> entry : room.getPlayers().entrySet()) {
+                snapshot.players.put(entry.getKey(), new PlayerSnapshot(entry.getValue()));
+            }
+            snapshot.playedCards.putAll(room.getPlayedCardsThisTurn());
+            return snapshot;
+        }
+    }
+
+    private static final class PlayerSnapshot {
+        private final Long userId;
+        private final String displayName;
+        private final String avatarUrl;
+        private final boolean host;
+        private final boolean robot;
+        private final boolean ready;
+        private final int score;
+        private final List<Card> hand;
+
+        private PlayerSnapshot(Player player) {
+            this.userId = player.getUserId();
+            this.displayName = player.getDisplayName();
+            this.avatarUrl = player.getAvatarUrl();
+            this.host = player.isHost();
+            this.robot = player.isRobot();
+            this.ready = player.isReady();
+            this.score = player.getScore();
+            this.hand = player.getHand() != null ? new ArrayList<>(player.getHand()) : Collections.emptyList();
+        }
+
+        boolean sameIdentity(PlayerSnapshot other) {
+            return Objects.equals(userId, other.userId)
+                    && Objects.equals(displayName, other.displayName)
+                    && Objects.equals(avatarUrl, other.avatarUrl)
+                    && host == other.host
+                    && robot == other.robot;
+        }
+    }
+}
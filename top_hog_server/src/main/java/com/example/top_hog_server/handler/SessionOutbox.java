@@ -0,0 +1,269 @@
+package com.example.top_hog_server.handler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import jakarta.websocket.Session;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+
+/**
+ * 单个 WebSocket 会话的出站队列。
+ * <p>
+ * 游戏逻辑（通常在房间执行上下文中）只负责入队，从不阻塞在网络写上；写线程池中同一时刻至多有一个任务
+ * 为该会话调用 {@link WebSocketSession#sendMessage}（原始会话不支持并发发送）。
+ * 一次最多连续发送 {@link #BATCH} 条后让出写线程，避免积压很多的会话占住线程池。
+ * <p>
+ * 满足任一条件即判定为慢消费者，由 {@link GameWebSocketHandler} 驱逐：排队字节数超过上限，
+ * 或正在进行的一次发送超过时间上限（客户端不读取时底层写会一直阻塞）。
+ * 新的完整状态快照入队时，丢弃尚未开始发送的旧状态帧（快照和补丁），因为它们已被新快照取代。
+ * <p>
+ * 单次阻塞发送由容器按同一时间上限中断（Tomcat 的 {@value #BLOCKING_SEND_TIMEOUT}），卡住的连接最多占用写线程这么久；
+ * 关闭会话可能同样阻塞，交给单独的关闭线程执行。
+ */
+final class SessionOutbox {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionOutbox.class);
+
+    // 每次调度最多连续发送的消息数
+    static final int BATCH = 16;
+    // Tomcat 读取的会话属性：阻塞发送的超时时间（毫秒，Long）
+    static final String BLOCKING_SEND_TIMEOUT = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
+
+    enum Result {
+        /** 已入队 */
+        QUEUED,
+        /** 已入队，并取代了队列中的旧状态帧 */
+        COALESCED,
+        /** 慢消费者：队列超限或发送超时，消息未入队 */
+        OVERFLOW,
+        /** 队列已关闭 */
+        CLOSED
+    }
+
+    private final WebSocketSession session;
+    private final Executor writer;
+    private final Executor closer;
+    private final int bufferBytesLimit;
+    private final long sendTimeLimitNanos;
+
+    // 以下字段由 this 保护
+    private final ArrayDeque<Entry> queue = new ArrayDeque<>();
+    private int queuedBytes;
+    // 已提交或正在运行发送任务
+    private boolean draining;
+    // 当前这次发送开始的时间（System.nanoTime），没有在发送时为 0
+    private long sendingSince;
+    private boolean closed;
+    // 全部发完后关闭会话（用于先发提示消息再断开的场景）
+    private CloseStatus closeAfterFlush;
+
+    SessionOutbox(WebSocketSession session, Executor writer, Executor closer, int bufferBytesLimit,
+            long sendTimeLimitMs) {
+        this.session = session;
+        this.writer = writer;
+        this.closer = closer;
+        this.bufferBytesLimit = bufferBytesLimit;
+        this.sendTimeLimitNanos = sendTimeLimitMs * 1_000_000L;
+        limitBlockingSend(session, sendTimeLimitMs);
+    }
+
+    // 让容器在发送超过时间上限时抛出异常，而不是一直阻塞到 TCP 超时
+    static void limitBlockingSend(WebSocketSession session, long sendTimeLimitMs) {
+        if (session instanceof NativeWebSocketSession nativeSession) {
+            Session container = nativeSession.getNativeSession(Session.class);
+            if (container != null) {
+                container.getUserProperties().put(BLOCKING_SEND_TIMEOUT, sendTimeLimitMs);
+            }
+        }
+    }
+
+    WebSocketSession getSession() {
+        return session;
+    }
+
+    /**
+     * 入队一条消息。
+     *
+     * @param state    是否为房间状态帧（完整快照或补丁）
+     * @param snapshot 是否为完整快照；为 true 时丢弃队列中尚未发送的旧状态帧
+     */
+    Result offer(WebSocketMessage<?> message, boolean state, boolean snapshot) {
+        boolean schedule;
+        boolean coalesced = false;
+        synchronized (this) {
+            if (closed || closeAfterFlush != null) {
+                return Result.CLOSED;
+            }
+            if (isLagging(System.nanoTime())) {
+                return Result.OVERFLOW;
+            }
+            if (snapshot) {
+                for (Iterator<Entry> it = queue.iterator(); it.hasNext(); ) {
+                    Entry entry = it.next();
+                    if (entry.state) {
+                        it.remove();
+                        queuedBytes -= entry.size;
+                        coalesced = true;
+                    }
+                }
+            }
+            int size = message.getPayloadLength();
+            // 队列为空时总是接受，单条超大的消息不算慢消费者
+            if (!queue.isEmpty() && queuedBytes + size > bufferBytesLimit) {
+                return Result.OVERFLOW;
+            }
+            queue.add(new Entry(message, state, size));
+            queuedBytes += size;
+            schedule = !draining;
+            draining = true;
+        }
+        if (schedule) {
+            writer.execute(this::drain);
+        }
+        return coalesced ? Result.COALESCED : Result.QUEUED;
+    }
+
+    /**
+     * 队列中是否有尚未开始发送的状态帧。此时再发补丁需要等前面的帧发完，改发完整快照可以直接取代它们。
+     */
+    synchronized boolean hasPendingState() {
+        for (Entry entry : queue) {
+            if (entry.state) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否已经跟不上：正在进行的一次发送超过时间上限，或排队字节数超过上限。
+     */
+    synchronized boolean isLagging(long now) {
+        return (sendingSince != 0 && now - sendingSince > sendTimeLimitNanos) || queuedBytes > bufferBytesLimit;
+    }
+
+    synchronized int getQueuedBytes() {
+        return queuedBytes;
+    }
+
+    /**
+     * 发完已入队的消息后关闭会话；之后入队的消息被丢弃。
+     */
+    void closeAfterFlush(CloseStatus status) {
+        boolean schedule;
+        synchronized (this) {
+            if (closed || closeAfterFlush != null) {
+                return;
+            }
+            closeAfterFlush = status;
+            schedule = !draining;
+            draining = true;
+        }
+        if (schedule) {
+            writer.execute(this::drain);
+        }
+    }
+
+    /**
+     * 丢弃所有未发送的消息，不再接受新消息。
+     *
+     * @return 丢弃的字节数
+     */
+    synchronized int close() {
+        int dropped = queuedBytes;
+        closed = true;
+        queue.clear();
+        queuedBytes = 0;
+        return dropped;
+    }
+
+    private void drain() {
+        for (int sent = 0; ; sent++) {
+            Entry entry;
+            CloseStatus closeStatus = null;
+            synchronized (this) {
+                if (closed) {
+                    draining = false;
+                    sendingSince = 0;
+                    return;
+                }
+                if (sent == BATCH && !queue.isEmpty()) {
+                    // 让出写线程，稍后继续
+                    sendingSince = 0;
+                    break;
+                }
+                entry = queue.poll();
+                if (entry == null) {
+                    sendingSince = 0;
+                    if (closeAfterFlush == null) {
+                        draining = false;
+                        return;
+                    }
+                    closeStatus = closeAfterFlush;
+                    closed = true;
+                    draining = false;
+                } else {
+                    queuedBytes -= entry.size;
+                    sendingSince = System.nanoTime();
+                }
+            }
+            if (closeStatus != null) {
+                closeLater(closeStatus);
+                return;
+            }
+            try {
+                if (session.isOpen()) {
+                    session.sendMessage(entry.message);
+                }
+            } catch (IOException | RuntimeException e) {
+                // 连接已不可用：丢弃剩余消息，由容器的关闭回调完成清理
+                int dropped = close();
+                synchronized (this) {
+                    draining = false;
+                    sendingSince = 0;
+                }
+                logger.warn("向会话 {} 发送消息失败，丢弃 {} 字节未发送的消息: {}", session.getId(), dropped,
+                        e.getMessage());
+                closeLater(CloseStatus.SESSION_NOT_RELIABLE);
+                return;
+            }
+        }
+        writer.execute(this::drain);
+    }
+
+    /**
+     * 在关闭线程中关闭会话，不占用写线程。
+     */
+    void closeLater(CloseStatus status) {
+        closer.execute(() -> closeQuietly(status));
+    }
+
+    void closeQuietly(CloseStatus status) {
+        try {
+            if (session.isOpen()) {
+                session.close(status);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.debug("关闭会话 {} 失败: {}", session.getId(), e.getMessage());
+        }
+    }
+
+    private static final class Entry {
+        final WebSocketMessage<?> message;
+        final boolean state;
+        final int size;
+
+        Entry(WebSocketMessage<?> message, boolean state, int size) {
+            this.message = message;
+            this.state = state;
+            this.size = size;
+        }
+    }
+}
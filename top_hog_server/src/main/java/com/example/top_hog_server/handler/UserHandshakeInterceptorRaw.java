@@ -19,6 +19,8 @@ public class UserHandshakeInterceptorRaw implements HandshakeInterceptor {
 
     private static final Logger logger = LoggerFactory.getLogger(UserHandshakeInterceptorRaw.class);
     public static final String USER_IDENTIFIER_SESSION_KEY = "userIdentifier_websocket_session_attr";
+    // 客户端通过 stateProtocol=delta 声明支持 roomPatch 增量状态协议
+    public static final String DELTA_PROTOCOL_SESSION_KEY = "deltaProtocol_websocket_session_attr";
 
     @Override
     public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
@@ -30,6 +32,10 @@ public class UserHandshakeInterceptorRaw implements HandshakeInterceptor {
 
             userIdentifier = servletRequest.getServletRequest().getParameter("userIdentifier");
 
+            if ("delta".equals(servletRequest.getServletRequest().getParameter("stateProtocol"))) {
+                attributes.put(DELTA_PROTOCOL_SESSION_KEY, Boolean.TRUE);
+            }
+
             // 处理可能来自客户端 JS 的显式 "undefined" 字符串
             if ("undefined".equals(userIdentifier)) {
                 userIdentifier = null;
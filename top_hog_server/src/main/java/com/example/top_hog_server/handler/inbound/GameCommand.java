@@ -0,0 +1,139 @@
+package com.example.top_hog_server.handler.inbound;
+
+/**
+ * 服务端内置的入站命令，每种消息类型一个记录类，字段与客户端发送的 JSON 一一对应（未知字段忽略）。
+ * {@link #validate()} 返回的错误提示与客户端已有的处理保持一致。
+ */
+public sealed interface GameCommand extends InboundMessage {
+
+    /** requestRejoinInfo：roomId 可选，只用于和实际重返的房间比对 */
+    record RequestRejoinInfo(String roomId) implements GameCommand {
+    }
+
+    /** joinRoom */
+    record JoinRoom(String roomId) implements GameCommand {
+        @Override
+        public String validate() {
+            return roomId == null ? "加入房间请求缺少 roomId。" : null;
+        }
+    }
+
+    /** playerReady */
+    record PlayerReady(String roomId) implements GameCommand {
+        @Override
+        public String validate() {
+            return roomId == null ? "切换准备状态请求缺少 roomId。" : null;
+        }
+    }
+
+    /** startGame */
+    record StartGame(String roomId) implements GameCommand {
+        @Override
+        public String validate() {
+            return roomId == null ? "开始游戏请求缺少 roomId。" : null;
+        }
+    }
+
+    /** playCard：{"roomId": ..., "data": {"cardNumber": 42}} */
+    record PlayCard(String roomId, CardData data) implements GameCommand {
+        public record CardData(Integer cardNumber) {
+        }
+
+        public int cardNumber() {
+            return data.cardNumber();
+        }
+
+        @Override
+        public String validate() {
+            if (roomId == null || data == null) {
+                return "出牌请求缺少 roomId 或有效的 data 负载。";
+            }
+            return data.cardNumber() == null ? "出牌请求中的 cardNumber 无效。" : null;
+        }
+    }
+
+    /** requestPlayTip：会员的出牌提示 */
+    record RequestPlayTip(String roomId) implements GameCommand {
+        @Override
+        public String validate() {
+            return roomId == null ? "请求出牌提示缺少 roomId。" : null;
+        }
+    }
+
+    /** chat：{"roomId": ..., "data": {"text": "..."}} */
+    record Chat(String roomId, ChatData data) implements GameCommand {
+        public record ChatData(String text) {
+        }
+
+        public String text() {
+            return data.text();
+        }
+
+        @Override
+        public String validate() {
+            if (roomId == null || data == null) {
+                return "聊天请求缺少 roomId 或有效的 data 负载。";
+            }
+            return data.text() == null ? "聊天消息文本为空。" : null;
+        }
+    }
+
+    /**
+     * selectRow：{"roomId": ..., "rowIndex": 2}；
+     * 旧版 playerChoosesRow：{"roomId": ..., "data": {"chosenRowIndex": 2}}
+     */
+    record SelectRow(String roomId, Integer rowIndex, ChoiceData data) implements GameCommand {
+        public record ChoiceData(Integer chosenRowIndex) {
+        }
+
+        /**
+         * 选择的牌列，优先取顶层的 rowIndex。
+         */
+        public Integer chosenRow() {
+            if (rowIndex != null) {
+                return rowIndex;
+            }
+            return data != null ? data.chosenRowIndex() : null;
+        }
+
+        @Override
+        public String validate() {
+            if (roomId == null) {
+                return "选择牌列的消息缺少 roomId。";
+            }
+            return chosenRow() == null ? "选择牌列的消息中 rowIndex 无效。" : null;
+        }
+    }
+
+    /** requestNewGame：再来一局 */
+    record RequestNewGame(String roomId) implements GameCommand {
+        @Override
+        public String validate() {
+            return roomId == null ? "“再来一局”请求缺少 roomId。" : null;
+        }
+    }
+
+    /** toggleAutoPlay / toggleHosting：切换托管 */
+    record ToggleAutoPlay(String roomId) implements GameCommand {
+        @Override
+        public String validate() {
+            return roomId == null ? "托管状态切换请求缺少 roomId。" : null;
+        }
+    }
+
+    /** syncState：客户端发现状态版本缺口，请求完整快照 */
+    record SyncState(String roomId) implements GameCommand {
+        @Override
+        public String validate() {
+            return roomId == null ? "状态同步请求缺少 roomId。" : null;
+        }
+    }
+
+    /** leaveRoom：主动离开房间 */
+    record LeaveRoom(String roomId) implements GameCommand {
+        @Override
+        public String validate() {
+            return roomId == null ? "离开房间请求缺少 roomId。" : null;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.top_hog_server.handler.inbound;
+
+/**
+ * /ws-game 协议的入站消息。每种消息类型对应一个不可变的记录类，由 {@link InboundMessageRegistry} 直接从 JSON 绑定，
+ * 不经过中间的 Map。
+ */
+public interface InboundMessage {
+
+    /**
+     * 消息所属的房间，没有时为 null（校验失败时随错误提示一起返回给客户端）。
+     */
+    String roomId();
+
+    /**
+     * 校验消息字段。
+     *
+     * @return 发给客户端的错误提示；校验通过时返回 null
+     */
+    default String validate() {
+        return null;
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.top_hog_server.handler.inbound;
+
+import org.springframework.web.socket.WebSocketSession;
+
+/**
+ * 处理一种已校验的入站消息。在 WebSocket 容器线程中调用，耗时的游戏逻辑应投递到房间执行器。
+ */
+@FunctionalInterface
+public interface InboundMessageHandler<T extends InboundMessage> {
+
+    void handle(WebSocketSession session, Long userId, T message) throws Exception;
+}
@@ -0,0 +1,133 @@
+package com.example.top_hog_server.handler.inbound;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * /ws-game 入站消息的分发表：消息类型 -> (记录类, 处理器)。
+ * <p>
+ * 每种类型注册时预先构建好绑定到其记录类的 {@link ObjectReader}，收到消息后先用流式解析只读出顶层的
+ * type 和 roomId，再由对应的 reader 直接绑定成记录，不再把整条消息解析成 Map。
+ * 内置类型由 {@link com.example.top_hog_server.handler.GameWebSocketHandler} 注册，
+ * 游戏引擎可以通过 {@link com.example.top_hog_server.service.game.GameEngine#registerInboundMessages} 注册自己的类型。
+ * 同一类型只能注册一次，重复注册在启动时报错。
+ */
+@Component
+public class InboundMessageRegistry {
+
+    private final ObjectMapper objectMapper;
+    private final Map<String, Route<?>> routes = new ConcurrentHashMap<>();
+
+    @Autowired
+    public InboundMessageRegistry(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 注册一种消息类型。
+     *
+     * @throws IllegalStateException 该类型已被注册
+     */
+    public <T extends InboundMessage> void register(String type, Class<T> messageClass, InboundMessageHandler<T> handler) {
+        // 客户端会带上 type 等记录中没有的字段；数字字段不接受小数
+        ObjectReader reader = objectMapper.readerFor(messageClass)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .without(DeserializationFeature.ACCEPT_FLOAT_AS_INT);
+        Route<?> existing = routes.putIfAbsent(type, new Route<>(messageClass, reader, handler));
+        if (existing != null) {
+            throw new IllegalStateException("入站消息类型 " + type + " 已注册为 " + existing.messageClass.getSimpleName());
+        }
+    }
+
+    public boolean isRegistered(String type) {
+        return routes.containsKey(type);
+    }
+
+    /**
+     * @return 该类型的路由；未注册时返回 null
+     */
+    public Route<?> route(String type) {
+        return routes.get(type);
+    }
+
+    public Set<String> registeredTypes() {
+        return Set.copyOf(routes.keySet());
+    }
+
+    /**
+     * 流式读取消息顶层的 type 和 roomId，两者都读到后立即停止，嵌套对象整体跳过。
+     *
+     * @throws IOException 消息不是 JSON 对象或格式错误
+     */
+    public Header readHeader(String payload) throws IOException {
+        String type = null;
+        String roomId = null;
+        try (JsonParser parser = objectMapper.getFactory().createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "入站消息必须是 JSON 对象");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("type".equals(field)) {
+                    type = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                } else if ("roomId".equals(field)) {
+                    roomId = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                }
+                if (type != null && roomId != null) {
+                    break;
+                }
+                parser.skipChildren();
+            }
+        }
+        return new Header(type, roomId);
+    }
+
+    /**
+     * 消息顶层的类型和房间，字段缺失或不是字符串时为 null。
+     */
+    public record Header(String type, String roomId) {
+    }
+
+    /**
+     * 一种消息类型的解码器和处理器。
+     */
+    public static final class Route<T extends InboundMessage> {
+        private final Class<T> messageClass;
+        private final ObjectReader reader;
+        private final InboundMessageHandler<T> handler;
+
+        private Route(Class<T> messageClass, ObjectReader reader, InboundMessageHandler<T> handler) {
+            this.messageClass = messageClass;
+            this.reader = reader;
+            this.handler = handler;
+        }
+
+        public Class<T> getMessageClass() {
+            return messageClass;
+        }
+
+        /**
+         * 把整条消息绑定为该类型的记录。
+         */
+        public T decode(String payload) throws IOException {
+            return reader.readValue(payload);
+        }
+
+        public void dispatch(WebSocketSession session, Long userId, InboundMessage message) throws Exception {
+            handler.handle(session, userId, messageClass.cast(message));
+        }
+    }
+}
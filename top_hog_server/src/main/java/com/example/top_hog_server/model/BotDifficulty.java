@@ -0,0 +1,50 @@
+package com.example.top_hog_server.model;
+
+/**
+ * 机器人难度枚举
+ * 每个难度对应一种出牌策略，见 {@code com.example.top_hog_server.service.game.bot.BotStrategy}
+ */
+public enum BotDifficulty {
+    EASY("easy", "简单", "总是打出手中最小的牌"),
+    NORMAL("normal", "普通", "根据牌列间距和第6张牌风险估算收牌代价"),
+    HARD("hard", "困难", "在时间预算内做蒙特卡洛搜索"),
+    ;
+
+    private final String code;
+    private final String displayName;
+    private final String description;
+
+    BotDifficulty(String code, String displayName, String description) {
+        this.code = code;
+        this.displayName = displayName;
+        this.description = description;
+    }
+
+    @com.fasterxml.jackson.annotation.JsonValue
+    public String getCode() {
+        return code;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * 根据代码获取难度，无法识别时返回 null
+     */
+    public static BotDifficulty fromCode(String code) {
+        if (code == null) {
+            return null;
+        }
+        for (BotDifficulty difficulty : values()) {
+            if (difficulty.code.equalsIgnoreCase(code) || difficulty.name().equalsIgnoreCase(code)) {
+                return difficulty;
+            }
+        }
+        return null;
+    }
+}
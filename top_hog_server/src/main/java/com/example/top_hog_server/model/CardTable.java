@@ -0,0 +1,54 @@
+package com.example.top_hog_server.model;
+
+/**
+ * 猪头王 1~104 号牌的预计算常量表。
+ * 猪头数按号码直接查表，每个号码只有一个共享的 {@link Card} 实例，
+ * 规则计算只需要传递号码（int/byte），需要对象视图时再从这里取，不会产生新对象。
+ */
+public final class CardTable {
+
+    public static final int MIN_CARD_NUMBER = 1;
+    public static final int MAX_CARD_NUMBER = 104;
+
+    // 下标为牌号，0 号不使用
+    private static final byte[] BULLHEADS = new byte[MAX_CARD_NUMBER + 1];
+    private static final Card[] CARDS = new Card[MAX_CARD_NUMBER + 1];
+
+    static {
+        for (int i = MIN_CARD_NUMBER; i <= MAX_CARD_NUMBER; i++) {
+            int bullheads = 1; // 默认1个猪头
+            if (i == 55) {
+                bullheads = 7; // 55号牌：7个猪头
+            } else if (i % 11 == 0) {
+                bullheads = 5; // 11的倍数：5个猪头
+            } else if (i % 10 == 0) {
+                bullheads = 3; // 10的倍数：3个猪头
+            } else if (i % 5 == 0) {
+                bullheads = 2; // 5的倍数（非10的倍数）：2个猪头
+            }
+            BULLHEADS[i] = (byte) bullheads;
+            CARDS[i] = new Card(i, bullheads);
+        }
+    }
+
+    private CardTable() {
+    }
+
+    public static boolean isValid(int number) {
+        return number >= MIN_CARD_NUMBER && number <= MAX_CARD_NUMBER;
+    }
+
+    /**
+     * 查询指定号码的猪头数。
+     */
+    public static int bullheads(int number) {
+        return BULLHEADS[number];
+    }
+
+    /**
+     * 获取指定号码的共享牌对象（调用方不得修改其字段）。
+     */
+    public static Card card(int number) {
+        return CARDS[number];
+    }
+}
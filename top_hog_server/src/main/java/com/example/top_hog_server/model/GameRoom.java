@@ -72,15 +72,50 @@ public class GameRoom {
     @Transient
     private Map<String, List<Card>> allPlayerHandsForAI;
 
+    // 机器人难度，为 null 时使用 game.bot.defaultDifficulty
+    @Transient
+    private BotDifficulty botDifficulty;
+
     @Transient
     private long createdAtTimestamp = System.currentTimeMillis();
 
+    // 房间状态版本号，每次广播状态时单调递增，供增量协议判断客户端是否缺失更新
+    @Transient
+    private long stateVersion = 0;
+
+    // 房间当前采用的游戏配置版本，开局和每轮开始时与最新配置比对
+    @Transient
+    @JsonIgnore
+    private long configVersion = 0;
+
+    // 选择牌列的超时时间（毫秒），0 表示使用 game.playerChoice.timeoutMs
+    @Transient
+    @JsonIgnore
+    private long playerChoiceTimeoutMs = 0;
+
+    // 本局洗牌使用的随机种子，开局时生成，与 replayLog 一起可以重新运行出整局
+    @Transient
+    @JsonIgnore
+    private long gameSeed = 0;
+
+    // 本局的操作记录，游戏结束时归档；不在对局中时为 null
+    @Transient
+    @JsonIgnore
+    private ReplayLog replayLog;
+
     public GameRoom(String roomId, String roomName) {
         this.roomId = roomId;
         this.roomName = roomName;
         initializeRowsStructure();
     }
 
+    /**
+     * 递增并返回新的状态版本号（调用方需持有房间的执行上下文）。
+     */
+    public long nextStateVersion() {
+        return ++stateVersion;
+    }
+
     /**
      * 初始化4个空的牌列结构。
      */
@@ -100,7 +135,7 @@ public class GameRoom {
         if (this.rows != null) {
             for(GameRow row : this.rows) {
                 if (row != null) {
-                    row.getCards().clear();
+                    row.clear();
                 }
             }
         }
@@ -171,6 +206,7 @@ public class GameRoom {
         this.getPlayersRequestedNewGame().clear();
         this.setWinnerDisplayName(null);
         this.setAllPlayerHandsForAI(null); // 新游戏时清空
+        this.setReplayLog(null);
         this.setGameState(GameState.WAITING);
         // Do not reset rounds or target score
     }
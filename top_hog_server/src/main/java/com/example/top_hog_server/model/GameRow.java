@@ -1,19 +1,27 @@
 package com.example.top_hog_server.model;
 
-import lombok.Data;
-
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.List;
 
 /**
  * 代表游戏桌面上的一个牌列（行）。
  * "谁是猪头王"游戏通常有4行牌。
+ * <p>
+ * 牌列内部用字节数组保存牌号和猪头数，并缓存猪头总数和末尾牌号，
+ * 规则判断（比较末尾牌、计算猪头、收牌）都是常数时间且不分配对象。
+ * {@link #getCards()} 只是供序列化和展示使用的只读视图。
  */
-@Data
 public class GameRow {
-    // 使用 LinkedList 存储牌，因为牌的添加总是在末尾，且可能需要查看末尾的牌
-    private LinkedList<Card> cards = new LinkedList<>();
     private final int MAX_CARDS_IN_ROW = 5; // 一行中最多能放5张牌，第6张触发惩罚
 
+    // 正常情况下一行最多5张牌，多留一个位置；超出时自动扩容
+    private byte[] numbers = new byte[MAX_CARDS_IN_ROW + 1];
+    private byte[] bullheads = new byte[MAX_CARDS_IN_ROW + 1];
+    private int size;
+    private int bullheadSum;
+
     /**
      * 判断一张牌是否可以被添加到当前牌列的末尾。
      * 规则：新牌的数字必须大于当前牌列末尾牌的数字。
@@ -22,10 +30,10 @@ public class GameRow {
      * @return 如果可以添加则返回 true，否则返回 false
      */
     public boolean canAddCard(Card card) {
-        if (cards.isEmpty()) {
+        if (size == 0) {
             return true; // 任何牌都可以作为空行的第一张牌 (虽然游戏开始时行会有初始牌)
         }
-        return card.getNumber() > cards.getLast().getNumber();
+        return card.getNumber() > lastNumber();
     }
 
     /**
@@ -34,7 +42,29 @@ public class GameRow {
      * @param card 要添加的牌
      */
     public void addCard(Card card) {
-        cards.add(card);
+        add(card.getNumber(), card.getBullheads());
+    }
+
+    /**
+     * 向牌列末尾添加一张牌（原始值版本）。
+     */
+    public void add(int number, int cardBullheads) {
+        if (size == numbers.length) {
+            numbers = Arrays.copyOf(numbers, size * 2);
+            bullheads = Arrays.copyOf(bullheads, size * 2);
+        }
+        numbers[size] = (byte) number;
+        bullheads[size] = (byte) cardBullheads;
+        size++;
+        bullheadSum += cardBullheads;
+    }
+
+    /**
+     * 清空牌列。
+     */
+    public void clear() {
+        size = 0;
+        bullheadSum = 0;
     }
 
     /**
@@ -43,7 +73,7 @@ public class GameRow {
      * @return 如果牌列已满则返回 true，否则返回 false
      */
     public boolean isFull() {
-        return cards.size() >= MAX_CARDS_IN_ROW;
+        return size >= MAX_CARDS_IN_ROW;
     }
 
     /**
@@ -54,19 +84,58 @@ public class GameRow {
      * @return 被拿走的牌列表
      */
     public LinkedList<Card> takeRowAndReplace(Card newCard) {
-        LinkedList<Card> takenCards = new LinkedList<>(cards); // 复制当前行中的牌作为被拿走的牌
-        cards.clear(); // 清空当前行
-        cards.add(newCard); // 将新牌作为该行的新起始牌
+        LinkedList<Card> takenCards = new LinkedList<>(getCards()); // 复制当前行中的牌作为被拿走的牌
+        replaceWith(newCard.getNumber(), newCard.getBullheads());
         return takenCards;
     }
 
+    /**
+     * 拿走整行并以新牌作为该行的起始牌，不复制被拿走的牌。
+     * 调用方如需被拿走的牌，应在调用前通过 {@link #cardAt(int)} 读取。
+     *
+     * @return 被拿走的猪头数
+     */
+    public int replaceWith(int number, int cardBullheads) {
+        int taken = bullheadSum;
+        clear();
+        add(number, cardBullheads);
+        return taken;
+    }
+
     /**
      * 获取牌列中的最后一张牌。
      *
      * @return 最后一张牌，如果牌列为空则返回 null
      */
     public Card getLastCard() {
-        return cards.isEmpty() ? null : cards.getLast();
+        return size == 0 ? null : cardAt(size - 1);
+    }
+
+    /**
+     * 末尾牌号，空行返回 0。
+     */
+    public int lastNumber() {
+        return size == 0 ? 0 : numbers[size - 1];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int numberAt(int index) {
+        return numbers[index];
+    }
+
+    /**
+     * 获取指定位置的牌。标准牌返回 {@link CardTable} 中的共享实例。
+     */
+    public Card cardAt(int index) {
+        int number = numbers[index];
+        int cardBullheads = bullheads[index];
+        if (CardTable.isValid(number) && CardTable.bullheads(number) == cardBullheads) {
+            return CardTable.card(number);
+        }
+        return new Card(number, cardBullheads);
     }
 
     /**
@@ -75,6 +144,63 @@ public class GameRow {
      * @return 猪头数总和
      */
     public int getBullheadSum() {
-        return cards.stream().mapToInt(Card::getBullheads).sum();
+        return bullheadSum;
+    }
+
+    public int getMAX_CARDS_IN_ROW() {
+        return MAX_CARDS_IN_ROW;
+    }
+
+    /**
+     * 牌列的只读视图，供序列化和展示使用。
+     */
+    public List<Card> getCards() {
+        return new AbstractList<Card>() {
+            @Override
+            public Card get(int index) {
+                if (index < 0 || index >= size) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+                }
+                return cardAt(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    public void setCards(List<Card> cards) {
+        clear();
+        if (cards != null) {
+            for (Card card : cards) {
+                addCard(card);
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        GameRow other = (GameRow) o;
+        return size == other.size
+                && Arrays.equals(numbers, 0, size, other.numbers, 0, other.size)
+                && Arrays.equals(bullheads, 0, size, other.bullheads, 0, other.size);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 1;
+        for (int i = 0; i < size; i++) {
+            result = 31 * result + numbers[i];
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "GameRow(cards=" + getCards() + ", bullheadSum=" + bullheadSum + ")";
     }
-}
\ No newline at end of file
+}
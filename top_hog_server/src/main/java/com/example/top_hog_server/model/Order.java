@@ -12,7 +12,9 @@ import java.time.LocalDateTime;
 @Table(name = "orders", indexes = {
         @Index(name = "idx_user_id", columnList = "user_id"),
         @Index(name = "idx_order_no", columnList = "order_no"),
-        @Index(name = "idx_status", columnList = "status")
+        @Index(name = "idx_status", columnList = "status"),
+        @Index(name = "idx_created_at", columnList = "created_at"),
+        @Index(name = "idx_status_created_at", columnList = "status, created_at")
 })
 @Data
 public class Order {
@@ -112,6 +112,17 @@ public class Player {
         updateScore();
     }
 
+    /**
+     * 收集单张牌并累加分数（与 {@link #addCollectedCards(List)} 结果一致，但不重新遍历已收集的牌）。
+     */
+    public void collectCard(Card card) {
+        if (this.collectedCards == null) {
+            this.collectedCards = new ArrayList<>();
+        }
+        this.collectedCards.add(card);
+        this.score += card.getBullheads();
+    }
+
     private void updateScore() {
         this.score = 0;
         if (this.collectedCards != null) {
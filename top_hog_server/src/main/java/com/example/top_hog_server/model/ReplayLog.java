@@ -0,0 +1,280 @@
+package com.example.top_hog_server.model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一局游戏的紧凑二进制操作记录。配合开局时的随机种子（{@link GameRoom#getGameSeed()}）重新运行规则，
+ * 就能得到这局任意一手的状态，不需要保存完整的状态快照。
+ * <p>
+ * 记录是一串事件，每个事件以类型字节开头，座位号和牌号各占一个字节：
+ * <ul>
+ *     <li>SEAT：玩家第一次出现时登记座位（人类玩家记 userId，机器人记 sessionId）和显示名称；</li>
+ *     <li>DEAL：发手牌，按实际发牌顺序列出座位；</li>
+ *     <li>PLAY：出牌；</li>
+ *     <li>RESOLVE：本手开始结算；</li>
+ *     <li>TAKE_ROW：打出的牌比所有牌列都小时，玩家选择收走的牌列（含超时后的自动选择）；</li>
+ *     <li>LEAVE：玩家中途离开。</li>
+ * </ul>
+ * 其余结算（放牌、第六张收列）是确定性的，不需要记录。一局三轮、六名玩家的记录只有几百字节。
+ * 只在房间执行上下文中访问。
+ */
+public final class ReplayLog {
+
+    public static final byte SEAT = 1;
+    public static final byte DEAL = 2;
+    public static final byte PLAY = 3;
+    public static final byte RESOLVE = 4;
+    public static final byte TAKE_ROW = 5;
+    public static final byte LEAVE = 6;
+
+    // SEAT 事件的标志位
+    private static final int HAS_USER_ID = 1;
+    private static final int ROBOT = 1 << 1;
+
+    private final String gameId;
+    private final long seed;
+    private final long startedAt;
+    private byte[] events;
+    private int length;
+    // 玩家标识 -> 座位号
+    private final Map<String, Integer> seats = new HashMap<>();
+
+    public ReplayLog(String gameId, long seed, long startedAt) {
+        this(gameId, seed, startedAt, new byte[256], 0);
+    }
+
+    private ReplayLog(String gameId, long seed, long startedAt, byte[] events, int length) {
+        this.gameId = gameId;
+        this.seed = seed;
+        this.startedAt = startedAt;
+        this.events = events;
+        this.length = length;
+    }
+
+    /**
+     * 用已有的事件重建记录（例如从游戏日志恢复的房间），之后可以继续追加。
+     */
+    public static ReplayLog restore(String gameId, long seed, long startedAt, byte[] events) {
+        ReplayLog log = new ReplayLog(gameId, seed, startedAt,
+                Arrays.copyOf(events, Math.max(256, events.length * 2)), events.length);
+        List<Seat> existing = readSeats(events);
+        for (int i = 0; i < existing.size(); i++) {
+            log.seats.put(existing.get(i).key(), i);
+        }
+        return log;
+    }
+
+    public String getGameId() {
+        return gameId;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    /**
+     * 记录一次发牌：按遍历顺序列出拿到手牌的玩家（与引擎的发牌顺序一致）。
+     * 牌堆不足没有发牌时记录一个空的发牌事件，回放时同样只清空手牌。
+     */
+    public void roundDealt(Collection<Player> players) {
+        int[] order = new int[players.size()];
+        int count = 0;
+        for (Player player : players) {
+            if (!player.getHand().isEmpty()) {
+                order[count++] = seatOf(player);
+            }
+        }
+        put(DEAL);
+        put(count);
+        for (int i = 0; i < count; i++) {
+            put(order[i]);
+        }
+    }
+
+    public void cardPlayed(Player player, Card card) {
+        int seat = seatOf(player);
+        put(PLAY);
+        put(seat);
+        put(card.getNumber());
+    }
+
+    public void trickResolved() {
+        put(RESOLVE);
+    }
+
+    public void rowTaken(Player player, int rowIndex) {
+        int seat = seatOf(player);
+        put(TAKE_ROW);
+        put(seat);
+        put(rowIndex);
+    }
+
+    public void playerLeft(Player player) {
+        Integer seat = seats.get(keyOf(player.getUserId(), player.getSessionId()));
+        if (seat != null) {
+            put(LEAVE);
+            put(seat);
+        }
+    }
+
+    /**
+     * 当前事件的副本。
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(events, length);
+    }
+
+    public int size() {
+        return length;
+    }
+
+    private int seatOf(Player player) {
+        String key = keyOf(player.getUserId(), player.getSessionId());
+        Integer seat = seats.get(key);
+        if (seat != null) {
+            return seat;
+        }
+        seat = seats.size();
+        seats.put(key, seat);
+        put(SEAT);
+        put((player.getUserId() != null ? HAS_USER_ID : 0) | (player.isRobot() ? ROBOT : 0));
+        if (player.getUserId() != null) {
+            putLong(player.getUserId());
+        } else {
+            putString(player.getSessionId());
+        }
+        putString(player.getDisplayName());
+        return seat;
+    }
+
+    // 人类玩家用 userId 标识（重连后 sessionId 会变），机器人用 sessionId
+    private static String keyOf(Long userId, String sessionId) {
+        return userId != null ? "u" + userId : "s" + sessionId;
+    }
+
+    private void put(int value) {
+        if (length == events.length) {
+            events = Arrays.copyOf(events, events.length * 2);
+        }
+        events[length++] = (byte) value;
+    }
+
+    private void putLong(long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            put((int) (value >>> shift));
+        }
+    }
+
+    private void putString(String value) {
+        byte[] bytes = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+        int size = Math.min(bytes.length, 0xFFFF);
+        put(size >>> 8);
+        put(size);
+        for (int i = 0; i < size; i++) {
+            put(bytes[i]);
+        }
+    }
+
+    /**
+     * 读取 SEAT 事件的内容（类型字节之后的部分）。
+     */
+    public static Seat readSeat(ByteBuffer in) {
+        int flags = in.get();
+        Long userId = null;
+        String sessionId = null;
+        if ((flags & HAS_USER_ID) != 0) {
+            userId = in.getLong();
+        } else {
+            sessionId = readString(in);
+        }
+        return new Seat(userId, sessionId, readString(in), (flags & ROBOT) != 0);
+    }
+
+    /**
+     * 按座位号顺序列出记录中登记的所有座位。
+     *
+     * @throws IllegalArgumentException 记录中有无法识别的事件
+     */
+    public static List<Seat> readSeats(byte[] events) {
+        List<Seat> result = new ArrayList<>();
+        ByteBuffer in = ByteBuffer.wrap(events);
+        while (in.hasRemaining()) {
+            byte type = in.get();
+            switch (type) {
+                case SEAT:
+                    result.add(readSeat(in));
+                    break;
+                case DEAL:
+                    in.position(in.position() + 1 + Byte.toUnsignedInt(in.get(in.position())));
+                    break;
+                case PLAY:
+                case TAKE_ROW:
+                    in.position(in.position() + 2);
+                    break;
+                case LEAVE:
+                    in.position(in.position() + 1);
+                    break;
+                case RESOLVE:
+                    break;
+                default:
+                    throw new IllegalArgumentException("未知的回放事件类型: " + type);
+            }
+        }
+        return result;
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[Short.toUnsignedInt(in.getShort())];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 记录中的一个座位。
+     */
+    public static final class Seat {
+        private final Long userId;
+        private final String sessionId;
+        private final String displayName;
+        private final boolean robot;
+
+        public Seat(Long userId, String sessionId, String displayName, boolean robot) {
+            this.userId = userId;
+            this.sessionId = sessionId;
+            this.displayName = displayName;
+            this.robot = robot;
+        }
+
+        public Long getUserId() {
+            return userId;
+        }
+
+        // 只有没有 userId 的座位（机器人）才记录 sessionId
+        public String getSessionId() {
+            return sessionId;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        public boolean isRobot() {
+            return robot;
+        }
+
+        String key() {
+            return keyOf(userId, sessionId);
+        }
+    }
+}
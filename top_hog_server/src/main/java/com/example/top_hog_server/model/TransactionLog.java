@@ -10,7 +10,9 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "transaction_log", indexes = {
         @Index(name = "idx_user_id", columnList = "user_id"),
-        @Index(name = "idx_type", columnList = "type")
+        @Index(name = "idx_type", columnList = "type"),
+        @Index(name = "idx_type_created_at", columnList = "type, created_at"),
+        @Index(name = "idx_order_no", columnList = "order_no")
 })
 @Data
 public class TransactionLog {
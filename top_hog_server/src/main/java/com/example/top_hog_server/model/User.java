@@ -13,7 +13,9 @@ import java.sql.Timestamp;
 @Data
 @NoArgsConstructor
 @Entity
-@Table(name = "Users")
+@Table(name = "Users", indexes = {
+        @Index(name = "idx_nickname", columnList = "nickname")
+})
 public class User {
 
     @Id
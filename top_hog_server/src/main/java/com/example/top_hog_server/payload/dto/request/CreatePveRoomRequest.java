@@ -7,4 +7,7 @@ import lombok.Data;
 public class CreatePveRoomRequest {
     @NotNull(message = "Bot count is required")
     private Integer botCount;
+
+    // 机器人难度：easy / normal / hard，可选，默认使用服务端配置
+    private String difficulty;
 }
@@ -27,6 +27,7 @@ public class GameRoomDTO {
     private Map<String, Card> playedCardsThisTurn;
     private String winnerDisplayName;
     private String playerChoosingRowSessionId;
+    private long stateVersion;
 
     public static GameRoomDTO from(GameRoom room, String requestingUserId) {
         GameRoomDTO dto = new GameRoomDTO();
@@ -39,6 +40,7 @@ public class GameRoomDTO {
         dto.setCurrentRound(room.getCurrentRound());
         dto.setCurrentTurnNumber(room.getCurrentTurnNumber());
         dto.setPlayerChoosingRowSessionId(room.getPlayerChoosingRowSessionId());
+        dto.setStateVersion(room.getStateVersion());
 
         // Transform GameRow to GameRowDTO to include display flags
         List<GameRowDTO> rowDTOs = new ArrayList<>();
@@ -64,10 +66,7 @@ public class GameRoomDTO {
 
         // Let's implement a safe view:
         Map<String, Card> visiblePlayedCards = new HashMap<>();
-        boolean allPlayed = room.getPlayers().size() > 0 && room.getPlayedCardsThisTurn().size() == room.getPlayers().size();
-
-        // If game is over or we are processing turn, cards should be visible
-        boolean reveal = allPlayed || room.getGameState() == GameState.PROCESSING_TURN || room.getGameState() == GameState.WAITING_FOR_PLAYER_CHOICE || room.getGameState() == GameState.ROUND_OVER || room.getGameState() == GameState.GAME_OVER;
+        boolean reveal = isPlayedCardsRevealed(room);
 
         for (Map.Entry<String, Card> entry : room.getPlayedCardsThisTurn().entrySet()) {
             // Check if this card belongs to the requesting user
@@ -124,6 +123,17 @@ public class GameRoomDTO {
         return dto;
     }
 
+    /**
+     * Played cards are face down until everyone has played; afterwards (or once the turn is
+     * being resolved / the round or game is over) every card is visible to all players.
+     */
+    public static boolean isPlayedCardsRevealed(GameRoom room) {
+        boolean allPlayed = room.getPlayers().size() > 0 && room.getPlayedCardsThisTurn().size() == room.getPlayers().size();
+
+        // If game is over or we are processing turn, cards should be visible
+        return allPlayed || room.getGameState() == GameState.PROCESSING_TURN || room.getGameState() == GameState.WAITING_FOR_PLAYER_CHOICE || room.getGameState() == GameState.ROUND_OVER || room.getGameState() == GameState.GAME_OVER;
+    }
+
     @Data
     public static class GameRowDTO {
         private List<CardViewDTO> cards;
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.sql.Timestamp;
 import java.util.List;
 import java.util.Map;
 
@@ -24,6 +25,20 @@ public interface GameHistoryRepository extends JpaRepository<GameHistory, Long>
     @Query("SELECT MIN(g.score) FROM GameHistory g WHERE g.userId = :userId")
     Integer findMinScoreByUserId(@Param("userId") Long userId);
 
+    /**
+     * 按用户聚合 since 之后的战绩：[userId, 总分, 场次, 胜场]，用于排行榜启动加载。
+     */
+    @Query("SELECT g.userId, SUM(g.score), COUNT(g), SUM(CASE WHEN g.rank = 1 THEN 1 ELSE 0 END) "
+            + "FROM GameHistory g WHERE g.createdAt >= :since GROUP BY g.userId")
+    List<Object[]> aggregateByUserSince(@Param("since") Timestamp since);
+
+    /**
+     * 按用户聚合全部战绩：[userId, 场次, 胜场, 总分, 最高分, 最低分]，用于用户战绩汇总启动加载。
+     */
+    @Query("SELECT g.userId, COUNT(g), SUM(CASE WHEN g.rank = 1 THEN 1 ELSE 0 END), SUM(g.score), MAX(g.score), MIN(g.score) "
+            + "FROM GameHistory g GROUP BY g.userId")
+    List<Object[]> aggregateStatsByUser();
+
     // Win rate calculation might need logic based on rank or comparing to avg score.
     // For now, let's just fetch history.
 }
@@ -1,9 +1,14 @@
 package com.example.top_hog_server.repository;
 
 import com.example.top_hog_server.model.Order;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,4 +20,50 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     List<Order> findByUserIdOrderByCreatedAtDesc(Long userId);
 
     List<Order> findByUserIdAndStatusOrderByCreatedAtDesc(Long userId, String status);
+
+    Page<Order> findByCreatedAtBetweenOrderByCreatedAtDesc(LocalDateTime start, LocalDateTime end, Pageable pageable);
+
+    Page<Order> findByStatusAndCreatedAtBetweenOrderByCreatedAtDesc(String status, LocalDateTime start,
+            LocalDateTime end, Pageable pageable);
+
+    List<Order> findByStatusAndCreatedAtBetweenOrderByUpdatedAtDesc(String status, LocalDateTime start,
+            LocalDateTime end);
+
+    /**
+     * 按状态汇总区间内订单：[status, 订单数, 金额合计]
+     */
+    @Query("SELECT o.status, COUNT(o), SUM(o.amount) FROM Order o "
+            + "WHERE o.createdAt BETWEEN :start AND :end GROUP BY o.status")
+    List<Object[]> summarizeByStatus(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    /**
+     * 区间内已支付订单按日汇总：[日期, 金额合计]
+     */
+    @Query("SELECT CAST(o.createdAt AS LocalDate), SUM(o.amount) FROM Order o "
+            + "WHERE o.status = 'PAID' AND o.createdAt BETWEEN :start AND :end "
+            + "GROUP BY CAST(o.createdAt AS LocalDate)")
+    List<Object[]> sumPaidByDay(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    /**
+     * 区间内已支付订单按商品汇总：[商品名称, 订单数]
+     */
+    @Query("SELECT o.productName, COUNT(o) FROM Order o "
+            + "WHERE o.status = 'PAID' AND o.createdAt BETWEEN :start AND :end GROUP BY o.productName")
+    List<Object[]> countPaidByProduct(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    /**
+     * 区间内指定状态的订单号
+     */
+    @Query("SELECT o.orderNo FROM Order o WHERE o.status = :status AND o.createdAt BETWEEN :start AND :end")
+    List<String> findOrderNos(@Param("status") String status, @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end);
+
+    /**
+     * 键集分页：取 (createdAt, id) 严格大于给定游标的下一页，按创建时间升序。用于流式导出。
+     */
+    @Query("SELECT o FROM Order o WHERE o.createdAt <= :end "
+            + "AND (o.createdAt > :afterTime OR (o.createdAt = :afterTime AND o.id > :afterId)) "
+            + "ORDER BY o.createdAt, o.id")
+    List<Order> findPageAfter(@Param("afterTime") LocalDateTime afterTime, @Param("afterId") long afterId,
+            @Param("end") LocalDateTime end, Pageable pageable);
 }
@@ -2,8 +2,12 @@ package com.example.top_hog_server.repository;
 
 import com.example.top_hog_server.model.TransactionLog;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -12,4 +16,12 @@ public interface TransactionLogRepository extends JpaRepository<TransactionLog,
     List<TransactionLog> findByUserIdOrderByCreatedAtDesc(Long userId);
 
     List<TransactionLog> findByUserIdAndTypeOrderByCreatedAtDesc(Long userId, String type);
+
+    long countByTypeAndCreatedAtBetween(String type, LocalDateTime start, LocalDateTime end);
+
+    /**
+     * 给定订单号中已有指定类型流水的订单号
+     */
+    @Query("SELECT DISTINCT t.orderNo FROM TransactionLog t WHERE t.type = :type AND t.orderNo IN :orderNos")
+    List<String> findOrderNosWithType(@Param("type") String type, @Param("orderNos") Collection<String> orderNos);
 }
@@ -4,6 +4,7 @@ import com.example.top_hog_server.model.UserAchievement;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,6 +21,11 @@ public interface UserAchievementRepository extends JpaRepository<UserAchievement
      */
     List<UserAchievement> findByUserId(Long userId);
 
+    /**
+     * 批量查询一批用户的成就进度
+     */
+    List<UserAchievement> findByUserIdIn(Collection<Long> userIds);
+
     /**
      * 查找用户已完成但未领取奖励的成就
      */
@@ -5,6 +5,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,6 +16,11 @@ public interface UserDailyTaskRepository extends JpaRepository<UserDailyTask, Lo
 
     List<UserDailyTask> findByUserIdAndTaskDate(Long userId, LocalDate taskDate);
 
+    /**
+     * 批量查询一批用户某天的任务进度
+     */
+    List<UserDailyTask> findByTaskDateAndUserIdIn(LocalDate taskDate, Collection<Long> userIds);
+
     /**
      * 删除旧的任务进度记录(清理用)
      */
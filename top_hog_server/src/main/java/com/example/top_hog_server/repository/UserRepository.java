@@ -4,6 +4,7 @@ import com.example.top_hog_server.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -46,4 +47,14 @@ public interface UserRepository extends JpaRepository<User, Long> {
     // 【重要修改】方法名必须匹配 User.java 中的属性名 wechatOpenid
     // Spring Data JPA 会自动解析为 SQL: select * from users where wechat_openid = ?
     Optional<User> findByWechatOpenid(String wechatOpenid);
+
+    /**
+     * 按昵称前缀搜索（走 nickname 索引）。
+     */
+    List<User> findTop20ByNicknameStartingWithOrderByNicknameAsc(String prefix);
+
+    /**
+     * 按用户名前缀搜索（走 username 唯一索引）。
+     */
+    List<User> findTop20ByUsernameStartingWithOrderByUsernameAsc(String prefix);
 }
\ No newline at end of file
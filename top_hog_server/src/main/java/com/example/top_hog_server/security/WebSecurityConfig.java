@@ -63,6 +63,7 @@ public class WebSecurityConfig {
                     .requestMatchers("/api/rooms/**").permitAll()
                     .requestMatchers("/ws-game/**").permitAll()
                     .requestMatchers("/v3/api-docs/**", "/swagger-ui/**", "/swagger-ui.html").permitAll() // 允许 Swagger UI
+                    .requestMatchers("/actuator/health", "/actuator/prometheus").permitAll() // 监控端口上的健康检查和指标抓取
                     .requestMatchers("/api/**").authenticated()
                     .anyRequest().authenticated()
             );
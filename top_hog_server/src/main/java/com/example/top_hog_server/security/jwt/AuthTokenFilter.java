@@ -1,5 +1,6 @@
 package com.example.top_hog_server.security.jwt;
 
+import com.example.top_hog_server.security.services.PrincipalCache;
 import com.example.top_hog_server.security.services.UserDetailsServiceImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -8,15 +9,19 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
-import org.springframework.util.AntPathMatcher;
+import org.springframework.http.server.PathContainer;
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
 
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 
 public class AuthTokenFilter extends OncePerRequestFilter {
     @Autowired
@@ -25,6 +30,10 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     @Autowired
     private UserDetailsServiceImpl userDetailsService;
 
+    // 按 JWT subject 缓存 principal，避免每个请求都查库
+    @Autowired
+    private PrincipalCache principalCache;
+
     private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
     private static final String[] AUTH_WHITELIST = {
@@ -32,13 +41,18 @@ public class AuthTokenFilter extends OncePerRequestFilter {
             "/test/**"
     };
 
+    // 白名单在类加载时预编译
+    private static final List<PathPattern> WHITELIST_PATTERNS = Arrays.stream(AUTH_WHITELIST)
+            .map(PathPatternParser.defaultInstance::parse)
+            .toList();
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
         try {
             // 白名单路径直接放行
             if (isWhiteList(request)) {
-                logger.info("请求 {} 在白名单中，直接放行", request.getServletPath());
+                logger.debug("请求 {} 在白名单中，直接放行", request.getServletPath());
                 filterChain.doFilter(request, response);
                 return;
             }
@@ -47,7 +61,7 @@ public class AuthTokenFilter extends OncePerRequestFilter {
             if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
                 String username = jwtUtils.getUserNameFromJwtToken(jwt);
 
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                UserDetails userDetails = principalCache.get(username, userDetailsService::loadUserByUsername);
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
                         userDetails, null, userDetails.getAuthorities());
                 authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
@@ -66,9 +80,9 @@ public class AuthTokenFilter extends OncePerRequestFilter {
         if ("/api/auth/validate".equals(request.getServletPath())) {
             return false;
         }
-        for (String path : AUTH_WHITELIST) {
-            AntPathMatcher matcher = new AntPathMatcher();
-            if (matcher.match(path, request.getServletPath())) {
+        PathContainer path = PathContainer.parsePath(request.getServletPath());
+        for (PathPattern pattern : WHITELIST_PATTERNS) {
+            if (pattern.matches(path)) {
                 return true;
             }
         }
@@ -0,0 +1,138 @@
+package com.example.top_hog_server.security.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 已认证用户的 UserDetails 缓存，按 JWT subject（用户名或 OpenID）索引。
+ * <p>
+ * 条目数和存活时间都有上限。用户资料、VIP 状态等写入 principal 的字段变更时，
+ * 由业务代码调用 {@link #invalidateUser(Long)} 主动失效；在事务中调用时提交后会再失效一次，
+ * 避免并发请求在提交前把旧数据重新加载进缓存。
+ */
+@Component
+public class PrincipalCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrincipalCache.class);
+
+    private static final class Entry {
+        final UserDetails principal;
+        final long expiresAtNanos;
+
+        Entry(UserDetails principal, long expiresAtNanos) {
+            this.principal = principal;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    private final long ttlNanos;
+    private final int maxSize;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // 每次失效递增；加载期间发生过失效的结果不放入缓存
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @Autowired
+    public PrincipalCache(@Value("${security.principalCache.ttlMs:60000}") long ttlMs,
+            @Value("${security.principalCache.maxSize:10000}") int maxSize) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, ttlMs));
+        this.maxSize = Math.max(1, maxSize);
+    }
+
+    /**
+     * 取缓存的 principal，未命中或已过期时用 loader 加载。loader 抛出的异常原样传出，不缓存失败结果。
+     */
+    public UserDetails get(String subject, Function<String, UserDetails> loader) {
+        long now = System.nanoTime();
+        Entry entry = entries.get(subject);
+        if (entry != null && now - entry.expiresAtNanos < 0) {
+            hits.increment();
+            return entry.principal;
+        }
+        misses.increment();
+        long gen = generation.get();
+        UserDetails principal = loader.apply(subject);
+        if (principal != null && ttlNanos > 0 && generation.get() == gen) {
+            if (entries.size() >= maxSize) {
+                evict(now);
+            }
+            entries.put(subject, new Entry(principal, now + ttlNanos));
+        }
+        return principal;
+    }
+
+    /**
+     * 使某个用户的所有缓存条目失效。
+     */
+    public void invalidateUser(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        removeUser(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    removeUser(userId);
+                }
+            });
+        }
+    }
+
+    public void invalidate(String subject) {
+        generation.incrementAndGet();
+        entries.remove(subject);
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private void removeUser(Long userId) {
+        generation.incrementAndGet();
+        entries.values().removeIf(e -> e.principal instanceof UserDetailsImpl
+                && userId.equals(((UserDetailsImpl) e.principal).getId()));
+    }
+
+    // 先清过期条目，仍然超限时随机淘汰约十分之一
+    private void evict(long now) {
+        entries.values().removeIf(e -> now - e.expiresAtNanos >= 0);
+        int toRemove = entries.size() - maxSize + Math.max(1, maxSize / 10);
+        Iterator<Entry> it = entries.values().iterator();
+        while (toRemove > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+            toRemove--;
+        }
+        logger.debug("principal 缓存淘汰后剩余 {} 条", entries.size());
+    }
+}
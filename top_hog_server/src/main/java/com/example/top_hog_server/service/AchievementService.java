@@ -9,7 +9,6 @@ import com.example.top_hog_server.repository.UserAchievementRepository;
 import com.example.top_hog_server.security.services.UserDetailsImpl;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -37,6 +36,11 @@ public class AchievementService {
     @Autowired
     private MessageService messageService;
 
+    // 成就定义缓存：定义只由初始化接口或直接改库变更，过期后重新加载
+    private static final long DEFINITION_TTL_MS = 5 * 60 * 1000L;
+    private volatile List<Achievement> achievementDefinitions;
+    private volatile long definitionsLoadedAt;
+
     /**
      * 初始化默认成就 (通常在系统启动或通过管理接口调用)
      */
@@ -56,6 +60,7 @@ public class AchievementService {
                 new Achievement("得分机器", "累计获得10000分", "TOTAL_SCORE", 10000L, "DIAMONDS", 30));
 
         achievementRepository.saveAll(defaults);
+        achievementDefinitions = null;
         log.info("初始化默认成就完成");
     }
 
@@ -66,43 +71,75 @@ public class AchievementService {
      * @param type      成就类型 (GAMES_PLAYED, GAMES_WON, TOTAL_SCORE)
      * @param increment 增加的数值
      */
-    @Async
     @Transactional
     public void updateProgress(Long userId, String type, long increment) {
-        List<Achievement> achievements = achievementRepository.findByType(type);
-        if (achievements.isEmpty())
+        applyProgress(Map.of(userId, Map.of(type, increment)));
+    }
+
+    /**
+     * 批量更新成就进度（由 {@link TaskProgressService} 合并增量后调用）。
+     * 一次查询取出这批用户的全部成就进度，统一保存。
+     *
+     * @param increments 用户ID -> 成就类型 -> 增量
+     */
+    @Transactional
+    public void applyProgress(Map<Long, Map<String, Long>> increments) {
+        if (increments.isEmpty())
+            return;
+        Map<String, List<Achievement>> achievementsByType = getAchievementDefinitions().stream()
+                .collect(Collectors.groupingBy(Achievement::getType));
+        if (achievementsByType.isEmpty())
             return;
 
-        for (Achievement achievement : achievements) {
-            UserAchievement userAchievement = userAchievementRepository
-                    .findByUserIdAndAchievementId(userId, achievement.getId())
-                    .orElse(new UserAchievement(userId, achievement.getId()));
-
-            // 如果已经完成，跳过
-            if (userAchievement.getIsCompleted())
-                continue;
-
-            // 更新进度
-            long newValue = userAchievement.getCurrentValue() + increment;
-            userAchievement.setCurrentValue(newValue);
-            userAchievement.setUpdatedAt(LocalDateTime.now());
-
-            // 检查是否达成
-            if (newValue >= achievement.getTargetValue()) {
-                userAchievement.setIsCompleted(true);
-                userAchievement.setCompletedAt(LocalDateTime.now());
-
-                // 发送站内信通知
-                messageService.sendRewardNotification(
-                        userId,
-                        "成就达成: " + achievement.getName(),
-                        "恭喜您达成成就【" + achievement.getName() + "】，快去领取奖励吧！",
-                        null);
-
-                log.info("用户{}达成成就: {}", userId, achievement.getName());
-            }
+        // 用户ID -> 成就ID -> 进度
+        Map<Long, Map<Long, UserAchievement>> progressByUser = new HashMap<>();
+        for (UserAchievement progress : userAchievementRepository.findByUserIdIn(increments.keySet())) {
+            progressByUser.computeIfAbsent(progress.getUserId(), k -> new HashMap<>())
+                    .putIfAbsent(progress.getAchievementId(), progress);
+        }
+
+        List<UserAchievement> changed = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (Map.Entry<Long, Map<String, Long>> entry : increments.entrySet()) {
+            Long userId = entry.getKey();
+            Map<Long, UserAchievement> userProgress = progressByUser.computeIfAbsent(userId, k -> new HashMap<>());
+
+            entry.getValue().forEach((type, increment) -> {
+                for (Achievement achievement : achievementsByType.getOrDefault(type, Collections.emptyList())) {
+                    UserAchievement userAchievement = userProgress.computeIfAbsent(achievement.getId(),
+                            id -> new UserAchievement(userId, id));
+
+                    // 如果已经完成，跳过
+                    if (userAchievement.getIsCompleted())
+                        continue;
+
+                    // 更新进度
+                    long newValue = userAchievement.getCurrentValue() + increment;
+                    userAchievement.setCurrentValue(newValue);
+                    userAchievement.setUpdatedAt(now);
+
+                    // 检查是否达成
+                    if (newValue >= achievement.getTargetValue()) {
+                        userAchievement.setIsCompleted(true);
+                        userAchievement.setCompletedAt(now);
+
+                        // 发送站内信通知
+                        messageService.sendRewardNotification(
+                                userId,
+                                "成就达成: " + achievement.getName(),
+                                "恭喜您达成成就【" + achievement.getName() + "】，快去领取奖励吧！",
+                                null);
+
+                        log.info("用户{}达成成就: {}", userId, achievement.getName());
+                    }
+
+                    changed.add(userAchievement);
+                }
+            });
+        }
 
-            userAchievementRepository.save(userAchievement);
+        if (!changed.isEmpty()) {
+            userAchievementRepository.saveAll(changed);
         }
     }
 
@@ -114,7 +151,7 @@ public class AchievementService {
                 .getAuthentication().getPrincipal();
         Long userId = currentUser.getId();
 
-        List<Achievement> allAchievements = achievementRepository.findAllByOrderByDisplayOrderAsc();
+        List<Achievement> allAchievements = getAchievementDefinitions();
         List<UserAchievement> userProgress = userAchievementRepository.findByUserId(userId);
 
         Map<Long, UserAchievement> progressMap = userProgress.stream()
@@ -188,4 +225,18 @@ public class AchievementService {
 
         return result;
     }
+
+    /**
+     * 成就定义（内存缓存）
+     */
+    private List<Achievement> getAchievementDefinitions() {
+        List<Achievement> definitions = achievementDefinitions;
+        long now = System.currentTimeMillis();
+        if (definitions == null || now - definitionsLoadedAt > DEFINITION_TTL_MS) {
+            definitions = List.copyOf(achievementRepository.findAllByOrderByDisplayOrderAsc());
+            achievementDefinitions = definitions;
+            definitionsLoadedAt = now;
+        }
+        return definitions;
+    }
 }
@@ -9,6 +9,9 @@ import com.example.top_hog_server.repository.UserRepository;
 import com.example.top_hog_server.repository.UserBalanceRepository;
 import com.example.top_hog_server.repository.TransactionLogRepository;
 import com.example.top_hog_server.repository.OrderRepository;
+import com.example.top_hog_server.security.services.PrincipalCache;
+import com.example.top_hog_server.service.wallet.WalletCurrency;
+import com.example.top_hog_server.service.wallet.WalletLedger;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -37,6 +40,12 @@ public class AdminUserService {
     @Autowired
     private OrderRepository orderRepository;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @Autowired
+    private WalletLedger walletLedger;
+
     /**
      * 获取用户列表
      */
@@ -123,6 +132,7 @@ public class AdminUserService {
         // 实际应该添加专门的banned字段和banReason字段
         user.setVipStatus(-1);
         userRepository.save(user);
+        principalCache.invalidateUser(userId);
 
         log.info("用户被封禁: userId={}, reason={}", userId, reason);
     }
@@ -137,6 +147,7 @@ public class AdminUserService {
 
         user.setVipStatus(0);
         userRepository.save(user);
+        principalCache.invalidateUser(userId);
 
         log.info("用户被解封: userId={}", userId);
     }
@@ -146,56 +157,51 @@ public class AdminUserService {
      */
     @Transactional
     public void adjustBalance(Long userId, String currency, Long amount, String reason) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new BusinessException(ErrorCode.USER_NOT_FOUND, "用户不存在"));
+        if (!userRepository.existsById(userId)) {
+            throw new BusinessException(ErrorCode.USER_NOT_FOUND, "用户不存在");
+        }
 
-        // 获取或创建余额
-        UserBalance balance = userBalanceRepository.findById(userId)
-                .orElseGet(() -> {
-                    UserBalance newBalance = new UserBalance();
-                    newBalance.setUserId(userId);
-                    newBalance.setUser(user);
-                    return newBalance;
-                });
-
-        Long oldBalance;
-        Long newBalance;
-
-        if ("COINS".equals(currency)) {
-            oldBalance = balance.getCoins();
-            newBalance = oldBalance + amount;
-            if (newBalance < 0) {
-                throw new BusinessException(ErrorCode.INVALID_INPUT, "余额不足");
-            }
-            balance.setCoins(newBalance);
-        } else if ("DIAMONDS".equals(currency)) {
-            oldBalance = balance.getDiamonds();
-            newBalance = oldBalance + amount;
-            if (newBalance < 0) {
-                throw new BusinessException(ErrorCode.INVALID_INPUT, "余额不足");
-            }
-            balance.setDiamonds(newBalance);
-        } else {
+        WalletCurrency walletCurrency = WalletCurrency.parse(currency);
+        if (walletCurrency == null) {
             throw new BusinessException(ErrorCode.INVALID_INPUT, "无效的货币类型");
         }
 
-        userBalanceRepository.save(balance);
-
-        // 记录交易日志
-        TransactionLog txLog = new TransactionLog();
-        txLog.setUserId(userId);
-        txLog.setType(amount > 0 ? "REWARD" : "CONSUME");
-        txLog.setCurrency(currency);
-        txLog.setAmount(Math.abs(amount));
-        txLog.setBalanceBefore(oldBalance);
-        txLog.setBalanceAfter(newBalance);
-        txLog.setReason("GM操作:" + reason);
-        transactionLogRepository.save(txLog);
+        // 余额和交易日志由钱包原子更新
+        if (amount > 0) {
+            walletLedger.credit(userId, walletCurrency, amount, "REWARD", "GM操作:" + reason, null);
+        } else {
+            walletLedger.debit(userId, walletCurrency, -amount, "CONSUME", "GM操作:" + reason);
+        }
 
         log.info("GM调整用户余额: userId={}, currency={}, amount={}, reason={}",
                 userId, currency, amount, reason);
     }
 
+    /**
+     * 批量发放奖励(活动奖励)：每批用户一个事务，不存在的用户跳过
+     *
+     * @return 实际发放的用户数
+     */
+    public int grantBatch(List<Long> userIds, String currency, Long amount, String reason) {
+        WalletCurrency walletCurrency = WalletCurrency.parse(currency);
+        if (walletCurrency == null) {
+            throw new BusinessException(ErrorCode.INVALID_INPUT, "无效的货币类型");
+        }
+        if (amount == null || amount <= 0) {
+            throw new BusinessException(ErrorCode.INVALID_INPUT, "发放数量必须大于0");
+        }
+
+        Map<Long, Long> amounts = new HashMap<>();
+        for (Long userId : userIds) {
+            amounts.put(userId, amount);
+        }
+        int granted = walletLedger.grantBatch(amounts, walletCurrency, "REWARD", "GM操作:" + reason);
+
+        log.info("GM批量发放: users={}, granted={}, currency={}, amount={}, reason={}",
+                userIds.size(), granted, currency, amount, reason);
+        return granted;
+    }
+
     /**
      * 获取用户充值记录
      */
@@ -1,71 +1,76 @@
 package com.example.top_hog_server.service;
 
-import com.example.top_hog_server.model.GameHistory;
-import com.example.top_hog_server.model.Order;
-import com.example.top_hog_server.model.User;
-import com.example.top_hog_server.repository.GameHistoryRepository;
-import com.example.top_hog_server.repository.OrderRepository;
-import com.example.top_hog_server.repository.UserRepository;
+import com.example.top_hog_server.service.analytics.AnalyticsAggregator;
+import com.example.top_hog_server.service.analytics.DailyRollup;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * 数据分析服务
+ * <p>
+ * 指标由 {@link AnalyticsAggregator} 按天预先汇总，这里只合并查询区间内的汇总。
+ * 业务代码在登录、注册、支付成功时调用 record* 方法上报事件，对局数据由战绩写线程提供。
  */
 @Service
 @Slf4j
 public class AnalyticsService {
 
     @Autowired
-    private UserRepository userRepository;
+    private AnalyticsAggregator aggregator;
 
-    @Autowired
-    private GameHistoryRepository gameHistoryRepository;
+    // ========== 事件上报 ==========
 
-    @Autowired
-    private OrderRepository orderRepository;
+    public void recordLogin(Long userId) {
+        aggregator.recordLogin(userId);
+    }
+
+    public void recordRegistration(Long userId) {
+        aggregator.recordRegistration(userId);
+    }
+
+    public void recordOrderPaid(Long orderId, Long userId, BigDecimal amount, LocalDateTime createdAt) {
+        aggregator.recordOrderPaid(orderId, userId, amount, createdAt);
+    }
 
     /**
      * 获取核心指标
      */
     public Map<String, Object> getCoreMetrics(LocalDate date) {
-        LocalDateTime startOfDay = date.atStartOfDay();
-        LocalDateTime endOfDay = date.atTime(LocalTime.MAX);
+        DailyRollup day = aggregator.day(date);
 
         // DAU - 日活跃用户数
-        long dau = getDailyActiveUsers(startOfDay, endOfDay);
+        long dau = day.getDau();
 
         // MAU - 月活跃用户数
-        LocalDateTime monthStart = date.withDayOfMonth(1).atStartOfDay();
-        long mau = getMonthlyActiveUsers(monthStart, endOfDay);
+        long mau = aggregator.activeUsersBetween(date.withDayOfMonth(1), date).estimate();
 
         // 新增用户数
-        long newUsers = getNewUsers(startOfDay, endOfDay);
+        long newUsers = day.getNewUsers();
 
         // 留存率
         Map<String, Double> retention = getRetentionRate(date);
 
         // ARPU - 人均收入
-        BigDecimal arpu = getARPU(startOfDay, endOfDay, dau);
-
-        // 付费率
-        double payRate = getPayRate(startOfDay, endOfDay);
+        BigDecimal revenue = day.getRevenue();
+        BigDecimal arpu = dau == 0 ? BigDecimal.ZERO
+                : revenue.divide(BigDecimal.valueOf(dau), 2, RoundingMode.HALF_UP);
 
         // 付费用户数
-        long payingUsers = getPayingUsers(startOfDay, endOfDay);
+        long payingUsers = day.getPayingUsers();
+
+        // 付费率
+        double payRate = dau == 0 ? 0.0 : Math.round((double) payingUsers / dau * 10000.0) / 100.0;
 
         // ARPPU - 付费用户平均收入
-        BigDecimal arppu = getARPPU(startOfDay, endOfDay, payingUsers);
+        BigDecimal arppu = payingUsers == 0 ? BigDecimal.ZERO
+                : revenue.divide(BigDecimal.valueOf(payingUsers), 2, RoundingMode.HALF_UP);
 
         Map<String, Object> metrics = new HashMap<>();
         metrics.put("date", date);
@@ -85,32 +90,20 @@ public class AnalyticsService {
      * 获取用户行为分析
      */
     public Map<String, Object> getUserBehavior(LocalDate startDate, LocalDate endDate) {
-        LocalDateTime startTime = startDate.atStartOfDay();
-        LocalDateTime endTime = endDate.atTime(LocalTime.MAX);
-
-        // 活跃用户趋势
+        // 活跃用户趋势、新增用户趋势
         Map<LocalDate, Long> dailyActiveUsers = new LinkedHashMap<>();
-        LocalDate current = startDate;
-        while (!current.isAfter(endDate)) {
-            long dau = getDailyActiveUsers(current.atStartOfDay(), current.atTime(LocalTime.MAX));
-            dailyActiveUsers.put(current, dau);
-            current = current.plusDays(1);
-        }
-
-        // 新增用户趋势
         Map<LocalDate, Long> dailyNewUsers = new LinkedHashMap<>();
-        current = startDate;
-        while (!current.isAfter(endDate)) {
-            long newUsers = getNewUsers(current.atStartOfDay(), current.atTime(LocalTime.MAX));
-            dailyNewUsers.put(current, newUsers);
-            current = current.plusDays(1);
+        for (LocalDate current = startDate; !current.isAfter(endDate); current = current.plusDays(1)) {
+            DailyRollup day = aggregator.day(current);
+            dailyActiveUsers.put(current, day.getDau());
+            dailyNewUsers.put(current, day.getNewUsers());
         }
 
         // 用户游戏频率分布
-        Map<String, Long> gameFrequency = getUserGameFrequency(startTime, endTime);
+        Map<String, Long> gameFrequency = getUserGameFrequency(startDate, endDate);
 
         // 用户充值行为
-        Map<String, Object> rechargePattern = getUserRechargePattern(startTime, endTime);
+        Map<String, Object> rechargePattern = getUserRechargePattern(startDate, endDate);
 
         Map<String, Object> behavior = new HashMap<>();
         behavior.put("dailyActiveUsers", dailyActiveUsers);
@@ -125,26 +118,16 @@ public class AnalyticsService {
      * 获取游戏数据统计
      */
     public Map<String, Object> getGameData(LocalDate startDate, LocalDate endDate) {
-        LocalDateTime startTime = startDate.atStartOfDay();
-        LocalDateTime endTime = endDate.atTime(LocalTime.MAX);
-
-        List<GameHistory> history = gameHistoryRepository.findAll().stream()
-                .filter(h -> isInTimeRange(toLocalDateTime(h.getCreatedAt()), startTime, endTime))
-                .collect(Collectors.toList());
-
-        // 游戏场次统计
-        long totalGames = history.stream()
-                .map(GameHistory::getRoomId)
-                .distinct()
-                .count();
-
-        // 每日游戏场次
-        Map<LocalDate, Long> dailyGames = history.stream()
-                .collect(Collectors.groupingBy(
-                        h -> h.getCreatedAt().toLocalDateTime().toLocalDate(),
-                        Collectors.collectingAndThen(
-                                Collectors.mapping(GameHistory::getRoomId, Collectors.toSet()),
-                                s -> (long) s.size())));
+        // 游戏场次统计、每日游戏场次
+        long totalGames = 0;
+        Map<LocalDate, Long> dailyGames = new LinkedHashMap<>();
+        for (LocalDate current = startDate; !current.isAfter(endDate); current = current.plusDays(1)) {
+            long games = aggregator.day(current).getGames();
+            if (games > 0) {
+                dailyGames.put(current, games);
+                totalGames += games;
+            }
+        }
 
         // 平均游戏时长(简化计算)
         double avgDuration = 10.0; // 假设平均10分钟
@@ -153,8 +136,7 @@ public class AnalyticsService {
         Map<String, Long> gameTypePreference = new HashMap<>();
 
         // 胜率分布(简化:按排名统计)
-        Map<Integer, Long> rankDistribution = history.stream()
-                .collect(Collectors.groupingBy(GameHistory::getRank, Collectors.counting()));
+        Map<Integer, Long> rankDistribution = aggregator.rankCountsBetween(startDate, endDate);
 
         Map<String, Object> gameData = new HashMap<>();
         gameData.put("totalGames", totalGames);
@@ -188,146 +170,41 @@ public class AnalyticsService {
     // ========== 私有辅助方法 ==========
 
     /**
-     * 获取日活跃用户数
-     */
-    private long getDailyActiveUsers(LocalDateTime start, LocalDateTime end) {
-        return gameHistoryRepository.findAll().stream()
-                .filter(h -> isInTimeRange(toLocalDateTime(h.getCreatedAt()), start, end))
-                .map(GameHistory::getUserId)
-                .distinct()
-                .count();
-    }
-
-    /**
-     * 获取月活跃用户数
-     */
-    private long getMonthlyActiveUsers(LocalDateTime start, LocalDateTime end) {
-        return gameHistoryRepository.findAll().stream()
-                .filter(h -> isInTimeRange(toLocalDateTime(h.getCreatedAt()), start, end))
-                .map(GameHistory::getUserId)
-                .distinct()
-                .count();
-    }
-
-    /**
-     * 获取新增用户数
-     */
-    private long getNewUsers(LocalDateTime start, LocalDateTime end) {
-        return userRepository.findAll().stream()
-                .filter(u -> isInTimeRange(toLocalDateTime(u.getCreatedAt()), start, end))
-                .count();
-    }
-
-    /**
-     * 获取留存率
+     * 获取留存率：date 往前 N 天注册的用户在 date 当天回访的比例
      */
     private Map<String, Double> getRetentionRate(LocalDate date) {
-        // 简化实现:计算前一天注册用户的次日留存
-        LocalDate yesterday = date.minusDays(1);
-        LocalDateTime yesterdayStart = yesterday.atStartOfDay();
-        LocalDateTime yesterdayEnd = yesterday.atTime(LocalTime.MAX);
-
-        // 前一天注册的用户
-        List<Long> newUserIds = userRepository.findAll().stream()
-                .filter(u -> isInTimeRange(toLocalDateTime(u.getCreatedAt()), yesterdayStart, yesterdayEnd))
-                .map(User::getId)
-                .collect(Collectors.toList());
-
-        if (newUserIds.isEmpty()) {
-            Map<String, Double> retention = new HashMap<>();
-            retention.put("day1", 0.0);
-            return retention;
-        }
-
-        // 这些用户中今天活跃的
-        LocalDateTime todayStart = date.atStartOfDay();
-        LocalDateTime todayEnd = date.atTime(LocalTime.MAX);
-
-        long activeToday = gameHistoryRepository.findAll().stream()
-                .filter(h -> isInTimeRange(toLocalDateTime(h.getCreatedAt()), todayStart, todayEnd))
-                .map(GameHistory::getUserId)
-                .filter(newUserIds::contains)
-                .distinct()
-                .count();
-
-        double day1Retention = (double) activeToday / newUserIds.size() * 100;
-
         Map<String, Double> retention = new HashMap<>();
-        retention.put("day1", Math.round(day1Retention * 100.0) / 100.0);
-
+        for (int days : new int[] {1, 7, 30}) {
+            DailyRollup cohort = aggregator.day(date.minusDays(days));
+            long cohortSize = cohort.getNewUsers();
+            double rate = cohortSize == 0 ? 0.0 : (double) cohort.getRetained(days) / cohortSize * 100;
+            retention.put("day" + days, Math.round(rate * 100.0) / 100.0);
+        }
         return retention;
     }
 
-    /**
-     * 获取ARPU
-     */
-    private BigDecimal getARPU(LocalDateTime start, LocalDateTime end, long activeUsers) {
-        if (activeUsers == 0)
-            return BigDecimal.ZERO;
-
-        BigDecimal totalRevenue = orderRepository.findAll().stream()
-                .filter(o -> "PAID".equals(o.getStatus()))
-                .filter(o -> isInTimeRange(o.getCreatedAt(), start, end))
-                .map(Order::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        return totalRevenue.divide(BigDecimal.valueOf(activeUsers), 2, RoundingMode.HALF_UP);
-    }
-
-    /**
-     * 获取付费率
-     */
-    private double getPayRate(LocalDateTime start, LocalDateTime end) {
-        long activeUsers = getDailyActiveUsers(start, end);
-        if (activeUsers == 0)
-            return 0.0;
-
-        long payingUsers = getPayingUsers(start, end);
-
-        return Math.round((double) payingUsers / activeUsers * 10000.0) / 100.0;
-    }
-
-    /**
-     * 获取付费用户数
-     */
-    private long getPayingUsers(LocalDateTime start, LocalDateTime end) {
-        return orderRepository.findAll().stream()
-                .filter(o -> "PAID".equals(o.getStatus()))
-                .filter(o -> isInTimeRange(o.getCreatedAt(), start, end))
-                .map(Order::getUserId)
-                .distinct()
-                .count();
-    }
-
-    /**
-     * 获取ARPPU
-     */
-    private BigDecimal getARPPU(LocalDateTime start, LocalDateTime end, long payingUsers) {
-        if (payingUsers == 0)
-            return BigDecimal.ZERO;
-
-        BigDecimal totalRevenue = orderRepository.findAll().stream()
-                .filter(o -> "PAID".equals(o.getStatus()))
-                .filter(o -> isInTimeRange(o.getCreatedAt(), start, end))
-                .map(Order::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        return totalRevenue.divide(BigDecimal.valueOf(payingUsers), 2, RoundingMode.HALF_UP);
-    }
-
     /**
      * 获取用户游戏频率分布
      */
-    private Map<String, Long> getUserGameFrequency(LocalDateTime start, LocalDateTime end) {
-        Map<Long, Long> userGameCount = gameHistoryRepository.findAll().stream()
-                .filter(h -> isInTimeRange(toLocalDateTime(h.getCreatedAt()), start, end))
-                .collect(Collectors.groupingBy(GameHistory::getUserId, Collectors.counting()));
+    private Map<String, Long> getUserGameFrequency(LocalDate startDate, LocalDate endDate) {
+        long[] buckets = new long[4];
+        for (int count : aggregator.gamesPerUserBetween(startDate, endDate).values()) {
+            if (count <= 5) {
+                buckets[0]++;
+            } else if (count <= 10) {
+                buckets[1]++;
+            } else if (count <= 20) {
+                buckets[2]++;
+            } else {
+                buckets[3]++;
+            }
+        }
 
         Map<String, Long> frequency = new HashMap<>();
-        frequency.put("1-5局", userGameCount.values().stream().filter(c -> c >= 1 && c <= 5).count());
-        frequency.put("6-10局", userGameCount.values().stream().filter(c -> c >= 6 && c <= 10).count());
-        frequency.put("11-20局", userGameCount.values().stream().filter(c -> c >= 11 && c <= 20).count());
-        frequency.put("20局以上", userGameCount.values().stream().filter(c -> c > 20).count());
+        frequency.put("1-5局", buckets[0]);
+        frequency.put("6-10局", buckets[1]);
+        frequency.put("11-20局", buckets[2]);
+        frequency.put("20局以上", buckets[3]);
 
         return frequency;
     }
@@ -335,32 +212,23 @@ public class AnalyticsService {
     /**
      * 获取用户充值行为
      */
-    private Map<String, Object> getUserRechargePattern(LocalDateTime start, LocalDateTime end) {
-        List<Order> orders = orderRepository.findAll().stream()
-                .filter(o -> "PAID".equals(o.getStatus()))
-                .filter(o -> isInTimeRange(o.getCreatedAt(), start, end))
-                .collect(Collectors.toList());
-
-        // 首充用户数
-        long firstTimeRecharge = orders.stream()
-                .collect(Collectors.groupingBy(Order::getUserId, Collectors.counting()))
-                .values().stream()
-                .filter(count -> count == 1)
-                .count();
-
-        // 复购用户数
-        long repeatRecharge = orders.stream()
-                .collect(Collectors.groupingBy(Order::getUserId, Collectors.counting()))
-                .values().stream()
-                .filter(count -> count > 1)
-                .count();
+    private Map<String, Object> getUserRechargePattern(LocalDate startDate, LocalDate endDate) {
+        Map<Long, Integer> ordersPerUser = aggregator.paidOrdersPerUserBetween(startDate, endDate);
+
+        // 首充用户数、复购用户数
+        long firstTimeRecharge = ordersPerUser.values().stream().filter(count -> count == 1).count();
+        long repeatRecharge = ordersPerUser.values().stream().filter(count -> count > 1).count();
 
         // 平均充值金额
-        BigDecimal avgAmount = orders.isEmpty() ? BigDecimal.ZERO
-                : orders.stream()
-                        .map(Order::getAmount)
-                        .reduce(BigDecimal.ZERO, BigDecimal::add)
-                        .divide(BigDecimal.valueOf(orders.size()), 2, RoundingMode.HALF_UP);
+        BigDecimal revenue = BigDecimal.ZERO;
+        long orders = 0;
+        for (LocalDate current = startDate; !current.isAfter(endDate); current = current.plusDays(1)) {
+            DailyRollup day = aggregator.day(current);
+            revenue = revenue.add(day.getRevenue());
+            orders += day.getPaidOrders();
+        }
+        BigDecimal avgAmount = orders == 0 ? BigDecimal.ZERO
+                : revenue.divide(BigDecimal.valueOf(orders), 2, RoundingMode.HALF_UP);
 
         Map<String, Object> pattern = new HashMap<>();
         pattern.put("firstTimeRecharge", firstTimeRecharge);
@@ -369,20 +237,4 @@ public class AnalyticsService {
 
         return pattern;
     }
-
-    /**
-     * 判断时间是否在范围内
-     */
-    private boolean isInTimeRange(LocalDateTime time, LocalDateTime start, LocalDateTime end) {
-        if (time == null)
-            return false;
-        return !time.isBefore(start) && !time.isAfter(end);
-    }
-
-    /**
-     * Timestamp转LocalDateTime
-     */
-    private LocalDateTime toLocalDateTime(Timestamp timestamp) {
-        return timestamp != null ? timestamp.toLocalDateTime() : null;
-    }
 }
@@ -9,7 +9,6 @@ import com.example.top_hog_server.repository.UserDailyTaskRepository;
 import com.example.top_hog_server.security.services.UserDetailsImpl;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -35,6 +34,11 @@ public class DailyTaskService {
     @Autowired
     private PaymentService paymentService;
 
+    // 任务定义缓存：定义只由初始化接口或直接改库变更，过期后重新加载
+    private static final long DEFINITION_TTL_MS = 5 * 60 * 1000L;
+    private volatile List<DailyTask> taskDefinitions;
+    private volatile long definitionsLoadedAt;
+
     /**
      * 初始化默认每日任务
      */
@@ -52,6 +56,7 @@ public class DailyTaskService {
                 new DailyTask("分享快乐", "分享游戏给好友", "SHARE", 1L, "COINS", 100));
 
         dailyTaskRepository.saveAll(defaults);
+        taskDefinitions = null;
         log.info("初始化默认每日任务完成");
     }
 
@@ -64,7 +69,7 @@ public class DailyTaskService {
         Long userId = currentUser.getId();
         LocalDate today = LocalDate.now();
 
-        List<DailyTask> allTasks = dailyTaskRepository.findAllByOrderByDisplayOrderAsc();
+        List<DailyTask> allTasks = getTaskDefinitions();
 
         // 确保今日任务进度记录已存在
         ensureDailyTasksCreated(userId, today, allTasks);
@@ -102,39 +107,72 @@ public class DailyTaskService {
     /**
      * 更新每日任务进度
      */
-    @Async
     @Transactional
     public void updateProgress(Long userId, String type, long increment) {
-        LocalDate today = LocalDate.now();
-        List<DailyTask> tasks = dailyTaskRepository.findByType(type);
-        if (tasks.isEmpty())
+        applyProgress(LocalDate.now(), Map.of(userId, Map.of(type, increment)));
+    }
+
+    /**
+     * 批量更新每日任务进度（由 {@link TaskProgressService} 合并增量后调用）。
+     * 一次查询取出这批用户当天的全部进度记录，补齐缺失的记录后统一保存。
+     *
+     * @param date       任务日期
+     * @param increments 用户ID -> 任务类型 -> 增量
+     */
+    @Transactional
+    public void applyProgress(LocalDate date, Map<Long, Map<String, Long>> increments) {
+        List<DailyTask> allTasks = getTaskDefinitions();
+        if (allTasks.isEmpty() || increments.isEmpty())
             return;
+        Map<String, List<DailyTask>> tasksByType = allTasks.stream()
+                .collect(Collectors.groupingBy(DailyTask::getType));
+
+        // 用户ID -> 任务ID -> 进度
+        Map<Long, Map<Long, UserDailyTask>> progressByUser = new HashMap<>();
+        for (UserDailyTask progress : userDailyTaskRepository.findByTaskDateAndUserIdIn(date, increments.keySet())) {
+            progressByUser.computeIfAbsent(progress.getUserId(), k -> new HashMap<>())
+                    .putIfAbsent(progress.getTaskId(), progress);
+        }
 
-        // 确保记录存在
-        ensureDailyTasksCreated(userId, today, dailyTaskRepository.findAll());
+        Set<UserDailyTask> changed = Collections.newSetFromMap(new IdentityHashMap<>());
+        LocalDateTime now = LocalDateTime.now();
+        for (Map.Entry<Long, Map<String, Long>> entry : increments.entrySet()) {
+            Long userId = entry.getKey();
+            Map<Long, UserDailyTask> userProgress = progressByUser.computeIfAbsent(userId, k -> new HashMap<>());
+
+            // 确保记录存在
+            for (DailyTask task : allTasks) {
+                if (!userProgress.containsKey(task.getId())) {
+                    UserDailyTask progress = new UserDailyTask(userId, task.getId(), date);
+                    userProgress.put(task.getId(), progress);
+                    changed.add(progress);
+                }
+            }
 
-        for (DailyTask task : tasks) {
-            Optional<UserDailyTask> progressOpt = userDailyTaskRepository
-                    .findByUserIdAndTaskIdAndTaskDate(userId, task.getId(), today);
+            entry.getValue().forEach((type, increment) -> {
+                for (DailyTask task : tasksByType.getOrDefault(type, Collections.emptyList())) {
+                    UserDailyTask progress = userProgress.get(task.getId());
+                    if (progress.getIsCompleted())
+                        continue;
 
-            if (progressOpt.isPresent()) {
-                UserDailyTask progress = progressOpt.get();
-                if (progress.getIsCompleted())
-                    continue;
+                    long newValue = progress.getCurrentValue() + increment;
+                    // 对于LOGIN和SHARE类型,通常一次完成,但也支持累积逻辑
+                    progress.setCurrentValue(Math.min(newValue, task.getTargetValue())); // 不超过目标值
 
-                long newValue = progress.getCurrentValue() + increment;
-                // 对于LOGIN和SHARE类型,通常一次完成,但也支持累积逻辑
-                progress.setCurrentValue(Math.min(newValue, task.getTargetValue())); // 不超过目标值
+                    if (newValue >= task.getTargetValue()) {
+                        progress.setIsCompleted(true);
+                        progress.setCurrentValue(task.getTargetValue());
+                        log.info("用户{}完成每日任务: {}", userId, task.getName());
+                    }
 
-                if (newValue >= task.getTargetValue()) {
-                    progress.setIsCompleted(true);
-                    progress.setCurrentValue(task.getTargetValue());
-                    log.info("用户{}完成每日任务: {}", userId, task.getName());
+                    progress.setUpdatedAt(now);
+                    changed.add(progress);
                 }
+            });
+        }
 
-                progress.setUpdatedAt(LocalDateTime.now());
-                userDailyTaskRepository.save(progress);
-            }
+        if (!changed.isEmpty()) {
+            userDailyTaskRepository.saveAll(changed);
         }
     }
 
@@ -181,6 +219,20 @@ public class DailyTaskService {
         return result;
     }
 
+    /**
+     * 任务定义（内存缓存）
+     */
+    private List<DailyTask> getTaskDefinitions() {
+        List<DailyTask> definitions = taskDefinitions;
+        long now = System.currentTimeMillis();
+        if (definitions == null || now - definitionsLoadedAt > DEFINITION_TTL_MS) {
+            definitions = List.copyOf(dailyTaskRepository.findAllByOrderByDisplayOrderAsc());
+            taskDefinitions = definitions;
+            definitionsLoadedAt = now;
+        }
+        return definitions;
+    }
+
     /**
      * 确保用户今日的任务记录已创建
      */
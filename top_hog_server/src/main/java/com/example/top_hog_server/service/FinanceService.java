@@ -1,71 +1,79 @@
 package com.example.top_hog_server.service;
 
 import com.example.top_hog_server.model.Order;
-import com.example.top_hog_server.model.TransactionLog;
 import com.example.top_hog_server.repository.OrderRepository;
 import com.example.top_hog_server.repository.TransactionLogRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * 财务管理服务
+ * <p>
+ * 所有查询都按 created_at 区间走索引，汇总在数据库中完成；导出按键集分页逐页写出，内存占用与导出区间无关。
  */
 @Service
 @Slf4j
 public class FinanceService {
 
+    // 未指定时间范围时的边界
+    private static final LocalDateTime MIN_TIME = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime MAX_TIME = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+    // 导出每页行数
+    static final int EXPORT_PAGE_SIZE = 500;
+    // 对账时 IN 查询每批订单号数量
+    private static final int RECONCILE_CHUNK_SIZE = 500;
+    // 保留的定时对账结果天数
+    private static final int RECONCILIATION_HISTORY_DAYS = 31;
+
     @Autowired
     private OrderRepository orderRepository;
 
     @Autowired
     private TransactionLogRepository transactionLogRepository;
 
+    // 定时对账结果（日期 -> 对账结果）
+    private final NavigableMap<LocalDate, Map<String, Object>> reconciliationHistory = new ConcurrentSkipListMap<>();
+
     /**
      * 查询充值流水
      */
     public Map<String, Object> getRechargeRecords(LocalDateTime startTime, LocalDateTime endTime,
             String status, Integer page, Integer pageSize) {
-        List<Order> allOrders;
-
-        if (status != null && !status.isEmpty()) {
-            allOrders = orderRepository.findAll().stream()
-                    .filter(order -> order.getStatus().equals(status))
-                    .filter(order -> isInTimeRange(order.getCreatedAt(), startTime, endTime))
-                    .sorted((a, b) -> b.getCreatedAt().compareTo(a.getCreatedAt()))
-                    .collect(Collectors.toList());
-        } else {
-            allOrders = orderRepository.findAll().stream()
-                    .filter(order -> isInTimeRange(order.getCreatedAt(), startTime, endTime))
-                    .sorted((a, b) -> b.getCreatedAt().compareTo(a.getCreatedAt()))
-                    .collect(Collectors.toList());
-        }
+        LocalDateTime start = startTime != null ? startTime : MIN_TIME;
+        LocalDateTime end = endTime != null ? endTime : MAX_TIME;
+        PageRequest pageRequest = PageRequest.of(Math.max(page, 1) - 1, Math.max(pageSize, 1));
+        boolean filterStatus = status != null && !status.isEmpty();
 
-        // 分页
-        int start = (page - 1) * pageSize;
-        int end = Math.min(start + pageSize, allOrders.size());
-        List<Order> pagedOrders = allOrders.subList(start, end);
+        Page<Order> pagedOrders = filterStatus
+                ? orderRepository.findByStatusAndCreatedAtBetweenOrderByCreatedAtDesc(status, start, end, pageRequest)
+                : orderRepository.findByCreatedAtBetweenOrderByCreatedAtDesc(start, end, pageRequest);
 
         // 统计
-        BigDecimal totalAmount = allOrders.stream()
-                .filter(order -> "PAID".equals(order.getStatus()))
-                .map(Order::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        long totalCount = allOrders.size();
-        long paidCount = allOrders.stream()
-                .filter(order -> "PAID".equals(order.getStatus()))
-                .count();
+        StatusSummary summary = summarize(start, end);
+        long totalCount = filterStatus ? summary.count(status) : summary.totalCount();
+        BigDecimal totalAmount = !filterStatus || "PAID".equals(status) ? summary.amount("PAID") : BigDecimal.ZERO;
+        long paidCount = !filterStatus || "PAID".equals(status) ? summary.count("PAID") : 0;
 
         Map<String, Object> result = new HashMap<>();
-        result.put("records", pagedOrders);
+        result.put("records", pagedOrders.getContent());
         result.put("total", totalCount);
         result.put("page", page);
         result.put("pageSize", pageSize);
@@ -82,43 +90,28 @@ public class FinanceService {
         LocalDateTime startTime = startDate.atStartOfDay();
         LocalDateTime endTime = endDate.atTime(LocalTime.MAX);
 
-        List<Order> orders = orderRepository.findAll().stream()
-                .filter(order -> isInTimeRange(order.getCreatedAt(), startTime, endTime))
-                .collect(Collectors.toList());
+        StatusSummary summary = summarize(startTime, endTime);
 
         // 总收入
-        BigDecimal totalRevenue = orders.stream()
-                .filter(order -> "PAID".equals(order.getStatus()))
-                .map(Order::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        // 订单统计
-        long totalOrders = orders.size();
-        long paidOrders = orders.stream().filter(o -> "PAID".equals(o.getStatus())).count();
-        long pendingOrders = orders.stream().filter(o -> "PENDING".equals(o.getStatus())).count();
-        long failedOrders = orders.stream().filter(o -> "FAILED".equals(o.getStatus())).count();
-        long refundedOrders = orders.stream().filter(o -> "REFUNDED".equals(o.getStatus())).count();
+        BigDecimal totalRevenue = summary.amount("PAID");
 
         // 退款金额
-        BigDecimal refundAmount = orders.stream()
-                .filter(order -> "REFUNDED".equals(order.getStatus()))
-                .map(Order::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal refundAmount = summary.amount("REFUNDED");
 
         // 净收入
         BigDecimal netRevenue = totalRevenue.subtract(refundAmount);
 
         // 按日期分组统计
-        Map<LocalDate, BigDecimal> dailyRevenue = orders.stream()
-                .filter(order -> "PAID".equals(order.getStatus()))
-                .collect(Collectors.groupingBy(
-                        order -> order.getCreatedAt().toLocalDate(),
-                        Collectors.reducing(BigDecimal.ZERO, Order::getAmount, BigDecimal::add)));
+        Map<LocalDate, BigDecimal> dailyRevenue = new TreeMap<>();
+        for (Object[] row : orderRepository.sumPaidByDay(startTime, endTime)) {
+            dailyRevenue.put((LocalDate) row[0], (BigDecimal) row[1]);
+        }
 
         // 按商品类型统计
-        Map<String, Long> ordersByProduct = orders.stream()
-                .filter(order -> "PAID".equals(order.getStatus()))
-                .collect(Collectors.groupingBy(Order::getProductName, Collectors.counting()));
+        Map<String, Long> ordersByProduct = new HashMap<>();
+        for (Object[] row : orderRepository.countPaidByProduct(startTime, endTime)) {
+            ordersByProduct.put((String) row[0], ((Number) row[1]).longValue());
+        }
 
         Map<String, Object> report = new HashMap<>();
         report.put("startDate", startDate);
@@ -126,11 +119,11 @@ public class FinanceService {
         report.put("totalRevenue", totalRevenue);
         report.put("refundAmount", refundAmount);
         report.put("netRevenue", netRevenue);
-        report.put("totalOrders", totalOrders);
-        report.put("paidOrders", paidOrders);
-        report.put("pendingOrders", pendingOrders);
-        report.put("failedOrders", failedOrders);
-        report.put("refundedOrders", refundedOrders);
+        report.put("totalOrders", summary.totalCount());
+        report.put("paidOrders", summary.count("PAID"));
+        report.put("pendingOrders", summary.count("PENDING"));
+        report.put("failedOrders", summary.count("FAILED"));
+        report.put("refundedOrders", summary.count("REFUNDED"));
         report.put("dailyRevenue", dailyRevenue);
         report.put("ordersByProduct", ordersByProduct);
 
@@ -138,72 +131,77 @@ public class FinanceService {
     }
 
     /**
-     * 对账功能
+     * 对账功能：当日已支付订单必须有对应的充值流水（流水可能落在次日，按订单号匹配）
      */
     public Map<String, Object> reconciliation(LocalDate date) {
         LocalDateTime startTime = date.atStartOfDay();
         LocalDateTime endTime = date.atTime(LocalTime.MAX);
 
-        // 获取当日订单
-        List<Order> orders = orderRepository.findAll().stream()
-                .filter(order -> isInTimeRange(order.getCreatedAt(), startTime, endTime))
-                .collect(Collectors.toList());
+        StatusSummary summary = summarize(startTime, endTime);
 
-        // 获取当日交易记录
-        List<TransactionLog> transactions = transactionLogRepository.findAll().stream()
-                .filter(log -> isInTimeRange(log.getCreatedAt(), startTime, endTime))
-                .collect(Collectors.toList());
+        // 当日已支付订单号
+        List<String> paidOrderNos = orderRepository.findOrderNos("PAID", startTime, endTime);
 
-        // 订单金额统计
-        BigDecimal orderTotalAmount = orders.stream()
-                .filter(order -> "PAID".equals(order.getStatus()))
-                .map(Order::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        // 充值记录统计
-        List<TransactionLog> rechargeRecords = transactions.stream()
-                .filter(log -> "RECHARGE".equals(log.getType()))
-                .collect(Collectors.toList());
-
-        // 消费记录统计
-        List<TransactionLog> consumeRecords = transactions.stream()
-                .filter(log -> "CONSUME".equals(log.getType()))
-                .collect(Collectors.toList());
-
-        // 检查订单和交易记录是否匹配
+        // 检查订单和充值记录是否匹配
         List<String> unmatchedOrders = new ArrayList<>();
-        for (Order order : orders) {
-            if ("PAID".equals(order.getStatus())) {
-                boolean matched = rechargeRecords.stream()
-                        .anyMatch(log -> order.getOrderNo().equals(log.getOrderNo()));
-                if (!matched) {
-                    unmatchedOrders.add(order.getOrderNo());
+        for (int from = 0; from < paidOrderNos.size(); from += RECONCILE_CHUNK_SIZE) {
+            List<String> chunk = paidOrderNos.subList(from, Math.min(paidOrderNos.size(), from + RECONCILE_CHUNK_SIZE));
+            Set<String> matched = new HashSet<>(transactionLogRepository.findOrderNosWithType("RECHARGE", chunk));
+            for (String orderNo : chunk) {
+                if (!matched.contains(orderNo)) {
+                    unmatchedOrders.add(orderNo);
                 }
             }
         }
 
         Map<String, Object> result = new HashMap<>();
         result.put("date", date);
-        result.put("orderCount", orders.size());
-        result.put("paidOrderCount", orders.stream().filter(o -> "PAID".equals(o.getStatus())).count());
-        result.put("orderTotalAmount", orderTotalAmount);
-        result.put("rechargeRecordCount", rechargeRecords.size());
-        result.put("consumeRecordCount", consumeRecords.size());
+        result.put("orderCount", summary.totalCount());
+        result.put("paidOrderCount", summary.count("PAID"));
+        result.put("orderTotalAmount", summary.amount("PAID"));
+        result.put("rechargeRecordCount", transactionLogRepository.countByTypeAndCreatedAtBetween("RECHARGE", startTime, endTime));
+        result.put("consumeRecordCount", transactionLogRepository.countByTypeAndCreatedAtBetween("CONSUME", startTime, endTime));
         result.put("unmatchedOrders", unmatchedOrders);
         result.put("isBalanced", unmatchedOrders.isEmpty());
 
         return result;
     }
 
+    /**
+     * 每日定时对账：只处理前一天的数据，结果保留最近一个月
+     */
+    @Scheduled(cron = "${finance.reconciliation.cron:0 30 0 * * ?}")
+    public void reconcileYesterday() {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        try {
+            Map<String, Object> result = reconciliation(yesterday);
+            reconciliationHistory.put(yesterday, result);
+            while (reconciliationHistory.size() > RECONCILIATION_HISTORY_DAYS) {
+                reconciliationHistory.pollFirstEntry();
+            }
+            if (Boolean.TRUE.equals(result.get("isBalanced"))) {
+                log.info("{} 对账平衡: 已支付订单 {} 笔", yesterday, result.get("paidOrderCount"));
+            } else {
+                log.warn("{} 对账不平: 未匹配订单 {}", yesterday, result.get("unmatchedOrders"));
+            }
+        } catch (Exception e) {
+            log.error("{} 定时对账失败", yesterday, e);
+        }
+    }
+
+    /**
+     * 最近的定时对账结果，按日期倒序
+     */
+    public List<Map<String, Object>> getRecentReconciliations() {
+        return new ArrayList<>(reconciliationHistory.descendingMap().values());
+    }
+
     /**
      * 退款管理
      */
     public Map<String, Object> getRefundRecords(LocalDateTime startTime, LocalDateTime endTime) {
-        List<Order> refundOrders = orderRepository.findAll().stream()
-                .filter(order -> "REFUNDED".equals(order.getStatus()))
-                .filter(order -> isInTimeRange(order.getCreatedAt(), startTime, endTime))
-                .sorted((a, b) -> b.getUpdatedAt().compareTo(a.getUpdatedAt()))
-                .collect(Collectors.toList());
+        List<Order> refundOrders = orderRepository.findByStatusAndCreatedAtBetweenOrderByUpdatedAtDesc("REFUNDED",
+                startTime != null ? startTime : MIN_TIME, endTime != null ? endTime : MAX_TIME);
 
         BigDecimal totalRefundAmount = refundOrders.stream()
                 .map(Order::getAmount)
@@ -218,45 +216,109 @@ public class FinanceService {
     }
 
     /**
-     * 导出财务数据(CSV格式)
+     * 导出财务数据(CSV格式)，逐页查询并直接写入输出流
+     *
+     * @param gzip 是否以 gzip 压缩输出
+     * @return 导出的订单数
      */
-    public String exportFinanceData(LocalDate startDate, LocalDate endDate) {
-        LocalDateTime startTime = startDate.atStartOfDay();
+    public long exportFinanceData(LocalDate startDate, LocalDate endDate, OutputStream out, boolean gzip)
+            throws IOException {
         LocalDateTime endTime = endDate.atTime(LocalTime.MAX);
+        // 游标：上一页最后一条的 (createdAt, id)，初始为区间起点之前
+        LocalDateTime afterTime = startDate.atStartOfDay().minusNanos(1);
+        long afterId = Long.MAX_VALUE;
+        long rows = 0;
+
+        GZIPOutputStream gzipOut = gzip ? new GZIPOutputStream(out, 8192) : null;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(gzip ? gzipOut : out, StandardCharsets.UTF_8), 16384);
+        writer.write("订单号,用户ID,商品名称,金额,状态,支付方式,交易ID,创建时间,支付时间\n");
+
+        while (true) {
+            List<Order> page = orderRepository.findPageAfter(afterTime, afterId, endTime,
+                    PageRequest.of(0, EXPORT_PAGE_SIZE));
+            for (Order order : page) {
+                writeCsvRow(writer, order);
+            }
+            rows += page.size();
+            if (page.size() < EXPORT_PAGE_SIZE) {
+                break;
+            }
+            Order last = page.get(page.size() - 1);
+            afterTime = last.getCreatedAt();
+            afterId = last.getId();
+        }
 
-        List<Order> orders = orderRepository.findAll().stream()
-                .filter(order -> isInTimeRange(order.getCreatedAt(), startTime, endTime))
-                .sorted((a, b) -> a.getCreatedAt().compareTo(b.getCreatedAt()))
-                .collect(Collectors.toList());
-
-        StringBuilder csv = new StringBuilder();
-        csv.append("订单号,用户ID,商品名称,金额,状态,支付方式,交易ID,创建时间,支付时间\n");
-
-        for (Order order : orders) {
-            csv.append(order.getOrderNo()).append(",");
-            csv.append(order.getUserId()).append(",");
-            csv.append(order.getProductName()).append(",");
-            csv.append(order.getAmount()).append(",");
-            csv.append(order.getStatus()).append(",");
-            csv.append(order.getPaymentMethod()).append(",");
-            csv.append(order.getTransactionId() != null ? order.getTransactionId() : "").append(",");
-            csv.append(order.getCreatedAt()).append(",");
-            csv.append(order.getPaidAt() != null ? order.getPaidAt() : "").append("\n");
+        writer.flush();
+        if (gzipOut != null) {
+            gzipOut.finish();
         }
+        out.flush();
+        return rows;
+    }
 
-        return csv.toString();
+    private static void writeCsvRow(Writer writer, Order order) throws IOException {
+        writer.write(csv(order.getOrderNo()));
+        writer.write(',');
+        writer.write(csv(order.getUserId()));
+        writer.write(',');
+        writer.write(csv(order.getProductName()));
+        writer.write(',');
+        writer.write(csv(order.getAmount()));
+        writer.write(',');
+        writer.write(csv(order.getStatus()));
+        writer.write(',');
+        writer.write(csv(order.getPaymentMethod()));
+        writer.write(',');
+        writer.write(csv(order.getTransactionId()));
+        writer.write(',');
+        writer.write(csv(order.getCreatedAt()));
+        writer.write(',');
+        writer.write(csv(order.getPaidAt()));
+        writer.write('\n');
     }
 
     /**
-     * 判断时间是否在范围内
+     * CSV 字段转义：包含逗号、引号或换行时加引号
      */
-    private boolean isInTimeRange(LocalDateTime time, LocalDateTime start, LocalDateTime end) {
-        if (time == null)
-            return false;
-        if (start != null && time.isBefore(start))
-            return false;
-        if (end != null && time.isAfter(end))
-            return false;
-        return true;
+    static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+
+    private StatusSummary summarize(LocalDateTime start, LocalDateTime end) {
+        return new StatusSummary(orderRepository.summarizeByStatus(start, end));
+    }
+
+    /**
+     * 按订单状态汇总的数量和金额
+     */
+    private static final class StatusSummary {
+        private final Map<String, Long> counts = new HashMap<>();
+        private final Map<String, BigDecimal> amounts = new HashMap<>();
+
+        StatusSummary(List<Object[]> rows) {
+            for (Object[] row : rows) {
+                counts.put((String) row[0], ((Number) row[1]).longValue());
+                amounts.put((String) row[0], row[2] != null ? (BigDecimal) row[2] : BigDecimal.ZERO);
+            }
+        }
+
+        long count(String status) {
+            return counts.getOrDefault(status, 0L);
+        }
+
+        BigDecimal amount(String status) {
+            return amounts.getOrDefault(status, BigDecimal.ZERO);
+        }
+
+        long totalCount() {
+            return counts.values().stream().mapToLong(Long::longValue).sum();
+        }
     }
 }
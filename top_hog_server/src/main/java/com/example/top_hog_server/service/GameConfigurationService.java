@@ -3,20 +3,29 @@ package com.example.top_hog_server.service;
 import com.example.top_hog_server.model.GameConfiguration;
 import com.example.top_hog_server.model.GameType;
 import com.example.top_hog_server.repository.GameConfigurationRepository;
+import com.example.top_hog_server.service.config.GameConfigChangeListener;
+import com.example.top_hog_server.service.config.GameConfigSnapshot;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import jakarta.annotation.PostConstruct;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.UnaryOperator;
 
 /**
  * 游戏配置服务
  * 管理游戏配置的CRUD操作和初始化
+ * <p>
+ * 查询不访问数据库：所有配置保存在一份不可变的 {@link GameConfigSnapshot} 中，读取方无锁获取。
+ * 写操作落库后（在事务中则在提交后）基于当前快照复制出新版本并整体替换，再通知 {@link GameConfigChangeListener}。
  */
 @Service
 public class GameConfigurationService {
@@ -25,6 +34,10 @@ public class GameConfigurationService {
     
     private final GameConfigurationRepository configRepository;
     private final ObjectMapper objectMapper;
+    private final List<GameConfigChangeListener> listeners = new CopyOnWriteArrayList<>();
+    // 写操作之间串行，读取只读 volatile 引用
+    private final Object publishLock = new Object();
+    private volatile GameConfigSnapshot snapshot = GameConfigSnapshot.EMPTY;
     
     @Autowired
     public GameConfigurationService(GameConfigurationRepository configRepository) {
@@ -77,21 +90,36 @@ public class GameConfigurationService {
             logger.info("已创建TOP_HOG默认配置");
         }
         
+        reloadConfigurations();
         logger.info("游戏配置初始化完成");
     }
     
+    /**
+     * 当前生效的配置快照
+     */
+    public GameConfigSnapshot getSnapshot() {
+        return snapshot;
+    }
+    
+    /**
+     * 注册配置变更监听
+     */
+    public void addChangeListener(GameConfigChangeListener listener) {
+        listeners.add(listener);
+    }
+    
     /**
      * 获取所有启用的游戏配置
      */
     public List<GameConfiguration> getAllEnabledGames() {
-        return configRepository.findByEnabledTrueOrderByDisplayOrder();
+        return snapshot.getEnabledGames();
     }
     
     /**
      * 根据游戏类型代码获取配置
      */
     public Optional<GameConfiguration> getGameConfiguration(String gameTypeCode) {
-        return configRepository.findByGameTypeCode(gameTypeCode);
+        return snapshot.find(gameTypeCode);
     }
     
     /**
@@ -99,7 +127,9 @@ public class GameConfigurationService {
      */
     @Transactional
     public GameConfiguration saveOrUpdateConfiguration(GameConfiguration config) {
-        return configRepository.save(config);
+        GameConfiguration saved = configRepository.save(config);
+        publishAfterCommit(current -> current.with(saved, objectMapper));
+        return saved;
     }
     
     /**
@@ -111,7 +141,8 @@ public class GameConfigurationService {
         if (configOpt.isPresent()) {
             GameConfiguration config = configOpt.get();
             config.setEnabled(enabled);
-            configRepository.save(config);
+            GameConfiguration saved = configRepository.save(config);
+            publishAfterCommit(current -> current.with(saved, objectMapper));
             return true;
         }
         return false;
@@ -125,6 +156,7 @@ public class GameConfigurationService {
         Optional<GameConfiguration> configOpt = configRepository.findByGameTypeCode(gameTypeCode);
         if (configOpt.isPresent()) {
             configRepository.delete(configOpt.get());
+            publishAfterCommit(current -> current.without(gameTypeCode, objectMapper));
             return true;
         }
         return false;
@@ -132,11 +164,44 @@ public class GameConfigurationService {
     
     /**
      * 重新加载配置（用于热更新）
+     * 从数据库读取全部配置，生成新版本快照并替换
      */
     public void reloadConfigurations() {
         logger.info("重新加载游戏配置...");
-        // 触发缓存刷新或其他必要操作
-        List<GameConfiguration> configs = configRepository.findAll();
-        logger.info("已加载 {} 个游戏配置", configs.size());
+        publish(current -> GameConfigSnapshot.of(current.getVersion() + 1, configRepository.findAll(), objectMapper));
+        logger.info("已加载 {} 个游戏配置, 版本 {}", snapshot.getAll().size(), snapshot.getVersion());
+    }
+    
+    /**
+     * 在事务中调用时等提交后再替换快照，避免回滚的修改被读到
+     */
+    private void publishAfterCommit(UnaryOperator<GameConfigSnapshot> change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(change);
+                }
+            });
+        } else {
+            publish(change);
+        }
+    }
+    
+    private void publish(UnaryOperator<GameConfigSnapshot> change) {
+        GameConfigSnapshot previous;
+        GameConfigSnapshot current;
+        synchronized (publishLock) {
+            previous = snapshot;
+            current = change.apply(previous);
+            snapshot = current;
+        }
+        for (GameConfigChangeListener listener : listeners) {
+            try {
+                listener.onConfigurationChanged(previous, current);
+            } catch (Exception e) {
+                logger.error("游戏配置变更通知失败: {}", listener, e);
+            }
+        }
     }
 }
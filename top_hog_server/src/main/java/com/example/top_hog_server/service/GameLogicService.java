@@ -1,29 +1,43 @@
 // 文件位置: src/main/java/com/example/top_hog_server/service/GameLogicService.java
 package com.example.top_hog_server.service;
 
+import com.example.top_hog_server.handler.GameStateFrameEncoder;
 import com.example.top_hog_server.handler.GameWebSocketHandler;
+import com.example.top_hog_server.handler.RoomStateDeltaEncoder;
 // 确保这里导入了所有需要的模型类，比如 GameRoom, Player, Card, GameRow, GameState, User 等
 import com.example.top_hog_server.model.*;
 import com.example.top_hog_server.repository.UserRepository;
-import com.example.top_hog_server.repository.GameHistoryRepository;
+import com.example.top_hog_server.service.config.GameConfigSnapshot;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import com.example.top_hog_server.service.game.GameEngineFactory;
 import com.example.top_hog_server.service.game.GameEngine;
+import com.example.top_hog_server.service.game.PlayTipEngine;
+import com.example.top_hog_server.service.game.PlayTipSnapshot;
 import com.example.top_hog_server.service.game.TopHogGameEngine; // 临时引用以便强转调用特定方法，后续应完全抽象
+import com.example.top_hog_server.service.game.bot.BotDecisionService;
+import com.example.top_hog_server.service.game.bot.BotStrategy;
+import com.example.top_hog_server.service.history.GameHistoryWriter;
+import com.example.top_hog_server.service.journal.GameJournal;
+import com.example.top_hog_server.service.metrics.GameMetrics;
+import com.example.top_hog_server.service.replay.ReplayService;
+import com.example.top_hog_server.service.room.GameTimerWheel;
+import com.example.top_hog_server.service.room.RoomExecutor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Lazy;
-import org.springframework.scheduling.TaskScheduler;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
 
 import java.io.IOException;
+import java.sql.Timestamp;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
@@ -32,21 +46,53 @@ public class GameLogicService {
     private static final Logger logger = LoggerFactory.getLogger(GameLogicService.class);
     private final GameRoomService gameRoomService;
     private final UserRepository userRepository;
-    private final GameHistoryRepository gameHistoryRepository;
+    private final GameHistoryWriter gameHistoryWriter;
+    // 内存排行榜，对局结束时增量更新
+    // 数据分析日汇总
+    // 用户累计战绩
+    // 成就/每日任务进度（内存合并后批量写库）
+    private final TaskProgressService taskProgressService;
     // 处理WebSocket消息发送
     private final GameWebSocketHandler gameWebSocketHandler;
-    // 用于安排定时任务，比如玩家选择超时
-    private final TaskScheduler taskScheduler;
-    // 存储玩家选择的定时器
-    private final Map<String, ScheduledFuture<?>> choiceTimers = new ConcurrentHashMap<>();
-    private final Map<String, Lock> roomLocks = new ConcurrentHashMap<>();
+    // 游戏计时器（时间轮）：选择超时、机器人出牌延迟、回合切换和房间销毁检查，按 (房间, key) 登记
+    private final GameTimerWheel gameTimerWheel;
     private final BotProfileService botProfileService;
     private final GameEngineFactory gameEngineFactory; // 注入工厂
+    // 房间命令执行器：保证同一房间内的逻辑串行执行（锁模式或 Actor 模式）
+    private final RoomExecutor roomExecutor;
+    // gameStateUpdate 广播帧编码器
+    private final GameStateFrameEncoder gameStateFrameEncoder;
+    // roomPatch 增量状态编码器
+    private final RoomStateDeltaEncoder roomStateDeltaEncoder;
+    // 出牌提示搜索引擎
+    private final PlayTipEngine playTipEngine;
+    // 机器人/托管出牌策略
+    private final BotDecisionService botDecisionService;
+    // 游戏配置（无锁快照），房间在开局和每轮开始时采用最新版本
+    private final GameConfigurationService gameConfigurationService;
+    // 热路径耗时指标（出牌、结算、广播、出牌提示、保存战绩）
+    private final GameMetrics gameMetrics;
+    // 进行中牌局的预写日志：发牌/每手结算后写快照，出牌写事件，重启后据此恢复房间
+    private final GameJournal gameJournal;
+    // 对局回放：开局生成洗牌种子，记录出牌和选列，游戏结束时归档
+    private final ReplayService replayService;
+    // 正在房间锁之外决策的自动出牌玩家（sessionId），防止重复提交
+    private final Set<String> pendingBotDecisions = ConcurrentHashMap.newKeySet();
+    // 当前线程是否已在记录一次结算耗时（同一轮后续牌内联结算时不重复记录）
+    private final ThreadLocal<Boolean> timingTrick = ThreadLocal.withInitial(() -> false);
 
     // 从配置文件读取玩家选择超时时间，默认30秒
     @Value("${game.playerChoice.timeoutMs:30000}")
     private long playerChoiceTimeoutMs;
 
+    // 计时器 key：同一房间同一 key 只保留一个计时器
+    private static final String BOT_TURN_TIMER = "bot-turn";
+    private static final String NEXT_ROUND_TIMER = "next-round";
+    private static final String ROOM_DESTRUCTION_TIMER = "destroy-if-empty";
+    private static final String CHOICE_TIMER_PREFIX = "choice:";
+    // 从日志恢复的房间等待玩家重连的时间，单人（其余为机器人）房间超时无人重连时销毁
+    private static final long RECOVERY_REJOIN_GRACE_MS = 60000;
+
     // 移除静态代码块和 INITIAL_FULL_DECK，移至 TopHogGameEngine
 
     // 自动注入依赖的服务
@@ -54,23 +100,39 @@ public class GameLogicService {
     @Autowired
     public GameLogicService(GameRoomService gameRoomService,
             UserRepository userRepository,
-            GameHistoryRepository gameHistoryRepository,
+            GameHistoryWriter gameHistoryWriter,
+            TaskProgressService taskProgressService,
             @Lazy GameWebSocketHandler gameWebSocketHandler,
-            TaskScheduler taskScheduler,
+            GameTimerWheel gameTimerWheel,
             BotProfileService botProfileService,
-            GameEngineFactory gameEngineFactory) {
+            GameEngineFactory gameEngineFactory,
+            RoomExecutor roomExecutor,
+            GameStateFrameEncoder gameStateFrameEncoder,
+            RoomStateDeltaEncoder roomStateDeltaEncoder,
+            PlayTipEngine playTipEngine,
+            BotDecisionService botDecisionService,
+            GameConfigurationService gameConfigurationService,
+            GameMetrics gameMetrics,
+            GameJournal gameJournal,
+            ReplayService replayService) {
         this.gameRoomService = gameRoomService;
         this.userRepository = userRepository;
-        this.gameHistoryRepository = gameHistoryRepository;
+        this.gameHistoryWriter = gameHistoryWriter;
+        this.taskProgressService = taskProgressService;
         this.gameWebSocketHandler = gameWebSocketHandler;
-        this.taskScheduler = taskScheduler;
+        this.gameTimerWheel = gameTimerWheel;
         this.botProfileService = botProfileService;
         this.gameEngineFactory = gameEngineFactory;
-    }
-
-    // 获取指定房间的锁，如果不存在则创建一个新的
-    private Lock getRoomLock(String roomId) {
-        return roomLocks.computeIfAbsent(roomId, k -> new ReentrantLock());
+        this.roomExecutor = roomExecutor;
+        this.gameStateFrameEncoder = gameStateFrameEncoder;
+        this.roomStateDeltaEncoder = roomStateDeltaEncoder;
+        this.playTipEngine = playTipEngine;
+        this.botDecisionService = botDecisionService;
+        this.gameConfigurationService = gameConfigurationService;
+        this.gameMetrics = gameMetrics;
+        this.gameJournal = gameJournal;
+        this.replayService = replayService;
+        gameConfigurationService.addChangeListener(this::onGameConfigurationChanged);
     }
 
     // 向单个用户会话发送错误消息
@@ -117,10 +179,27 @@ public class GameLogicService {
 
     // 向指定房间内的所有玩家广播当前游戏状态
     private void broadcastGameState(String roomId, String message, GameRoom room) {
+        gameMetrics.getBroadcastTimer().record(() -> broadcastGameStateInternal(roomId, message, room));
+    }
+
+    private void broadcastGameStateInternal(String roomId, String message, GameRoom room) {
         if (room == null) {
             logger.warn("尝试为roomId {} 广播游戏状态，但room对象为null。", roomId);
             return;
         }
+        // 玩家数、游戏状态的变化都会经过这里，顺带更新大厅索引
+        gameRoomService.refreshLobbyIndex(room);
+
+        // 每次状态变更递增版本号并生成补丁；公共部分只序列化一次，各玩家只额外序列化自己的私有部分
+        RoomStateDeltaEncoder.RoomDelta delta;
+        try {
+            delta = roomStateDeltaEncoder.encode(room, message);
+        } catch (IOException e) {
+            logger.error("生成房间 {} 的状态补丁失败", roomId, e);
+            delta = null;
+        }
+        // 完整快照只在有会话需要时才编码（旧客户端、首次加入、重连或出现版本缺口）
+        GameStateFrameEncoder.GameStateFrames frames = null;
 
         // 遍历房间中的所有玩家（会话），并发送个性化的状态
         for (String sessionId : room.getPlayers().keySet()) {
@@ -134,22 +213,28 @@ public class GameLogicService {
                 continue;
             }
 
-            // 构建个性化载荷
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("type", "gameStateUpdate");
-            payload.put("message", message);
-
-            // 使用 GameRoomDTO 过滤数据
-            String userIdStr = p.getUserId() != null ? String.valueOf(p.getUserId()) : null;
-
-            com.example.top_hog_server.payload.dto.response.GameRoomDTO dto = com.example.top_hog_server.payload.dto.response.GameRoomDTO
-                    .from(room, userIdStr);
-            payload.put("roomState", dto);
-
             WebSocketSession session = gameWebSocketHandler.getSessionById(sessionId);
+            if (session == null) {
+                continue;
+            }
             try {
-                gameWebSocketHandler.sendMessageToSession(session, payload);
+                WebSocketMessage<?> frame;
+                // 出站队列里还有没发出去的状态帧时改发完整快照，直接取代积压的帧
+                boolean snapshot = delta == null || !delta.appliesTo(session)
+                        || gameWebSocketHandler.hasPendingStateFrame(session);
+                if (!snapshot) {
+                    frame = delta.frameFor(session);
+                } else {
+                    if (frames == null) {
+                        frames = gameStateFrameEncoder.encode(room, message);
+                    }
+                    frame = frames.frameFor(p, session);
+                }
+                gameWebSocketHandler.sendStateFrame(session, frame, snapshot);
+                RoomStateDeltaEncoder.markSent(session, room.getStateVersion());
             } catch (IOException e) {
+                // 客户端可能缺失了这一版本，下次改发完整快照
+                RoomStateDeltaEncoder.markSent(session, null);
                 logger.error("Error sending state to session {}", sessionId, e);
             }
         }
@@ -157,22 +242,44 @@ public class GameLogicService {
         // 异步触发托管玩家自动出牌
         // 当游戏状态为PLAYING时,检查是否有托管玩家需要自动出牌
         if (room.getGameState() == GameState.PLAYING) {
-            // 使用异步任务避免阻塞当前线程
-            taskScheduler.schedule(() -> {
-                Lock roomLock = getRoomLock(roomId);
-                roomLock.lock();
-                try {
+            // 使用异步任务避免阻塞当前线程；500ms 内的多次广播合并为一次检查
+            gameTimerWheel.scheduleIfAbsent(roomId, BOT_TURN_TIMER, 500, () -> {
+                roomExecutor.execute(roomId, () -> {
                     GameRoom currentRoom = gameRoomService.getRoom(roomId);
                     if (currentRoom != null && currentRoom.getGameState() == GameState.PLAYING) {
                         processBotTurnsAndCheckTurnCompletion(currentRoom);
                     }
-                } finally {
-                    roomLock.unlock();
-                }
-            }, java.time.Instant.now().plusMillis(500)); // 使用Instant避免过时警告
+                });
+            });
         }
     }
 
+    /**
+     * 客户端报告状态版本缺口（或无法应用补丁）时，向其单独发送完整快照。
+     */
+    public void resyncRoomState(String roomId, WebSocketSession session) {
+        GameRoom room = gameRoomService.getRoom(roomId);
+        if (room == null) {
+            sendErrorToUserSession(session, roomId, "房间不存在。");
+            return;
+        }
+        roomExecutor.execute(roomId, () -> {
+            Player p = room.getPlayers().get(session.getId());
+            if (p == null) {
+                sendErrorToUserSession(session, roomId, "您不在该房间中。");
+                return;
+            }
+            try {
+                GameStateFrameEncoder.GameStateFrames frames = gameStateFrameEncoder.encode(room, "状态已同步。");
+                gameWebSocketHandler.sendStateFrame(session, frames.frameFor(p, session), true);
+                RoomStateDeltaEncoder.markSent(session, room.getStateVersion());
+            } catch (IOException e) {
+                RoomStateDeltaEncoder.markSent(session, null);
+                logger.error("向会话 {} 重新同步房间 {} 状态失败", session.getId(), roomId, e);
+            }
+        });
+    }
+
     /**
      * 将游戏重置为 WAITING 状态，并将所有点击了“再来一局”的玩家设置为 Ready 状态。
      * 这满足了需求：“需要2个都可以进入当前房间的时候，都是准备状态”。
@@ -184,9 +291,7 @@ public class GameLogicService {
             return;
         }
 
-        Lock roomLock = getRoomLock(roomId);
-        roomLock.lock();
-        try {
+        roomExecutor.execute(roomId, () -> {
             if (room.getGameState() != GameState.GAME_OVER) {
                 sendErrorToRoom(roomId, "只有在游戏结束时才能重置到等待状态。");
                 return;
@@ -219,9 +324,7 @@ public class GameLogicService {
 
             broadcastGameState(roomId, "全员已同意再来一局!游戏已重置,所有玩家已进入准备状态。房主可以开始游戏。", room);
 
-        } finally {
-            roomLock.unlock();
-        }
+        });
     }
 
     // 开始新游戏（或一局游戏结束后的“再来一局”）
@@ -233,9 +336,7 @@ public class GameLogicService {
         }
 
         // 获取房间锁，开始操作
-        Lock roomLock = getRoomLock(roomId);
-        roomLock.lock();
-        try {
+        roomExecutor.execute(roomId, () -> {
             // 检查游戏状态是否允许开始新游戏
             if (room.getGameState() != GameState.WAITING && room.getGameState() != GameState.GAME_OVER) {
                 sendErrorToRoom(roomId, "游戏不处于可开始新游戏的状态 (当前: " + room.getGameState() + ")。");
@@ -278,12 +379,16 @@ public class GameLogicService {
             // 获取对应的游戏引擎
             GameEngine engine = gameEngineFactory.getEngine(room.getGameType());
 
+            applyLatestConfiguration(room);
+            // 生成本局的洗牌种子并开始记录回放
+            replayService.beginGame(room);
             // 调用引擎初始化游戏（发牌、洗牌、初始牌列等）
             engine.initializeGame(room);
 
             // 初始化手牌（引擎可能在initializeGame里做了，也可能分开，这里假设TopHogEngine的initializeGame只负责公共区域）
             // 修正：TopHogGameEngine.startNewRound 负责发手牌。
             engine.startNewRound(room);
+            recordReplay(room, log -> log.roundDealt(room.getPlayers().values()));
 
             logger.info("房间 {} 新游戏初始化完成。", roomId);
 
@@ -291,14 +396,12 @@ public class GameLogicService {
             room.setCurrentTurnNumber(1);
             // 设置游戏状态为“进行中”
             room.setGameState(GameState.PLAYING);
+            gameJournal.checkpoint(room);
             broadcastGameState(roomId, "新游戏开始！第 1 轮，请出牌。", room);
 
             processBotTurnsAndCheckTurnCompletion(room);
 
-        } finally {
-            // 释放房间锁
-            roomLock.unlock();
-        }
+        });
     }
 
     // 开始新一轮（当上一轮10张牌出完后）
@@ -310,6 +413,7 @@ public class GameLogicService {
             player.resetForNewRound();
         }
 
+        applyLatestConfiguration(room);
         GameEngine engine = gameEngineFactory.getEngine(room.getGameType());
         engine.startNewRound(room);
 
@@ -321,11 +425,13 @@ public class GameLogicService {
                 gameOverMsg += " 赢家: " + winner.getDisplayName();
                 room.setWinnerDisplayName(winner.getDisplayName());
             }
+            gameJournal.checkpoint(room);
             broadcastGameState(room.getRoomId(), gameOverMsg, room);
             saveGameHistory(room);
             return;
         }
 
+        recordReplay(room, log -> log.roundDealt(room.getPlayers().values()));
         logger.info("房间 {} 新一轮准备就绪。", room.getRoomId());
 
         // 清空上一轮的出牌记录
@@ -334,10 +440,48 @@ public class GameLogicService {
         room.setCurrentTurnNumber(1);
         // 设置游戏状态为进行中
         room.setGameState(GameState.PLAYING);
+        gameJournal.checkpoint(room);
         broadcastGameState(room.getRoomId(), "新一轮开始！第 1 次出牌。", room);
         processBotTurnsAndCheckTurnCompletion(room);
     }
 
+    /**
+     * 在轮次边界采用最新的游戏配置，配置版本未变时不做任何事。
+     * 调用方需持有房间的执行上下文；进行中的一轮不受配置变更影响。
+     */
+    private void applyLatestConfiguration(GameRoom room) {
+        GameConfigSnapshot config = gameConfigurationService.getSnapshot();
+        if (room.getConfigVersion() == config.getVersion()) {
+            return;
+        }
+        String gameTypeCode = room.getGameType().getCode();
+        room.setPlayerChoiceTimeoutMs(
+                config.getLongSetting(gameTypeCode, "playerChoiceTimeoutMs", playerChoiceTimeoutMs));
+        if (room.getConfigVersion() != 0) {
+            logger.info("房间 {} 采用游戏配置版本 {} (原版本 {})。", room.getRoomId(), config.getVersion(),
+                    room.getConfigVersion());
+        }
+        room.setConfigVersion(config.getVersion());
+    }
+
+    // 选择牌列的超时时间：房间未采用过配置时使用 game.playerChoice.timeoutMs
+    private long choiceTimeoutFor(GameRoom room) {
+        return room.getPlayerChoiceTimeoutMs() > 0 ? room.getPlayerChoiceTimeoutMs() : playerChoiceTimeoutMs;
+    }
+
+    // 配置变更：未开局的房间立即采用，进行中的房间等到下一轮开始
+    private void onGameConfigurationChanged(GameConfigSnapshot previous, GameConfigSnapshot current) {
+        int deferred = 0;
+        for (GameRoom room : gameRoomService.getAllActiveRoomsInMemory()) {
+            if (room.getGameState() == GameState.WAITING) {
+                roomExecutor.execute(room.getRoomId(), () -> applyLatestConfiguration(room));
+            } else {
+                deferred++;
+            }
+        }
+        logger.info("游戏配置已更新到版本 {}，{} 个进行中的房间将在下一轮开始时生效。", current.getVersion(), deferred);
+    }
+
     // 处理玩家主动请求离开房间 (HTTP/API)
     public void playerRequestsLeave(String roomId, Long userId) {
         GameRoom room = gameRoomService.getRoom(roomId);
@@ -345,9 +489,7 @@ public class GameLogicService {
             return;
         }
 
-        Lock roomLock = getRoomLock(roomId);
-        roomLock.lock();
-        try {
+        roomExecutor.execute(roomId, () -> {
             // 查找玩家
             String sessionIdToRemove = null;
             Player leavingPlayer = null;
@@ -377,7 +519,6 @@ public class GameLogicService {
 
                     // 销毁房间
                     gameRoomService.removeRoom(roomId);
-                    roomLocks.remove(roomId);
                     return;
                 }
 
@@ -388,15 +529,14 @@ public class GameLogicService {
                 // 执行移除
                 performPlayerRemoval(room, sessionIdToRemove, leavingPlayer);
             }
-        } finally {
-            roomLock.unlock();
-        }
+        });
     }
 
     // 执行实际的移除逻辑 (提取为公共方法)
     private void performPlayerRemoval(GameRoom room, String sessionId, Player player) {
         logger.info("将玩家 {} 从房间 {} 中移除。", player.getDisplayName(), room.getRoomId());
         room.getPlayers().remove(sessionId);
+        recordReplay(room, log -> log.playerLeft(player));
         room.getPlayedCardsThisTurn().remove(sessionId);
         room.getPlayersRequestedNewGame().remove(sessionId);
         if (room.getAllPlayerHandsForAI() != null) {
@@ -407,7 +547,6 @@ public class GameLogicService {
         if (room.getPlayers().isEmpty()) {
             logger.info("房间 {} 已空，将被移除。", room.getRoomId());
             gameRoomService.removeRoom(room.getRoomId());
-            roomLocks.remove(room.getRoomId());
             return;
         }
 
@@ -417,8 +556,10 @@ public class GameLogicService {
         if (!hasHumanPlayers) {
             logger.info("房间 {} 已无人类玩家，将被移除。", room.getRoomId());
             gameRoomService.removeRoom(room.getRoomId());
-            roomLocks.remove(room.getRoomId());
         } else {
+            if (GameJournal.isInProgress(room.getGameState())) {
+                gameJournal.checkpoint(room);
+            }
             broadcastGameState(room.getRoomId(), player.getDisplayName() + " 已离开房间。", room);
         }
     }
@@ -430,9 +571,7 @@ public class GameLogicService {
             // 房间可能已经被清理了，这在断线时很常见，不做处理
             return;
         }
-        Lock roomLock = getRoomLock(roomId);
-        roomLock.lock();
-        try {
+        roomExecutor.execute(roomId, () -> {
             Player leavingPlayer = room.getPlayers().get(webSocketSessionId);
             String logPlayerName = (leavingPlayer != null && leavingPlayer.getDisplayName() != null)
                     ? leavingPlayer.getDisplayName()
@@ -490,9 +629,7 @@ public class GameLogicService {
                 logger.debug("玩家离开处理：在房间 {} 中未找到会话ID {} 对应的玩家 (用户 {})。可能已移除。",
                         roomId, webSocketSessionId, userId);
             }
-        } finally {
-            roomLock.unlock();
-        }
+        });
     }
 
     public void playerPlaysCard(String roomId, String sessionId, Long userIdentifier, int cardNumber) {
@@ -515,9 +652,7 @@ public class GameLogicService {
             return;
         }
 
-        Lock roomLock = getRoomLock(roomId);
-        roomLock.lock();
-        try {
+        roomExecutor.execute(roomId, gameMetrics.getPlayCardTimer().wrap(() -> {
             String sessionId = webSocketSession != null ? webSocketSession.getId() : null;
             if (sessionId == null) {
                 // 尝试在内部调用时查找会话，如果会话为 null，但我们需要识别玩家
@@ -563,14 +698,14 @@ public class GameLogicService {
                 room.getAllPlayerHandsForAI().get(player.getSessionId())
                         .removeIf(c -> c.getNumber() == cardToPlay.getNumber());
             }
+            gameJournal.cardPlayed(room, player, cardToPlay);
+            recordReplay(room, log -> log.cardPlayed(player, cardToPlay));
 
             broadcastGameState(roomId, player.getDisplayName() + " 已出牌。", room);
             // 检查是否所有人都出牌了
             processBotTurnsAndCheckTurnCompletion(room);
 
-        } finally {
-            roomLock.unlock();
-        }
+        }));
     }
 
     // 尝试为托管/机器人玩家出牌，并检查本回合是否已准备好进行处理（即所有人都已出牌）
@@ -630,9 +765,10 @@ public class GameLogicService {
             if (shouldAutoPlay && !hasPlayed && hasHand) {
                 logger.info("为玩家 {} (Robot: {}, Trustee: {}) 自动出牌。",
                         player.getDisplayName(), player.isRobot(), player.isTrustee());
-                // 调用AI为托管玩家出牌
-                aiPlayCardForTrustee(player, room);
-                botsPlayed = true;
+                // 调用AI为托管玩家出牌；耗时策略在房间锁之外决策，完成后再回到本方法
+                if (aiPlayCardForTrustee(player, room)) {
+                    botsPlayed = true;
+                }
             } else if (shouldAutoPlay && !hasPlayed && !hasHand) {
                 logger.warn("自动出牌玩家 {} (Robot: {}, Trustee: {}) 尚未出牌但手中无牌！可能状态异常。",
                         player.getDisplayName(), player.isRobot(), player.isTrustee());
@@ -670,9 +806,7 @@ public class GameLogicService {
             return;
         }
 
-        Lock roomLock = getRoomLock(roomId);
-        roomLock.lock();
-        try {
+        roomExecutor.execute(roomId, () -> {
             List<BotProfileService.BotProfile> profiles = botProfileService.getRandomBotProfiles(botCount);
             for (int i = 0; i < botCount; i++) {
                 if (room.getPlayers().size() >= room.getMaxPlayers()) {
@@ -704,34 +838,60 @@ public class GameLogicService {
             }
             // Broadcast the update so the frontend sees the new bot immediately
             broadcastGameState(roomId, "Added " + botCount + " bots to the room.", room);
-        } finally {
-            roomLock.unlock();
-        }
+        });
     }
 
-    // AI为托管玩家选择并打出一张牌（简单策略：出手中最小的牌）
-    private void aiPlayCardForTrustee(Player trusteePlayer, GameRoom room) {
+    // AI为托管玩家选择并打出一张牌，返回是否已立即出牌（策略见 BotDecisionService）
+    private boolean aiPlayCardForTrustee(Player trusteePlayer, GameRoom room) {
         if (trusteePlayer == null) {
             logger.error("aiPlayCardForTrustee called with null player.");
-            return;
+            return false;
         }
         if (trusteePlayer.getHand() == null || trusteePlayer.getHand().isEmpty()) {
             logger.warn("托管玩家 {} (session: {}) 在房间 {} 手中无牌，无法自动出牌。",
                     trusteePlayer.getDisplayName(), trusteePlayer.getSessionId(), room.getRoomId());
-            return;
-        }
-        // 托管AI出牌策略：调用 Engine
-        GameEngine engine = gameEngineFactory.getEngine(room.getGameType());
-        Card cardToPlay = null;
-        if (engine instanceof TopHogGameEngine) {
-            // 目前只重构了 TopHog，强转调用
-            cardToPlay = ((TopHogGameEngine) engine).determineBotPlayCard(trusteePlayer, room);
-        } else {
-            // 默认策略
-            cardToPlay = trusteePlayer.getHand().stream()
-                    .min(Comparator.comparingInt(Card::getNumber))
-                    .orElse(null);
-        }
+            return false;
+        }
+        BotStrategy strategy = botDecisionService.strategyFor(room, trusteePlayer);
+        // 机器人只能看到公开信息，不使用 allPlayerHandsForAI
+        PlayTipSnapshot snapshot = PlayTipSnapshot.of(room, trusteePlayer.getSessionId(), false);
+        if (strategy.isInline()) {
+            playAutoCard(trusteePlayer, room, botDecisionService.decide(strategy, snapshot));
+            return true;
+        }
+
+        String sessionId = trusteePlayer.getSessionId();
+        if (!pendingBotDecisions.add(sessionId)) {
+            return false; // 上一次决策尚未返回
+        }
+        String roomId = room.getRoomId();
+        int round = room.getCurrentRound();
+        int turn = room.getCurrentTurnNumber();
+        botDecisionService.decideAsync(strategy, snapshot).thenAccept(cardNumber -> roomExecutor.execute(roomId, () -> {
+            pendingBotDecisions.remove(sessionId);
+            // 决策期间房间可能已解散、进入下一手或玩家已离开/出牌
+            if (gameRoomService.getRoom(roomId) != room || room.getGameState() != GameState.PLAYING
+                    || room.getCurrentRound() != round || room.getCurrentTurnNumber() != turn
+                    || room.getPlayers().get(sessionId) != trusteePlayer
+                    || room.getPlayedCardsThisTurn().containsKey(sessionId)) {
+                logger.debug("房间 {} 状态已变化，丢弃玩家 {} 的异步出牌决策。", roomId, sessionId);
+                return;
+            }
+            playAutoCard(trusteePlayer, room, cardNumber);
+            broadcastGameState(roomId, "托管玩家已出牌。", room);
+            processBotTurnsAndCheckTurnCompletion(room);
+        }));
+        return false;
+    }
+
+    // 打出自动出牌玩家选定的牌；牌已不在手中时退回最小的牌
+    private void playAutoCard(Player trusteePlayer, GameRoom room, int cardNumber) {
+        Card cardToPlay = trusteePlayer.getHand().stream()
+                .filter(c -> c.getNumber() == cardNumber)
+                .findFirst()
+                .orElseGet(() -> trusteePlayer.getHand().stream()
+                        .min(Comparator.comparingInt(Card::getNumber))
+                        .orElse(null));
 
         if (cardToPlay != null) {
             room.getPlayedCardsThisTurn().put(trusteePlayer.getSessionId(), cardToPlay);
@@ -742,6 +902,9 @@ public class GameLogicService {
                 room.getAllPlayerHandsForAI().get(trusteePlayer.getSessionId())
                         .removeIf(c -> c.getNumber() == finalCardToPlay.getNumber());
             }
+            gameJournal.cardPlayed(room, trusteePlayer, cardToPlay);
+            final Card playedCard = cardToPlay;
+            recordReplay(room, log -> log.cardPlayed(trusteePlayer, playedCard));
             logger.info("托管玩家 {} 在房间 {} 自动打出牌: {}", trusteePlayer.getDisplayName(), room.getRoomId(),
                     cardToPlay.getNumber());
         } else {
@@ -795,6 +958,7 @@ public class GameLogicService {
             return;
         }
 
+        recordReplay(room, ReplayLog::trickResolved);
         // 将排序后的牌存起来，准备逐张处理
         room.setCardsRemainingInTrick(new ArrayList<>(sortedPlayedCards));
         // 开始处理第一张牌
@@ -804,163 +968,165 @@ public class GameLogicService {
     // 逐张处理本轮打出的牌（按从小到大的顺序）
     private void processNextCardInTrick(GameRoom room) {
         // 确保线程安全
-        Lock roomLock = getRoomLock(room.getRoomId());
-        roomLock.lock();
-        try {
-            // 如果当前是在等某个玩家选择牌列，则暂停处理其他牌
-            if (room.getGameState() == GameState.WAITING_FOR_PLAYER_CHOICE) {
-                logger.debug("房间 {} 正在等待玩家选择，processNextCardInTrick 暂停。", room.getRoomId());
+        roomExecutor.execute(room.getRoomId(), () -> {
+            // 后续牌的结算在同一线程内联执行，只由最外层记录一次耗时
+            if (timingTrick.get()) {
+                processNextCardInTrickStep(room);
                 return;
             }
-
-            List<Map.Entry<String, Card>> cardsToProcess = room.getCardsRemainingInTrick();
-            // 如果所有牌都处理完了
-            if (cardsToProcess == null || cardsToProcess.isEmpty()) {
-                logger.info("房间 {} 第 {} 轮的所有牌已处理完毕。", room.getRoomId(), room.getCurrentTurnNumber());
-                // 清空本轮出牌记录
-                room.getPlayedCardsThisTurn().clear();
-                // 结束本回合，判断游戏是否结束或开始下一轮/回合
-                finalizeTurn(room);
-                return;
+            timingTrick.set(true);
+            try {
+                gameMetrics.getProcessTrickTimer().record(() -> processNextCardInTrickStep(room));
+            } finally {
+                timingTrick.set(false);
             }
+        });
+    }
 
-            // 取出当前要处理的最小的牌
-            Map.Entry<String, Card> entry = cardsToProcess.remove(0);
-            String playerSessionId = entry.getKey();
-            Card playedCard = entry.getValue();
-            Player currentPlayer = room.getPlayers().get(playerSessionId);
+    private void processNextCardInTrickStep(GameRoom room) {
+        // 如果当前是在等某个玩家选择牌列，则暂停处理其他牌
+        if (room.getGameState() == GameState.WAITING_FOR_PLAYER_CHOICE) {
+            logger.debug("房间 {} 正在等待玩家选择，processNextCardInTrick 暂停。", room.getRoomId());
+            return;
+        }
 
-            // 如果找不到出牌的玩家（理论上不应该发生）
-            if (currentPlayer == null) {
-                logger.error("processNextCardInTrick: 在房间 {} 未找到会话 {} 对应的玩家。", room.getRoomId(), playerSessionId);
-                // 继续处理下一张牌
-                processNextCardInTrick(room);
-                return;
-            }
+        List<Map.Entry<String, Card>> cardsToProcess = room.getCardsRemainingInTrick();
+        // 如果所有牌都处理完了
+        if (cardsToProcess == null || cardsToProcess.isEmpty()) {
+            logger.info("房间 {} 第 {} 轮的所有牌已处理完毕。", room.getRoomId(), room.getCurrentTurnNumber());
+            // 清空本轮出牌记录
+            room.getPlayedCardsThisTurn().clear();
+            // 结束本回合，判断游戏是否结束或开始下一轮/回合
+            finalizeTurn(room);
+            return;
+        }
 
-            String playerDisplayNameForLog = currentPlayer.getDisplayName()
-                    + (currentPlayer.isTrustee() ? " (托管)" : "");
-            logger.info("房间 {} - 处理玩家 {} 的牌 {}", room.getRoomId(), playerDisplayNameForLog, playedCard.getNumber());
+        // 取出当前要处理的最小的牌
+        Map.Entry<String, Card> entry = cardsToProcess.remove(0);
+        String playerSessionId = entry.getKey();
+        Card playedCard = entry.getValue();
+        Player currentPlayer = room.getPlayers().get(playerSessionId);
 
-            // 寻找这张牌应该放置到哪个牌列
-            // 委托给 Engine
-            GameEngine engine = gameEngineFactory.getEngine(room.getGameType());
-            int targetRowIndex = -1;
+        // 如果找不到出牌的玩家（理论上不应该发生）
+        if (currentPlayer == null) {
+            logger.error("processNextCardInTrick: 在房间 {} 未找到会话 {} 对应的玩家。", room.getRoomId(), playerSessionId);
+            // 继续处理下一张牌
+            processNextCardInTrick(room);
+            return;
+        }
 
-            if (engine instanceof TopHogGameEngine) {
-                targetRowIndex = ((TopHogGameEngine) engine).findTargetRowIndex(room, playedCard);
-            }
-
-            boolean cardCanBePlacedNormally = (targetRowIndex != -1);
-
-            // 如果不能正常放置（即打出的牌比所有牌列的最后一张牌都小）
-            if (!cardCanBePlacedNormally) {
-                logger.info("玩家 {} 的牌 {} 小于房间 {} 所有牌列的末尾牌。玩家必须选择一行。", playerDisplayNameForLog, playedCard.getNumber(),
-                        room.getRoomId());
-
-                // 游戏状态变为等待玩家选择
-                room.setGameState(GameState.WAITING_FOR_PLAYER_CHOICE);
-                // 记录是哪个玩家在选择
-                room.setPlayerChoosingRowSessionId(currentPlayer.getSessionId());
-                // 记录是哪张牌导致了选择
-                room.setCardPendingChoice(playedCard);
-
-                // 准备需要发送给前端的牌列选项信息
-                List<Map<String, Object>> rowOptions = room.getRows().stream().map(r -> {
-                    Map<String, Object> info = new HashMap<>();
-                    // 获取行在列表中的真实索引
-                    info.put("rowIndex", room.getRows().indexOf(r));
-                    info.put("bullheads", r.getBullheadSum());
-                    info.put("lastCardNumber", r.getLastCard() != null ? r.getLastCard().getNumber() : 0);
-                    info.put("cardCount", r.getCards().size());
-                    return info;
-                }).collect(Collectors.toList());
-
-                Map<String, Object> choicePromptPayload = new HashMap<>();
-                // 更新为文档要求的 needSelectRow
-                choicePromptPayload.put("type", "needSelectRow");
-
-                Map<String, Object> dataPayload = new HashMap<>();
-                dataPayload.put("playerId",
-                        currentPlayer.getUserId() != null ? String.valueOf(currentPlayer.getUserId())
-                                : currentPlayer.getSessionId());
-                dataPayload.put("cardNumber", playedCard.getNumber());
-                dataPayload.put("reason", "该牌比所有行的最后一张牌都小");
-                // 保留选项信息供前端参考
-                dataPayload.put("options", rowOptions);
-                dataPayload.put("timeout", playerChoiceTimeoutMs);
-
-                choicePromptPayload.put("data", dataPayload);
-                choicePromptPayload.put("roomId", room.getRoomId());
-
-                WebSocketSession choosingPlayerSession = gameWebSocketHandler
-                        .getSessionById(currentPlayer.getSessionId());
-                // 如果玩家是在线的（非托管）
-                if (choosingPlayerSession != null && !currentPlayer.isTrustee()) {
-                    try {
-                        // 发送选择提示
-                        gameWebSocketHandler.sendMessageToSession(choosingPlayerSession, choicePromptPayload);
-                        scheduleTimeoutForPlayerChoice(room.getRoomId(), currentPlayer.getSessionId());
-                        broadcastGameState(room.getRoomId(), playerDisplayNameForLog + " 需选择牌列...", room);
-                    } catch (IOException e) {
-                        logger.error("向玩家 {} 发送选择提示时出错: {}", currentPlayer.getSessionId(), e.getMessage());
-                        // **FIXED**: 使用 room.getRoomId()
-                        handlePlayerChoiceTimeout(room.getRoomId(), currentPlayer.getSessionId());
-                    }
-                } else if (currentPlayer.isTrustee()) { // 如果是托管玩家需要选择
-                    logger.info("托管玩家 {} 必须选择牌列。自动选择。", playerDisplayNameForLog);
-                    // **FIXED**: 使用 room.getRoomId()
-                    handlePlayerChoiceTimeout(room.getRoomId(), currentPlayer.getSessionId());
-                } else { // 找不到会话（理论上不应该，除非玩家瞬间断线）
-                    logger.error("未找到需要选择的玩家 {} 的会话。", currentPlayer.getSessionId());
+        String playerDisplayNameForLog = currentPlayer.getDisplayName()
+                + (currentPlayer.isTrustee() ? " (托管)" : "");
+        logger.info("房间 {} - 处理玩家 {} 的牌 {}", room.getRoomId(), playerDisplayNameForLog, playedCard.getNumber());
+
+        // 寻找这张牌应该放置到哪个牌列
+        // 委托给 Engine
+        GameEngine engine = gameEngineFactory.getEngine(room.getGameType());
+        int targetRowIndex = -1;
+
+        if (engine instanceof TopHogGameEngine) {
+            targetRowIndex = ((TopHogGameEngine) engine).findTargetRowIndex(room, playedCard);
+        }
+
+        boolean cardCanBePlacedNormally = (targetRowIndex != -1);
+
+        // 如果不能正常放置（即打出的牌比所有牌列的最后一张牌都小）
+        if (!cardCanBePlacedNormally) {
+            logger.info("玩家 {} 的牌 {} 小于房间 {} 所有牌列的末尾牌。玩家必须选择一行。", playerDisplayNameForLog, playedCard.getNumber(),
+                    room.getRoomId());
+
+            // 游戏状态变为等待玩家选择
+            room.setGameState(GameState.WAITING_FOR_PLAYER_CHOICE);
+            // 记录是哪个玩家在选择
+            room.setPlayerChoosingRowSessionId(currentPlayer.getSessionId());
+            // 记录是哪张牌导致了选择
+            room.setCardPendingChoice(playedCard);
+
+            // 准备需要发送给前端的牌列选项信息
+            List<Map<String, Object>> rowOptions = room.getRows().stream().map(r -> {
+                Map<String, Object> info = new HashMap<>();
+                // 获取行在列表中的真实索引
+                info.put("rowIndex", room.getRows().indexOf(r));
+                info.put("bullheads", r.getBullheadSum());
+                info.put("lastCardNumber", r.getLastCard() != null ? r.getLastCard().getNumber() : 0);
+                info.put("cardCount", r.getCards().size());
+                return info;
+            }).collect(Collectors.toList());
+
+            Map<String, Object> choicePromptPayload = new HashMap<>();
+            // 更新为文档要求的 needSelectRow
+            choicePromptPayload.put("type", "needSelectRow");
+
+            Map<String, Object> dataPayload = new HashMap<>();
+            dataPayload.put("playerId",
+                    currentPlayer.getUserId() != null ? String.valueOf(currentPlayer.getUserId())
+                            : currentPlayer.getSessionId());
+            dataPayload.put("cardNumber", playedCard.getNumber());
+            dataPayload.put("reason", "该牌比所有行的最后一张牌都小");
+            // 保留选项信息供前端参考
+            dataPayload.put("options", rowOptions);
+            dataPayload.put("timeout", choiceTimeoutFor(room));
+
+            choicePromptPayload.put("data", dataPayload);
+            choicePromptPayload.put("roomId", room.getRoomId());
+
+            WebSocketSession choosingPlayerSession = gameWebSocketHandler
+                    .getSessionById(currentPlayer.getSessionId());
+            // 如果玩家是在线的（非托管）
+            if (choosingPlayerSession != null && !currentPlayer.isTrustee()) {
+                try {
+                    // 发送选择提示
+                    gameWebSocketHandler.sendMessageToSession(choosingPlayerSession, choicePromptPayload);
+                    scheduleTimeoutForPlayerChoice(room, currentPlayer.getSessionId());
+                    broadcastGameState(room.getRoomId(), playerDisplayNameForLog + " 需选择牌列...", room);
+                } catch (IOException e) {
+                    logger.error("向玩家 {} 发送选择提示时出错: {}", currentPlayer.getSessionId(), e.getMessage());
                     // **FIXED**: 使用 room.getRoomId()
                     handlePlayerChoiceTimeout(room.getRoomId(), currentPlayer.getSessionId());
                 }
-                // 等待玩家选择，暂时不处理后续的牌
-                return;
-            } else { // 如果可以正常放置
-                // 保险：如果前面逻辑判断能放但没选出目标行（几乎不可能）
-                if (targetRowIndex == -1) {
-                    logger.error("严重错误：玩家 {} 的牌 {} 在房间 {} 中未找到可放置的牌列且未被强制选择。默认放到第0行。", playedCard.getNumber(),
-                            playerDisplayNameForLog, room.getRoomId());
-                    // 强制放到第一行
-                    targetRowIndex = 0;
-                }
-                GameRow selectedRow = room.getRows().get(targetRowIndex);
-                // 根据 GameRow.MAX_CARDS_IN_ROW (值为5) 的规则：
-                // 如果行内已有5张牌 (selectedRow.getCards().size() == 5)，这张是第6张牌的动作，导致拿走
-                if (selectedRow.getCards().size() == selectedRow.getMAX_CARDS_IN_ROW()) {
-                    handlePlayerTakesRow(room, currentPlayer, targetRowIndex, playedCard,
-                            "拿走已满牌列(第" + (selectedRow.getMAX_CARDS_IN_ROW() + 1) + "张)");
-                } else { // 否则 (行内0-4张牌)，安全添加
-                    selectedRow.addCard(playedCard);
-                }
-                broadcastGameState(room.getRoomId(),
-                        playerDisplayNameForLog + " 的牌 " + playedCard.getNumber() + " 已放置。", room);
-                // 继续处理下一张牌
-                processNextCardInTrick(room);
-            }
-        } finally {
-            roomLock.unlock();
+            } else if (currentPlayer.isTrustee()) { // 如果是托管玩家需要选择
+                logger.info("托管玩家 {} 必须选择牌列。自动选择。", playerDisplayNameForLog);
+                // **FIXED**: 使用 room.getRoomId()
+                handlePlayerChoiceTimeout(room.getRoomId(), currentPlayer.getSessionId());
+            } else { // 找不到会话（理论上不应该，除非玩家瞬间断线）
+                logger.error("未找到需要选择的玩家 {} 的会话。", currentPlayer.getSessionId());
+                // **FIXED**: 使用 room.getRoomId()
+                handlePlayerChoiceTimeout(room.getRoomId(), currentPlayer.getSessionId());
+            }
+            // 等待玩家选择，暂时不处理后续的牌
+            return;
+        } else { // 如果可以正常放置
+            // 保险：如果前面逻辑判断能放但没选出目标行（几乎不可能）
+            if (targetRowIndex == -1) {
+                logger.error("严重错误：玩家 {} 的牌 {} 在房间 {} 中未找到可放置的牌列且未被强制选择。默认放到第0行。", playedCard.getNumber(),
+                        playerDisplayNameForLog, room.getRoomId());
+                // 强制放到第一行
+                targetRowIndex = 0;
+            }
+            GameRow selectedRow = room.getRows().get(targetRowIndex);
+            // 根据 GameRow.MAX_CARDS_IN_ROW (值为5) 的规则：
+            // 如果行内已有5张牌 (selectedRow.getCards().size() == 5)，这张是第6张牌的动作，导致拿走
+            if (selectedRow.size() == selectedRow.getMAX_CARDS_IN_ROW()) {
+                handlePlayerTakesRow(room, currentPlayer, targetRowIndex, playedCard,
+                        "拿走已满牌列(第" + (selectedRow.getMAX_CARDS_IN_ROW() + 1) + "张)");
+            } else { // 否则 (行内0-4张牌)，安全添加
+                selectedRow.addCard(playedCard);
+            }
+            broadcastGameState(room.getRoomId(),
+                    playerDisplayNameForLog + " 的牌 " + playedCard.getNumber() + " 已放置。", room);
+            // 继续处理下一张牌
+            processNextCardInTrick(room);
         }
     }
 
     // 为玩家选择牌列启动一个超时计时器
-    private void scheduleTimeoutForPlayerChoice(String roomId, String sessionId) {
-        // 如果该玩家已有计时器，先取消旧的
-        ScheduledFuture<?> existingTimer = choiceTimers.remove(sessionId);
-        if (existingTimer != null) {
-            existingTimer.cancel(false);
-        }
-        logger.info("为玩家 {} 在房间 {} 安排选择超时任务 ({}毫秒)。", sessionId, roomId, playerChoiceTimeoutMs);
-        // 安排一个一次性的任务，在超时后执行 handlePlayerChoiceTimeout
-        ScheduledFuture<?> scheduledTask = taskScheduler.schedule(() -> {
-            // 任务执行前也移除自己，避免重复处理
-            choiceTimers.remove(sessionId);
-            handlePlayerChoiceTimeout(roomId, sessionId);
-        }, java.time.Instant.now().plusMillis(playerChoiceTimeoutMs));
-        // 保存这个计时器任务的引用
-        choiceTimers.put(sessionId, scheduledTask);
+    private void scheduleTimeoutForPlayerChoice(GameRoom room, String sessionId) {
+        String roomId = room.getRoomId();
+        long timeoutMs = choiceTimeoutFor(room);
+        logger.info("为玩家 {} 在房间 {} 安排选择超时任务 ({}毫秒)。", sessionId, roomId, timeoutMs);
+        // 安排一个一次性的任务，在超时后执行 handlePlayerChoiceTimeout；该玩家已有计时器时替换旧的
+        gameTimerWheel.schedule(roomId, CHOICE_TIMER_PREFIX + sessionId, timeoutMs,
+                () -> handlePlayerChoiceTimeout(roomId, sessionId));
     }
 
     public void playerChoosesRow(String roomId, String sessionId, Long userId, int chosenRowIndex) {
@@ -971,9 +1137,7 @@ public class GameLogicService {
     // 处理玩家选择了要拿走的牌列
     public void playerChoosesRowRaw(String roomId, WebSocketSession session, Long userId, int chosenRowIndex) {
         GameRoom room = gameRoomService.getRoom(roomId);
-        Lock roomLock = getRoomLock(roomId);
-        roomLock.lock();
-        try {
+        roomExecutor.execute(roomId, () -> {
             String sessionId = session != null ? session.getId() : null;
             if (sessionId == null) {
                 return;
@@ -996,9 +1160,7 @@ public class GameLogicService {
             }
 
             // 取消超时计时器
-            ScheduledFuture<?> timer = choiceTimers.remove(sessionId);
-            if (timer != null) {
-                timer.cancel(false);
+            if (gameTimerWheel.cancel(roomId, CHOICE_TIMER_PREFIX + sessionId)) {
                 logger.info("玩家 {} 选择了牌列 {}。房间 {} 的超时任务已取消。", userId, chosenRowIndex + 1, roomId);
             }
 
@@ -1017,6 +1179,7 @@ public class GameLogicService {
             }
 
             // 执行拿走牌列的操作
+            recordReplay(room, log -> log.rowTaken(currentPlayer, chosenRowIndex));
             int collectedBullheads = handlePlayerTakesRow(room, currentPlayer, chosenRowIndex, playedCard, "玩家选择的牌列");
 
             // 发送 rowSelected 确认消息
@@ -1032,17 +1195,13 @@ public class GameLogicService {
             // 继续处理本轮剩下的牌
             processNextCardInTrick(room);
 
-        } finally {
-            roomLock.unlock();
-        }
+        });
     }
 
     // 处理玩家选择牌列超时（或托管玩家自动选择）
     public void handlePlayerChoiceTimeout(String roomId, String choosingPlayerSessionId) {
         GameRoom room = gameRoomService.getRoom(roomId);
-        Lock roomLock = getRoomLock(roomId);
-        roomLock.lock();
-        try {
+        roomExecutor.execute(roomId, () -> {
             // 再次校验状态，确保是对应的玩家和状态
             if (room == null || room.getGameState() != GameState.WAITING_FOR_PLAYER_CHOICE ||
                     !choosingPlayerSessionId.equals(room.getPlayerChoosingRowSessionId())) {
@@ -1073,6 +1232,8 @@ public class GameLogicService {
             logger.info("服务器为玩家 {} (超时) 在房间 {} 自动选择了牌列 {} (猪头数: {})。",
                     currentPlayer.getDisplayName(), roomId, autoChosenRowIndex + 1, minBullheads);
 
+            final int chosenRowIndex = autoChosenRowIndex;
+            recordReplay(room, log -> log.rowTaken(currentPlayer, chosenRowIndex));
             int collectedBullheads = handlePlayerTakesRow(room, currentPlayer, autoChosenRowIndex, playedCard,
                     "超时后服务器自动选择");
 
@@ -1087,25 +1248,16 @@ public class GameLogicService {
 
             processNextCardInTrick(room);
 
-        } finally {
-            roomLock.unlock();
-        }
+        });
     }
 
     // 清除与玩家选择牌列相关的状态
     private void clearChoiceState(GameRoom room) {
         room.setPlayerChoosingRowSessionId(null);
         room.setCardPendingChoice(null);
-        // 理论上对应的timer在被选择或超时时已经被移除了，这里作为保险再次检查并清除所有（或特定）计时器
-        List<String> timersToRemove = new ArrayList<>(choiceTimers.keySet());
-        timersToRemove.forEach(key -> {
-            ScheduledFuture<?> timer = choiceTimers.remove(key);
-            if (timer != null) {
-                // true 表示尝试中断正在执行的任务
-                timer.cancel(true);
-            }
-        });
-        logger.debug("房间 {} 的选择状态已清除，所有相关计时器已尝试取消。", room.getRoomId());
+        // 理论上对应的timer在被选择或超时时已经被移除了，这里作为保险再次清除本房间的选择计时器
+        gameTimerWheel.cancelAll(room.getRoomId(), CHOICE_TIMER_PREFIX);
+        logger.debug("房间 {} 的选择状态已清除，相关计时器已取消。", room.getRoomId());
     }
 
     // 处理玩家拿走指定牌列，委托给 Engine
@@ -1204,6 +1356,7 @@ public class GameLogicService {
 
             logger.info("finalizeTurn (游戏因分数结束): room.winnerDisplayName = {}, 消息: {}", room.getWinnerDisplayName(),
                     gameOverMsg);
+            gameJournal.checkpoint(room);
             broadcastGameState(room.getRoomId(), gameOverMsg, room);
             // 保存历史记录
             saveGameHistory(room);
@@ -1215,32 +1368,46 @@ public class GameLogicService {
             logger.info("房间 {} 完成10手牌，本轮结束。", room.getRoomId());
             // 设置为“一轮结束”状态
             room.setGameState(GameState.ROUND_OVER);
+            gameJournal.checkpoint(room);
             broadcastGameState(room.getRoomId(), "第 " + room.getCurrentTurnNumber() + " 次出牌结束，本轮完毕。", room);
 
-            // 延迟3秒后开始新一轮,给前端足够时间显示战绩面板
-            String roomIdForTask = room.getRoomId();
-            taskScheduler.schedule(() -> {
-                Lock roomLock = getRoomLock(roomIdForTask);
-                roomLock.lock();
-                try {
-                    GameRoom currentRoom = gameRoomService.getRoom(roomIdForTask);
-                    if (currentRoom != null && currentRoom.getGameState() == GameState.ROUND_OVER) {
-                        logger.info("延迟后开始新一轮,房间: {}", roomIdForTask);
-                        startNewRound(currentRoom);
-                    }
-                } finally {
-                    roomLock.unlock();
-                }
-            }, java.time.Instant.now().plusMillis(3000)); // 延迟3秒
+            scheduleNextRound(room.getRoomId());
         } else { // 否则，回合数加1，继续下一回合出牌
             room.setCurrentTurnNumber(room.getCurrentTurnNumber() + 1);
             room.setGameState(GameState.PLAYING);
+            gameJournal.checkpoint(room);
             broadcastGameState(room.getRoomId(), "准备进行第 " + room.getCurrentTurnNumber() + " 次出牌。", room);
             processBotTurnsAndCheckTurnCompletion(room);
         }
     }
 
+    // 延迟3秒后开始新一轮,给前端足够时间显示战绩面板
+    private void scheduleNextRound(String roomId) {
+        gameTimerWheel.schedule(roomId, NEXT_ROUND_TIMER, 3000, () -> {
+            roomExecutor.execute(roomId, () -> {
+                GameRoom currentRoom = gameRoomService.getRoom(roomId);
+                if (currentRoom != null && currentRoom.getGameState() == GameState.ROUND_OVER) {
+                    logger.info("延迟后开始新一轮,房间: {}", roomId);
+                    startNewRound(currentRoom);
+                }
+            });
+        });
+    }
+
     private void saveGameHistory(GameRoom room) {
+        replayService.finishGame(room);
+        gameMetrics.getSaveHistoryTimer().record(() -> saveGameHistoryInternal(room));
+    }
+
+    // 追加本局的回放事件；从旧版本日志恢复的房间没有回放记录
+    private static void recordReplay(GameRoom room, Consumer<ReplayLog> event) {
+        ReplayLog log = room.getReplayLog();
+        if (log != null) {
+            event.accept(log);
+        }
+    }
+
+    private void saveGameHistoryInternal(GameRoom room) {
         if (room == null || room.getPlayers() == null) {
             return;
         }
@@ -1256,14 +1423,25 @@ public class GameLogicService {
                 .sorted(Comparator.comparingInt(Player::getScore))
                 .collect(Collectors.toList());
 
+        // 只在房间上下文里组装记录，写库交给后台写线程
+        Timestamp finishedAt = new Timestamp(System.currentTimeMillis());
+        List<GameHistory> histories = new ArrayList<>(sortedPlayers.size());
         for (int i = 0; i < sortedPlayers.size(); i++) {
             Player p = sortedPlayers.get(i);
             if (p.getUserId() != null) {
                 GameHistory history = new GameHistory(p.getUserId(), room.getRoomId(), p.getScore(), i + 1, avgScore);
-                gameHistoryRepository.save(history);
+                history.setCreatedAt(finishedAt);
+                histories.add(history);
+            }
+        }
+        if (!histories.isEmpty()) {
+            // 排行榜等汇总在战绩写库后由写线程更新
+            gameHistoryWriter.enqueue(histories);
+            for (GameHistory history : histories) {
+                taskProgressService.onGameFinished(history.getUserId(), history.getRank() == 1, history.getScore());
             }
         }
-        logger.info("Game history saved for room {}", room.getRoomId());
+        logger.info("Game history queued for room {}", room.getRoomId());
     }
 
     // 处理玩家请求“再来一局”
@@ -1273,9 +1451,7 @@ public class GameLogicService {
             sendErrorToUserSession(session, roomId, "非游戏结束状态，无法请求新局。");
             return;
         }
-        Lock roomLock = getRoomLock(roomId);
-        roomLock.lock();
-        try {
+        roomExecutor.execute(roomId, () -> {
             Player p = room.getPlayers().get(session.getId());
             if (p == null) {
                 sendErrorToUserSession(session, roomId, "玩家未找到。");
@@ -1311,9 +1487,7 @@ public class GameLogicService {
                 }
                 broadcastGameState(roomId, message, room);
             }
-        } finally {
-            roomLock.unlock();
-        }
+        });
     }
 
     // 当一个新WebSocket连接建立时，检查该用户是否可以重返之前因断线而托管的房间
@@ -1333,11 +1507,9 @@ public class GameLogicService {
                 // 跳过空的room对象
                 continue;
             }
-            Lock roomLock = getRoomLock(room.getRoomId());
-            roomLock.lock();
-            try {
+            boolean rejoined = roomExecutor.call(room.getRoomId(), () -> {
                 if (room.getGameState() == GameState.WAITING) {
-                    continue;
+                    return false;
                 }
 
                 Player playerToRejoin = null;
@@ -1378,10 +1550,12 @@ public class GameLogicService {
                             room.setWinnerDisplayName(newWinnerName);
                         }
                     }
-                    return room;
+                    return true;
                 }
-            } finally {
-                roomLock.unlock();
+                return false;
+            });
+            if (rejoined) {
+                return room;
             }
         }
         return null;
@@ -1407,9 +1581,7 @@ public class GameLogicService {
         }
         User user = userOpt.get();
 
-        Lock roomLock = getRoomLock(roomId);
-        roomLock.lock();
-        try {
+        roomExecutor.execute(roomId, () -> {
             Optional<Player> existingPlayerOpt = room.getPlayers().values().stream()
                     .filter(p -> p.getUserId() != null && p.getUserId().equals(user.getId())).findFirst();
 
@@ -1469,6 +1641,8 @@ public class GameLogicService {
                 Player newP = new Player(session.getId(), user.getId(), name, user.getVipStatus());
                 // 初始化新玩家的游戏数据
                 newP.resetForNewGame();
+                // 匹配房间的房主未到时，由先进房的玩家接任
+                gameRoomService.claimMatchedRoomOwner(room, user.getId());
                 // 如果是房主，默认设置为已准备
                 if (user.getId().equals(room.getOwnerId())) {
                     newP.setReady(true);
@@ -1480,9 +1654,7 @@ public class GameLogicService {
                 room.getPlayers().put(session.getId(), newP);
                 broadcastGameState(roomId, name + " 已加入房间。", room);
             }
-        } finally {
-            roomLock.unlock();
-        }
+        });
     }
 
     /**
@@ -1506,9 +1678,7 @@ public class GameLogicService {
             throw new IllegalArgumentException("不能踢自己。");
         }
 
-        Lock roomLock = getRoomLock(roomId);
-        roomLock.lock();
-        try {
+        roomExecutor.call(roomId, () -> {
             // 寻找目标玩家
             Player targetPlayer = null;
             for (Player p : room.getPlayers().values()) {
@@ -1542,18 +1712,12 @@ public class GameLogicService {
             // 执行离开逻辑
             playerLeavesRaw(roomId, targetSessionId, targetUserId);
 
-            // 显式关闭会话以强制客户端断开连接
+            // 显式关闭会话以强制客户端断开连接（先发完移除通知）
             if (session != null && session.isOpen()) {
-                try {
-                    session.close();
-                } catch (IOException e) {
-                    logger.error("Error closing session for kicked player", e);
-                }
+                gameWebSocketHandler.closeSession(session, CloseStatus.NORMAL);
             }
-
-        } finally {
-            roomLock.unlock();
-        }
+            return null;
+        });
     }
 
     public void togglePlayerReadyStatus(String roomId, String sessionId, Long userIdentifier) {
@@ -1568,9 +1732,7 @@ public class GameLogicService {
             sendErrorToUserSession(session, roomId, "非等待状态，无法准备。");
             return;
         }
-        Lock roomLock = getRoomLock(roomId);
-        roomLock.lock();
-        try {
+        roomExecutor.execute(roomId, () -> {
             String sid = session != null ? session.getId() : null;
             if (sid == null) {
                 return;
@@ -1588,9 +1750,7 @@ public class GameLogicService {
             }
             p.setReady(!p.isReady());
             broadcastGameState(roomId, p.getDisplayName() + (p.isReady() ? " 已准备" : " 取消准备"), room);
-        } finally {
-            roomLock.unlock();
-        }
+        });
     }
 
     // 切换玩家的托管（自动出牌）状态
@@ -1599,9 +1759,7 @@ public class GameLogicService {
         if (room == null) {
             return;
         }
-        Lock roomLock = getRoomLock(roomId);
-        roomLock.lock();
-        try {
+        roomExecutor.execute(roomId, () -> {
             Player p = room.getPlayers().get(sessionId);
             if (p == null) {
                 return;
@@ -1617,9 +1775,7 @@ public class GameLogicService {
             if (newState && room.getGameState() == GameState.PLAYING) {
                 processBotTurnsAndCheckTurnCompletion(room);
             }
-        } finally {
-            roomLock.unlock();
-        }
+        });
     }
 
     // 决定赢家（规则：不论是否托管，分数最低者胜）
@@ -1634,23 +1790,26 @@ public class GameLogicService {
 
     /**
      * 获取出牌提示（VIP功能）
+     * 只在房间执行上下文中构建快照，蒙特卡洛搜索在房间锁之外进行，不会阻塞房间内的其他玩家。
      * 
      * @param roomId                    房间ID
      * @param requestingPlayerSessionId 请求提示的玩家会话ID
-     * @return 包含建议牌号、预计猪头数和原因的Map，或错误信息
+     * @return 包含建议牌号、预计猪头数、置信度和原因的Map，或错误信息
      */
     public Map<String, Object> getPlayTip(String roomId, String requestingPlayerSessionId) {
+        return gameMetrics.getPlayTipTimer().record(() -> getPlayTipInternal(roomId, requestingPlayerSessionId));
+    }
+
+    private Map<String, Object> getPlayTipInternal(String roomId, String requestingPlayerSessionId) {
         GameRoom room = gameRoomService.getRoom(roomId);
         if (room == null) {
             return Collections.singletonMap("error", "房间不存在。");
         }
 
-        Lock roomLock = getRoomLock(roomId); // 确保在读取房间状态时数据一致
-        roomLock.lock();
-        try {
+        TipSnapshot prepared = roomExecutor.call(roomId, () -> { // 确保在读取房间状态时数据一致
             Player requestingPlayer = room.getPlayers().get(requestingPlayerSessionId);
             if (requestingPlayer == null) {
-                return Collections.singletonMap("error", "未找到玩家。");
+                return TipSnapshot.error("未找到玩家。");
             }
             // 移除 VIP 检查，允许所有玩家使用提示功能
             // if (requestingPlayer.getVipStatus() == 0) {
@@ -1658,116 +1817,104 @@ public class GameLogicService {
             // }
             if (room.getGameState() != GameState.PLAYING || requestingPlayer.isTrustee()
                     || requestingPlayer.getHand().isEmpty()) {
-                return Collections.singletonMap("error", "当前状态无法获取提示。");
+                return TipSnapshot.error("当前状态无法获取提示。");
+            }
+            if (room.getPlayedCardsThisTurn().containsKey(requestingPlayerSessionId)) {
+                return TipSnapshot.error("您本手已出牌，请等待下一手。");
             }
             logger.info("会员 {} 请求提示，房间 {}", requestingPlayer.getDisplayName(), roomId);
+            return TipSnapshot.of(PlayTipSnapshot.of(room, requestingPlayerSessionId));
+        });
+        if (prepared.error() != null) {
+            return Collections.singletonMap("error", prepared.error());
+        }
 
-            // 复制手牌
-            List<Card> playerHand = new ArrayList<>(requestingPlayer.getHand());
-            // 本轮其他玩家已出的牌
-            List<Card> otherPlayedCardsThisTurn = new ArrayList<>();
-            if (room.getPlayedCardsThisTurn() != null) {
-                room.getPlayedCardsThisTurn().forEach((sid, card) -> {
-                    if (!sid.equals(requestingPlayerSessionId)) {
-                        otherPlayedCardsThisTurn.add(card);
-                    }
-                });
-            }
-            // 其他活跃玩家的手牌
-            Map<String, List<Card>> otherActivePlayerHands = new HashMap<>();
-            if (room.getAllPlayerHandsForAI() != null) {
-                room.getPlayers().forEach((sid, p) -> {
-                    if (!sid.equals(requestingPlayerSessionId) && !p.isTrustee()
-                            && room.getAllPlayerHandsForAI().containsKey(sid)) {
-                        otherActivePlayerHands.put(sid, new ArrayList<>(room.getAllPlayerHandsForAI().get(sid)));
-                    }
-                });
-            }
+        PlayTipEngine.PlayTip tip = playTipEngine.suggest(prepared.snapshot());
+        if (tip == null) {
+            return Collections.singletonMap("message", "无合适建议。");
+        }
+        int confidencePercent = (int) Math.round(tip.getConfidence() * 100);
+        Map<String, Object> response = new HashMap<>();
+        response.put("suggestedCardNumber", tip.getCardNumber());
+        response.put("estimatedBullheads", (int) Math.round(tip.getExpectedBullheads()));
+        response.put("expectedBullheads", Math.round(tip.getExpectedBullheads() * 100) / 100.0);
+        response.put("confidence", Math.round(tip.getConfidence() * 100) / 100.0);
+        response.put("samples", tip.getSamples());
+        response.put("reason", tip.getImmediateOutcome() + " 模拟 " + tip.getSamples() + " 次，预计共收 "
+                + String.format("%.1f", tip.getExpectedBullheads()) + " 猪头，置信度 " + confidencePercent + "%。");
+        return response;
+    }
 
-            Card bestCardToPlay = null;
-            int minExpectedBullheads = Integer.MAX_VALUE;
-            String bestReason = "无明显优选，请谨慎。";
-
-            // 为当前玩家的每一张手牌进行模拟评估
-            for (Card cardInHand : playerHand) {
-                // !!! 重要：为每次模拟创建独立的牌列副本 !!!
-                // 这是因为 calculateAdvancedExpectedBullheads 方法会修改传入的 simulatedRows 列表
-                List<GameRow> rowsForThisSimulation = new ArrayList<>();
-                // 从真实的当前房间状态复制
-                for (GameRow originalRoomRow : room.getRows()) {
-                    // 创建新的 GameRow 实例
-                    GameRow copiedRow = new GameRow();
-                    // 手动复制牌列表的内容
-                    if (originalRoomRow.getCards() != null) {
-                        for (Card card_c : originalRoomRow.getCards()) {
-                            // 假设 Card 是不可变的或简单对象，可以直接创建新的或复制引用
-                            copiedRow.addCard(new Card(card_c.getNumber(), card_c.getBullheads()));
-                        }
-                    }
-                    rowsForThisSimulation.add(copiedRow);
-                }
+    /**
+     * 在房间执行上下文中准备提示的结果：成功时为局面快照，否则为返回给玩家的错误信息。
+     */
+    private record TipSnapshot(PlayTipSnapshot snapshot, String error) {
+        static TipSnapshot of(PlayTipSnapshot snapshot) {
+            return new TipSnapshot(snapshot, null);
+        }
 
-                EstimatedPlayResult result = calculateAdvancedExpectedBullheads(
-                        cardInHand, rowsForThisSimulation, otherPlayedCardsThisTurn,
-                        otherActivePlayerHands, requestingPlayerSessionId, room // 注意这里最后一个参数是 room (GameRoom)
-                );
-                if (result.getBullheads() < minExpectedBullheads) {
-                    minExpectedBullheads = result.getBullheads();
-                    bestCardToPlay = cardInHand;
-                    bestReason = result.getReason();
-                } else if (result.getBullheads() == minExpectedBullheads) {
-                    if (bestCardToPlay == null
-                            || (cardInHand != null && cardInHand.getNumber() < bestCardToPlay.getNumber())) {
-                        bestCardToPlay = cardInHand;
-                        bestReason = result.getReason() + " (同猪头，选小编号)";
-                    }
-                }
-            }
+        static TipSnapshot error(String error) {
+            return new TipSnapshot(null, error);
+        }
+    }
 
-            if (bestCardToPlay != null) {
-                Map<String, Object> response = new HashMap<>();
-                response.put("suggestedCardNumber", bestCardToPlay.getNumber());
-                response.put("estimatedBullheads", minExpectedBullheads);
-                response.put("reason", bestReason);
-                return response;
-            } else if (!playerHand.isEmpty()) {
-                Card fallbackCard = playerHand.get(0);
-                List<GameRow> rowsForFallbackSim = new ArrayList<>();
-                for (GameRow originalRoomRow : room.getRows()) {
-                    GameRow copiedRow = new GameRow();
-                    if (originalRoomRow.getCards() != null) {
-                        for (Card card_c : originalRoomRow.getCards()) {
-                            copiedRow.addCard(new Card(card_c.getNumber(), card_c.getBullheads()));
-                        }
-                    }
-                    rowsForFallbackSim.add(copiedRow);
+    /**
+     * 启动完成后恢复游戏日志中进行中的房间。
+     * 旧的 WebSocket 会话已全部失效，人类玩家统一转为托管（断线）状态，重连后按原有的重返流程回到房间；
+     * 然后按房间所处的阶段重新安排出牌、选择超时或下一轮的计时器。
+     * 每个恢复的房间先在新段中写一份快照，全部写完后才允许日志压缩删除旧段。
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverJournaledRooms() {
+        int restored = 0;
+        for (GameRoom room : gameJournal.takeRecoveredRooms()) {
+            for (Player player : room.getPlayers().values()) {
+                if (!player.isRobot()) {
+                    player.setTrustee(true);
                 }
-                EstimatedPlayResult fallbackResult = calculateAdvancedExpectedBullheads(fallbackCard,
-                        rowsForFallbackSim, otherPlayedCardsThisTurn, otherActivePlayerHands, requestingPlayerSessionId,
-                        room);
-                Map<String, Object> response = new HashMap<>();
-                response.put("suggestedCardNumber", fallbackCard.getNumber());
-                response.put("estimatedBullheads", fallbackResult.getBullheads());
-                response.put("reason", fallbackResult.getReason() + " (备选)");
-                return response;
             }
-            return Collections.singletonMap("message", "无合适建议。");
-        } finally {
-            roomLock.unlock();
+            if (!gameRoomService.restoreRoom(room)) {
+                logger.info("日志中的房间 {} 已不存在，跳过恢复。", room.getRoomId());
+                continue;
+            }
+            restored++;
+            String roomId = room.getRoomId();
+            // 同步执行：快照写入之前不能开放压缩
+            roomExecutor.call(roomId, () -> {
+                gameJournal.checkpoint(room);
+                switch (room.getGameState()) {
+                    case ROUND_OVER:
+                        scheduleNextRound(roomId);
+                        break;
+                    case WAITING_FOR_PLAYER_CHOICE:
+                        scheduleTimeoutForPlayerChoice(room, room.getPlayerChoosingRowSessionId());
+                        break;
+                    case PROCESSING_TURN:
+                        // 从中断处继续结算本手剩余的牌
+                        processNextCardInTrick(room);
+                        break;
+                    default:
+                        processBotTurnsAndCheckTurnCompletion(room);
+                }
+                return null;
+            });
+            scheduleRoomDestructionIfEmpty(roomId, RECOVERY_REJOIN_GRACE_MS);
+        }
+        gameJournal.recoveryFinished();
+        if (restored > 0) {
+            logger.info("已从游戏日志恢复 {} 个进行中的房间。", restored);
         }
     }
 
     // Schedule room destruction if no active humans remain after delay
     private void scheduleRoomDestructionIfEmpty(String roomId, long delayMs) {
-        taskScheduler.schedule(() -> {
+        gameTimerWheel.schedule(roomId, ROOM_DESTRUCTION_TIMER, delayMs, () -> {
             GameRoom room = gameRoomService.getRoom(roomId);
             if (room == null) {
                 return;
             }
 
-            Lock roomLock = getRoomLock(roomId);
-            roomLock.lock();
-            try {
+            roomExecutor.execute(roomId, () -> {
                 // Check if the single human is still disconnected (trustee)
                 long humanCount = room.getPlayers().values().stream().filter(p -> !p.isRobot()).count();
                 boolean humanIsConnected = room.getPlayers().values().stream()
@@ -1778,215 +1925,9 @@ public class GameLogicService {
                     logger.info("Timeout reached: Room {} still has no active humans (Single player mode). Destroying.",
                             roomId);
                     gameRoomService.removeRoom(roomId);
-                    roomLocks.remove(roomId);
-                }
-            } finally {
-                roomLock.unlock();
-            }
-        }, java.time.Instant.now().plusMillis(delayMs));
-    }
-
-    // 内部辅助类：用于AI提示返回结果
-    private static class EstimatedPlayResult {
-        private final int bullheads;
-        private final String reason;
-
-        public EstimatedPlayResult(int bullheads, String reason) {
-            this.bullheads = bullheads;
-            this.reason = reason;
-        }
-
-        public int getBullheads() {
-            return bullheads;
-        }
-
-        public String getReason() {
-            return reason;
-        }
-    }
-
-    // 内部辅助类：用于AI提示模拟回合
-    private static class PlayerCardTurnEntry {
-        private final String playerId;
-        private final Card card;
-
-        public PlayerCardTurnEntry(String playerId, Card card) {
-            this.playerId = playerId;
-            this.card = card;
-        }
-
-        public String getPlayerId() {
-            return playerId;
-        }
-
-        public Card getCard() {
-            return card;
-        }
-    }
-
-    // AI大脑核心：评估打出某张牌的预期结果
-    // roomContext 是真实的 GameRoom
-    private EstimatedPlayResult calculateAdvancedExpectedBullheads(
-            Card cardToPlay, List<GameRow> simulatedRows, List<Card> otherPlayedCardsThisTurn,
-            Map<String, List<Card>> otherActivePlayerHands, String requestingPlayerId, GameRoom roomContext) {
-
-        List<PlayerCardTurnEntry> cardsForSim = new ArrayList<>();
-        cardsForSim.add(new PlayerCardTurnEntry(requestingPlayerId, cardToPlay));
-        // 给一个模拟ID
-        otherPlayedCardsThisTurn.forEach(c -> cardsForSim.add(new PlayerCardTurnEntry("other_known_player_sim_id", c)));
-        // 按牌号排序
-        cardsForSim.sort(Comparator.comparingInt(e -> e.getCard().getNumber()));
-
-        int bullheadsTaken = 0;
-        String reason = "分析中...";
-
-        // 模拟本轮所有已知牌的放置
-        for (PlayerCardTurnEntry turnEntry : cardsForSim) {
-            Card currentCard = turnEntry.getCard();
-            // 是否是当前请求提示的玩家的牌
-            boolean isMyCard = turnEntry.getPlayerId().equals(requestingPlayerId);
-            int targetRowIdx = -1, bestDiff = Integer.MAX_VALUE;
-            boolean canPlace = false;
-
-            // 查找最佳放置行 (与主游戏逻辑 processNextCardInTrick 中的放置部分类似)
-            // 操作的是模拟行 simulatedRows
-            for (int i = 0; i < simulatedRows.size(); i++) {
-                GameRow row = simulatedRows.get(i);
-                Card last = row.getLastCard();
-                if (last != null && currentCard.getNumber() > last.getNumber()) {
-                    canPlace = true;
-                    int diff = currentCard.getNumber() - last.getNumber();
-                    if (diff < bestDiff) {
-                        bestDiff = diff;
-                        targetRowIdx = i;
-                    }
-                } else if (last == null) { // 空行
-                    canPlace = true;
-                    if (targetRowIdx == -1 || bestDiff > 100000) {
-                        bestDiff = 100000 + i;
-                        targetRowIdx = i;
-                    }
-                }
-            }
-
-            // 可以正常放置
-            if (canPlace && targetRowIdx != -1) {
-                GameRow selectedSimRow = simulatedRows.get(targetRowIdx);
-                // GameRow.MAX_CARDS_IN_ROW 在 GameRow.java 中是 5
-                // 表示行内已有5张牌时，这张是第6个操作的牌，导致拿走前5张
-                if (selectedSimRow.getCards().size() == selectedSimRow.getMAX_CARDS_IN_ROW()) {
-                    if (isMyCard) {
-                        bullheadsTaken = selectedSimRow.getBullheadSum();
-                        reason = "危险! 牌 " + currentCard.getNumber() + " 放第" + (targetRowIdx + 1) + "行将是第6张,拿走"
-                                + bullheadsTaken + "猪头。";
-                    }
-                    // 模拟拿走并替换: 先清空模拟行，再把当前牌加入
-                    selectedSimRow.getCards().clear();
-                    selectedSimRow.addCard(currentCard);
-                } else { // 安全放置 (行内0-4张牌)
-                    if (isMyCard) {
-                        bullheadsTaken = 0;
-                        reason = "安全。牌 " + currentCard.getNumber() + " 可放第" + (targetRowIdx + 1) + "行(当前"
-                                + (selectedSimRow.getCards().size() + 1) + "/" + selectedSimRow.getMAX_CARDS_IN_ROW()
-                                + "张)。";
-                    }
-                    selectedSimRow.addCard(currentCard);
-                }
-            } else { // 必须选择一行拿走
-                if (isMyCard) {
-                    int minBH = Integer.MAX_VALUE, chosenIdx = 0;
-                    for (int i = 0; i < simulatedRows.size(); i++) {
-                        if (simulatedRows.get(i).getBullheadSum() < minBH) {
-                            minBH = simulatedRows.get(i).getBullheadSum();
-                            chosenIdx = i;
-                        }
-                    }
-                    bullheadsTaken = minBH;
-                    reason = "太小! 被迫选第" + (chosenIdx + 1) + "行，拿" + bullheadsTaken + "猪头。";
-                    // 模拟拿走并替换
-                    simulatedRows.get(chosenIdx).getCards().clear();
-                    simulatedRows.get(chosenIdx).addCard(currentCard);
-                } else { // 其他人的牌被迫选择，也要更新模拟桌面状态
-                    int minBH = Integer.MAX_VALUE, chosenIdx = 0;
-                    for (int i = 0; i < simulatedRows.size(); i++) {
-                        if (simulatedRows.get(i).getBullheadSum() < minBH) {
-                            minBH = simulatedRows.get(i).getBullheadSum();
-                            chosenIdx = i;
-                        }
-                    }
-                    simulatedRows.get(chosenIdx).getCards().clear();
-                    simulatedRows.get(chosenIdx).addCard(currentCard);
-                }
-            }
-            // 如果已经模拟了当前请求提示玩家的牌，就可以停止这一轮的模拟了
-            if (isMyCard) {
-                break;
-            }
-        }
-
-        // （简化版）风险评估：检查其他活跃玩家手牌是否有潜在威胁
-        // 只在初步安全时评估进一步风险
-        if (bullheadsTaken == 0) {
-            int initialTargetRowForMyCard = -1;
-            int tempBestDiffForMyCard = Integer.MAX_VALUE;
-            // 基于真实的、未经模拟修改的当前牌列（从roomContext获取）来判断cardToPlay的原始目标行
-            List<GameRow> realCurrentRows = roomContext.getRows();
-            for (int i = 0; i < realCurrentRows.size(); i++) {
-                GameRow r = realCurrentRows.get(i);
-                Card l = r.getLastCard();
-                if (l != null && cardToPlay.getNumber() > l.getNumber()) {
-                    int d = cardToPlay.getNumber() - l.getNumber();
-                    if (d < tempBestDiffForMyCard) {
-                        tempBestDiffForMyCard = d;
-                        initialTargetRowForMyCard = i;
-                    }
-                } else if (l == null) { // 空行
-                    if (initialTargetRowForMyCard == -1 || tempBestDiffForMyCard > 100000) {
-                        tempBestDiffForMyCard = 100000 + i;
-                        initialTargetRowForMyCard = i;
-                    }
-                }
-            }
-
-            // 如果cardToPlay有一个明确的初始目标行
-            if (initialTargetRowForMyCard != -1) {
-                // 这是真实的行状态
-                GameRow intendedRealRow = realCurrentRows.get(initialTargetRowForMyCard);
-                Card lastOnIntendedRealRow = intendedRealRow.getLastCard();
-                // 目标行还能放几张牌才到5张（即下一个就满了）
-                int safeSpotsLeft = intendedRealRow.getMAX_CARDS_IN_ROW() - intendedRealRow.getCards().size();
-                if (safeSpotsLeft < 0) {
-                    // 如果已经满了或超过，则安全位置为0
-                    safeSpotsLeft = 0;
                 }
-
-                // 潜在的“捣乱牌”数量
-                int potentialInterferingCardsCount = 0;
-                // 检查其他活跃玩家的手牌
-                for (List<Card> otherHand : otherActivePlayerHands.values()) {
-                    for (Card cOther : otherHand) {
-                        // “捣乱牌”：比你的牌小（会先出），且能放到你的目标行
-                        if (cOther.getNumber() < cardToPlay.getNumber() &&
-                                (lastOnIntendedRealRow == null
-                                        || cOther.getNumber() > lastOnIntendedRealRow.getNumber())) {
-                            potentialInterferingCardsCount++;
-                        }
-                    }
-                }
-                // (可选)也可以考虑本轮其他已出的牌的干扰，但上面的主模拟部分应该已经处理了它们的直接影响。
-                // 主要这里的风险是来自其他人“未出”的牌。
-
-                // 如果捣乱牌数量足以填满剩余安全位（且原先有安全位）
-                if (potentialInterferingCardsCount >= safeSpotsLeft && safeSpotsLeft > 0) {
-                    reason += " (高风险: 其他人有 " + potentialInterferingCardsCount + " 张牌可能抢先填满目标行，该行仅剩 " + safeSpotsLeft
-                            + " 安全位!)";
-                    // bullheadsTaken += 1; // 可以考虑给一个小的猪头惩罚
-                } else if (potentialInterferingCardsCount > 0 && safeSpotsLeft > 0) {
-                    reason += " (中风险: 其他人有 " + potentialInterferingCardsCount + " 张牌可能抢位)";
-                }
-            }
-        }
-        return new EstimatedPlayResult(bullheadsTaken, reason);
+            });
+        });
     }
 
 }
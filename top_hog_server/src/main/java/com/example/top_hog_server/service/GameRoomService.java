@@ -2,12 +2,19 @@ package com.example.top_hog_server.service;
 
 import com.example.top_hog_server.exception.BusinessException;
 import com.example.top_hog_server.exception.ErrorCode;
+import com.example.top_hog_server.handler.RoomStateDeltaEncoder;
 import com.example.top_hog_server.model.GameRoom;
 import com.example.top_hog_server.model.GameState;
+import com.example.top_hog_server.model.GameType;
 import com.example.top_hog_server.model.Player;
 import com.example.top_hog_server.repository.GameRoomRepository;
 import com.example.top_hog_server.security.services.UserDetailsImpl;
+import com.example.top_hog_server.service.room.GameTimerWheel;
+import com.example.top_hog_server.service.room.LobbyIndex;
+import com.example.top_hog_server.service.room.RoomExecutor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
@@ -18,20 +25,46 @@ import java.util.stream.Collectors;
 @Service
 public class GameRoomService {
 
+    // 房主未进入房间时保留房间的时长（毫秒）
+    static final long HOSTLESS_GRACE_MS = 10000;
+    // 快速匹配时跳过的过期索引条目上限
+    private static final int QUICK_MATCH_MAX_ATTEMPTS = 16;
+    // 房间号长度（十六进制字符）
+    static final int ROOM_ID_LENGTH = 8;
+
     private final ConcurrentHashMap<String, GameRoom> activeRooms = new ConcurrentHashMap<>();
+    // 匹配房间 -> 不受房主清理影响的截止时间（毫秒），与匹配结果的保留时长一致
+    private final ConcurrentHashMap<String, Long> matchedRoomDeadlines = new ConcurrentHashMap<>();
+    // 房间列表 / 快速匹配索引，房间状态变化时通过 refreshLobbyIndex 更新
+    private final LobbyIndex lobbyIndex = new LobbyIndex();
     private final GameRoomRepository gameRoomRepository;
+    // 以下三项是房间的运行时资源，移除房间时一并释放
+    private final RoomExecutor roomExecutor;
+    private final GameTimerWheel gameTimerWheel;
+    private final RoomStateDeltaEncoder roomStateDeltaEncoder;
+    private final long matchedRoomGraceMs;
 
     @Autowired
-    public GameRoomService(GameRoomRepository gameRoomRepository) {
+    public GameRoomService(GameRoomRepository gameRoomRepository,
+            RoomExecutor roomExecutor,
+            GameTimerWheel gameTimerWheel,
+            RoomStateDeltaEncoder roomStateDeltaEncoder,
+            @Value("${game.matchmaking.resultTtlMs:60000}") long matchedRoomGraceMs) {
         this.gameRoomRepository = gameRoomRepository;
+        this.roomExecutor = roomExecutor;
+        this.gameTimerWheel = gameTimerWheel;
+        this.roomStateDeltaEncoder = roomStateDeltaEncoder;
+        this.matchedRoomGraceMs = matchedRoomGraceMs;
         // Load active rooms from DB if needed
         List<GameRoom> rooms = gameRoomRepository.findByGameState(GameState.WAITING);
         for (GameRoom r : rooms) {
             activeRooms.put(r.getRoomId(), r);
+            lobbyIndex.update(r);
         }
         rooms = gameRoomRepository.findByGameState(GameState.PLAYING);
         for (GameRoom r : rooms) {
             activeRooms.put(r.getRoomId(), r);
+            lobbyIndex.update(r);
         }
     }
 
@@ -41,7 +74,6 @@ public class GameRoomService {
     public GameRoom createRoom(Map<String, Object> payload) {
         UserDetailsImpl user = (UserDetailsImpl) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
 
-        String roomId = UUID.randomUUID().toString().substring(0, 4).toUpperCase(); // Short ID
         String roomName = (String) payload.getOrDefault("roomName", user.getNickname() + "的房间");
 
         // 内容安全检测
@@ -49,7 +81,7 @@ public class GameRoomService {
             throw new BusinessException(ErrorCode.INVALID_INPUT, "房间名包含违规内容,请修改后重试");
         }
 
-        GameRoom room = new GameRoom(roomId, roomName);
+        GameRoom room = registerNewRoom(roomName);
         room.setOwnerId(user.getId());
         room.setMaxPlayers((Integer) payload.getOrDefault("maxPlayers", 6));
         room.setMaxRounds((Integer) payload.getOrDefault("maxRounds", 3));
@@ -83,12 +115,43 @@ public class GameRoomService {
         // The frontend creates the room, gets the ID, connects WS, then sends
         // "joinRoom" or similar, or the backend auto-joins on connect if possible.
 
-        activeRooms.put(roomId, room);
+        lobbyIndex.update(room);
         gameRoomRepository.save(room);
 
         return room;
     }
 
+    /**
+     * 生成未被占用的房间号，并登记一个以它为 ID 的新房间。
+     */
+    private GameRoom registerNewRoom(String roomName) {
+        GameRoom room;
+        do {
+            String roomId = UUID.randomUUID().toString().replace("-", "").substring(0, ROOM_ID_LENGTH).toUpperCase();
+            room = new GameRoom(roomId, roomName);
+        } while (activeRooms.putIfAbsent(room.getRoomId(), room) != null);
+        return room;
+    }
+
+    /**
+     * 为匹配成功的玩家创建房间（由匹配线程调用，没有登录上下文）。
+     * 房间设为私密，密码只发给匹配到的玩家，快速匹配和其他玩家不会占用预留的座位。
+     * 匹配结果保留期间房间不会因房主未到而被清理；房主迟迟不进房时由第一个进房的玩家接任（见 {@link #claimMatchedRoomOwner}）。
+     */
+    public GameRoom createMatchedRoom(Long ownerId, int maxPlayers, String password) {
+        GameRoom room = registerNewRoom("匹配房间");
+        matchedRoomDeadlines.put(room.getRoomId(), room.getCreatedAtTimestamp() + matchedRoomGraceMs);
+
+        room.setOwnerId(ownerId);
+        room.setMaxPlayers(maxPlayers);
+        room.setPrivate(true);
+        room.setPassword(password);
+        room.setGameState(GameState.WAITING);
+        lobbyIndex.update(room);
+        gameRoomRepository.save(room);
+        return room;
+    }
+
     public synchronized GameRoom joinRoom(String roomId, String password) {
         GameRoom room = activeRooms.get(roomId);
         if (room == null) {
@@ -97,6 +160,7 @@ public class GameRoomService {
             if (r.isPresent()) {
                 room = r.get();
                 activeRooms.put(roomId, room);
+                lobbyIndex.update(room);
             } else {
                 throw new BusinessException(ErrorCode.RESOURCE_NOT_FOUND, "Room not found");
             }
@@ -116,43 +180,96 @@ public class GameRoomService {
         return room;
     }
 
+    /**
+     * 按页码分页的房间列表，按创建时间排序。
+     */
     public List<GameRoom> listRooms(int page, int pageSize, boolean onlyAvailable) {
-        // Filter and cleanup active rooms
-        long now = System.currentTimeMillis();
-        List<String> roomsToRemove = new ArrayList<>();
+        return lobbyIndex.pageByOffset(onlyAvailable, Math.max(0, (page - 1) * pageSize), pageSize);
+    }
 
-        for (GameRoom room : activeRooms.values()) {
-            // Check if room has been created for more than 10 seconds
-            if (now - room.getCreatedAtTimestamp() > 10000) {
-                // Check if host is present
-                boolean hostPresent = room.getPlayers().values().stream()
-                        .anyMatch(p -> p.getUserId() != null && p.getUserId().equals(room.getOwnerId()));
-
-                if (!hostPresent) {
-                    roomsToRemove.add(room.getRoomId());
-                }
+    /**
+     * 键集分页的房间列表：返回 cursor 之后（按创建时间）的至多 pageSize 个房间。
+     *
+     * @param cursor 上一页返回的游标，为空时取第一页
+     */
+    public LobbyPage listRooms(String cursor, int pageSize, boolean onlyAvailable) {
+        LobbyIndex.Cursor after = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                after = LobbyIndex.Cursor.parse(cursor);
+            } catch (IllegalArgumentException e) {
+                throw new BusinessException(ErrorCode.INVALID_INPUT, "Invalid cursor");
             }
         }
+        List<GameRoom> list = lobbyIndex.page(onlyAvailable, after, pageSize);
+        String nextCursor = list.size() < pageSize ? null
+                : LobbyIndex.Cursor.after(list.get(list.size() - 1)).toString();
+        return new LobbyPage(list, nextCursor, lobbyIndex.size(onlyAvailable));
+    }
 
-        // Remove invalid rooms
-        for (String roomId : roomsToRemove) {
-            activeRooms.remove(roomId);
-            gameRoomRepository.deleteById(roomId);
+    /**
+     * 房间状态（玩家数、游戏状态等）变化后更新大厅索引。
+     * 房间已被移除时不做任何事。
+     */
+    public void refreshLobbyIndex(GameRoom room) {
+        if (room == null) {
+            return;
         }
+        // 与 removeRoom 中的 lobbyIndex.remove 互斥，避免已移除的房间被重新登记
+        synchronized (lobbyIndex) {
+            if (activeRooms.get(room.getRoomId()) == room) {
+                lobbyIndex.update(room);
+            }
+        }
+    }
+
+    /**
+     * 匹配房间的房主还不在房间里时，把房主转给正在进房的用户。由房间执行器在玩家进房时调用。
+     *
+     * @return 是否接任了房主
+     */
+    public boolean claimMatchedRoomOwner(GameRoom room, Long userId) {
+        if (!matchedRoomDeadlines.containsKey(room.getRoomId()) || isOwnerPresent(room)) {
+            return false;
+        }
+        room.setOwnerId(userId);
+        gameRoomRepository.save(room);
+        return true;
+    }
 
-        // Simple pagination on memory list
-        List<GameRoom> list = new ArrayList<>(activeRooms.values());
-        if (onlyAvailable) {
-            list = list.stream()
-                    .filter(r -> r.getGameState() == GameState.WAITING && r.getCurrentPlayers() < r.getMaxPlayers())
-                    .collect(Collectors.toList());
+    private static boolean isOwnerPresent(GameRoom room) {
+        return room.getPlayers().values().stream()
+                .anyMatch(p -> p.getUserId() != null && p.getUserId().equals(room.getOwnerId()));
+    }
+
+    /**
+     * 清理创建超过 HOSTLESS_GRACE_MS 仍没有房主在场、尚未开局的房间。
+     * 匹配房间在匹配结果保留期内不清理，其他玩家的匹配结果仍指向它。
+     * 已开局的房间由游戏逻辑在玩家离开时处理（通知在座玩家后再移除），这里不动。
+     */
+    @Scheduled(fixedDelayString = "${game.lobby.hostlessSweepMs:5000}")
+    public void removeHostlessRooms() {
+        long now = System.currentTimeMillis();
+        for (GameRoom room : activeRooms.values()) {
+            if (!isHostlessWaitingRoom(room, now)) {
+                continue;
+            }
+            // 在房间的执行上下文中复查，避免与同时进行的进房、开局交错
+            String roomId = room.getRoomId();
+            roomExecutor.execute(roomId, () -> {
+                if (activeRooms.get(roomId) == room && isHostlessWaitingRoom(room, System.currentTimeMillis())) {
+                    removeRoom(roomId);
+                }
+            });
         }
+    }
 
-        // Sort by created time? roomId is random.
-        // Let's just return list for now.
-        int start = Math.min((page - 1) * pageSize, list.size());
-        int end = Math.min(start + pageSize, list.size());
-        return list.subList(start, end);
+    private boolean isHostlessWaitingRoom(GameRoom room, long now) {
+        if (room.getGameState() != GameState.WAITING || now - room.getCreatedAtTimestamp() <= HOSTLESS_GRACE_MS) {
+            return false;
+        }
+        Long matchedDeadline = matchedRoomDeadlines.get(room.getRoomId());
+        return (matchedDeadline == null || now > matchedDeadline) && !isOwnerPresent(room);
     }
 
     public synchronized void leaveRoom(String roomId) {
@@ -161,8 +278,9 @@ public class GameRoomService {
         if (room != null) {
             room.removePlayer(String.valueOf(user.getId()));
             if (room.getPlayers().isEmpty()) {
-                activeRooms.remove(roomId);
-                gameRoomRepository.deleteById(roomId);
+                removeRoom(roomId);
+            } else {
+                lobbyIndex.update(room);
             }
         }
     }
@@ -191,9 +309,33 @@ public class GameRoomService {
         return activeRooms.get(roomId);
     }
 
+    /**
+     * 用从游戏日志重建的房间替换启动时从数据库加载的同一房间（数据库里只有房间的基本信息）。
+     * 房间已被删除（数据库中不存在）时不恢复。
+     *
+     * @return 是否已恢复
+     */
+    public boolean restoreRoom(GameRoom room) {
+        synchronized (lobbyIndex) {
+            if (activeRooms.replace(room.getRoomId(), room) == null) {
+                return false;
+            }
+            lobbyIndex.update(room);
+        }
+        return true;
+    }
+
+    /**
+     * 移除房间并释放它的运行时资源：房间锁、计时器和增量广播的基准快照。
+     */
     public void removeRoom(String roomId) {
         activeRooms.remove(roomId);
+        matchedRoomDeadlines.remove(roomId);
+        lobbyIndex.remove(roomId);
         gameRoomRepository.deleteById(roomId);
+        roomExecutor.release(roomId);
+        gameTimerWheel.cancelRoom(roomId);
+        roomStateDeltaEncoder.forget(roomId);
     }
 
     public Collection<GameRoom> getAllActiveRoomsInMemory() {
@@ -208,25 +350,58 @@ public class GameRoomService {
     }
 
     /**
-     * 快速匹配：自动加入第一个有空位的公开房间
+     * 快速匹配：自动加入空位最少的公开房间（同样空位时取最早创建的）
      * 如果没有可用房间，则抛出异常
      */
     public GameRoom quickMatch() {
-        // 获取所有可用的公开房间（非私密房间且有空位）
-        List<GameRoom> availableRooms = activeRooms.values().stream()
-                .filter(room -> room.getGameState() == GameState.WAITING &&
-                        room.getPlayers().size() < room.getMaxPlayers() &&
-                        !room.isPrivate())
-                .collect(Collectors.toList());
+        return quickMatch(GameType.TOP_HOG);
+    }
 
-        if (availableRooms.isEmpty()) {
-            throw new BusinessException(ErrorCode.RESOURCE_NOT_FOUND, "No available rooms for quick match");
+    public GameRoom quickMatch(GameType gameType) {
+        for (int attempt = 0; attempt < QUICK_MATCH_MAX_ATTEMPTS; attempt++) {
+            GameRoom room = lobbyIndex.bestQuickMatch(gameType);
+            if (room == null) {
+                break;
+            }
+            // 索引记录的是上次更新时的状态，加入前按当前状态再校验一次
+            if (activeRooms.get(room.getRoomId()) != room) {
+                lobbyIndex.remove(room.getRoomId());
+                continue;
+            }
+            if (!LobbyIndex.isJoinable(room) || room.isPrivate()) {
+                lobbyIndex.update(room);
+                continue;
+            }
+            // 加入该房间（不需要密码，因为是公开房间）
+            return joinRoom(room.getRoomId(), "");
         }
+        throw new BusinessException(ErrorCode.RESOURCE_NOT_FOUND, "No available rooms for quick match");
+    }
 
-        // 选择第一个可用房间
-        GameRoom room = availableRooms.get(0);
+    /**
+     * 一页房间列表，nextCursor 为空表示没有下一页。
+     */
+    public static class LobbyPage {
+        private final List<GameRoom> list;
+        private final String nextCursor;
+        private final int total;
+
+        public LobbyPage(List<GameRoom> list, String nextCursor, int total) {
+            this.list = list;
+            this.nextCursor = nextCursor;
+            this.total = total;
+        }
+
+        public List<GameRoom> getList() {
+            return list;
+        }
+
+        public String getNextCursor() {
+            return nextCursor;
+        }
 
-        // 加入该房间（不需要密码，因为是公开房间）
-        return joinRoom(room.getRoomId(), "");
+        public int getTotal() {
+            return total;
+        }
     }
 }
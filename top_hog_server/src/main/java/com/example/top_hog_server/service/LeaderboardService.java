@@ -4,109 +4,90 @@ import com.example.top_hog_server.model.GameHistory;
 import com.example.top_hog_server.model.User;
 import com.example.top_hog_server.repository.GameHistoryRepository;
 import com.example.top_hog_server.repository.UserRepository;
+import com.example.top_hog_server.service.history.GameHistoryProjection;
+import com.example.top_hog_server.service.history.GameHistoryWriter;
+import com.example.top_hog_server.service.leaderboard.LeaderboardRedisMirror;
+import com.example.top_hog_server.service.leaderboard.RankedBoard;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.sql.Timestamp;
+import java.time.Duration;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
 /**
  * 排行榜服务
+ * <p>
+ * 总榜、周榜、月榜常驻内存，战绩写库后增量更新（{@link #apply}），
+ * 查询前 N 名和个人名次都是 O(log n)。启动时用一次 GROUP BY 聚合从 game_history 重建，
+ * 与增量更新的衔接见 {@link GameHistoryProjection}。
+ * 可选把每次变化镜像到 Redis 有序集合（game.leaderboard.redis.enabled）。
  */
 @Service
 @Slf4j
-public class LeaderboardService {
+public class LeaderboardService extends GameHistoryProjection {
 
-    @Autowired
-    private GameHistoryRepository gameHistoryRepository;
+    // 胜率榜的最少场次
+    static final int WIN_RATE_MIN_GAMES = 5;
+
+    private static final Duration WEEKLY_TTL = Duration.ofDays(14);
+    private static final Duration MONTHLY_TTL = Duration.ofDays(62);
+
+    private final GameHistoryRepository gameHistoryRepository;
+    private final UserRepository userRepository;
+    private final LeaderboardRedisMirror redisMirror;
+
+    private final Object boardLock = new Object();
+    private volatile PeriodBoard allTime = new PeriodBoard("ALL", null);
+    private volatile PeriodBoard weekly = new PeriodBoard("WEEKLY", weekStart(LocalDate.now()));
+    private volatile PeriodBoard monthly = new PeriodBoard("MONTHLY", monthStart(LocalDate.now()));
 
     @Autowired
-    private UserRepository userRepository;
+    public LeaderboardService(GameHistoryRepository gameHistoryRepository, UserRepository userRepository,
+            LeaderboardRedisMirror redisMirror, GameHistoryWriter historyWriter) {
+        super(historyWriter);
+        this.gameHistoryRepository = gameHistoryRepository;
+        this.userRepository = userRepository;
+        this.redisMirror = redisMirror;
+    }
+
+    /**
+     * 一批战绩写库后增量更新各周期榜单。
+     */
+    @Override
+    protected void apply(List<GameHistory> histories) {
+        for (GameHistory h : histories) {
+            if (h.getUserId() == null) {
+                continue;
+            }
+            LocalDate day = h.getCreatedAt() != null ? h.getCreatedAt().toLocalDateTime().toLocalDate() : LocalDate.now();
+            int win = h.getRank() == 1 ? 1 : 0;
+            publish(allTime, allTime.apply(h.getUserId(), h.getScore(), 1, win), null);
+            PeriodBoard week = boardFor("WEEKLY", weekStart(day));
+            if (week != null) {
+                publish(week, week.apply(h.getUserId(), h.getScore(), 1, win), WEEKLY_TTL);
+            }
+            PeriodBoard month = boardFor("MONTHLY", monthStart(day));
+            if (month != null) {
+                publish(month, month.apply(h.getUserId(), h.getScore(), 1, win), MONTHLY_TTL);
+            }
+        }
+    }
 
     /**
      * 获取全服排行榜
-     * 
+     *
      * @param type   TOTAL_SCORE(总分), WIN_RATE(胜率), TOTAL_WINS(胜场)
      * @param period ALL(全部), WEEKLY(本周), MONTHLY(本月)
      * @param limit  数量
      */
     public List<Map<String, Object>> getLeaderboard(String type, String period, int limit) {
-        // 计算时间范围
-        LocalDateTime startTime = null;
-        if ("WEEKLY".equalsIgnoreCase(period)) {
-            startTime = LocalDate.now().minusDays(LocalDate.now().getDayOfWeek().getValue() - 1).atStartOfDay();
-        } else if ("MONTHLY".equalsIgnoreCase(period)) {
-            startTime = LocalDate.now().withDayOfMonth(1).atStartOfDay();
-        }
-
-        // 获取所有相关历史记录
-        List<GameHistory> history;
-        if (startTime != null) {
-            // 这里简单处理,实际量大应在DB层面聚合
-            LocalDateTime finalStartTime = startTime;
-            history = gameHistoryRepository.findAll().stream()
-                    .filter(h -> h.getCreatedAt().toLocalDateTime().isAfter(finalStartTime))
-                    .collect(Collectors.toList());
-        } else {
-            history = gameHistoryRepository.findAll();
-        }
-
-        // 分组统计
-        Map<Long, Map<String, Object>> userStats = new HashMap<>();
-        for (GameHistory h : history) {
-            userStats.computeIfAbsent(h.getUserId(), k -> {
-                Map<String, Object> stats = new HashMap<>();
-                stats.put("userId", k);
-                stats.put("totalScore", 0);
-                stats.put("games", 0);
-                stats.put("wins", 0);
-                return stats;
-            });
-
-            Map<String, Object> stats = userStats.get(h.getUserId());
-            stats.put("totalScore", (Integer) stats.get("totalScore") + h.getScore());
-            stats.put("games", (Integer) stats.get("games") + 1);
-            if (h.getRank() == 1) {
-                stats.put("wins", (Integer) stats.get("wins") + 1);
-            }
-        }
-
-        // 计算胜率和排序列表
-        List<Map<String, Object>> ranking = new ArrayList<>(userStats.values());
-        for (Map<String, Object> stats : ranking) {
-            int games = (Integer) stats.get("games");
-            int wins = (Integer) stats.get("wins");
-            double winRate = games > 0 ? (double) wins / games * 100 : 0;
-            stats.put("winRate", winRate);
-        }
-
-        // 排序
-        Comparator<Map<String, Object>> comparator;
-        if ("WIN_RATE".equalsIgnoreCase(type)) {
-            comparator = (a, b) -> {
-                // 胜率相同比场次、再比积分
-                int c = Double.compare((Double) b.get("winRate"), (Double) a.get("winRate"));
-                if (c != 0)
-                    return c;
-                return Integer.compare((Integer) b.get("games"), (Integer) a.get("games"));
-            };
-            // 过滤掉场次太少的
-            ranking = ranking.stream().filter(s -> (Integer) s.get("games") >= 5).collect(Collectors.toList());
-        } else if ("TOTAL_WINS".equalsIgnoreCase(type)) {
-            comparator = (a, b) -> Integer.compare((Integer) b.get("wins"), (Integer) a.get("wins"));
-        } else { // TOTAL_SCORE
-            comparator = (a, b) -> Integer.compare((Integer) b.get("totalScore"), (Integer) a.get("totalScore"));
-        }
-
-        ranking.sort(comparator);
-
-        // 截取前N名并补充用户信息
-        List<Map<String, Object>> result = ranking.stream()
-                .limit(limit)
-                .collect(Collectors.toList());
+        ensureLoaded();
+        PeriodBoard board = currentBoard(period);
+        List<Map<String, Object>> result = board.top(type, Math.max(0, limit));
 
         // 批量查询用户以优化性能
         Set<Long> userIds = result.stream().map(m -> (Long) m.get("userId")).collect(Collectors.toSet());
@@ -116,14 +97,202 @@ public class LeaderboardService {
         for (int i = 0; i < result.size(); i++) {
             Map<String, Object> item = result.get(i);
             item.put("rank", i + 1);
-            User user = userMap.get(item.get("userId"));
-            if (user != null) {
-                item.put("nickname", user.getNickname());
-                item.put("avatarUrl", user.getAvatarUrl());
-                item.put("isVip", user.isVip());
-            }
+            fillUser(item, userMap.get(item.get("userId")));
         }
 
         return result;
     }
+
+    /**
+     * 获取某个用户在榜单中的名次，未上榜时 rank 为 -1。
+     */
+    public Map<String, Object> getUserRank(String type, String period, Long userId) {
+        ensureLoaded();
+        Map<String, Object> item = currentBoard(period).rankOf(type, userId);
+        fillUser(item, userRepository.findById(userId).orElse(null));
+        return item;
+    }
+
+    private void fillUser(Map<String, Object> item, User user) {
+        if (user != null) {
+            item.put("nickname", user.getNickname());
+            item.put("avatarUrl", user.getAvatarUrl());
+            item.put("isVip", user.isVip());
+        }
+    }
+
+    private void publish(PeriodBoard board, Stats stats, Duration ttl) {
+        if (!redisMirror.isEnabled()) {
+            return;
+        }
+        redisMirror.publish(board.key() + ":TOTAL_SCORE", stats.userId, stats.totalScore, ttl);
+        redisMirror.publish(board.key() + ":TOTAL_WINS", stats.userId, stats.wins, ttl);
+        if (stats.games >= WIN_RATE_MIN_GAMES) {
+            redisMirror.publish(board.key() + ":WIN_RATE", stats.userId, stats.winRate(), ttl);
+        }
+    }
+
+    private PeriodBoard currentBoard(String period) {
+        LocalDate today = LocalDate.now();
+        if ("WEEKLY".equalsIgnoreCase(period)) {
+            return boardFor("WEEKLY", weekStart(today));
+        } else if ("MONTHLY".equalsIgnoreCase(period)) {
+            return boardFor("MONTHLY", monthStart(today));
+        }
+        return allTime;
+    }
+
+    /**
+     * 取指定起始日期的周期榜；进入新周期时换成空榜，早于当前周期的返回 null。
+     */
+    private PeriodBoard boardFor(String period, LocalDate start) {
+        PeriodBoard board = "WEEKLY".equals(period) ? weekly : monthly;
+        if (start.equals(board.start)) {
+            return board;
+        }
+        if (start.isBefore(board.start)) {
+            return null;
+        }
+        synchronized (boardLock) {
+            board = "WEEKLY".equals(period) ? weekly : monthly;
+            if (start.isAfter(board.start)) {
+                board = new PeriodBoard(period, start);
+                if ("WEEKLY".equals(period)) {
+                    weekly = board;
+                } else {
+                    monthly = board;
+                }
+            }
+            return start.equals(board.start) ? board : null;
+        }
+    }
+
+    @Override
+    protected void load() {
+        LocalDate today = LocalDate.now();
+        PeriodBoard all = load(new PeriodBoard("ALL", null));
+        PeriodBoard week = load(new PeriodBoard("WEEKLY", weekStart(today)));
+        PeriodBoard month = load(new PeriodBoard("MONTHLY", monthStart(today)));
+        synchronized (boardLock) {
+            allTime = all;
+            weekly = week;
+            monthly = month;
+        }
+        log.info("排行榜已加载: 总榜 {} 人, 周榜 {} 人, 月榜 {} 人", all.size(), week.size(), month.size());
+    }
+
+    private PeriodBoard load(PeriodBoard board) {
+        Timestamp since = board.start == null ? new Timestamp(0L) : Timestamp.valueOf(board.start.atStartOfDay());
+        for (Object[] row : gameHistoryRepository.aggregateByUserSince(since)) {
+            if (row[0] == null) {
+                continue;
+            }
+            board.apply(((Number) row[0]).longValue(), ((Number) row[1]).longValue(),
+                    ((Number) row[2]).intValue(), ((Number) row[3]).intValue());
+        }
+        return board;
+    }
+
+    static LocalDate weekStart(LocalDate day) {
+        return day.minusDays(day.getDayOfWeek().getValue() - 1);
+    }
+
+    static LocalDate monthStart(LocalDate day) {
+        return day.withDayOfMonth(1);
+    }
+
+    private static final class Stats {
+        final long userId;
+        long totalScore;
+        int games;
+        int wins;
+
+        Stats(long userId) {
+            this.userId = userId;
+        }
+
+        double winRate() {
+            return games > 0 ? (double) wins / games * 100 : 0;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("userId", userId);
+            stats.put("totalScore", (int) totalScore);
+            stats.put("games", games);
+            stats.put("wins", wins);
+            stats.put("winRate", winRate());
+            return stats;
+        }
+    }
+
+    /**
+     * 一个周期的榜单：用户累计数据 + 三种排序。
+     */
+    private static final class PeriodBoard {
+        final String period;
+        final LocalDate start;
+        private final Map<Long, Stats> stats = new HashMap<>();
+        private final RankedBoard byScore = new RankedBoard();
+        private final RankedBoard byWins = new RankedBoard();
+        // 胜率相同比场次
+        private final RankedBoard byWinRate = new RankedBoard();
+
+        PeriodBoard(String period, LocalDate start) {
+            this.period = period;
+            this.start = start;
+        }
+
+        String key() {
+            return start == null ? period : period + ":" + start;
+        }
+
+        synchronized int size() {
+            return stats.size();
+        }
+
+        /**
+         * 累加数据并更新排序，返回更新后的快照。
+         */
+        synchronized Stats apply(long userId, long score, int games, int wins) {
+            Stats s = stats.computeIfAbsent(userId, Stats::new);
+            s.totalScore += score;
+            s.games += games;
+            s.wins += wins;
+            byScore.update(userId, s.totalScore, 0);
+            byWins.update(userId, s.wins, 0);
+            if (s.games >= WIN_RATE_MIN_GAMES) {
+                byWinRate.update(userId, s.winRate(), s.games);
+            }
+            Stats copy = new Stats(userId);
+            copy.totalScore = s.totalScore;
+            copy.games = s.games;
+            copy.wins = s.wins;
+            return copy;
+        }
+
+        synchronized List<Map<String, Object>> top(String type, int limit) {
+            List<Map<String, Object>> result = new ArrayList<>();
+            for (Long userId : ranking(type).top(limit)) {
+                result.add(stats.get(userId).toMap());
+            }
+            return result;
+        }
+
+        synchronized Map<String, Object> rankOf(String type, Long userId) {
+            Stats s = stats.get(userId);
+            Map<String, Object> item = s != null ? s.toMap() : new Stats(userId).toMap();
+            item.put("rank", ranking(type).rankOf(userId));
+            return item;
+        }
+
+        private RankedBoard ranking(String type) {
+            if ("WIN_RATE".equalsIgnoreCase(type)) {
+                return byWinRate;
+            } else if ("TOTAL_WINS".equalsIgnoreCase(type)) {
+                return byWins;
+            }
+            return byScore;
+        }
+    }
 }
@@ -4,6 +4,9 @@ import com.example.top_hog_server.exception.BusinessException;
 import com.example.top_hog_server.exception.ErrorCode;
 import com.example.top_hog_server.model.*;
 import com.example.top_hog_server.repository.*;
+import com.example.top_hog_server.security.services.PrincipalCache;
+import com.example.top_hog_server.service.wallet.WalletCurrency;
+import com.example.top_hog_server.service.wallet.WalletLedger;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -30,13 +33,16 @@ public class PaymentService {
     private ProductRepository productRepository;
 
     @Autowired
-    private UserBalanceRepository userBalanceRepository;
+    private WalletLedger walletLedger;
 
     @Autowired
-    private TransactionLogRepository transactionLogRepository;
+    private UserRepository userRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private AnalyticsService analyticsService;
+
+    @Autowired
+    private PrincipalCache principalCache;
 
     @Value("${wechat.app-id}")
     private String appId;
@@ -136,6 +142,7 @@ public class PaymentService {
         // 充值到余额
         rechargeBalance(order.getUserId(), order);
 
+        analyticsService.recordOrderPaid(order.getId(), order.getUserId(), order.getAmount(), order.getCreatedAt());
         log.info("支付成功: orderNo={}, transactionId={}", orderNo, transactionId);
     }
 
@@ -148,51 +155,16 @@ public class PaymentService {
         Product product = productRepository.findById(order.getProductId())
                 .orElseThrow(() -> new BusinessException(ErrorCode.RESOURCE_NOT_FOUND, "商品不存在"));
 
-        // 获取或创建用户余额
-        UserBalance balance = userBalanceRepository.findById(userId)
-                .orElseGet(() -> {
-                    UserBalance newBalance = new UserBalance();
-                    newBalance.setUserId(userId);
-                    User user = userRepository.findById(userId)
-                            .orElseThrow(() -> new BusinessException(ErrorCode.USER_NOT_FOUND, "用户不存在"));
-                    newBalance.setUser(user);
-                    return newBalance;
-                });
-
         // 充值金币
         if (product.getCoins() > 0) {
-            Long oldCoins = balance.getCoins();
-            balance.setCoins(oldCoins + product.getCoins());
-
-            // 记录交易日志
-            TransactionLog txLog = new TransactionLog();
-            txLog.setUserId(userId);
-            txLog.setType("RECHARGE");
-            txLog.setCurrency("COINS");
-            txLog.setAmount(product.getCoins());
-            txLog.setBalanceBefore(oldCoins);
-            txLog.setBalanceAfter(balance.getCoins());
-            txLog.setReason("充值-" + product.getName());
-            txLog.setOrderNo(order.getOrderNo());
-            transactionLogRepository.save(txLog);
+            walletLedger.credit(userId, WalletCurrency.COINS, product.getCoins(), "RECHARGE",
+                    "充值-" + product.getName(), order.getOrderNo());
         }
 
         // 充值钻石
         if (product.getDiamonds() > 0) {
-            Long oldDiamonds = balance.getDiamonds();
-            balance.setDiamonds(oldDiamonds + product.getDiamonds());
-
-            // 记录交易日志
-            TransactionLog txLog = new TransactionLog();
-            txLog.setUserId(userId);
-            txLog.setType("RECHARGE");
-            txLog.setCurrency("DIAMONDS");
-            txLog.setAmount(product.getDiamonds());
-            txLog.setBalanceBefore(oldDiamonds);
-            txLog.setBalanceAfter(balance.getDiamonds());
-            txLog.setReason("充值-" + product.getName());
-            txLog.setOrderNo(order.getOrderNo());
-            transactionLogRepository.save(txLog);
+            walletLedger.credit(userId, WalletCurrency.DIAMONDS, product.getDiamonds(), "RECHARGE",
+                    "充值-" + product.getName(), order.getOrderNo());
         }
 
         // 开通VIP
@@ -213,119 +185,53 @@ public class PaymentService {
 
             user.setVip(true);
             userRepository.save(user);
+            principalCache.invalidateUser(userId);
         }
 
         // 更新累计充值金额
-        balance.setTotalRecharge(balance.getTotalRecharge().add(order.getAmount()));
-        userBalanceRepository.save(balance);
+        walletLedger.addTotalRecharge(userId, order.getAmount());
 
         log.info("充值成功: userId={}, coins={}, diamonds={}, vipDays={}",
                 userId, product.getCoins(), product.getDiamonds(), product.getVipDays());
     }
 
-    /**
-     * 消费金币
-     */
-
     /**
      * 增加金币(系统奖励)
      */
-    @Transactional
     public void addCoins(Long userId, Integer amount, String reason) {
         addCoins(userId, amount.longValue(), reason);
     }
 
-    @Transactional
     public void addCoins(Long userId, Long amount, String reason) {
-        UserBalance balance = userBalanceRepository.findById(userId)
-                .orElseGet(() -> {
-                    UserBalance newBalance = new UserBalance();
-                    newBalance.setUserId(userId);
-                    // 尝试查找用户确保用户存在
-                    User user = userRepository.findById(userId)
-                            .orElseThrow(() -> new BusinessException(ErrorCode.USER_NOT_FOUND, "用户不存在"));
-                    newBalance.setUser(user);
-                    return newBalance;
-                });
-
-        Long oldCoins = balance.getCoins();
-        balance.setCoins(oldCoins + amount);
-        userBalanceRepository.save(balance);
-
-        // 记录交易日志
-        TransactionLog txLog = new TransactionLog();
-        txLog.setUserId(userId);
-        txLog.setType("REWARD"); // 奖励类型
-        txLog.setCurrency("COINS");
-        txLog.setAmount(amount);
-        txLog.setBalanceBefore(oldCoins);
-        txLog.setBalanceAfter(balance.getCoins());
-        txLog.setReason(reason);
-        transactionLogRepository.save(txLog);
+        walletLedger.credit(userId, WalletCurrency.COINS, amount, "REWARD", reason, null);
     }
 
     /**
      * 增加钻石(系统奖励)
      */
-    @Transactional
     public void addDiamonds(Long userId, Integer amount, String reason) {
         addDiamonds(userId, amount.longValue(), reason);
     }
 
-    @Transactional
     public void addDiamonds(Long userId, Long amount, String reason) {
-        UserBalance balance = userBalanceRepository.findById(userId)
-                .orElseGet(() -> {
-                    UserBalance newBalance = new UserBalance();
-                    newBalance.setUserId(userId);
-                    User user = userRepository.findById(userId)
-                            .orElseThrow(() -> new BusinessException(ErrorCode.USER_NOT_FOUND, "用户不存在"));
-                    newBalance.setUser(user);
-                    return newBalance;
-                });
-
-        Long oldDiamonds = balance.getDiamonds();
-        balance.setDiamonds(oldDiamonds + amount);
-        userBalanceRepository.save(balance);
-
-        // 记录交易日志
-        TransactionLog txLog = new TransactionLog();
-        txLog.setUserId(userId);
-        txLog.setType("REWARD");
-        txLog.setCurrency("DIAMONDS");
-        txLog.setAmount(amount);
-        txLog.setBalanceBefore(oldDiamonds);
-        txLog.setBalanceAfter(balance.getDiamonds());
-        txLog.setReason(reason);
-        transactionLogRepository.save(txLog);
+        walletLedger.credit(userId, WalletCurrency.DIAMONDS, amount, "REWARD", reason, null);
+    }
+
+    /**
+     * 批量发放奖励(活动奖励等)，每批用户一个事务
+     *
+     * @param amounts 用户ID -> 发放数量
+     * @return 实际发放的用户数
+     */
+    public int grantRewards(Map<Long, Long> amounts, WalletCurrency currency, String reason) {
+        return walletLedger.grantBatch(amounts, currency, "REWARD", reason);
     }
 
     /**
      * 消费金币
      */
-    @Transactional
     public void consumeCoins(Long userId, Long amount, String reason) {
-        UserBalance balance = userBalanceRepository.findById(userId)
-                .orElseThrow(() -> new BusinessException(ErrorCode.RESOURCE_NOT_FOUND, "余额不存在"));
-
-        if (balance.getCoins() < amount) {
-            throw new BusinessException(ErrorCode.INVALID_INPUT, "金币余额不足");
-        }
-
-        Long oldCoins = balance.getCoins();
-        balance.setCoins(oldCoins - amount);
-        userBalanceRepository.save(balance);
-
-        // 记录交易日志
-        TransactionLog txLog = new TransactionLog();
-        txLog.setUserId(userId);
-        txLog.setType("CONSUME");
-        txLog.setCurrency("COINS");
-        txLog.setAmount(amount);
-        txLog.setBalanceBefore(oldCoins);
-        txLog.setBalanceAfter(balance.getCoins());
-        txLog.setReason(reason);
-        transactionLogRepository.save(txLog);
+        walletLedger.debit(userId, WalletCurrency.COINS, amount, "CONSUME", reason);
 
         log.info("消费金币: userId={}, amount={}, reason={}", userId, amount, reason);
     }
@@ -1,12 +1,11 @@
 package com.example.top_hog_server.service;
 
 import com.example.top_hog_server.model.Friendship;
-import com.example.top_hog_server.model.GameHistory;
 import com.example.top_hog_server.model.User;
 import com.example.top_hog_server.repository.FriendshipRepository;
-import com.example.top_hog_server.repository.GameHistoryRepository;
 import com.example.top_hog_server.repository.UserRepository;
 import com.example.top_hog_server.security.services.UserDetailsImpl;
+import com.example.top_hog_server.service.stats.UserGameStats;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -29,7 +28,10 @@ public class SocialService {
         private UserRepository userRepository;
 
         @Autowired
-        private GameHistoryRepository gameHistoryRepository;
+        private UserStatsService userStatsService;
+
+        // 搜索结果上限
+        private static final int SEARCH_LIMIT = 20;
 
         /**
          * 获取好友排行榜
@@ -48,36 +50,16 @@ public class SocialService {
                 // 添加自己
                 friendIds.add(userId);
 
-                // 获取好友的游戏记录
-                List<GameHistory> allHistory = gameHistoryRepository.findAll();
-
-                // 按好友分组统计
-                Map<Long, Map<String, Object>> friendStats = new HashMap<>();
-
-                for (Long friendId : friendIds) {
-                        List<GameHistory> friendHistory = allHistory.stream()
-                                        .filter(h -> h.getUserId().equals(friendId))
-                                        .collect(Collectors.toList());
-
-                        Map<String, Object> stats = new HashMap<>();
-                        stats.put("userId", friendId);
-                        stats.put("totalGames", friendHistory.size());
-                        stats.put("totalScore", friendHistory.stream().mapToInt(GameHistory::getScore).sum());
-                        stats.put("avgScore", friendHistory.isEmpty() ? 0
-                                        : friendHistory.stream().mapToInt(GameHistory::getScore).average().orElse(0));
-                        stats.put("wins", friendHistory.stream().filter(h -> h.getRank() == 1).count());
-                        stats.put("winRate",
-                                        friendHistory.isEmpty() ? 0
-                                                        : (double) friendHistory.stream().filter(h -> h.getRank() == 1)
-                                                                        .count()
-                                                                        / friendHistory.size() * 100);
-
-                        friendStats.put(friendId, stats);
+                // 按好友批量取累计战绩
+                Map<Long, UserGameStats> statsByUser = userStatsService.getStats(friendIds);
+                List<Map<String, Object>> ranking = new ArrayList<>(statsByUser.size());
+                for (Map.Entry<Long, UserGameStats> entry : statsByUser.entrySet()) {
+                        Map<String, Object> stats = entry.getValue().toMap();
+                        stats.put("userId", entry.getKey());
+                        ranking.add(stats);
                 }
 
                 // 排序
-                List<Map<String, Object>> ranking = new ArrayList<>(friendStats.values());
-
                 switch (rankType != null ? rankType : "totalScore") {
                         case "totalGames":
                                 ranking.sort((a, b) -> Integer.compare(
@@ -100,13 +82,15 @@ public class SocialService {
                                                 (Integer) a.get("totalScore")));
                 }
 
-                // 添加排名和用户信息
+                // 添加排名和用户信息（批量查询用户）
+                Map<Long, User> userMap = userRepository.findAllById(statsByUser.keySet()).stream()
+                                .collect(Collectors.toMap(User::getId, u -> u));
                 for (int i = 0; i < ranking.size(); i++) {
                         Map<String, Object> item = ranking.get(i);
                         item.put("rank", i + 1);
 
                         Long friendId = (Long) item.get("userId");
-                        User user = userRepository.findById(friendId).orElse(null);
+                        User user = userMap.get(friendId);
                         if (user != null) {
                                 item.put("nickname", user.getNickname());
                                 item.put("avatarUrl", user.getAvatarUrl());
@@ -140,13 +124,10 @@ public class SocialService {
                         return result;
                 }
 
-                // 获取双方游戏记录
-                List<GameHistory> myHistory = gameHistoryRepository.findByUserIdOrderByCreatedAtDesc(userId, null);
-                List<GameHistory> friendHistory = gameHistoryRepository.findByUserIdOrderByCreatedAtDesc(friendId,
-                                null);
-
-                Map<String, Object> myStats = calculateStats(myHistory);
-                Map<String, Object> friendStats = calculateStats(friendHistory);
+                // 双方累计战绩
+                Map<Long, UserGameStats> statsByUser = userStatsService.getStats(List.of(userId, friendId));
+                Map<String, Object> myStats = statsByUser.get(userId).toMap();
+                Map<String, Object> friendStats = statsByUser.get(friendId).toMap();
 
                 // 获取用户信息
                 User friend = userRepository.findById(friendId).orElse(null);
@@ -166,17 +147,27 @@ public class SocialService {
         }
 
         /**
-         * 搜索用户(用于添加好友)
+         * 搜索用户(用于添加好友)：用户 ID 精确匹配，昵称、用户名按前缀匹配
          */
         public List<Map<String, Object>> searchUsers(String keyword) {
-                List<User> users = userRepository.findAll().stream()
-                                .filter(user -> (user.getNickname() != null && user.getNickname().contains(keyword)) ||
-                                                (user.getUsername() != null && user.getUsername().contains(keyword)) ||
-                                                user.getId().toString().equals(keyword))
-                                .limit(20)
-                                .collect(Collectors.toList());
+                String prefix = keyword != null ? keyword.trim() : "";
+                if (prefix.isEmpty()) {
+                        return new ArrayList<>();
+                }
 
-                return users.stream()
+                Map<Long, User> matched = new LinkedHashMap<>();
+                if (prefix.chars().allMatch(Character::isDigit) && prefix.length() < 19) {
+                        userRepository.findById(Long.valueOf(prefix)).ifPresent(user -> matched.put(user.getId(), user));
+                }
+                for (User user : userRepository.findTop20ByNicknameStartingWithOrderByNicknameAsc(prefix)) {
+                        matched.putIfAbsent(user.getId(), user);
+                }
+                for (User user : userRepository.findTop20ByUsernameStartingWithOrderByUsernameAsc(prefix)) {
+                        matched.putIfAbsent(user.getId(), user);
+                }
+
+                return matched.values().stream()
+                                .limit(SEARCH_LIMIT)
                                 .map(user -> {
                                         Map<String, Object> info = new HashMap<>();
                                         info.put("id", user.getId());
@@ -187,24 +178,4 @@ public class SocialService {
                                 })
                                 .collect(Collectors.toList());
         }
-
-        /**
-         * 计算统计数据
-         */
-        private Map<String, Object> calculateStats(List<GameHistory> history) {
-                Map<String, Object> stats = new HashMap<>();
-                stats.put("totalGames", history.size());
-                stats.put("totalScore", history.stream().mapToInt(GameHistory::getScore).sum());
-                stats.put("avgScore",
-                                history.isEmpty() ? 0
-                                                : history.stream().mapToInt(GameHistory::getScore).average().orElse(0));
-                stats.put("wins", history.stream().filter(h -> h.getRank() == 1).count());
-                stats.put("winRate", history.isEmpty() ? 0
-                                : (double) history.stream().filter(h -> h.getRank() == 1).count() / history.size()
-                                                * 100);
-                stats.put("bestScore", history.stream().mapToInt(GameHistory::getScore).max().orElse(0));
-                stats.put("worstScore", history.stream().mapToInt(GameHistory::getScore).min().orElse(0));
-
-                return stats;
-        }
 }
@@ -1,71 +1,229 @@
 package com.example.top_hog_server.service;
 
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * 任务进度统一处理服务
  * 负责接收业务事件并分发给成就系统和每日任务系统
+ * <p>
+ * 事件只在内存中累加：每日任务按 (用户, 日期, 类型)、成就按 (用户, 类型) 合并增量，
+ * 由定时任务每隔 game.progress.flushIntervalMs 批量写库（每批用户一个事务）。
+ * 写库失败的增量放回缓冲，下次重试。
  */
 @Service
 @Slf4j
 public class TaskProgressService {
 
+    // 每个事务处理的用户数
+    static final int FLUSH_CHUNK_SIZE = 200;
+
     @Autowired
     private AchievementService achievementService;
 
     @Autowired
     private DailyTaskService dailyTaskService;
 
+    private final Map<DailyKey, Long> pendingDaily = new ConcurrentHashMap<>();
+    private final Map<AchievementKey, Long> pendingAchievements = new ConcurrentHashMap<>();
+
     /**
      * 处理游戏结束事件
-     * 
+     *
      * @param userId 用户ID
      * @param isWin  是否胜利
      * @param score  获得分数
      */
-    @Async
     public void onGameFinished(Long userId, boolean isWin, int score) {
-        log.info("处理游戏结束任务进度: userId={}, isWin={}, score={}", userId, isWin, score);
-
-        try {
-            // 更新成就进度
-            achievementService.updateProgress(userId, "GAMES_PLAYED", 1);
-            achievementService.updateProgress(userId, "TOTAL_SCORE", score);
-            if (isWin) {
-                achievementService.updateProgress(userId, "GAMES_WON", 1);
-            }
+        if (userId == null) {
+            return;
+        }
+        log.debug("记录游戏结束任务进度: userId={}, isWin={}, score={}", userId, isWin, score);
 
-            // 更新每日任务进度
-            dailyTaskService.updateProgress(userId, "GAME_PLAY", 1);
-            if (isWin) {
-                dailyTaskService.updateProgress(userId, "GAME_WIN", 1);
-            }
-        } catch (Exception e) {
-            log.error("更新游戏相关任务进度失败", e);
+        // 成就进度
+        addAchievementProgress(userId, "GAMES_PLAYED", 1);
+        addAchievementProgress(userId, "TOTAL_SCORE", score);
+        if (isWin) {
+            addAchievementProgress(userId, "GAMES_WON", 1);
+        }
+
+        // 每日任务进度
+        LocalDate today = LocalDate.now();
+        addDailyProgress(userId, today, "GAME_PLAY", 1);
+        if (isWin) {
+            addDailyProgress(userId, today, "GAME_WIN", 1);
         }
     }
 
     /**
      * 处理登录事件
      */
-    @Async
     public void onLogin(Long userId) {
-        log.info("处理登录任务进度: userId={}", userId);
-        try {
-            dailyTaskService.updateProgress(userId, "LOGIN", 1);
-        } catch (Exception e) {
-            log.error("更新登录任务进度失败", e);
+        if (userId == null) {
+            return;
         }
+        log.debug("记录登录任务进度: userId={}", userId);
+        addDailyProgress(userId, LocalDate.now(), "LOGIN", 1);
     }
 
     /**
      * 处理充值事件
      */
-    @Async
     public void onRecharge(Long userId, long actualAmount) {
         // 预留: 未来可能有的充值相关任务或成就
     }
+
+    private void addDailyProgress(Long userId, LocalDate date, String type, long increment) {
+        pendingDaily.merge(new DailyKey(userId, date, type), increment, Long::sum);
+    }
+
+    private void addAchievementProgress(Long userId, String type, long increment) {
+        if (increment != 0) {
+            pendingAchievements.merge(new AchievementKey(userId, type), increment, Long::sum);
+        }
+    }
+
+    /**
+     * 把缓冲中的增量写库。
+     */
+    @Scheduled(fixedDelayString = "${game.progress.flushIntervalMs:2000}")
+    public void flush() {
+        flushDaily();
+        flushAchievements();
+    }
+
+    private void flushDaily() {
+        // 日期 -> 用户 -> 类型 -> 增量
+        Map<LocalDate, Map<Long, Map<String, Long>>> byDate = new HashMap<>();
+        for (DailyKey key : pendingDaily.keySet()) {
+            Long increment = pendingDaily.remove(key);
+            if (increment != null) {
+                byDate.computeIfAbsent(key.date, d -> new LinkedHashMap<>())
+                        .computeIfAbsent(key.userId, u -> new HashMap<>())
+                        .merge(key.type, increment, Long::sum);
+            }
+        }
+        for (Map.Entry<LocalDate, Map<Long, Map<String, Long>>> entry : byDate.entrySet()) {
+            LocalDate date = entry.getKey();
+            for (Map<Long, Map<String, Long>> chunk : chunks(entry.getValue())) {
+                try {
+                    dailyTaskService.applyProgress(date, chunk);
+                } catch (Exception e) {
+                    log.error("批量更新每日任务进度失败，{} 个用户的增量将重试", chunk.size(), e);
+                    chunk.forEach((userId, increments) -> increments.forEach(
+                            (type, increment) -> addDailyProgress(userId, date, type, increment)));
+                }
+            }
+        }
+    }
+
+    private void flushAchievements() {
+        // 用户 -> 类型 -> 增量
+        Map<Long, Map<String, Long>> byUser = new LinkedHashMap<>();
+        for (AchievementKey key : pendingAchievements.keySet()) {
+            Long increment = pendingAchievements.remove(key);
+            if (increment != null) {
+                byUser.computeIfAbsent(key.userId, u -> new HashMap<>()).merge(key.type, increment, Long::sum);
+            }
+        }
+        for (Map<Long, Map<String, Long>> chunk : chunks(byUser)) {
+            try {
+                achievementService.applyProgress(chunk);
+            } catch (Exception e) {
+                log.error("批量更新成就进度失败，{} 个用户的增量将重试", chunk.size(), e);
+                chunk.forEach((userId, increments) -> increments.forEach(
+                        (type, increment) -> addAchievementProgress(userId, type, increment)));
+            }
+        }
+    }
+
+    private static List<Map<Long, Map<String, Long>>> chunks(Map<Long, Map<String, Long>> byUser) {
+        List<Map<Long, Map<String, Long>>> chunks = new ArrayList<>();
+        Map<Long, Map<String, Long>> current = new LinkedHashMap<>();
+        for (Map.Entry<Long, Map<String, Long>> entry : byUser.entrySet()) {
+            current.put(entry.getKey(), entry.getValue());
+            if (current.size() >= FLUSH_CHUNK_SIZE) {
+                chunks.add(current);
+                current = new LinkedHashMap<>();
+            }
+        }
+        if (!current.isEmpty()) {
+            chunks.add(current);
+        }
+        return chunks;
+    }
+
+    /**
+     * 缓冲中尚未写库的 (用户, 类型) 条目数
+     */
+    public int getPendingCount() {
+        return pendingDaily.size() + pendingAchievements.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private static final class DailyKey {
+        final Long userId;
+        final LocalDate date;
+        final String type;
+
+        DailyKey(Long userId, LocalDate date, String type) {
+            this.userId = userId;
+            this.date = date;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof DailyKey)) {
+                return false;
+            }
+            DailyKey other = (DailyKey) o;
+            return userId.equals(other.userId) && date.equals(other.date) && type.equals(other.type);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, date, type);
+        }
+    }
+
+    private static final class AchievementKey {
+        final Long userId;
+        final String type;
+
+        AchievementKey(Long userId, String type) {
+            this.userId = userId;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof AchievementKey)) {
+                return false;
+            }
+            AchievementKey other = (AchievementKey) o;
+            return userId.equals(other.userId) && type.equals(other.type);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, type);
+        }
+    }
 }
@@ -7,7 +7,9 @@ import com.example.top_hog_server.model.User;
 import com.example.top_hog_server.payload.dto.request.UserUpdateRequest;
 import com.example.top_hog_server.repository.GameHistoryRepository;
 import com.example.top_hog_server.repository.UserRepository;
+import com.example.top_hog_server.security.services.PrincipalCache;
 import com.example.top_hog_server.security.services.UserDetailsImpl;
+import com.example.top_hog_server.service.stats.UserGameStats;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -34,6 +36,12 @@ public class UserService {
     @Autowired
     private ContentSecurityService contentSecurityService;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @Autowired
+    private UserStatsService userStatsService;
+
     private User getCurrentUser() {
         UserDetailsImpl userDetails = (UserDetailsImpl) SecurityContextHolder.getContext().getAuthentication()
                 .getPrincipal();
@@ -50,7 +58,7 @@ public class UserService {
         info.put("phone", user.getPhone());
         info.put("registerTime", user.getRegisterTime());
         // stats
-        long totalGames = gameHistoryRepository.countByUserId(user.getId());
+        long totalGames = userStatsService.getStats(user.getId()).getGames();
         info.put("totalScore", totalGames); // Requirements say totalScore, but implies stats. Let's put total games for
                                             // now or calculate actual score sum.
         return info;
@@ -60,22 +68,21 @@ public class UserService {
         User user = getCurrentUser();
         Long userId = user.getId();
 
-        long totalGames = gameHistoryRepository.countByUserId(userId);
-        Double avgScore = gameHistoryRepository.findAvgScoreByUserId(userId);
-        Integer maxBullScore = gameHistoryRepository.findMaxScoreByUserId(userId); // Max bulls is bad
-        Integer minBullScore = gameHistoryRepository.findMinScoreByUserId(userId); // Min bulls is good
+        // 累计战绩来自内存汇总，不再逐项查询 game_history
+        UserGameStats userStats = userStatsService.getStats(userId);
+        long totalGames = userStats.getGames();
+        int winRate = (int) Math.round(userStats.getWinRate());
 
-        // Mock win rate and streak for now as it requires complex query on history
-        int winRate = 50;
+        // Mock streak for now as it requires complex query on history
         int maxStreak = 0;
 
         Map<String, Object> stats = new HashMap<>();
         stats.put("totalGames", totalGames);
         stats.put("winRate", winRate);
-        stats.put("avgScore", avgScore != null ? avgScore : 0);
+        stats.put("avgScore", userStats.getAvgScore());
         stats.put("maxStreak", maxStreak);
-        stats.put("maxBullScore", maxBullScore != null ? maxBullScore : 0);
-        stats.put("minBullScore", minBullScore != null ? minBullScore : 0);
+        stats.put("maxBullScore", userStats.getMaxScore()); // Max bulls is bad
+        stats.put("minBullScore", userStats.getMinScore()); // Min bulls is good
         stats.put("commonOpponents", "Mock Opponent");
 
         return stats;
@@ -98,7 +105,7 @@ public class UserService {
 
         Map<String, Object> result = new HashMap<>();
         result.put("list", mappedList);
-        result.put("total", gameHistoryRepository.countByUserId(user.getId()));
+        result.put("total", (long) userStatsService.getStats(user.getId()).getGames());
         return result;
     }
 
@@ -127,6 +134,7 @@ public class UserService {
         }
 
         userRepository.save(user);
+        principalCache.invalidateUser(user.getId());
 
         return getUserInfo();
     }
@@ -142,6 +150,7 @@ public class UserService {
 
         user.setAvatarUrl(avatarUrl);
         userRepository.save(user);
+        principalCache.invalidateUser(user.getId());
 
         return getUserInfo();
     }
@@ -0,0 +1,85 @@
+package com.example.top_hog_server.service;
+
+import com.example.top_hog_server.model.GameHistory;
+import com.example.top_hog_server.repository.GameHistoryRepository;
+import com.example.top_hog_server.service.history.GameHistoryProjection;
+import com.example.top_hog_server.service.history.GameHistoryWriter;
+import com.example.top_hog_server.service.stats.UserGameStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 用户累计战绩服务
+ * <p>
+ * 每个用户的场次、胜场、总分、最高/最低分常驻内存，战绩写库后增量更新（{@link #apply}），
+ * 好友排行、数据对比等按用户 ID 批量查询，不再扫描 game_history。
+ * 启动时用一次 GROUP BY 聚合从 game_history 重建，与增量更新的衔接见 {@link GameHistoryProjection}。
+ */
+@Service
+@Slf4j
+public class UserStatsService extends GameHistoryProjection {
+
+    private final GameHistoryRepository gameHistoryRepository;
+
+    private volatile Map<Long, UserGameStats> stats = new ConcurrentHashMap<>();
+
+    @Autowired
+    public UserStatsService(GameHistoryRepository gameHistoryRepository, GameHistoryWriter historyWriter) {
+        super(historyWriter);
+        this.gameHistoryRepository = gameHistoryRepository;
+    }
+
+    /**
+     * 一批战绩写库后累加参与用户的战绩。
+     */
+    @Override
+    protected void apply(List<GameHistory> histories) {
+        for (GameHistory h : histories) {
+            if (h.getUserId() != null) {
+                stats.merge(h.getUserId(), UserGameStats.ofGame(h.getScore(), h.getRank()), UserGameStats::plus);
+            }
+        }
+    }
+
+    /**
+     * 单个用户的累计战绩，没有对局时返回 {@link UserGameStats#EMPTY}。
+     */
+    public UserGameStats getStats(Long userId) {
+        ensureLoaded();
+        return stats.getOrDefault(userId, UserGameStats.EMPTY);
+    }
+
+    /**
+     * 批量查询，返回的 Map 包含每个传入的用户 ID。
+     */
+    public Map<Long, UserGameStats> getStats(Collection<Long> userIds) {
+        ensureLoaded();
+        Map<Long, UserGameStats> result = new HashMap<>(userIds.size() * 2);
+        for (Long userId : userIds) {
+            result.put(userId, stats.getOrDefault(userId, UserGameStats.EMPTY));
+        }
+        return result;
+    }
+
+    @Override
+    protected void load() {
+        Map<Long, UserGameStats> rebuilt = new ConcurrentHashMap<>();
+        for (Object[] row : gameHistoryRepository.aggregateStatsByUser()) {
+            if (row[0] == null) {
+                continue;
+            }
+            rebuilt.put(((Number) row[0]).longValue(), new UserGameStats(
+                    ((Number) row[1]).intValue(), ((Number) row[2]).intValue(), ((Number) row[3]).longValue(),
+                    ((Number) row[4]).intValue(), ((Number) row[5]).intValue()));
+        }
+        stats = rebuilt;
+        log.info("用户战绩汇总已加载: {} 人", rebuilt.size());
+    }
+}
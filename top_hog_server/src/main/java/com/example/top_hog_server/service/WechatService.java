@@ -29,6 +29,12 @@ public class WechatService {
     @Autowired
     private JwtUtils jwtUtils;
 
+    @Autowired
+    private AnalyticsService analyticsService;
+
+    @Autowired
+    private TaskProgressService taskProgressService;
+
     private static final Logger logger = LoggerFactory.getLogger(WechatService.class);
 
     @Value("${wechat.app-id}")
@@ -94,7 +100,10 @@ public class WechatService {
 
                 // 保存并刷新，以便获取数据库自动生成的 ID 和 CreatedAt
                 user = userRepository.save(user);
+                analyticsService.recordRegistration(user.getId());
             }
+            analyticsService.recordLogin(user.getId());
+            taskProgressService.onLogin(user.getId());
 
             // ==========================================
             // 5. 生成 JWT Token
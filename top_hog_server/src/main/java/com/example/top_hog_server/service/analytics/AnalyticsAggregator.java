@@ -0,0 +1,311 @@
+package com.example.top_hog_server.service.analytics;
+
+import com.example.top_hog_server.model.GameHistory;
+import com.example.top_hog_server.service.history.GameHistoryProjection;
+import com.example.top_hog_server.service.history.GameHistoryWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 数据分析的流式汇总。
+ * <p>
+ * 对局、登录、注册、支付成功等事件到达时更新按天的 {@link DailyRollup}，
+ * 看板查询只合并最近若干天的汇总，不再扫描明细表。
+ * 对局数据来自已写库的战绩（见 {@link GameHistoryProjection}）；登录、注册、支付事件随时直接累加。
+ * 启动时从 game_history / Users / orders 回填最近 windowDays 天：回填结果先建在一份独立的汇总中，成功后再并入，
+ * 失败重试时不会重复累加；登录不落库，所以回填的日活只包含有对局的用户。
+ */
+@Component
+public class AnalyticsAggregator extends GameHistoryProjection {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnalyticsAggregator.class);
+
+    // 统计的留存天数（次日、7 日、30 日）
+    static final int[] RETENTION_DAYS = {1, 7, 30};
+    private static final int MAX_RETENTION_DAY = 30;
+    // 记住的最近对局数，用于识别被拆在相邻两批中的同一局
+    private static final int RECENT_GAMES = 4096;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int windowDays;
+    private final Map<LocalDate, DailyRollup> days = new ConcurrentHashMap<>();
+    // 最近注册的用户 -> 注册日期，用于判断回访属于哪个留存队列
+    private final Map<Long, LocalDate> recentRegistrations = new ConcurrentHashMap<>();
+    // 回填完成前通过事件计入的订单，回填时跳过，避免同一订单计两次
+    private final Set<Long> ordersBeforeLoad = ConcurrentHashMap.newKeySet();
+    // 最近计过的对局（房间@结束时间到秒）。只在写锁内访问（apply 和回填）
+    private final Set<String> recentGames = Collections.newSetFromMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > RECENT_GAMES;
+        }
+    });
+
+    @Autowired
+    public AnalyticsAggregator(JdbcTemplate jdbcTemplate, GameHistoryWriter historyWriter,
+            @Value("${game.analytics.windowDays:120}") int windowDays) {
+        super(historyWriter);
+        this.jdbcTemplate = jdbcTemplate;
+        this.windowDays = Math.max(MAX_RETENTION_DAY + 1, windowDays);
+    }
+
+    // ========== 事件 ==========
+
+    /**
+     * 一批战绩写库后：记录对局数、参与用户和排名。
+     */
+    @Override
+    protected void apply(List<GameHistory> histories) {
+        for (GameHistory h : histories) {
+            Timestamp finishedAt = h.getCreatedAt();
+            LocalDate day = finishedAt != null ? finishedAt.toLocalDateTime().toLocalDate() : LocalDate.now();
+            if (recentGames.add(gameKey(h.getRoomId(), finishedAt))) {
+                rollup(day).recordGame();
+            }
+            if (h.getUserId() != null) {
+                rollup(day).recordPlayer(h.getUserId(), h.getRank());
+                recordRetention(recentRegistrations, days, h.getUserId(), day);
+            }
+        }
+    }
+
+    public void recordLogin(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        rollup(today).recordActive(userId);
+        recordRetention(recentRegistrations, days, userId, today);
+    }
+
+    public void recordRegistration(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        if (recentRegistrations.putIfAbsent(userId, today) == null) {
+            rollup(today).recordNewUser();
+        }
+    }
+
+    /**
+     * 支付成功。按订单创建日期归档，与原先按 created_at 统计收入的口径一致。
+     */
+    public void recordOrderPaid(Long orderId, Long userId, BigDecimal amount, LocalDateTime createdAt) {
+        if (userId == null) {
+            return;
+        }
+        if (orderId != null && !isLoaded()) {
+            ordersBeforeLoad.add(orderId);
+        }
+        LocalDate day = createdAt != null ? createdAt.toLocalDate() : LocalDate.now();
+        rollup(day).recordPaidOrder(userId, amount);
+    }
+
+    private static void recordRetention(Map<Long, LocalDate> registrations, Map<LocalDate, DailyRollup> target,
+            long userId, LocalDate activeDay) {
+        LocalDate registeredOn = registrations.get(userId);
+        if (registeredOn == null) {
+            return;
+        }
+        long offset = ChronoUnit.DAYS.between(registeredOn, activeDay);
+        for (int day : RETENTION_DAYS) {
+            if (offset == day) {
+                target.computeIfAbsent(registeredOn, DailyRollup::new).recordRetained(day, userId);
+                return;
+            }
+        }
+    }
+
+    private DailyRollup rollup(LocalDate day) {
+        return days.computeIfAbsent(day, DailyRollup::new);
+    }
+
+    // 同一局的多条战绩按 (房间, 结束时间到秒) 识别，与库中 created_at 的精度一致
+    private static String gameKey(String roomId, Timestamp finishedAt) {
+        return roomId + "@" + (finishedAt != null ? finishedAt.getTime() / 1000 : 0);
+    }
+
+    // ========== 查询 ==========
+
+    /**
+     * 某天的汇总；没有数据时返回空汇总（不会登记到缓存中）。
+     */
+    public DailyRollup day(LocalDate date) {
+        ensureLoaded();
+        DailyRollup rollup = days.get(date);
+        return rollup != null ? rollup : new DailyRollup(date);
+    }
+
+    /**
+     * 区间内活跃用户的 HLL 并集（含首尾）。
+     */
+    public HyperLogLog activeUsersBetween(LocalDate from, LocalDate to) {
+        ensureLoaded();
+        HyperLogLog union = new HyperLogLog(DailyRollup.HLL_PRECISION);
+        for (LocalDate d = from; !d.isAfter(to); d = d.plusDays(1)) {
+            DailyRollup rollup = days.get(d);
+            if (rollup != null) {
+                rollup.mergeActiveInto(union);
+            }
+        }
+        return union;
+    }
+
+    public Map<Long, Integer> gamesPerUserBetween(LocalDate from, LocalDate to) {
+        ensureLoaded();
+        Map<Long, Integer> result = new HashMap<>();
+        for (LocalDate d = from; !d.isAfter(to); d = d.plusDays(1)) {
+            DailyRollup rollup = days.get(d);
+            if (rollup != null) {
+                rollup.mergeGamesPerUserInto(result);
+            }
+        }
+        return result;
+    }
+
+    public Map<Long, Integer> paidOrdersPerUserBetween(LocalDate from, LocalDate to) {
+        ensureLoaded();
+        Map<Long, Integer> result = new HashMap<>();
+        for (LocalDate d = from; !d.isAfter(to); d = d.plusDays(1)) {
+            DailyRollup rollup = days.get(d);
+            if (rollup != null) {
+                rollup.mergePaidOrdersPerUserInto(result);
+            }
+        }
+        return result;
+    }
+
+    public Map<Integer, Long> rankCountsBetween(LocalDate from, LocalDate to) {
+        ensureLoaded();
+        Map<Integer, Long> result = new HashMap<>();
+        for (LocalDate d = from; !d.isAfter(to); d = d.plusDays(1)) {
+            DailyRollup rollup = days.get(d);
+            if (rollup != null) {
+                rollup.mergeRankCountsInto(result);
+            }
+        }
+        return result;
+    }
+
+    // ========== 维护 ==========
+
+    /**
+     * 每天凌晨清理窗口外的汇总和过期的注册记录。
+     */
+    @Scheduled(cron = "0 5 0 * * ?")
+    public void evictExpired() {
+        LocalDate today = LocalDate.now();
+        LocalDate oldestDay = today.minusDays(windowDays - 1L);
+        days.keySet().removeIf(d -> d.isBefore(oldestDay));
+        LocalDate oldestRegistration = today.minusDays(MAX_RETENTION_DAY);
+        recentRegistrations.values().removeIf(d -> d.isBefore(oldestRegistration));
+    }
+
+    @Override
+    protected void load() {
+        backfill(LocalDate.now().minusDays(windowDays - 1L));
+    }
+
+    /**
+     * 从明细表回填 since 以来的汇总：先建在独立的汇总中，全部查询成功后再并入。注册先于活跃处理，以便计算留存。
+     * 在写锁内调用，期间不会有新的战绩写库。
+     */
+    void backfill(LocalDate since) {
+        long startNanos = System.nanoTime();
+        Timestamp sinceTs = Timestamp.valueOf(since.atStartOfDay());
+        Map<LocalDate, DailyRollup> filled = new HashMap<>();
+        // 注册记录合并时才计入新增用户：已由事件登记的用户不重复计数
+        Map<Long, LocalDate> registrations = new HashMap<>();
+
+        stream("SELECT id, created_at FROM Users WHERE created_at >= ?", sinceTs, rs -> {
+            Timestamp createdAt = rs.getTimestamp(2);
+            if (createdAt != null) {
+                registrations.put(rs.getLong(1), createdAt.toLocalDateTime().toLocalDate());
+            }
+        });
+        Map<Long, LocalDate> retentionLookup = new HashMap<>(registrations);
+        recentRegistrations.forEach(retentionLookup::putIfAbsent);
+
+        List<String> gameKeys = new ArrayList<>();
+        Map<LocalDate, Set<String>> gamesPerDay = new HashMap<>();
+        stream("SELECT user_id, room_id, `rank`, created_at FROM game_history WHERE created_at >= ?", sinceTs, rs -> {
+            Timestamp createdAt = rs.getTimestamp(4);
+            if (createdAt == null) {
+                return;
+            }
+            LocalDate day = createdAt.toLocalDateTime().toLocalDate();
+            DailyRollup rollup = filled.computeIfAbsent(day, DailyRollup::new);
+            String gameKey = gameKey(rs.getString(2), createdAt);
+            if (gamesPerDay.computeIfAbsent(day, k -> new HashSet<>()).add(gameKey)) {
+                rollup.recordGame();
+                gameKeys.add(gameKey);
+            }
+            long userId = rs.getLong(1);
+            if (!rs.wasNull()) {
+                rollup.recordPlayer(userId, rs.getInt(3));
+                recordRetention(retentionLookup, filled, userId, day);
+            }
+        });
+
+        stream("SELECT id, user_id, amount, created_at FROM orders WHERE status = 'PAID' AND created_at >= ?", sinceTs, rs -> {
+            if (ordersBeforeLoad.contains(rs.getLong(1))) {
+                return;
+            }
+            Timestamp createdAt = rs.getTimestamp(4);
+            LocalDate day = createdAt != null ? createdAt.toLocalDateTime().toLocalDate() : LocalDate.now();
+            filled.computeIfAbsent(day, DailyRollup::new).recordPaidOrder(rs.getLong(2), rs.getBigDecimal(3));
+        });
+
+        registrations.forEach((userId, day) -> {
+            if (recentRegistrations.putIfAbsent(userId, day) == null) {
+                filled.computeIfAbsent(day, DailyRollup::new).recordNewUser();
+            }
+        });
+        filled.forEach((day, rollup) -> rollup(day).mergeFrom(rollup));
+        // 扫描大致按写入顺序进行，末尾的对局最可能与之后写库的批次属于同一局
+        for (int i = Math.max(0, gameKeys.size() - RECENT_GAMES); i < gameKeys.size(); i++) {
+            recentGames.add(gameKeys.get(i));
+        }
+        ordersBeforeLoad.clear();
+
+        evictExpired();
+        logger.info("数据分析汇总回填完成: {} 天, 耗时 {} ms", days.size(),
+                (System.nanoTime() - startNanos) / 1_000_000);
+    }
+
+    /**
+     * 逐行读取查询结果。MySQL Connector/J 默认把整个结果集读入内存，只有 fetchSize 为 Integer.MIN_VALUE 时才流式读取。
+     */
+    private void stream(String sql, Timestamp since, RowCallbackHandler handler) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(Integer.MIN_VALUE);
+            ps.setTimestamp(1, since);
+            return ps;
+        }, handler);
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.top_hog_server.service.analytics;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 单日汇总数据。由 {@link AnalyticsAggregator} 在事件到达时增量更新，看板查询只读取这些汇总。
+ */
+public class DailyRollup {
+
+    static final int HLL_PRECISION = 14;
+
+    private final LocalDate date;
+    // 活跃用户（登录或完成对局）
+    private final HyperLogLog activeUsers = new HyperLogLog(HLL_PRECISION);
+    // 用户当日对局数，用于游戏频率分布
+    private final Map<Long, Integer> gamesPerUser = new HashMap<>();
+    private final Map<Integer, Long> rankCounts = new HashMap<>();
+    private long games;
+    private long newUsers;
+    // 用户当日支付订单数，用于付费用户数和首充/复购
+    private final Map<Long, Integer> paidOrdersPerUser = new HashMap<>();
+    private long paidOrders;
+    private BigDecimal revenue = BigDecimal.ZERO;
+    // 当日注册用户在第 N 天回访的用户集合（N -> userIds）
+    private final Map<Integer, Set<Long>> retained = new HashMap<>();
+
+    public DailyRollup(LocalDate date) {
+        this.date = date;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    synchronized void recordActive(long userId) {
+        activeUsers.add(userId);
+    }
+
+    synchronized void recordPlayer(long userId, int rank) {
+        activeUsers.add(userId);
+        gamesPerUser.merge(userId, 1, Integer::sum);
+        rankCounts.merge(rank, 1L, Long::sum);
+    }
+
+    synchronized void recordGame() {
+        games++;
+    }
+
+    synchronized void recordNewUser() {
+        newUsers++;
+    }
+
+    synchronized void recordPaidOrder(long userId, BigDecimal amount) {
+        paidOrdersPerUser.merge(userId, 1, Integer::sum);
+        paidOrders++;
+        if (amount != null) {
+            revenue = revenue.add(amount);
+        }
+    }
+
+    synchronized void recordRetained(int dayOffset, long userId) {
+        retained.computeIfAbsent(dayOffset, k -> new HashSet<>()).add(userId);
+    }
+
+    /**
+     * 合并同一天的另一份汇总（回填结果）。other 不能被其他线程同时修改。
+     */
+    synchronized void mergeFrom(DailyRollup other) {
+        activeUsers.merge(other.activeUsers);
+        other.gamesPerUser.forEach((userId, count) -> gamesPerUser.merge(userId, count, Integer::sum));
+        other.rankCounts.forEach((rank, count) -> rankCounts.merge(rank, count, Long::sum));
+        games += other.games;
+        newUsers += other.newUsers;
+        other.paidOrdersPerUser.forEach((userId, count) -> paidOrdersPerUser.merge(userId, count, Integer::sum));
+        paidOrders += other.paidOrders;
+        revenue = revenue.add(other.revenue);
+        other.retained.forEach((offset, users) -> retained.computeIfAbsent(offset, k -> new HashSet<>()).addAll(users));
+    }
+
+    public synchronized long getDau() {
+        return activeUsers.estimate();
+    }
+
+    synchronized void mergeActiveInto(HyperLogLog target) {
+        target.merge(activeUsers);
+    }
+
+    public synchronized long getGames() {
+        return games;
+    }
+
+    public synchronized long getNewUsers() {
+        return newUsers;
+    }
+
+    public synchronized long getPayingUsers() {
+        return paidOrdersPerUser.size();
+    }
+
+    public synchronized long getPaidOrders() {
+        return paidOrders;
+    }
+
+    public synchronized BigDecimal getRevenue() {
+        return revenue;
+    }
+
+    public synchronized int getRetained(int dayOffset) {
+        Set<Long> users = retained.get(dayOffset);
+        return users == null ? 0 : users.size();
+    }
+
+    synchronized void mergeGamesPerUserInto(Map<Long, Integer> target) {
+        gamesPerUser.forEach((userId, count) -> target.merge(userId, count, Integer::sum));
+    }
+
+    synchronized void mergePaidOrdersPerUserInto(Map<Long, Integer> target) {
+        paidOrdersPerUser.forEach((userId, count) -> target.merge(userId, count, Integer::sum));
+    }
+
+    synchronized void mergeRankCountsInto(Map<Integer, Long> target) {
+        rankCounts.forEach((rank, count) -> target.merge(rank, count, Long::sum));
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.top_hog_server.service.analytics;
+
+/**
+ * HyperLogLog 基数估计，用于日活、月活这类去重计数。
+ * <p>
+ * 精度 p=14 时占 16KB，标准误差约 0.8%；基数较小时用线性计数修正，基本等于精确值。
+ * 多个 HLL 可以无损合并（取寄存器最大值），月活即本月各天日活 HLL 的并集。非线程安全。
+ */
+public class HyperLogLog {
+
+    private final int p;
+    private final byte[] registers;
+
+    public HyperLogLog(int p) {
+        if (p < 4 || p > 18) {
+            throw new IllegalArgumentException("p must be in [4, 18]: " + p);
+        }
+        this.p = p;
+        this.registers = new byte[1 << p];
+    }
+
+    public void add(long value) {
+        long hash = mix(value);
+        int index = (int) (hash >>> (64 - p));
+        // 剩余位中第一个 1 的位置；末尾补 1 保证不超过 64 - p + 1
+        long rest = (hash << p) | (1L << (p - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    /**
+     * 合并另一个相同精度的 HLL。
+     */
+    public void merge(HyperLogLog other) {
+        if (other.p != p) {
+            throw new IllegalArgumentException("precision mismatch: " + p + " vs " + other.p);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte r : registers) {
+            sum += 1.0 / (1L << r);
+            if (r == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // 小基数：线性计数
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public HyperLogLog copy() {
+        HyperLogLog copy = new HyperLogLog(p);
+        System.arraycopy(registers, 0, copy.registers, 0, registers.length);
+        return copy;
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+
+    // SplitMix64 终结函数：用户 ID 连续分布，需要先打散
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
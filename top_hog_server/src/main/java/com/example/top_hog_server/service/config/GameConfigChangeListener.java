@@ -0,0 +1,15 @@
+package com.example.top_hog_server.service.config;
+
+/**
+ * 游戏配置变更通知。
+ * 在新快照生效后同步回调，实现方不应在回调中做耗时操作。
+ */
+@FunctionalInterface
+public interface GameConfigChangeListener {
+
+    /**
+     * @param previous 变更前的快照
+     * @param current  已生效的新快照
+     */
+    void onConfigurationChanged(GameConfigSnapshot previous, GameConfigSnapshot current);
+}
@@ -0,0 +1,143 @@
+package com.example.top_hog_server.service.config;
+
+import com.example.top_hog_server.model.GameConfiguration;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 某一时刻全部游戏配置的只读快照。
+ * <p>
+ * 快照创建后不再修改：配置变更时整份重建并整体替换，读取方拿到的引用始终是一致的一份，无需加锁。
+ * 快照中的 {@link GameConfiguration} 是与数据库实体脱离的副本，调用方不应修改。
+ */
+public final class GameConfigSnapshot {
+
+    public static final GameConfigSnapshot EMPTY = new GameConfigSnapshot(0, Collections.emptyList(), null);
+
+    private final long version;
+    private final Map<String, GameConfiguration> byCode;
+    private final List<GameConfiguration> enabledGames;
+    // 游戏类型代码 -> 解析后的 gameSpecificConfig
+    private final Map<String, JsonNode> specificConfigs;
+
+    private GameConfigSnapshot(long version, Collection<GameConfiguration> configs, ObjectMapper objectMapper) {
+        Map<String, GameConfiguration> codes = new HashMap<>();
+        Map<String, JsonNode> specifics = new HashMap<>();
+        List<GameConfiguration> enabled = new ArrayList<>();
+        for (GameConfiguration config : configs) {
+            GameConfiguration copy = copyOf(config);
+            codes.put(copy.getGameTypeCode(), copy);
+            if (copy.isEnabled()) {
+                enabled.add(copy);
+            }
+            JsonNode specific = parseSpecificConfig(objectMapper, copy.getGameSpecificConfig());
+            if (specific != null) {
+                specifics.put(copy.getGameTypeCode(), specific);
+            }
+        }
+        enabled.sort(Comparator.comparingInt(GameConfiguration::getDisplayOrder));
+        this.version = version;
+        this.byCode = Collections.unmodifiableMap(codes);
+        this.enabledGames = Collections.unmodifiableList(enabled);
+        this.specificConfigs = Collections.unmodifiableMap(specifics);
+    }
+
+    /**
+     * 由一组配置构建快照。
+     */
+    public static GameConfigSnapshot of(long version, Collection<GameConfiguration> configs, ObjectMapper objectMapper) {
+        return new GameConfigSnapshot(version, configs, objectMapper);
+    }
+
+    /**
+     * 写时复制：在当前快照基础上替换（或新增）一份配置，得到下一个版本。
+     */
+    public GameConfigSnapshot with(GameConfiguration config, ObjectMapper objectMapper) {
+        Map<String, GameConfiguration> next = new HashMap<>(byCode);
+        // 同一条记录改了游戏类型代码时，去掉旧代码下的条目
+        if (config.getId() != null) {
+            next.values().removeIf(existing -> config.getId().equals(existing.getId()));
+        }
+        next.put(config.getGameTypeCode(), config);
+        return new GameConfigSnapshot(version + 1, next.values(), objectMapper);
+    }
+
+    /**
+     * 写时复制：在当前快照基础上移除一份配置，得到下一个版本。
+     */
+    public GameConfigSnapshot without(String gameTypeCode, ObjectMapper objectMapper) {
+        Map<String, GameConfiguration> next = new HashMap<>(byCode);
+        next.remove(gameTypeCode);
+        return new GameConfigSnapshot(version + 1, next.values(), objectMapper);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Optional<GameConfiguration> find(String gameTypeCode) {
+        return Optional.ofNullable(byCode.get(gameTypeCode));
+    }
+
+    /**
+     * 所有启用的配置，按 displayOrder 排序。
+     */
+    public List<GameConfiguration> getEnabledGames() {
+        return enabledGames;
+    }
+
+    public Collection<GameConfiguration> getAll() {
+        return byCode.values();
+    }
+
+    /**
+     * 读取 gameSpecificConfig 中的整数配置项；配置不存在或不是数字时返回默认值。
+     */
+    public long getLongSetting(String gameTypeCode, String key, long defaultValue) {
+        JsonNode specific = specificConfigs.get(gameTypeCode);
+        if (specific == null) {
+            return defaultValue;
+        }
+        JsonNode value = specific.get(key);
+        return value != null && value.canConvertToLong() ? value.asLong() : defaultValue;
+    }
+
+    private static JsonNode parseSpecificConfig(ObjectMapper objectMapper, String json) {
+        if (objectMapper == null || json == null || json.isBlank()) {
+            return null;
+        }
+        try {
+            return objectMapper.readTree(json);
+        } catch (Exception e) {
+            // 格式错误的特定配置按未配置处理，使用各项的默认值
+            return null;
+        }
+    }
+
+    private static GameConfiguration copyOf(GameConfiguration source) {
+        GameConfiguration copy = new GameConfiguration();
+        copy.setId(source.getId());
+        copy.setGameTypeCode(source.getGameTypeCode());
+        copy.setDisplayName(source.getDisplayName());
+        copy.setDescription(source.getDescription());
+        copy.setMinPlayers(source.getMinPlayers());
+        copy.setMaxPlayers(source.getMaxPlayers());
+        copy.setEnabled(source.isEnabled());
+        copy.setIconUrl(source.getIconUrl());
+        copy.setGameSpecificConfig(source.getGameSpecificConfig());
+        copy.setRulesDescription(source.getRulesDescription());
+        copy.setCreatedAt(source.getCreatedAt());
+        copy.setUpdatedAt(source.getUpdatedAt());
+        copy.setDisplayOrder(source.getDisplayOrder());
+        return copy;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.top_hog_server.service.game;
 
+import com.example.top_hog_server.handler.inbound.InboundMessageRegistry;
 import com.example.top_hog_server.model.*;
 import org.springframework.web.socket.WebSocketSession;
 
@@ -97,4 +98,11 @@ public interface GameEngine {
      * @return 游戏配置信息
      */
     GameConfiguration getGameConfiguration();
+
+    /**
+     * 注册该游戏类型特有的 WebSocket 入站消息，启动时由 {@link GameEngineFactory} 调用一次
+     * @param registry 入站消息分发表，类型名不能与已注册的类型重复
+     */
+    default void registerInboundMessages(InboundMessageRegistry registry) {
+    }
 }
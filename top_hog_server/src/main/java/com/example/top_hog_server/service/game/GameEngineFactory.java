@@ -1,5 +1,6 @@
 package com.example.top_hog_server.service.game;
 
+import com.example.top_hog_server.handler.inbound.InboundMessageRegistry;
 import com.example.top_hog_server.model.GameType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -18,12 +19,13 @@ public class GameEngineFactory {
     private final Map<GameType, GameEngine> engineMap = new HashMap<>();
     
     /**
-     * 构造函数，自动注入所有GameEngine实现
+     * 构造函数，自动注入所有GameEngine实现，并注册各引擎特有的入站消息
      */
     @Autowired
-    public GameEngineFactory(List<GameEngine> engines) {
+    public GameEngineFactory(List<GameEngine> engines, InboundMessageRegistry inboundMessageRegistry) {
         for (GameEngine engine : engines) {
             engineMap.put(engine.getGameType(), engine);
+            engine.registerInboundMessages(inboundMessageRegistry);
         }
     }
     
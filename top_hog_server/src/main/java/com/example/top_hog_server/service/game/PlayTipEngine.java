@@ -0,0 +1,483 @@
+package com.example.top_hog_server.service.game;
+
+import com.example.top_hog_server.model.CardTable;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 猪头王出牌提示引擎（蒙特卡洛搜索）。
+ * <p>
+ * 每次采样先按 {@link PlayTipSnapshot} 的信息规则为未知对手抽取手牌，并决定尚未出牌的对手本手打哪张，
+ * 然后用同一个采样依次评估自己的每一张候选牌：结算本手，再用贪心策略向后模拟若干手，累计自己收到的猪头。
+ * 所有候选牌共用同一批随机采样，便于比较；置信度为最佳候选在各次采样中同样是（并列）最优的比例。
+ * <p>
+ * 采样在专用的 ForkJoin 线程池上并行执行，在时间预算或采样上限到达时停止。
+ * 模拟过程只使用 int 数组和 long 位图表示的手牌，不分配对象。
+ */
+@Component
+public class PlayTipEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(PlayTipEngine.class);
+
+    // 尚未出牌的对手本手随机出牌的概率，其余情况按贪心策略出牌
+    private static final double OPPONENT_EXPLORATION = 0.25;
+
+    private final long timeBudgetNanos;
+    private final int lookaheadTurns;
+    private final int maxSamples;
+    private final int parallelism;
+    private final ForkJoinPool pool;
+
+    @Autowired
+    public PlayTipEngine(@Value("${game.tip.timeBudgetMs:50}") long timeBudgetMs,
+            @Value("${game.tip.lookaheadTurns:2}") int lookaheadTurns,
+            @Value("${game.tip.maxSamples:20000}") int maxSamples,
+            @Value("${game.tip.parallelism:0}") int parallelism) {
+        this.timeBudgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, timeBudgetMs));
+        this.lookaheadTurns = Math.max(0, lookaheadTurns);
+        this.maxSamples = Math.max(1, maxSamples);
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(this.parallelism, p -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            t.setName("play-tip-" + t.getPoolIndex());
+            t.setDaemon(true);
+            return t;
+        }, null, false);
+    }
+
+    /**
+     * 在时间预算内搜索最佳出牌。
+     *
+     * @param snapshot 房间快照（不可变，可在任意线程使用）
+     * @return 搜索结果；手牌为空时返回 null
+     */
+    public PlayTip suggest(PlayTipSnapshot snapshot) {
+        return suggest(snapshot, System.nanoTime() + timeBudgetNanos);
+    }
+
+    /**
+     * 在给定截止时间（{@link System#nanoTime()} 时间基准）前搜索最佳出牌。
+     * 每个工作线程至少完成一次采样，随后在截止时间或采样上限处停止。
+     */
+    public PlayTip suggest(PlayTipSnapshot snapshot, long deadline) {
+        int candidates = snapshot.myHand.length;
+        if (candidates == 0) {
+            return null;
+        }
+        int samplesPerWorker = Math.max(1, maxSamples / parallelism);
+
+        List<Callable<SearchStats>> workers = new ArrayList<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            long seed = ThreadLocalRandom.current().nextLong();
+            workers.add(() -> new Simulation(snapshot, lookaheadTurns, new SplittableRandom(seed))
+                    .run(deadline, samplesPerWorker));
+        }
+
+        SearchStats total = new SearchStats(candidates);
+        try {
+            for (Future<SearchStats> future : pool.invokeAll(workers)) {
+                total.merge(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("出牌提示搜索被中断", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("出牌提示搜索失败", e.getCause());
+        }
+
+        int best = 0;
+        for (int i = 1; i < candidates; i++) {
+            // 期望猪头更少者优先，相同则选小编号（手牌已升序）
+            if (total.sums[i] < total.sums[best]) {
+                best = i;
+            }
+        }
+        int cardNumber = snapshot.myHand[best];
+        double expected = (double) total.sums[best] / total.samples;
+        double confidence = (double) total.wins[best] / total.samples;
+        logger.debug("出牌提示搜索完成: 候选 {} 张, 采样 {} 次, 建议 {} (期望猪头 {}, 置信度 {})",
+                candidates, total.samples, cardNumber, expected, confidence);
+        return new PlayTip(cardNumber, expected, confidence, total.samples, describeImmediate(snapshot, cardNumber));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    // 不考虑其他玩家时，这张牌直接放到桌面上的结果
+    private static String describeImmediate(PlayTipSnapshot s, int card) {
+        int target = targetRow(s.rowLast, s.rowCount, card);
+        if (target < 0) {
+            int row = minSumRow(s.rowSum);
+            return "太小! 被迫选第" + (row + 1) + "行，拿" + s.rowSum[row] + "猪头。";
+        }
+        if (s.rowCount[target] >= s.maxCardsInRow) {
+            return "危险! 牌 " + card + " 放第" + (target + 1) + "行将是第6张,拿走" + s.rowSum[target] + "猪头。";
+        }
+        return "安全。牌 " + card + " 可放第" + (target + 1) + "行(当前" + (s.rowCount[target] + 1) + "/"
+                + s.maxCardsInRow + "张)。";
+    }
+
+    // 牌号应放置的行：末尾牌小于该牌且差值最小；空行视为可放置；都不满足返回 -1
+    static int targetRow(int[] rowLast, int[] rowCount, int card) {
+        int target = -1;
+        int bestDiff = Integer.MAX_VALUE;
+        for (int i = 0; i < rowLast.length; i++) {
+            if (rowCount[i] == 0) {
+                if (target == -1 || bestDiff > 100000) {
+                    bestDiff = 100000 + i;
+                    target = i;
+                }
+                continue;
+            }
+            int diff = card - rowLast[i];
+            if (diff > 0 && diff < bestDiff) {
+                bestDiff = diff;
+                target = i;
+            }
+        }
+        return target;
+    }
+
+    static int minSumRow(int[] rowSum) {
+        int best = 0;
+        for (int i = 1; i < rowSum.length; i++) {
+            if (rowSum[i] < rowSum[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 搜索结果。
+     */
+    public static final class PlayTip {
+        private final int cardNumber;
+        private final double expectedBullheads;
+        private final double confidence;
+        private final int samples;
+        private final String immediateOutcome;
+
+        PlayTip(int cardNumber, double expectedBullheads, double confidence, int samples, String immediateOutcome) {
+            this.cardNumber = cardNumber;
+            this.expectedBullheads = expectedBullheads;
+            this.confidence = confidence;
+            this.samples = samples;
+            this.immediateOutcome = immediateOutcome;
+        }
+
+        public int getCardNumber() {
+            return cardNumber;
+        }
+
+        public double getExpectedBullheads() {
+            return expectedBullheads;
+        }
+
+        public double getConfidence() {
+            return confidence;
+        }
+
+        public int getSamples() {
+            return samples;
+        }
+
+        public String getImmediateOutcome() {
+            return immediateOutcome;
+        }
+    }
+
+    // 单个工作线程的累计结果
+    private static final class SearchStats {
+        private final long[] sums;
+        private final int[] wins;
+        private int samples;
+
+        SearchStats(int candidates) {
+            this.sums = new long[candidates];
+            this.wins = new int[candidates];
+        }
+
+        void merge(SearchStats other) {
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] += other.sums[i];
+                wins[i] += other.wins[i];
+            }
+            samples += other.samples;
+        }
+    }
+
+    /**
+     * 单线程模拟器，所有工作数组在构造时一次性分配并在采样间复用。
+     * 玩家下标：0 为请求者，之后依次为本手未出牌的对手、本手已出牌的对手。
+     */
+    private static final class Simulation {
+        private final PlayTipSnapshot s;
+        private final int lookaheadTurns;
+        private final SplittableRandom random;
+        private final int players;
+        private final int waiting;
+
+        private final int[] rowLast;
+        private final int[] rowCount;
+        private final int[] rowSum;
+        // 手牌位图：牌号 n 对应 lo 的第 n 位（n < 64）或 hi 的第 n-64 位
+        private final long[] handLo;
+        private final long[] handHi;
+        private final long[] sampledLo;
+        private final long[] sampledHi;
+        private final int[] pool;
+        private final int[] opponentChoice;
+        private final int[] trickCards;
+        private final int[] trickOwners;
+        private final long[] totals;
+
+        Simulation(PlayTipSnapshot snapshot, int lookaheadTurns, SplittableRandom random) {
+            this.s = snapshot;
+            this.lookaheadTurns = lookaheadTurns;
+            this.random = random;
+            this.players = snapshot.playerCount();
+            this.waiting = snapshot.waitingOpponents.length;
+            int rows = snapshot.rowLast.length;
+            this.rowLast = new int[rows];
+            this.rowCount = new int[rows];
+            this.rowSum = new int[rows];
+            this.handLo = new long[players];
+            this.handHi = new long[players];
+            this.sampledLo = new long[players];
+            this.sampledHi = new long[players];
+            this.pool = snapshot.unseenPool.clone();
+            this.opponentChoice = new int[waiting];
+            this.trickCards = new int[players + snapshot.playedByOthers.length];
+            this.trickOwners = new int[players + snapshot.playedByOthers.length];
+            this.totals = new long[snapshot.myHand.length];
+        }
+
+        SearchStats run(long deadline, int sampleLimit) {
+            SearchStats stats = new SearchStats(s.myHand.length);
+            do {
+                sampleWorld();
+                long best = Long.MAX_VALUE;
+                for (int c = 0; c < s.myHand.length; c++) {
+                    totals[c] = evaluate(s.myHand[c]);
+                    best = Math.min(best, totals[c]);
+                }
+                for (int c = 0; c < s.myHand.length; c++) {
+                    stats.sums[c] += totals[c];
+                    if (totals[c] == best) {
+                        stats.wins[c]++;
+                    }
+                }
+                stats.samples++;
+            } while (stats.samples < sampleLimit && System.nanoTime() < deadline);
+            return stats;
+        }
+
+        // 为对手确定手牌，并决定本手尚未出牌的对手打哪张
+        private void sampleWorld() {
+            int remaining = pool.length;
+            sampledLo[0] = 0;
+            sampledHi[0] = 0;
+            for (int card : s.myHand) {
+                addCard(sampledLo, sampledHi, 0, card);
+            }
+            for (int p = 1; p < players; p++) {
+                PlayTipSnapshot.Opponent opponent = p <= waiting
+                        ? s.waitingOpponents[p - 1] : s.playedOpponents[p - 1 - waiting];
+                sampledLo[p] = 0;
+                sampledHi[p] = 0;
+                if (opponent.knownHand != null) {
+                    for (int card : opponent.knownHand) {
+                        addCard(sampledLo, sampledHi, p, card);
+                    }
+                    continue;
+                }
+                // 从未出现过的牌中不放回抽样（部分 Fisher-Yates）
+                for (int k = 0; k < opponent.handSize && remaining > 0; k++) {
+                    int j = random.nextInt(remaining);
+                    int card = pool[j];
+                    pool[j] = pool[remaining - 1];
+                    pool[remaining - 1] = card;
+                    remaining--;
+                    addCard(sampledLo, sampledHi, p, card);
+                }
+            }
+
+            for (int p = 1; p <= waiting; p++) {
+                int count = Long.bitCount(sampledLo[p]) + Long.bitCount(sampledHi[p]);
+                if (count == 0) {
+                    opponentChoice[p - 1] = 0;
+                } else if (random.nextDouble() < OPPONENT_EXPLORATION) {
+                    opponentChoice[p - 1] = nthCard(sampledLo[p], sampledHi[p], random.nextInt(count));
+                } else {
+                    opponentChoice[p - 1] = greedyCard(sampledLo[p], sampledHi[p], s.rowLast, s.rowCount, s.rowSum,
+                            s.maxCardsInRow);
+                }
+            }
+        }
+
+        // 评估在当前采样下打出 card 后，请求者本手及后续若干手共收到的猪头
+        private long evaluate(int card) {
+            System.arraycopy(s.rowLast, 0, rowLast, 0, rowLast.length);
+            System.arraycopy(s.rowCount, 0, rowCount, 0, rowCount.length);
+            System.arraycopy(s.rowSum, 0, rowSum, 0, rowSum.length);
+            System.arraycopy(sampledLo, 0, handLo, 0, players);
+            System.arraycopy(sampledHi, 0, handHi, 0, players);
+
+            int n = 0;
+            trickCards[n] = card;
+            trickOwners[n++] = 0;
+            removeCard(handLo, handHi, 0, card);
+            for (int played : s.playedByOthers) {
+                trickCards[n] = played;
+                trickOwners[n++] = -1;
+            }
+            for (int p = 1; p <= waiting; p++) {
+                int choice = opponentChoice[p - 1];
+                if (choice != 0) {
+                    trickCards[n] = choice;
+                    trickOwners[n++] = p;
+                    removeCard(handLo, handHi, p, choice);
+                }
+            }
+            long penalty = resolveTrick(n);
+
+            for (int turn = 0; turn < lookaheadTurns; turn++) {
+                if ((handLo[0] | handHi[0]) == 0) {
+                    break;
+                }
+                n = 0;
+                for (int p = 0; p < players; p++) {
+                    if ((handLo[p] | handHi[p]) == 0) {
+                        continue;
+                    }
+                    int next = greedyCard(handLo[p], handHi[p], rowLast, rowCount, rowSum, s.maxCardsInRow);
+                    removeCard(handLo, handHi, p, next);
+                    trickCards[n] = next;
+                    trickOwners[n++] = p;
+                }
+                penalty += resolveTrick(n);
+            }
+            return penalty;
+        }
+
+        // 按牌号从小到大结算一手牌，返回请求者收到的猪头
+        private int resolveTrick(int n) {
+            // 插入排序，n 不超过玩家数
+            for (int i = 1; i < n; i++) {
+                int card = trickCards[i];
+                int owner = trickOwners[i];
+                int j = i - 1;
+                while (j >= 0 && trickCards[j] > card) {
+                    trickCards[j + 1] = trickCards[j];
+                    trickOwners[j + 1] = trickOwners[j];
+                    j--;
+                }
+                trickCards[j + 1] = card;
+                trickOwners[j + 1] = owner;
+            }
+
+            int myPenalty = 0;
+            for (int i = 0; i < n; i++) {
+                int card = trickCards[i];
+                int target = targetRow(rowLast, rowCount, card);
+                int taken = 0;
+                if (target < 0) {
+                    target = minSumRow(rowSum);
+                    taken = takeRow(target, card);
+                } else if (rowCount[target] >= s.maxCardsInRow) {
+                    taken = takeRow(target, card);
+                } else {
+                    rowLast[target] = card;
+                    rowCount[target]++;
+                    rowSum[target] += CardTable.bullheads(card);
+                }
+                if (trickOwners[i] == 0) {
+                    myPenalty += taken;
+                }
+            }
+            return myPenalty;
+        }
+
+        private int takeRow(int row, int card) {
+            int taken = rowSum[row];
+            rowLast[row] = card;
+            rowCount[row] = 1;
+            rowSum[row] = CardTable.bullheads(card);
+            return taken;
+        }
+    }
+
+    // 贪心策略：只看当前桌面，选立即收猪头最少的牌，相同则选小编号
+    static int greedyCard(long lo, long hi, int[] rowLast, int[] rowCount, int[] rowSum, int maxCardsInRow) {
+        int bestCard = 0;
+        int bestCost = Integer.MAX_VALUE;
+        int minSum = rowSum[minSumRow(rowSum)];
+        for (int word = 0; word < 2; word++) {
+            long bits = word == 0 ? lo : hi;
+            while (bits != 0) {
+                int card = Long.numberOfTrailingZeros(bits) + word * 64;
+                bits &= bits - 1;
+                int target = targetRow(rowLast, rowCount, card);
+                int cost;
+                if (target < 0) {
+                    cost = minSum;
+                } else if (rowCount[target] >= maxCardsInRow) {
+                    cost = rowSum[target];
+                } else {
+                    cost = 0;
+                }
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    bestCard = card;
+                }
+            }
+        }
+        return bestCard;
+    }
+
+    // 位图中第 index 小的牌
+    static int nthCard(long lo, long hi, int index) {
+        int loCount = Long.bitCount(lo);
+        long bits = index < loCount ? lo : hi;
+        int offset = index < loCount ? 0 : 64;
+        int skip = index < loCount ? index : index - loCount;
+        for (int i = 0; i < skip; i++) {
+            bits &= bits - 1;
+        }
+        return Long.numberOfTrailingZeros(bits) + offset;
+    }
+
+    private static void addCard(long[] lo, long[] hi, int player, int card) {
+        if (card < 64) {
+            lo[player] |= 1L << card;
+        } else {
+            hi[player] |= 1L << (card - 64);
+        }
+    }
+
+    private static void removeCard(long[] lo, long[] hi, int player, int card) {
+        if (card < 64) {
+            lo[player] &= ~(1L << card);
+        } else {
+            hi[player] &= ~(1L << (card - 64));
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.top_hog_server.service.game;
+
+import com.example.top_hog_server.model.Card;
+import com.example.top_hog_server.model.CardTable;
+import com.example.top_hog_server.model.GameRoom;
+import com.example.top_hog_server.model.GameRow;
+import com.example.top_hog_server.model.Player;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 出牌提示搜索和机器人决策使用的不可变房间快照。
+ * 只在房间执行上下文中构建（复制几十个 int），搜索本身在房间锁之外进行，不会阻塞房间内的其他操作。
+ * <p>
+ * 信息规则：
+ * <ul>
+ *     <li>已知：自己的手牌、桌面牌列、所有玩家已收走的牌、本手其他玩家已打出的牌。</li>
+ *     <li>在 {@code allPlayerHandsForAI} 中且非托管的对手：手牌视为已知。</li>
+ *     <li>其他对手：只知道手牌数量，手牌从未出现过的牌中随机抽样。</li>
+ * </ul>
+ */
+public final class PlayTipSnapshot {
+
+    final int[] rowLast;
+    final int[] rowCount;
+    final int[] rowSum;
+    final int maxCardsInRow;
+    // 自己的手牌（升序）
+    final int[] myHand;
+    // 本手其他玩家已打出的牌
+    final int[] playedByOthers;
+    // 本手尚未出牌的对手
+    final Opponent[] waitingOpponents;
+    // 本手已出牌的对手（参与后续几手的模拟）
+    final Opponent[] playedOpponents;
+    // 未出现过、且不属于已知手牌的牌，未知手牌从这里抽样
+    final int[] unseenPool;
+
+    private PlayTipSnapshot(int[] rowLast, int[] rowCount, int[] rowSum, int maxCardsInRow, int[] myHand,
+            int[] playedByOthers, Opponent[] waitingOpponents, Opponent[] playedOpponents, int[] unseenPool) {
+        this.rowLast = rowLast;
+        this.rowCount = rowCount;
+        this.rowSum = rowSum;
+        this.maxCardsInRow = maxCardsInRow;
+        this.myHand = myHand;
+        this.playedByOthers = playedByOthers;
+        this.waitingOpponents = waitingOpponents;
+        this.playedOpponents = playedOpponents;
+        this.unseenPool = unseenPool;
+    }
+
+    /**
+     * 从房间构建快照（调用方需持有房间的执行上下文）。
+     */
+    public static PlayTipSnapshot of(GameRoom room, String requestingSessionId) {
+        return of(room, requestingSessionId, true);
+    }
+
+    /**
+     * 从房间构建快照（调用方需持有房间的执行上下文）。
+     *
+     * @param useKnownHands 是否使用 {@code allPlayerHandsForAI} 中的对手手牌；为 false 时所有对手手牌均需抽样
+     */
+    public static PlayTipSnapshot of(GameRoom room, String requestingSessionId, boolean useKnownHands) {
+        List<GameRow> rows = room.getRows();
+        int[] rowLast = new int[rows.size()];
+        int[] rowCount = new int[rows.size()];
+        int[] rowSum = new int[rows.size()];
+        int maxCardsInRow = rows.isEmpty() ? 5 : rows.get(0).getMAX_CARDS_IN_ROW();
+
+        // 下标为牌号，标记所有对请求者可见或已知的牌
+        boolean[] excluded = new boolean[CardTable.MAX_CARD_NUMBER + 1];
+        for (int i = 0; i < rows.size(); i++) {
+            GameRow row = rows.get(i);
+            rowLast[i] = row.lastNumber();
+            rowCount[i] = row.size();
+            rowSum[i] = row.getBullheadSum();
+            for (int j = 0; j < row.size(); j++) {
+                markExcluded(excluded, row.numberAt(j));
+            }
+        }
+
+        Player me = room.getPlayers().get(requestingSessionId);
+        int[] myHand = numbers(me.getHand());
+        Arrays.sort(myHand);
+        markExcluded(excluded, myHand);
+
+        List<Integer> playedByOthers = new ArrayList<>();
+        for (Map.Entry<String, Card> entry : room.getPlayedCardsThisTurn().entrySet()) {
+            markExcluded(excluded, entry.getValue().getNumber());
+            if (!entry.getKey().equals(requestingSessionId)) {
+                playedByOthers.add(entry.getValue().getNumber());
+            }
+        }
+
+        Map<String, List<Card>> knownHands = room.getAllPlayerHandsForAI();
+        List<Opponent> waiting = new ArrayList<>();
+        List<Opponent> played = new ArrayList<>();
+        for (Map.Entry<String, Player> entry : room.getPlayers().entrySet()) {
+            Player p = entry.getValue();
+            if (p.getCollectedCards() != null) {
+                for (Card card : p.getCollectedCards()) {
+                    markExcluded(excluded, card.getNumber());
+                }
+            }
+            if (entry.getKey().equals(requestingSessionId)) {
+                continue;
+            }
+            int[] known = null;
+            if (useKnownHands && knownHands != null && !p.isTrustee() && knownHands.containsKey(entry.getKey())) {
+                known = numbers(knownHands.get(entry.getKey()));
+                markExcluded(excluded, known);
+            }
+            int handSize = p.getHand() != null ? p.getHand().size() : 0;
+            Opponent opponent = new Opponent(handSize, known);
+            if (room.getPlayedCardsThisTurn().containsKey(entry.getKey())) {
+                played.add(opponent);
+            } else {
+                waiting.add(opponent);
+            }
+        }
+
+        int unseenCount = 0;
+        for (int n = CardTable.MIN_CARD_NUMBER; n <= CardTable.MAX_CARD_NUMBER; n++) {
+            if (!excluded[n]) {
+                unseenCount++;
+            }
+        }
+        int[] unseenPool = new int[unseenCount];
+        int k = 0;
+        for (int n = CardTable.MIN_CARD_NUMBER; n <= CardTable.MAX_CARD_NUMBER; n++) {
+            if (!excluded[n]) {
+                unseenPool[k++] = n;
+            }
+        }
+
+        return new PlayTipSnapshot(rowLast, rowCount, rowSum, maxCardsInRow, myHand,
+                playedByOthers.stream().mapToInt(Integer::intValue).toArray(),
+                waiting.toArray(new Opponent[0]), played.toArray(new Opponent[0]), unseenPool);
+    }
+
+    public int[] getMyHand() {
+        return myHand.clone();
+    }
+
+    public int handSize() {
+        return myHand.length;
+    }
+
+    // 手牌中第 index 小的牌
+    public int handCard(int index) {
+        return myHand[index];
+    }
+
+    public int rows() {
+        return rowLast.length;
+    }
+
+    public int rowLast(int row) {
+        return rowLast[row];
+    }
+
+    public int rowCount(int row) {
+        return rowCount[row];
+    }
+
+    public int rowBullheads(int row) {
+        return rowSum[row];
+    }
+
+    public int maxCardsInRow() {
+        return maxCardsInRow;
+    }
+
+    /**
+     * 牌号应放置的行，必须选行时返回 -1（与 {@code TopHogGameEngine.findTargetRowIndex} 规则一致）。
+     */
+    public int targetRow(int card) {
+        return PlayTipEngine.targetRow(rowLast, rowCount, card);
+    }
+
+    public int minBullheadRow() {
+        return PlayTipEngine.minSumRow(rowSum);
+    }
+
+    // 本手尚未出牌的对手数量
+    public int waitingOpponents() {
+        return waitingOpponents.length;
+    }
+
+    // 本手其他玩家已打出、号码在 (low, high) 之间的牌数
+    public int playedByOthersBetween(int low, int high) {
+        int count = 0;
+        for (int card : playedByOthers) {
+            if (card > low && card < high) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int unseenCount() {
+        return unseenPool.length;
+    }
+
+    // 未出现过、号码在 (low, high) 之间的牌数（unseenPool 升序）
+    public int unseenBetween(int low, int high) {
+        int from = Arrays.binarySearch(unseenPool, low + 1);
+        int to = Arrays.binarySearch(unseenPool, high);
+        from = from >= 0 ? from : -from - 1;
+        to = to >= 0 ? to : -to - 1;
+        return Math.max(0, to - from);
+    }
+
+    int playerCount() {
+        return 1 + waitingOpponents.length + playedOpponents.length;
+    }
+
+    private static int[] numbers(List<Card> cards) {
+        if (cards == null) {
+            return new int[0];
+        }
+        int[] result = new int[cards.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = cards.get(i).getNumber();
+        }
+        return result;
+    }
+
+    private static void markExcluded(boolean[] excluded, int... numbers) {
+        for (int n : numbers) {
+            if (CardTable.isValid(n)) {
+                excluded[n] = true;
+            }
+        }
+    }
+
+    /**
+     * 对手在快照中的可见信息：手牌数量，以及（若已知）具体手牌。
+     */
+    static final class Opponent {
+        final int handSize;
+        // null 表示手牌未知，需要抽样
+        final int[] knownHand;
+
+        Opponent(int handSize, int[] knownHand) {
+            this.handSize = handSize;
+            this.knownHand = knownHand;
+        }
+    }
+}
@@ -8,6 +8,7 @@ import org.springframework.web.socket.WebSocketSession;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 
 /**
@@ -19,26 +20,6 @@ public class TopHogGameEngine implements GameEngine {
 
     private static final Logger logger = LoggerFactory.getLogger(TopHogGameEngine.class);
 
-    // 完整的初始牌堆，包含1到104号牌
-    private static final List<Card> INITIAL_FULL_DECK = new ArrayList<>();
-
-    // 静态初始化牌堆数据，定义每张牌的猪头数
-    static {
-        for (int i = 1; i <= 104; i++) {
-            int bullheads = 1; // 默认1个猪头
-            if (i == 55) {
-                bullheads = 7; // 55号牌：7个猪头
-            } else if (i % 11 == 0) {
-                bullheads = 5; // 11的倍数：5个猪头
-            } else if (i % 10 == 0) {
-                bullheads = 3; // 10的倍数：3个猪头
-            } else if (i % 5 == 0 && i % 10 != 0) {
-                bullheads = 2; // 5的倍数（非10的倍数）：2个猪头
-            }
-            INITIAL_FULL_DECK.add(new Card(i, bullheads));
-        }
-    }
-
     @Override
     public GameType getGameType() {
         return GameType.TOP_HOG;
@@ -46,12 +27,10 @@ public class TopHogGameEngine implements GameEngine {
 
     @Override
     public void initializeGame(GameRoom room) {
-        logger.info("初始化猪头王游戏房间: {}", room.getRoomId());
+        logger.debug("初始化猪头王游戏房间: {}", room.getRoomId());
         
-        // 创建新牌堆并洗牌
-        List<Card> newDeck = new ArrayList<>(INITIAL_FULL_DECK);
-        Collections.shuffle(newDeck);
-        room.setDeck(newDeck);
+        // 创建新牌堆并用本局的种子洗牌：在牌号数组上洗牌，再映射为共享的牌对象
+        room.setDeck(shuffledDeck(room.getGameSeed()));
         
         // 清空桌面所有牌列
         room.clearAllRows();
@@ -63,13 +42,13 @@ public class TopHogGameEngine implements GameEngine {
 
         // 给每个牌列发一张起始牌
         for (GameRow gameRow : room.getRows()) {
-            gameRow.addCard(room.getDeck().remove(0));
+            gameRow.addCard(dealCard(room.getDeck()));
         }
     }
 
     @Override
     public void startNewRound(GameRoom room) {
-        logger.info("开始猪头王新一轮: 房间 {}", room.getRoomId());
+        logger.debug("开始猪头王新一轮: 房间 {}", room.getRoomId());
         
         // 检查是否有足够的牌给所有玩家发10张
         long activePlayersCount = room.getPlayers().values().stream().filter(p -> !p.isTrustee() || room.getPlayers().size() == 1).count();
@@ -91,7 +70,7 @@ public class TopHogGameEngine implements GameEngine {
             player.getHand().clear();
             for (int i = 0; i < 10; i++) {
                 if (!room.getDeck().isEmpty()) {
-                    player.addCardToHand(room.getDeck().remove(0));
+                    player.addCardToHand(dealCard(room.getDeck()));
                 }
             }
             // 排序手牌
@@ -128,13 +107,22 @@ public class TopHogGameEngine implements GameEngine {
      * @return 收取的猪头数
      */
     public int executeTakeRow(GameRoom room, Player player, int rowIndex, Card newCardForThisRow) {
-        if (rowIndex < 0 || rowIndex >= room.getRows().size()) return 0;
-        
-        GameRow rowToTake = room.getRows().get(rowIndex);
-        LinkedList<Card> takenCards = rowToTake.takeRowAndReplace(newCardForThisRow);
+        return takeRow(room.getRows(), player, rowIndex, newCardForThisRow);
+    }
+
+    /**
+     * 玩家收走指定牌列，新牌成为该列的第一张（回放时直接在牌列上运行同一规则）。
+     * @return 收取的猪头数
+     */
+    public static int takeRow(List<GameRow> rows, Player player, int rowIndex, Card newCardForThisRow) {
+        if (rowIndex < 0 || rowIndex >= rows.size()) return 0;
         
-        player.addCollectedCards(takenCards);
-        return takenCards.stream().mapToInt(Card::getBullheads).sum();
+        GameRow rowToTake = rows.get(rowIndex);
+        // 逐张收牌，直接使用共享牌对象，不复制整行
+        for (int i = 0; i < rowToTake.size(); i++) {
+            player.collectCard(rowToTake.cardAt(i));
+        }
+        return rowToTake.replaceWith(newCardForThisRow.getNumber(), newCardForThisRow.getBullheads());
     }
     
     /**
@@ -142,20 +130,27 @@ public class TopHogGameEngine implements GameEngine {
      * @return 目标行索引，如果必须选行则返回 -1
      */
     public int findTargetRowIndex(GameRoom room, Card card) {
+        return findTargetRowIndex(room.getRows(), card.getNumber());
+    }
+
+    /**
+     * 计算牌号应该放置的目标行索引（只比较各行缓存的末尾牌号）。
+     * @return 目标行索引，如果必须选行则返回 -1
+     */
+    public static int findTargetRowIndex(List<GameRow> rows, int cardNumber) {
         int targetRowIndex = -1;
         int bestDifference = Integer.MAX_VALUE;
 
-        for (int i = 0; i < room.getRows().size(); i++) {
-            GameRow currentRow = room.getRows().get(i);
-            Card lastCardInRow = currentRow.getLastCard();
+        for (int i = 0; i < rows.size(); i++) {
+            GameRow currentRow = rows.get(i);
             
-            if (lastCardInRow != null && card.getNumber() > lastCardInRow.getNumber()) {
-                int diff = card.getNumber() - lastCardInRow.getNumber();
-                if (diff < bestDifference) {
+            if (currentRow.size() > 0) {
+                int diff = cardNumber - currentRow.lastNumber();
+                if (diff > 0 && diff < bestDifference) {
                     bestDifference = diff;
                     targetRowIndex = i;
                 }
-            } else if (lastCardInRow == null) {
+            } else {
                  // 空行逻辑，通常不会发生，除非变种规则
                  if (targetRowIndex == -1 || bestDifference > 100000) {
                      bestDifference = 100000 + i;
@@ -170,10 +165,17 @@ public class TopHogGameEngine implements GameEngine {
      * 自动选择猪头最少的一行
      */
     public int findRowWithMinBullheads(GameRoom room) {
+        return findRowWithMinBullheads(room.getRows());
+    }
+
+    /**
+     * 猪头最少的一行（各行猪头总数已缓存，不需要遍历牌）。
+     */
+    public static int findRowWithMinBullheads(List<GameRow> rows) {
         int bestRowIndex = 0;
         int minBullheads = Integer.MAX_VALUE;
-        for (int i = 0; i < room.getRows().size(); i++) {
-            int currentBullheads = room.getRows().get(i).getBullheadSum();
+        for (int i = 0; i < rows.size(); i++) {
+            int currentBullheads = rows.get(i).getBullheadSum();
             if (currentBullheads < minBullheads) {
                 minBullheads = currentBullheads;
                 bestRowIndex = i;
@@ -182,6 +184,41 @@ public class TopHogGameEngine implements GameEngine {
         return bestRowIndex;
     }
 
+    /**
+     * 生成洗好的完整牌堆。牌号在 int 数组上做 Fisher-Yates 洗牌，
+     * 牌对象取自 {@link CardTable} 的共享实例；发牌从列表末尾取，每次都是 O(1)。
+     * 使用 {@link Random}：它的算法由规范固定，同一种子在任何 JVM 上得到相同的牌序，回放和离线分析都依赖这一点。
+     */
+    public static List<Card> shuffledDeck(long seed) {
+        int[] numbers = new int[CardTable.MAX_CARD_NUMBER];
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = i + CardTable.MIN_CARD_NUMBER;
+        }
+        Random random = new Random(seed);
+        for (int i = numbers.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = numbers[i];
+            numbers[i] = numbers[j];
+            numbers[j] = tmp;
+        }
+        List<Card> deck = new ArrayList<>(numbers.length);
+        for (int number : numbers) {
+            deck.add(CardTable.card(number));
+        }
+        return deck;
+    }
+
+    static List<Card> shuffledDeck() {
+        return shuffledDeck(ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * 从牌堆顶（列表末尾）发一张牌。
+     */
+    public static Card dealCard(List<Card> deck) {
+        return deck.remove(deck.size() - 1);
+    }
+
     @Override
     public boolean isGameOver(GameRoom room) {
         // 任意玩家分数 >= 66
@@ -226,14 +263,4 @@ public class TopHogGameEngine implements GameEngine {
     public GameConfiguration getGameConfiguration() {
         return null;
     }
-    
-    /**
-     * AI出牌策略
-     */
-    public Card determineBotPlayCard(Player bot, GameRoom room) {
-         // 简单策略：出最小的牌
-         return bot.getHand().stream()
-                .min(Comparator.comparingInt(Card::getNumber))
-                .orElse(null);
-    }
 }
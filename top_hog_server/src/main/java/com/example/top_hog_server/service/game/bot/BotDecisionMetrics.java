@@ -0,0 +1,81 @@
+package com.example.top_hog_server.service.game.bot;
+
+import com.example.top_hog_server.model.BotDifficulty;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 机器人决策耗时统计（按难度分别统计），写入路径无锁。
+ */
+public class BotDecisionMetrics {
+
+    private final Map<BotDifficulty, Counters> counters = new EnumMap<>(BotDifficulty.class);
+
+    public BotDecisionMetrics() {
+        for (BotDifficulty difficulty : BotDifficulty.values()) {
+            counters.put(difficulty, new Counters());
+        }
+    }
+
+    /**
+     * 记录一次决策
+     *
+     * @param elapsedNanos 从提交决策到得到结果的耗时
+     * @param overBudget   是否超出时间预算
+     * @param fallback     是否使用了兜底策略（超时或异常）
+     */
+    public void record(BotDifficulty difficulty, long elapsedNanos, boolean overBudget, boolean fallback) {
+        Counters c = counters.get(difficulty);
+        c.decisions.increment();
+        c.totalNanos.add(elapsedNanos);
+        c.maxNanos.accumulateAndGet(elapsedNanos, Math::max);
+        if (overBudget) {
+            c.overBudget.increment();
+        }
+        if (fallback) {
+            c.fallbacks.increment();
+        }
+    }
+
+    public long getDecisions(BotDifficulty difficulty) {
+        return counters.get(difficulty).decisions.sum();
+    }
+
+    public long getOverBudget(BotDifficulty difficulty) {
+        return counters.get(difficulty).overBudget.sum();
+    }
+
+    public long getFallbacks(BotDifficulty difficulty) {
+        return counters.get(difficulty).fallbacks.sum();
+    }
+
+    /**
+     * 导出统计快照，供管理接口展示
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        counters.forEach((difficulty, c) -> {
+            long decisions = c.decisions.sum();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("decisions", decisions);
+            stats.put("avgMicros", decisions == 0 ? 0 : c.totalNanos.sum() / decisions / 1000);
+            stats.put("maxMicros", c.maxNanos.get() / 1000);
+            stats.put("overBudget", c.overBudget.sum());
+            stats.put("fallbacks", c.fallbacks.sum());
+            result.put(difficulty.getCode(), stats);
+        });
+        return result;
+    }
+
+    private static final class Counters {
+        final LongAdder decisions = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+        final LongAdder overBudget = new LongAdder();
+        final LongAdder fallbacks = new LongAdder();
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.top_hog_server.service.game.bot;
+
+import com.example.top_hog_server.model.BotDifficulty;
+import com.example.top_hog_server.model.GameRoom;
+import com.example.top_hog_server.model.GameType;
+import com.example.top_hog_server.model.Player;
+import com.example.top_hog_server.service.game.PlayTipSnapshot;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 机器人决策入口：按房间/玩家选择策略，强制每次决策的时间预算，并记录决策耗时。
+ * <p>
+ * 机器人使用房间设置的难度（未设置时使用默认难度）；人类玩家托管时固定使用默认难度。
+ * 非猪头王玩法没有牌列信息，统一使用最小牌策略。
+ */
+@Component
+public class BotDecisionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BotDecisionService.class);
+
+    private final Map<BotDifficulty, BotStrategy> strategies = new EnumMap<>(BotDifficulty.class);
+    private final BotStrategy fallbackStrategy;
+    private final BotDifficulty defaultDifficulty;
+    private final long decisionBudgetNanos;
+    private final ExecutorService offloadExecutor;
+    private final BotDecisionMetrics metrics = new BotDecisionMetrics();
+
+    @Autowired
+    public BotDecisionService(List<BotStrategy> strategyList,
+            @Value("${game.bot.defaultDifficulty:normal}") String defaultDifficulty,
+            @Value("${game.bot.decisionBudgetMs:20}") long decisionBudgetMs,
+            @Value("${game.bot.threads:2}") int threads) {
+        for (BotStrategy strategy : strategyList) {
+            strategies.put(strategy.getDifficulty(), strategy);
+        }
+        this.fallbackStrategy = strategies.computeIfAbsent(BotDifficulty.EASY, d -> new LowestCardBotStrategy());
+        BotDifficulty configured = BotDifficulty.fromCode(defaultDifficulty);
+        this.defaultDifficulty = configured != null && strategies.containsKey(configured) ? configured : BotDifficulty.EASY;
+        this.decisionBudgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, decisionBudgetMs));
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.offloadExecutor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "bot-decision-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        logger.info("机器人决策服务已启动：默认难度 {}，决策预算 {}ms，策略 {}", this.defaultDifficulty,
+                decisionBudgetMs, strategies.keySet());
+    }
+
+    /**
+     * 为房间中的自动出牌玩家选择策略
+     */
+    public BotStrategy strategyFor(GameRoom room, Player player) {
+        if (room.getGameType() != GameType.TOP_HOG) {
+            return fallbackStrategy;
+        }
+        BotDifficulty difficulty = defaultDifficulty;
+        if (player.isRobot() && room.getBotDifficulty() != null) {
+            difficulty = room.getBotDifficulty();
+        }
+        return strategies.getOrDefault(difficulty, fallbackStrategy);
+    }
+
+    /**
+     * 同步决策，用于 {@link BotStrategy#isInline()} 的策略（在房间执行上下文中调用）。
+     * 策略异常时退回最小牌策略。
+     */
+    public int decide(BotStrategy strategy, PlayTipSnapshot snapshot) {
+        long start = System.nanoTime();
+        long deadline = start + decisionBudgetNanos;
+        int card = choose(strategy, snapshot, deadline);
+        boolean fallback = card < 0;
+        if (fallback) {
+            card = fallbackStrategy.chooseCard(snapshot, deadline);
+        }
+        long end = System.nanoTime();
+        metrics.record(strategy.getDifficulty(), end - start, end > deadline, fallback);
+        return card;
+    }
+
+    /**
+     * 在房间锁之外异步决策。无论策略是否按时返回，future 最迟在时间预算（外加一半余量）到期时
+     * 以最小牌策略的结果完成，保证房间不会因为机器人而卡住。
+     * 策略任务与到期任务通过 {@code decided} 竞争，胜者先记录指标再完成 future，调用方拿到结果时指标已可见。
+     */
+    public CompletableFuture<Integer> decideAsync(BotStrategy strategy, PlayTipSnapshot snapshot) {
+        long start = System.nanoTime();
+        long deadline = start + decisionBudgetNanos;
+        long hardLimitNanos = decisionBudgetNanos + decisionBudgetNanos / 2;
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        AtomicBoolean decided = new AtomicBoolean();
+        try {
+            offloadExecutor.execute(() -> {
+                if (decided.get()) {
+                    return;
+                }
+                int card = choose(strategy, snapshot, deadline);
+                boolean fallback = card < 0;
+                if (fallback) {
+                    card = fallbackStrategy.chooseCard(snapshot, deadline);
+                }
+                long end = System.nanoTime();
+                if (decided.compareAndSet(false, true)) {
+                    metrics.record(strategy.getDifficulty(), end - start, end > deadline, fallback);
+                    future.complete(card);
+                }
+            });
+        } catch (RuntimeException e) {
+            logger.warn("机器人决策任务提交失败，使用兜底策略: {}", e.getMessage());
+            int card = fallbackStrategy.chooseCard(snapshot, deadline);
+            metrics.record(strategy.getDifficulty(), System.nanoTime() - start, false, true);
+            future.complete(card);
+            return future;
+        }
+        // 执行器排队或策略超时：到期后用兜底策略完成
+        CompletableFuture.delayedExecutor(hardLimitNanos, TimeUnit.NANOSECONDS).execute(() -> {
+            if (decided.compareAndSet(false, true)) {
+                int card = fallbackStrategy.chooseCard(snapshot, deadline);
+                metrics.record(strategy.getDifficulty(), System.nanoTime() - start, true, true);
+                future.complete(card);
+                logger.warn("{} 机器人决策超过 {}ms 未返回，使用兜底策略。", strategy.getDifficulty(),
+                        TimeUnit.NANOSECONDS.toMillis(hardLimitNanos));
+            }
+        });
+        return future;
+    }
+
+    public BotDecisionMetrics getMetrics() {
+        return metrics;
+    }
+
+    public long getDecisionBudgetNanos() {
+        return decisionBudgetNanos;
+    }
+
+    // 返回策略选择的牌号，策略异常或返回非法牌时返回 -1
+    private int choose(BotStrategy strategy, PlayTipSnapshot snapshot, long deadline) {
+        int card;
+        try {
+            card = strategy.chooseCard(snapshot, deadline);
+        } catch (RuntimeException e) {
+            logger.error("{} 机器人策略决策异常，使用兜底策略", strategy.getDifficulty(), e);
+            return -1;
+        }
+        if (!inHand(snapshot, card)) {
+            logger.error("{} 机器人策略返回了不在手牌中的牌 {}，使用兜底策略", strategy.getDifficulty(), card);
+            return -1;
+        }
+        return card;
+    }
+
+    private static boolean inHand(PlayTipSnapshot snapshot, int card) {
+        for (int i = 0; i < snapshot.handSize(); i++) {
+            if (snapshot.handCard(i) == card) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        offloadExecutor.shutdownNow();
+    }
+}
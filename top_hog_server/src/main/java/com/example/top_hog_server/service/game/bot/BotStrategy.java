@@ -0,0 +1,35 @@
+package com.example.top_hog_server.service.game.bot;
+
+import com.example.top_hog_server.model.BotDifficulty;
+import com.example.top_hog_server.service.game.PlayTipSnapshot;
+
+/**
+ * 机器人出牌策略 SPI。
+ * <p>
+ * 策略只看 {@link PlayTipSnapshot}（不含对手的真实手牌），快照在房间执行上下文中构建，
+ * 决策本身不再访问房间。{@link #isInline()} 为 true 的策略直接在房间执行上下文中决策；
+ * 为 false 的耗时策略由 {@link BotDecisionService} 放到房间锁之外执行，结果再投递回房间。
+ */
+public interface BotStrategy {
+
+    /**
+     * 该策略对应的难度
+     */
+    BotDifficulty getDifficulty();
+
+    /**
+     * 是否可以直接在房间执行上下文中决策（开销在微秒级）
+     */
+    default boolean isInline() {
+        return true;
+    }
+
+    /**
+     * 选择要打出的牌号，必须是快照手牌中的一张，并应在截止时间前返回。
+     *
+     * @param snapshot 机器人视角的房间快照，手牌非空
+     * @param deadline 截止时间（{@link System#nanoTime()} 时间基准）
+     * @return 牌号
+     */
+    int chooseCard(PlayTipSnapshot snapshot, long deadline);
+}
@@ -0,0 +1,82 @@
+package com.example.top_hog_server.service.game.bot;
+
+import com.example.top_hog_server.model.BotDifficulty;
+import com.example.top_hog_server.model.CardTable;
+import com.example.top_hog_server.service.game.PlayTipSnapshot;
+import org.springframework.stereotype.Component;
+
+/**
+ * 启发式策略：对每张手牌估算本手的期望收牌猪头数，选代价最小的一张。
+ * <ul>
+ *     <li>比所有行末尾都小：必须收走猪头最少的一行。</li>
+ *     <li>目标行已满：必然成为第6张牌，收走整行。</li>
+ *     <li>否则估算第6张牌风险：对手本手打出的、落在 (行末尾, 本牌) 之间的牌会排在本牌前面，
+ *     把剩余空位填满时本牌就成了第6张。</li>
+ * </ul>
+ * 另外按牌列间距加一个很小的惩罚，优先紧贴行末尾出牌。整个计算是 O(手牌数 × 行数) 的整数运算，可直接在房间锁内执行。
+ */
+@Component
+public class HeuristicBotStrategy implements BotStrategy {
+
+    // 未知牌的平均猪头数（104 张牌共 171 个猪头）
+    private static final double AVERAGE_BULLHEADS = 171.0 / CardTable.MAX_CARD_NUMBER;
+    // 间距惩罚：间距跨越整副牌时约等于 0.5 个猪头
+    private static final double GAP_WEIGHT = 0.5 / CardTable.MAX_CARD_NUMBER;
+
+    @Override
+    public BotDifficulty getDifficulty() {
+        return BotDifficulty.NORMAL;
+    }
+
+    @Override
+    public int chooseCard(PlayTipSnapshot snapshot, long deadline) {
+        int best = snapshot.handCard(0);
+        double bestCost = Double.MAX_VALUE;
+        for (int i = 0; i < snapshot.handSize(); i++) {
+            int card = snapshot.handCard(i);
+            double cost = estimateCost(snapshot, card);
+            // 手牌升序，代价相同时保留较小的牌
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = card;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 估算打出 card 时本手的期望收牌猪头数（含间距惩罚）
+     */
+    static double estimateCost(PlayTipSnapshot snapshot, int card) {
+        int row = snapshot.targetRow(card);
+        if (row < 0) {
+            return snapshot.rowBullheads(snapshot.minBullheadRow());
+        }
+        int last = snapshot.rowLast(row);
+        int rowSum = snapshot.rowBullheads(row);
+        int freeSlots = snapshot.maxCardsInRow() - snapshot.rowCount(row);
+        double gapPenalty = (card - last) * GAP_WEIGHT;
+        if (freeSlots <= 0) {
+            return rowSum + gapPenalty;
+        }
+
+        // 已经打出、必然排在本牌前面的牌
+        int knownAhead = snapshot.playedByOthersBetween(last, card);
+        if (knownAhead >= freeSlots) {
+            return rowSum + knownAhead * AVERAGE_BULLHEADS + gapPenalty;
+        }
+
+        int unseen = snapshot.unseenCount();
+        int waiting = snapshot.waitingOpponents();
+        if (unseen == 0 || waiting == 0) {
+            return gapPenalty;
+        }
+        // 尚未出牌的对手每人出一张，落在区间内的期望张数；超过剩余空位的比例视为收行概率
+        double expectedAhead = (double) waiting * snapshot.unseenBetween(last, card) / unseen;
+        double probability = Math.min(1.0, expectedAhead / (freeSlots - knownAhead));
+        // 概率按空位数次方衰减：只差一张时风险明显高于还差几张
+        probability = Math.pow(probability, freeSlots - knownAhead);
+        double takenIfFull = rowSum + (freeSlots - 1) * AVERAGE_BULLHEADS;
+        return probability * takenIfFull + gapPenalty;
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.top_hog_server.service.game.bot;
+
+import com.example.top_hog_server.model.BotDifficulty;
+import com.example.top_hog_server.service.game.PlayTipSnapshot;
+import org.springframework.stereotype.Component;
+
+/**
+ * 简单策略：出手中最小的牌（原托管出牌逻辑）。
+ * 也是其他策略超时或异常时的兜底策略。
+ */
+@Component
+public class LowestCardBotStrategy implements BotStrategy {
+
+    @Override
+    public BotDifficulty getDifficulty() {
+        return BotDifficulty.EASY;
+    }
+
+    @Override
+    public int chooseCard(PlayTipSnapshot snapshot, long deadline) {
+        return snapshot.handCard(0);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.top_hog_server.service.game.bot;
+
+import com.example.top_hog_server.model.BotDifficulty;
+import com.example.top_hog_server.service.game.PlayTipEngine;
+import com.example.top_hog_server.service.game.PlayTipSnapshot;
+import org.springframework.stereotype.Component;
+
+/**
+ * 搜索策略：复用出牌提示的蒙特卡洛搜索，在截止时间前返回当前最优的牌。
+ * 耗时在毫秒级，因此不在房间执行上下文中运行。
+ */
+@Component
+public class SearchBotStrategy implements BotStrategy {
+
+    private final PlayTipEngine playTipEngine;
+
+    public SearchBotStrategy(PlayTipEngine playTipEngine) {
+        this.playTipEngine = playTipEngine;
+    }
+
+    @Override
+    public BotDifficulty getDifficulty() {
+        return BotDifficulty.HARD;
+    }
+
+    @Override
+    public boolean isInline() {
+        return false;
+    }
+
+    @Override
+    public int chooseCard(PlayTipSnapshot snapshot, long deadline) {
+        PlayTipEngine.PlayTip tip = playTipEngine.suggest(snapshot, deadline);
+        return tip != null ? tip.getCardNumber() : snapshot.handCard(0);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.top_hog_server.service.history;
+
+import com.example.top_hog_server.model.GameHistory;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * 由 game_history 派生的内存汇总（排行榜、用户累计战绩、数据分析）的公共骨架。
+ * <p>
+ * 战绩是写后落库的：对局结束时记录可能还在 {@link GameHistoryWriter} 的队列或溢出文件中，
+ * 所以汇总不在对局结束时更新，而是订阅写线程，每批记录写库成功后由 {@link #apply} 累加，
+ * 溢出文件回放（包括重启后的回放）写入的记录也同样累加。
+ * <p>
+ * 加载（{@link #load}）在 {@link GameHistoryWriter#whileWritesPaused} 中进行，期间不会有新批次写库：
+ * 加载前已在库中的记录由加载统计，之后写库的由 apply 统计，不重不漏。
+ * 加载失败时保持未加载状态，这期间写库的记录会在下次加载时从库中统计；查询前调用 {@link #ensureLoaded} 重试。
+ */
+public abstract class GameHistoryProjection {
+
+    private static final Logger logger = LoggerFactory.getLogger(GameHistoryProjection.class);
+
+    private final GameHistoryWriter historyWriter;
+    private final Object loadLock = new Object();
+    private volatile boolean loaded;
+
+    protected GameHistoryProjection(GameHistoryWriter historyWriter) {
+        this.historyWriter = historyWriter;
+    }
+
+    @PostConstruct
+    public void init() {
+        historyWriter.subscribe(this);
+        try {
+            ensureLoaded();
+        } catch (RuntimeException e) {
+            // 数据库暂不可用时不阻止启动，首次查询时重试
+            logger.error("初始化 {} 失败，将在首次查询时重试", getClass().getSimpleName(), e);
+        }
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * 尚未加载时从数据库加载；失败时抛出异常，下次调用重试。
+     */
+    protected final void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (loadLock) {
+            if (loaded) {
+                return;
+            }
+            historyWriter.whileWritesPaused(() -> {
+                load();
+                loaded = true;
+            });
+        }
+    }
+
+    /**
+     * 写线程在一批记录写库成功后调用（持有写锁）。未加载时忽略，这些记录会在加载时从库中统计。
+     */
+    final void onPersisted(List<GameHistory> records) {
+        if (loaded) {
+            apply(records);
+        }
+    }
+
+    /**
+     * 从数据库重建全部汇总并替换当前内容。抛出异常时不能留下部分结果。
+     */
+    protected abstract void load();
+
+    /**
+     * 累加一批已写库的记录。同一局的记录可能被拆在相邻的两批中。
+     */
+    protected abstract void apply(List<GameHistory> records);
+}
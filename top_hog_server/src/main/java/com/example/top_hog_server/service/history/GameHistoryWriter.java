@@ -0,0 +1,495 @@
+package com.example.top_hog_server.service.history;
+
+import com.example.top_hog_server.model.GameHistory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 战绩写后（write-behind）管道。
+ * <p>
+ * 游戏线程只把战绩放入有界队列（{@link #enqueue}），由后台写线程攒批后用多行 INSERT 写入 game_history。
+ * <ul>
+ *     <li>队列满（数据库慢）时不阻塞游戏线程，记录直接追加到本地溢出文件。</li>
+ *     <li>批量写入失败时整批追加到溢出文件，并按指数退避重试。</li>
+ *     <li>写线程按回放计时器回放溢出文件（失败后同样指数退避），回放成功后删除；进程重启后也会先回放。</li>
+ *     <li>回放时反复失败的批次（数据完整性错误，或数据库能写入新战绩时仍连续失败）二分定位到单条记录，
+ *     坏记录移入死信文件等待人工处理，不再挡住后面的记录。</li>
+ * </ul>
+ * 溢出文件每行一条记录，写入后 force 到磁盘。回放是至少一次语义：回放中途崩溃可能产生重复行。
+ * created_at 使用对局结束时间，而不是实际写库时间。
+ * <p>
+ * 每批写库成功后通知订阅的 {@link GameHistoryProjection}，内存汇总只统计已落库的记录。
+ */
+@Component
+public class GameHistoryWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(GameHistoryWriter.class);
+
+    private static final String INSERT_PREFIX =
+            "INSERT INTO game_history (user_id, room_id, score, `rank`, room_avg_score, created_at) VALUES ";
+    private static final String ROW_PLACEHOLDER = "(?, ?, ?, ?, ?, ?)";
+    private static final long MAX_BACKOFF_MS = 30_000;
+    // 数据库能写入新战绩时，回放连续失败这么多次就按坏批次二分隔离
+    static final int POISON_REPLAY_ATTEMPTS = 3;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlockingQueue<GameHistory> queue;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final Path spillFile;
+    private final Path replayFile;
+    private final Path deadLetterFile;
+    // 保护溢出文件的追加和轮换
+    private final Object spillLock = new Object();
+    // 一批记录的写库和通知汇总在此锁内完成；汇总加载时持有此锁，暂停写库
+    private final Object writeLock = new Object();
+    private final List<GameHistoryProjection> projections = new CopyOnWriteArrayList<>();
+    private Thread writerThread;
+    private volatile boolean running;
+    private long backoffMs;
+    // 回放计时器：只由写线程访问
+    private long replayBackoffMs;
+    private long replayDueAtMs;
+    private int replayFailures;
+    private volatile boolean liveWriteSucceeded;
+
+    // 统计
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private final LongAdder quarantined = new LongAdder();
+
+    @Autowired
+    public GameHistoryWriter(JdbcTemplate jdbcTemplate,
+            @Value("${game.history.queueCapacity:10000}") int queueCapacity,
+            @Value("${game.history.batchSize:200}") int batchSize,
+            @Value("${game.history.flushIntervalMs:200}") long flushIntervalMs,
+            @Value("${game.history.spillFile:data/game-history-spill.log}") String spillFile) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMs = Math.max(1, flushIntervalMs);
+        this.spillFile = Paths.get(spillFile);
+        this.replayFile = Paths.get(spillFile + ".replay");
+        this.deadLetterFile = Paths.get(spillFile + ".dead");
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writerThread = new Thread(this::run, "game-history-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * 提交一局的战绩（在房间执行上下文中调用，不访问数据库）。
+     */
+    public void enqueue(List<GameHistory> records) {
+        List<GameHistory> overflow = null;
+        for (GameHistory record : records) {
+            if (record.getCreatedAt() == null) {
+                record.setCreatedAt(new Timestamp(System.currentTimeMillis()));
+            }
+            enqueued.increment();
+            if (!queue.offer(record)) {
+                if (overflow == null) {
+                    overflow = new ArrayList<>();
+                }
+                overflow.add(record);
+            }
+        }
+        if (overflow != null) {
+            logger.warn("战绩写入队列已满，{} 条记录写入溢出文件。", overflow.size());
+            spill(overflow);
+        }
+    }
+
+    public void subscribe(GameHistoryProjection projection) {
+        projections.add(projection);
+    }
+
+    /**
+     * 暂停写库执行 action（在调用线程上）。期间游戏线程仍可入队，队列满时照常溢出到文件。
+     */
+    public void whileWritesPaused(Runnable action) {
+        synchronized (writeLock) {
+            action.run();
+        }
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("queued", queue.size());
+        result.put("enqueued", enqueued.sum());
+        result.put("written", written.sum());
+        result.put("spilled", spilled.sum());
+        result.put("replayed", replayed.sum());
+        result.put("failedBatches", failedBatches.sum());
+        result.put("quarantined", quarantined.sum());
+        result.put("spillFileExists", Files.exists(spillFile) || Files.exists(replayFile));
+        return result;
+    }
+
+    private void run() {
+        replayIfDue(System.currentTimeMillis());
+        while (running) {
+            try {
+                int count = flushOnce(flushIntervalMs);
+                if (count < 0) {
+                    sleepBackoff();
+                } else {
+                    replayIfDue(System.currentTimeMillis());
+                }
+            } catch (InterruptedException e) {
+                if (!running) {
+                    break;
+                }
+            } catch (RuntimeException e) {
+                logger.error("战绩写线程异常", e);
+            }
+        }
+    }
+
+    /**
+     * 等待最多 waitMs 取出一批记录并写库。
+     *
+     * @return 写入的条数；写入失败（已转入溢出文件）返回 -1
+     */
+    int flushOnce(long waitMs) throws InterruptedException {
+        GameHistory first = queue.poll(waitMs, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return 0;
+        }
+        List<GameHistory> batch = new ArrayList<>(batchSize);
+        batch.add(first);
+        queue.drainTo(batch, batchSize - 1);
+        if (insert(batch)) {
+            written.add(batch.size());
+            backoffMs = 0;
+            liveWriteSucceeded = true;
+            return batch.size();
+        }
+        spill(batch);
+        return -1;
+    }
+
+    /**
+     * 回放计时器到期时回放溢出文件；失败后按指数退避推迟下一次回放，不依赖新的战绩写入成功。
+     *
+     * @return 是否执行了回放
+     */
+    boolean replayIfDue(long nowMs) {
+        if (nowMs < replayDueAtMs) {
+            return false;
+        }
+        if (replaySpill()) {
+            replayBackoffMs = 0;
+            replayDueAtMs = 0;
+        } else {
+            replayBackoffMs = replayBackoffMs == 0 ? 500 : Math.min(MAX_BACKOFF_MS, replayBackoffMs * 2);
+            replayDueAtMs = nowMs + replayBackoffMs;
+        }
+        return true;
+    }
+
+    /**
+     * 回放溢出文件。
+     *
+     * @return 是否回放完毕（没有溢出文件也视为完毕）
+     */
+    boolean replaySpill() {
+        synchronized (spillLock) {
+            try {
+                if (!Files.exists(replayFile)) {
+                    if (!Files.exists(spillFile)) {
+                        return true;
+                    }
+                    Files.move(spillFile, replayFile, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } catch (IOException e) {
+                logger.error("轮换战绩溢出文件失败", e);
+                return false;
+            }
+        }
+
+        List<GameHistory> remaining = new ArrayList<>();
+        boolean failed = false;
+        try (BufferedReader reader = Files.newBufferedReader(replayFile, StandardCharsets.UTF_8)) {
+            List<GameHistory> batch = new ArrayList<>(batchSize);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                GameHistory record = parse(line);
+                if (record == null) {
+                    continue;
+                }
+                if (failed) {
+                    remaining.add(record);
+                    continue;
+                }
+                batch.add(record);
+                if (batch.size() >= batchSize) {
+                    failed = !replayBatch(batch, remaining);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!failed && !batch.isEmpty()) {
+                failed = !replayBatch(batch, remaining);
+            }
+        } catch (IOException e) {
+            logger.error("读取战绩溢出文件失败", e);
+            return false;
+        }
+
+        synchronized (spillLock) {
+            try {
+                if (!remaining.isEmpty()) {
+                    appendLines(spillFile, remaining);
+                }
+                Files.delete(replayFile);
+            } catch (IOException e) {
+                logger.error("清理战绩溢出回放文件失败", e);
+                return false;
+            }
+        }
+        if (failed) {
+            replayFailures++;
+            liveWriteSucceeded = false;
+        } else {
+            replayFailures = 0;
+        }
+        return !failed;
+    }
+
+    /**
+     * 回放一批记录。坏批次二分后分别回放，定位到的单条坏记录移入死信文件。
+     *
+     * @return false 表示遇到数据库不可用之类的暂时性失败，本批未写入的记录已放入 remaining
+     */
+    private boolean replayBatch(List<GameHistory> batch, List<GameHistory> remaining) {
+        RuntimeException error = tryInsert(batch);
+        if (error == null) {
+            replayed.add(batch.size());
+            written.add(batch.size());
+            return true;
+        }
+        if (!isPoison(error)) {
+            remaining.addAll(batch);
+            return false;
+        }
+        if (batch.size() == 1) {
+            quarantine(batch.get(0), error);
+            return true;
+        }
+        int middle = batch.size() / 2;
+        List<GameHistory> right = batch.subList(middle, batch.size());
+        if (!replayBatch(batch.subList(0, middle), remaining)) {
+            remaining.addAll(right);
+            return false;
+        }
+        return replayBatch(right, remaining);
+    }
+
+    // 数据本身写不进去；或者数据库能写入新战绩，而回放已连续失败多次（连接、超时类错误除外）
+    private boolean isPoison(RuntimeException error) {
+        if (error instanceof DataAccessResourceFailureException || error instanceof TransientDataAccessException
+                || error instanceof RecoverableDataAccessException) {
+            return false;
+        }
+        return error instanceof DataIntegrityViolationException
+                || (replayFailures >= POISON_REPLAY_ATTEMPTS && liveWriteSucceeded);
+    }
+
+    private void quarantine(GameHistory record, RuntimeException error) {
+        synchronized (spillLock) {
+            try {
+                appendLines(deadLetterFile, List.of(record));
+                quarantined.increment();
+                logger.error("战绩记录无法写库，已移入死信文件 {}: {}，原因: {}", deadLetterFile, format(record),
+                        error.getMessage());
+            } catch (IOException e) {
+                logger.error("写入战绩死信文件失败，丢弃记录: {}", format(record), e);
+            }
+        }
+    }
+
+    private boolean insert(List<GameHistory> batch) {
+        return tryInsert(batch) == null;
+    }
+
+    /**
+     * 写入一批记录并通知汇总。
+     *
+     * @return 写入失败时的异常，成功返回 null
+     */
+    private RuntimeException tryInsert(List<GameHistory> batch) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + batch.size() * (ROW_PLACEHOLDER.length() + 2));
+        sql.append(INSERT_PREFIX);
+        for (int i = 0; i < batch.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(ROW_PLACEHOLDER);
+        }
+        synchronized (writeLock) {
+            try {
+                jdbcTemplate.update(sql.toString(), ps -> {
+                    int index = 1;
+                    for (GameHistory record : batch) {
+                        ps.setObject(index++, record.getUserId());
+                        ps.setString(index++, record.getRoomId());
+                        ps.setInt(index++, record.getScore());
+                        ps.setInt(index++, record.getRank());
+                        ps.setObject(index++, record.getRoomAvgScore());
+                        ps.setTimestamp(index++, record.getCreatedAt());
+                    }
+                });
+            } catch (RuntimeException e) {
+                failedBatches.increment();
+                logger.warn("批量写入 {} 条战绩失败: {}", batch.size(), e.getMessage());
+                return e;
+            }
+            publish(batch);
+        }
+        return null;
+    }
+
+    private void publish(List<GameHistory> batch) {
+        for (GameHistoryProjection projection : projections) {
+            try {
+                projection.onPersisted(batch);
+            } catch (RuntimeException e) {
+                logger.error("更新 {} 失败", projection.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    private void spill(List<GameHistory> records) {
+        synchronized (spillLock) {
+            try {
+                appendLines(spillFile, records);
+                spilled.add(records.size());
+            } catch (IOException e) {
+                // 磁盘也不可用时只能丢弃，记录完整内容以便人工恢复
+                logger.error("写入战绩溢出文件失败，丢弃 {} 条记录: {}", records.size(), records, e);
+            }
+        }
+    }
+
+    // 调用方持有 spillLock
+    private void appendLines(Path file, List<GameHistory> records) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        StringBuilder text = new StringBuilder(records.size() * 64);
+        for (GameHistory record : records) {
+            text.append(format(record)).append('\n');
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    static String format(GameHistory record) {
+        return record.getUserId() + "\t" + sanitize(record.getRoomId()) + "\t" + record.getScore() + "\t"
+                + record.getRank() + "\t" + record.getRoomAvgScore() + "\t"
+                + (record.getCreatedAt() != null ? record.getCreatedAt().getTime() : System.currentTimeMillis());
+    }
+
+    static GameHistory parse(String line) {
+        String[] fields = line.split("\t", -1);
+        if (fields.length != 6) {
+            logger.warn("忽略无法解析的战绩溢出记录: {}", line);
+            return null;
+        }
+        try {
+            GameHistory record = new GameHistory(
+                    "null".equals(fields[0]) ? null : Long.valueOf(fields[0]),
+                    "null".equals(fields[1]) ? null : fields[1],
+                    Integer.parseInt(fields[2]),
+                    Integer.parseInt(fields[3]),
+                    "null".equals(fields[4]) ? null : Double.valueOf(fields[4]));
+            record.setCreatedAt(new Timestamp(Long.parseLong(fields[5])));
+            return record;
+        } catch (NumberFormatException e) {
+            logger.warn("忽略无法解析的战绩溢出记录: {}", line);
+            return null;
+        }
+    }
+
+    private static String sanitize(String value) {
+        return value == null ? "null" : value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    private long nextBackoff() {
+        return backoffMs == 0 ? 500 : Math.min(MAX_BACKOFF_MS, backoffMs * 2);
+    }
+
+    private void sleepBackoff() throws InterruptedException {
+        backoffMs = nextBackoff();
+        Thread.sleep(backoffMs);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (writerThread != null) {
+            writerThread.interrupt();
+            try {
+                writerThread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // 剩余记录尽量写库，失败则落盘
+        List<GameHistory> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        for (int from = 0; from < rest.size(); from += batchSize) {
+            List<GameHistory> batch = rest.subList(from, Math.min(rest.size(), from + batchSize));
+            if (insert(batch)) {
+                written.add(batch.size());
+            } else {
+                spill(new ArrayList<>(batch));
+            }
+        }
+    }
+}
@@ -0,0 +1,539 @@
+package com.example.top_hog_server.service.journal;
+
+import com.example.top_hog_server.model.Card;
+import com.example.top_hog_server.model.GameRoom;
+import com.example.top_hog_server.model.GameState;
+import com.example.top_hog_server.model.Player;
+import com.example.top_hog_server.service.GameRoomService;
+import com.example.top_hog_server.service.room.RoomExecutor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * 进行中牌局的预写日志（write-ahead journal），进程重启后据此重建内存中的房间。
+ * <p>
+ * 房间的牌局状态都是 @Transient 的，数据库里只有房间的基本信息。日志只追加两类记录：
+ * <ul>
+ *     <li>快照（{@link #checkpoint}）：房间的完整二进制状态，在发牌、每手结算完成、一轮结束、游戏结束以及对局中途有人离开时写入。</li>
+ *     <li>出牌事件（{@link #cardPlayed}）：两次快照之间唯一的高频动作，只有几十个字节。</li>
+ * </ul>
+ * 恢复时每个房间取最后一个快照，再按顺序重放其后的出牌事件；一手牌的结算是确定性的，
+ * 恢复后由游戏逻辑重新结算即可得到相同结果。
+ * <p>
+ * 日志按段存放在 game.journal.dir 下，每段是一个内存映射文件。追加只是一次内存拷贝（在很短的锁内完成），
+ * 写入后即使进程崩溃也不会丢失；后台线程每 game.journal.syncIntervalMs 把新写入的部分 force 到磁盘（组提交），
+ * 机器掉电时最多丢失这段时间内的记录。每条记录带 CRC32C，恢复时遇到校验失败（写了一半）的记录即停止读取该段。
+ * <p>
+ * 压缩：写入量超过 game.journal.compactThresholdBytes（或存在重启前留下的旧段）时，切换到新段，
+ * 在各房间的执行上下文中为进行中的房间写一份快照，然后删除旧段。
+ * 启动后在 {@link #recoveryFinished} 之前不压缩：此时内存中还是数据库加载的空房间，旧段是恢复的唯一依据。
+ */
+@Component
+public class GameJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(GameJournal.class);
+
+    static final byte SNAPSHOT = 1;
+    static final byte CARD_PLAYED = 2;
+
+    // 记录头：长度 + CRC32C
+    private static final int HEADER_BYTES = 8;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final GameRoomService gameRoomService;
+    private final RoomExecutor roomExecutor;
+    private final boolean enabled;
+    private final Path dir;
+    private final int segmentBytes;
+    private final long syncIntervalMs;
+    private final long compactThresholdBytes;
+
+    // 保证同一时间只有一次压缩
+    private final Object compactionLock = new Object();
+    // 以下字段由 this 保护（追加锁）
+    private final List<Long> segments = new ArrayList<>();
+    private MappedByteBuffer current;
+    private long currentSeq;
+    private int syncedPosition;
+    private long bytesSinceCompaction;
+    // 最近一次压缩切换到的段，更早的段在压缩完成后删除
+    private long compactionBaseSeq;
+
+    private Map<String, GameRoom> recovered = Collections.emptyMap();
+    // 重建的房间已放回内存并各写了一份快照
+    private volatile boolean recoveryFinished;
+    private Thread syncThread;
+    private volatile boolean running;
+
+    // 统计
+    private final LongAdder snapshots = new LongAdder();
+    private final LongAdder events = new LongAdder();
+    private final LongAdder appendedBytes = new LongAdder();
+    private final LongAdder syncs = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    @Autowired
+    public GameJournal(GameRoomService gameRoomService,
+            RoomExecutor roomExecutor,
+            @Value("${game.journal.enabled:false}") boolean enabled,
+            @Value("${game.journal.dir:data/journal}") String dir,
+            @Value("${game.journal.segmentBytes:67108864}") int segmentBytes,
+            @Value("${game.journal.syncIntervalMs:5}") long syncIntervalMs,
+            @Value("${game.journal.compactThresholdBytes:33554432}") long compactThresholdBytes) {
+        this.gameRoomService = gameRoomService;
+        this.roomExecutor = roomExecutor;
+        this.enabled = enabled;
+        this.dir = Paths.get(dir);
+        this.segmentBytes = Math.max(4096, segmentBytes);
+        this.syncIntervalMs = Math.max(1, syncIntervalMs);
+        this.compactThresholdBytes = Math.max(this.segmentBytes / 4, compactThresholdBytes);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 读取已有日志重建房间，然后打开新的段开始写入（不向可能写了一半的旧段追加）。
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(dir);
+        List<Long> existing = listSegments(dir);
+        recovered = replay(dir, existing);
+        synchronized (this) {
+            segments.addAll(existing);
+            long nextSeq = existing.isEmpty() ? 1 : existing.get(existing.size() - 1) + 1;
+            openSegment(nextSeq, segmentBytes);
+            compactionBaseSeq = nextSeq;
+        }
+        running = true;
+        syncThread = new Thread(this::syncLoop, "game-journal-sync");
+        syncThread.setDaemon(true);
+        syncThread.start();
+        logger.info("游戏日志已启用: 目录 {}, 旧段 {} 个, 重建房间 {} 个", dir.toAbsolutePath(), existing.size(),
+                recovered.size());
+    }
+
+    /**
+     * 取出启动时从日志重建的房间（只能取一次）。
+     */
+    public synchronized Collection<GameRoom> takeRecoveredRooms() {
+        Collection<GameRoom> rooms = recovered.values();
+        recovered = Collections.emptyMap();
+        return rooms;
+    }
+
+    /**
+     * 恢复流程结束（重建的房间均已替换内存中的房间并写入快照）后调用，之后才允许定期压缩。
+     */
+    public void recoveryFinished() {
+        recoveryFinished = true;
+    }
+
+    /**
+     * 写入房间的完整快照。调用方需持有房间的执行上下文。
+     */
+    public void checkpoint(GameRoom room) {
+        if (!enabled) {
+            return;
+        }
+        JournalBuffer record = beginRecord(SNAPSHOT, room.getRoomId(), 1024);
+        RoomImageCodec.encode(room, record);
+        append(record);
+        snapshots.increment();
+    }
+
+    /**
+     * 记录一次出牌（牌已从手牌移到本手出牌中之后调用）。调用方需持有房间的执行上下文。
+     */
+    public void cardPlayed(GameRoom room, Player player, Card card) {
+        if (!enabled) {
+            return;
+        }
+        JournalBuffer record = beginRecord(CARD_PLAYED, room.getRoomId(), 64);
+        putPlayerKey(record, player);
+        RoomImageCodec.putCard(record, card);
+        append(record);
+        events.increment();
+    }
+
+    // 人类玩家用 userId 标识（重连后 sessionId 会变），机器人用 sessionId
+    private static void putPlayerKey(JournalBuffer out, Player player) {
+        if (player.getUserId() != null) {
+            out.putByte(0);
+            out.putLong(player.getUserId());
+        } else {
+            out.putByte(1);
+            out.putString(player.getSessionId());
+        }
+    }
+
+    private static Player findPlayer(GameRoom room, ByteBuffer in) {
+        if (in.get() == 0) {
+            long userId = in.getLong();
+            for (Player player : room.getPlayers().values()) {
+                if (player.getUserId() != null && player.getUserId() == userId) {
+                    return player;
+                }
+            }
+            return null;
+        }
+        return room.getPlayers().get(JournalBuffer.getString(in));
+    }
+
+    private static JournalBuffer beginRecord(byte type, String roomId, int sizeHint) {
+        JournalBuffer record = new JournalBuffer(sizeHint);
+        record.putInt(0);
+        record.putInt(0);
+        record.putByte(type);
+        record.putString(roomId);
+        return record;
+    }
+
+    private void append(JournalBuffer record) {
+        int length = record.position() - HEADER_BYTES;
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), HEADER_BYTES, length);
+        record.putIntAt(0, length);
+        record.putIntAt(4, (int) crc.getValue());
+        try {
+            synchronized (this) {
+                if (current == null) {
+                    return; // 已关闭
+                }
+                if (current.remaining() < record.position()) {
+                    rollSegment(record.position());
+                }
+                current.put(record.array(), 0, record.position());
+                bytesSinceCompaction += record.position();
+            }
+            appendedBytes.add(record.position());
+        } catch (IOException | RuntimeException e) {
+            // 日志写入失败不影响游戏本身，只是该房间在重启后可能无法恢复
+            failures.increment();
+            logger.error("写入游戏日志失败", e);
+        }
+    }
+
+    // 调用方持有 this
+    private void rollSegment(int minBytes) throws IOException {
+        current.force();
+        openSegment(currentSeq + 1, Math.max(segmentBytes, minBytes));
+    }
+
+    // 调用方持有 this
+    private void openSegment(long seq, int size) throws IOException {
+        Path file = segmentPath(dir, seq);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            current = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        currentSeq = seq;
+        syncedPosition = 0;
+        segments.add(seq);
+    }
+
+    private void syncLoop() {
+        while (running) {
+            try {
+                Thread.sleep(syncIntervalMs);
+                sync();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                failures.increment();
+                logger.error("游戏日志刷盘失败", e);
+            }
+        }
+    }
+
+    /**
+     * 把当前段中尚未刷盘的部分 force 到磁盘（组提交：一次 force 覆盖这段时间内所有房间的写入）。
+     */
+    void sync() {
+        MappedByteBuffer buffer;
+        int from;
+        int to;
+        synchronized (this) {
+            if (current == null || current.position() == syncedPosition) {
+                return;
+            }
+            buffer = current;
+            from = syncedPosition;
+            to = current.position();
+            syncedPosition = to;
+        }
+        // 换段时旧段已整体 force，这里只处理当前段
+        buffer.force(from, to - from);
+        syncs.increment();
+    }
+
+    /**
+     * 定期检查是否需要压缩：写入量超过阈值，或存在重启前留下的旧段。恢复完成前不压缩。
+     */
+    @Scheduled(fixedDelayString = "${game.journal.compactCheckMs:30000}")
+    public void compactIfNeeded() {
+        if (!enabled || !recoveryFinished) {
+            return;
+        }
+        boolean needed;
+        synchronized (this) {
+            needed = bytesSinceCompaction >= compactThresholdBytes
+                    || (!segments.isEmpty() && segments.get(0) < compactionBaseSeq);
+        }
+        if (needed) {
+            compact(gameRoomService.getAllActiveRoomsInMemory());
+        }
+    }
+
+    /**
+     * 切换到新段，为进行中的房间各写一份快照，然后删除旧段。
+     * 切换之后的出牌事件都写在新段中，排在对应房间的快照之前或之后都不影响恢复结果。
+     * 等待房间执行快照时不持有追加锁，否则会与正在追加记录的房间线程互相等待。
+     */
+    public void compact(Collection<GameRoom> liveRooms) {
+        synchronized (compactionLock) {
+            long baseSeq;
+            synchronized (this) {
+                if (current == null) {
+                    return;
+                }
+                try {
+                    rollSegment(0);
+                } catch (IOException e) {
+                    failures.increment();
+                    logger.error("游戏日志压缩时切换新段失败", e);
+                    return;
+                }
+                baseSeq = currentSeq;
+                compactionBaseSeq = baseSeq;
+                bytesSinceCompaction = 0;
+            }
+
+            int written = 0;
+            for (GameRoom room : liveRooms) {
+                // 快照必须在房间的执行上下文中生成；Actor 模式下这里会等待房间线程执行完
+                boolean checkpointed = roomExecutor.call(room.getRoomId(), () -> {
+                    // 没有玩家的是数据库加载的房间外壳，不能覆盖日志里的状态
+                    if (!isInProgress(room.getGameState()) || room.getPlayers().isEmpty()) {
+                        return false;
+                    }
+                    checkpoint(room);
+                    return true;
+                });
+                if (checkpointed) {
+                    written++;
+                }
+            }
+
+            List<Long> obsolete = new ArrayList<>();
+            synchronized (this) {
+                if (current == null) {
+                    return;
+                }
+                // 旧段删除前新段中的快照必须已经落盘
+                current.force();
+                syncedPosition = current.position();
+                for (Long seq : segments) {
+                    if (seq < baseSeq) {
+                        obsolete.add(seq);
+                    }
+                }
+            }
+            int deleted = 0;
+            for (Long seq : obsolete) {
+                try {
+                    Files.deleteIfExists(segmentPath(dir, seq));
+                    synchronized (this) {
+                        segments.remove(seq);
+                    }
+                    deleted++;
+                } catch (IOException e) {
+                    failures.increment();
+                    logger.warn("删除旧的游戏日志段 {} 失败", seq, e);
+                }
+            }
+            compactions.increment();
+            logger.info("游戏日志压缩完成: 写入快照 {} 个, 删除旧段 {} 个", written, deleted);
+        }
+    }
+
+    /**
+     * 需要在重启后恢复的状态：发牌之后、游戏结束之前。
+     */
+    public static boolean isInProgress(GameState state) {
+        return state == GameState.PLAYING || state == GameState.PROCESSING_TURN
+                || state == GameState.WAITING_FOR_PLAYER_CHOICE || state == GameState.ROUND_OVER;
+    }
+
+    /**
+     * 按段号顺序读取日志，重建每个房间的最终状态。只返回进行中的房间。
+     */
+    static Map<String, GameRoom> replay(Path dir, List<Long> seqs) throws IOException {
+        Map<String, GameRoom> rooms = new LinkedHashMap<>();
+        int skipped = 0;
+        for (Long seq : seqs) {
+            ByteBuffer segment;
+            try (FileChannel channel = FileChannel.open(segmentPath(dir, seq), StandardOpenOption.READ)) {
+                segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            CRC32C crc = new CRC32C();
+            while (segment.remaining() >= HEADER_BYTES) {
+                int start = segment.position();
+                int length = segment.getInt();
+                int checksum = segment.getInt();
+                if (length <= 0 || length > segment.remaining()) {
+                    break; // 段的末尾（未写入的部分全为 0）
+                }
+                ByteBuffer body = segment.slice(start + HEADER_BYTES, length);
+                crc.reset();
+                crc.update(body.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    logger.warn("游戏日志段 {} 在偏移 {} 处的记录校验失败，忽略该段剩余部分", seq, start);
+                    break;
+                }
+                segment.position(start + HEADER_BYTES + length);
+                if (!apply(rooms, body)) {
+                    skipped++;
+                }
+            }
+        }
+        if (skipped > 0) {
+            logger.warn("恢复游戏日志时跳过了 {} 条无法应用的记录", skipped);
+        }
+        rooms.values().removeIf(room -> !isInProgress(room.getGameState()));
+        return rooms;
+    }
+
+    private static boolean apply(Map<String, GameRoom> rooms, ByteBuffer body) {
+        try {
+            byte type = body.get();
+            String roomId = JournalBuffer.getString(body);
+            if (type == SNAPSHOT) {
+                GameRoom room = RoomImageCodec.decode(body);
+                if (room == null) {
+                    rooms.remove(roomId);
+                    return false;
+                }
+                rooms.put(roomId, room);
+                return true;
+            }
+            if (type == CARD_PLAYED) {
+                GameRoom room = rooms.get(roomId);
+                if (room == null) {
+                    return false;
+                }
+                Player player = findPlayer(room, body);
+                Card card = RoomImageCodec.getCard(body);
+                if (player == null || !player.removeCardFromHand(card)) {
+                    return false;
+                }
+                room.getPlayedCardsThisTurn().put(player.getSessionId(), card);
+                if (room.getReplayLog() != null) {
+                    room.getReplayLog().cardPlayed(player, card);
+                }
+                if (room.getAllPlayerHandsForAI() != null
+                        && room.getAllPlayerHandsForAI().containsKey(player.getSessionId())) {
+                    room.getAllPlayerHandsForAI().get(player.getSessionId())
+                            .removeIf(c -> c.getNumber() == card.getNumber());
+                }
+                return true;
+            }
+            return false;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    static List<Long> listSegments(Path dir) throws IOException {
+        List<Long> seqs = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .forEach(name -> {
+                        try {
+                            seqs.add(Long.parseLong(
+                                    name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                        } catch (NumberFormatException e) {
+                            logger.warn("忽略无法识别的游戏日志文件 {}", name);
+                        }
+                    });
+        }
+        Collections.sort(seqs);
+        return seqs;
+    }
+
+    private static Path segmentPath(Path dir, long seq) {
+        return dir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, seq, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * 导出统计快照：快照/事件数、写入字节数、刷盘与压缩次数、段数。
+     */
+    public Map<String, Object> metrics() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("snapshots", snapshots.sum());
+        result.put("events", events.sum());
+        result.put("appendedBytes", appendedBytes.sum());
+        result.put("syncs", syncs.sum());
+        result.put("compactions", compactions.sum());
+        result.put("failures", failures.sum());
+        synchronized (this) {
+            result.put("segments", segments.size());
+            result.put("bytesSinceCompaction", bytesSinceCompaction);
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (syncThread != null) {
+            syncThread.interrupt();
+            try {
+                syncThread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (current != null) {
+                current.force();
+                current = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.top_hog_server.service.journal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 日志记录的编码缓冲区（可扩容的字节数组，大端序）。
+ * 读取使用 {@link ByteBuffer}，字符串格式为长度（-1 表示 null）加 UTF-8 字节。
+ */
+final class JournalBuffer {
+
+    private byte[] bytes;
+    private int position;
+
+    JournalBuffer(int initialCapacity) {
+        this.bytes = new byte[Math.max(16, initialCapacity)];
+    }
+
+    int position() {
+        return position;
+    }
+
+    byte[] array() {
+        return bytes;
+    }
+
+    private void ensure(int extra) {
+        if (position + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, position + extra));
+        }
+    }
+
+    void putByte(int value) {
+        ensure(1);
+        bytes[position++] = (byte) value;
+    }
+
+    void putBoolean(boolean value) {
+        putByte(value ? 1 : 0);
+    }
+
+    void putShort(int value) {
+        ensure(2);
+        bytes[position++] = (byte) (value >>> 8);
+        bytes[position++] = (byte) value;
+    }
+
+    void putInt(int value) {
+        ensure(4);
+        putIntAt(position, value);
+        position += 4;
+    }
+
+    void putIntAt(int index, int value) {
+        bytes[index] = (byte) (value >>> 24);
+        bytes[index + 1] = (byte) (value >>> 16);
+        bytes[index + 2] = (byte) (value >>> 8);
+        bytes[index + 3] = (byte) value;
+    }
+
+    void putLong(long value) {
+        putInt((int) (value >>> 32));
+        putInt((int) value);
+    }
+
+    void putString(String value) {
+        putBytes(value != null ? value.getBytes(StandardCharsets.UTF_8) : null);
+    }
+
+    void putBytes(byte[] value) {
+        if (value == null) {
+            putInt(-1);
+            return;
+        }
+        putInt(value.length);
+        ensure(value.length);
+        System.arraycopy(value, 0, bytes, position, value.length);
+        position += value.length;
+    }
+
+    static String getString(ByteBuffer in) {
+        byte[] encoded = getBytes(in);
+        return encoded != null ? new String(encoded, StandardCharsets.UTF_8) : null;
+    }
+
+    static byte[] getBytes(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        in.get(value);
+        return value;
+    }
+
+    static boolean getBoolean(ByteBuffer in) {
+        return in.get() != 0;
+    }
+}
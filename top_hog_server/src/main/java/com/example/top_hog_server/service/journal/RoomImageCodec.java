@@ -0,0 +1,282 @@
+package com.example.top_hog_server.service.journal;
+
+import com.example.top_hog_server.model.BotDifficulty;
+import com.example.top_hog_server.model.Card;
+import com.example.top_hog_server.model.GameRoom;
+import com.example.top_hog_server.model.GameRow;
+import com.example.top_hog_server.model.GameState;
+import com.example.top_hog_server.model.GameType;
+import com.example.top_hog_server.model.Player;
+import com.example.top_hog_server.model.ReplayLog;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 房间完整状态（含 @Transient 的牌局状态）的紧凑二进制编码，用于游戏日志的快照记录。
+ * 只在房间执行上下文中编码；解码得到的房间与编码时的状态一致（包括牌堆、手牌、本手出牌、待结算的牌和本局的回放记录）。
+ * 格式变化时递增 {@link #FORMAT_VERSION}，旧版本的快照在恢复时会被跳过。
+ */
+public final class RoomImageCodec {
+
+    static final int FORMAT_VERSION = 2;
+
+    // Player 的布尔字段压缩为一个字节
+    private static final int READY = 1;
+    private static final int TRUSTEE = 1 << 1;
+    private static final int REQUESTED_NEW_GAME = 1 << 2;
+    private static final int HOST = 1 << 3;
+    private static final int ROBOT = 1 << 4;
+    private static final int PENDING_LEAVE = 1 << 5;
+
+    private RoomImageCodec() {
+    }
+
+    static void encode(GameRoom room, JournalBuffer out) {
+        out.putByte(FORMAT_VERSION);
+        out.putString(room.getRoomId());
+        out.putString(room.getRoomName());
+        out.putInt(room.getMaxPlayers());
+        out.putInt(room.getMaxRounds());
+        out.putInt(room.getTargetScore());
+        out.putBoolean(room.isPrivate());
+        out.putString(room.getPassword());
+        putNullableLong(out, room.getOwnerId());
+        out.putInt(room.getCurrentRound());
+        out.putString(room.getGameState().name());
+        out.putString(room.getGameType().name());
+        out.putString(room.getBotDifficulty() != null ? room.getBotDifficulty().name() : null);
+        out.putLong(room.getCreatedAtTimestamp());
+        out.putLong(room.getStateVersion());
+        out.putLong(room.getConfigVersion());
+        out.putLong(room.getPlayerChoiceTimeoutMs());
+
+        out.putInt(room.getPlayers().size());
+        for (Player player : room.getPlayers().values()) {
+            putPlayer(out, player);
+        }
+        out.putInt(room.getRows().size());
+        for (GameRow row : room.getRows()) {
+            out.putByte(row.size());
+            for (int i = 0; i < row.size(); i++) {
+                putCard(out, row.cardAt(i));
+            }
+        }
+        putCards(out, room.getDeck());
+
+        out.putInt(room.getCurrentTurnNumber());
+        out.putInt(room.getPlayedCardsThisTurn().size());
+        for (Map.Entry<String, Card> entry : room.getPlayedCardsThisTurn().entrySet()) {
+            out.putString(entry.getKey());
+            putCard(out, entry.getValue());
+        }
+        out.putString(room.getPlayerChoosingRowSessionId());
+        out.putBoolean(room.getCardPendingChoice() != null);
+        if (room.getCardPendingChoice() != null) {
+            putCard(out, room.getCardPendingChoice());
+        }
+        List<Map.Entry<String, Card>> remaining = room.getCardsRemainingInTrick();
+        out.putInt(remaining == null ? -1 : remaining.size());
+        if (remaining != null) {
+            for (Map.Entry<String, Card> entry : remaining) {
+                out.putString(entry.getKey());
+                putCard(out, entry.getValue());
+            }
+        }
+        Set<String> requested = room.getPlayersRequestedNewGame();
+        out.putInt(requested == null ? 0 : requested.size());
+        if (requested != null) {
+            for (String sessionId : requested) {
+                out.putString(sessionId);
+            }
+        }
+        out.putString(room.getWinnerDisplayName());
+        Map<String, List<Card>> hands = room.getAllPlayerHandsForAI();
+        out.putInt(hands == null ? -1 : hands.size());
+        if (hands != null) {
+            for (Map.Entry<String, List<Card>> entry : hands.entrySet()) {
+                out.putString(entry.getKey());
+                putCards(out, entry.getValue());
+            }
+        }
+        out.putLong(room.getGameSeed());
+        ReplayLog replayLog = room.getReplayLog();
+        out.putBoolean(replayLog != null);
+        if (replayLog != null) {
+            out.putString(replayLog.getGameId());
+            out.putLong(replayLog.getStartedAt());
+            out.putBytes(replayLog.toByteArray());
+        }
+    }
+
+    /**
+     * @return 解码得到的房间；格式版本不认识时返回 null
+     */
+    static GameRoom decode(ByteBuffer in) {
+        if (in.get() != FORMAT_VERSION) {
+            return null;
+        }
+        GameRoom room = new GameRoom(JournalBuffer.getString(in), JournalBuffer.getString(in));
+        room.setMaxPlayers(in.getInt());
+        room.setMaxRounds(in.getInt());
+        room.setTargetScore(in.getInt());
+        room.setPrivate(JournalBuffer.getBoolean(in));
+        room.setPassword(JournalBuffer.getString(in));
+        room.setOwnerId(getNullableLong(in));
+        room.setCurrentRound(in.getInt());
+        room.setGameState(GameState.valueOf(JournalBuffer.getString(in)));
+        room.setGameType(GameType.valueOf(JournalBuffer.getString(in)));
+        String difficulty = JournalBuffer.getString(in);
+        room.setBotDifficulty(difficulty != null ? BotDifficulty.valueOf(difficulty) : null);
+        room.setCreatedAtTimestamp(in.getLong());
+        room.setStateVersion(in.getLong());
+        room.setConfigVersion(in.getLong());
+        room.setPlayerChoiceTimeoutMs(in.getLong());
+
+        int playerCount = in.getInt();
+        Map<String, Player> players = new ConcurrentHashMap<>();
+        for (int i = 0; i < playerCount; i++) {
+            Player player = getPlayer(in);
+            players.put(player.getSessionId(), player);
+        }
+        room.setPlayers(players);
+        int rowCount = in.getInt();
+        List<GameRow> rows = new ArrayList<>(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            GameRow row = new GameRow();
+            int size = in.get();
+            for (int j = 0; j < size; j++) {
+                row.add(in.getShort(), in.get());
+            }
+            rows.add(row);
+        }
+        room.setRows(rows);
+        room.setDeck(getCards(in));
+
+        room.setCurrentTurnNumber(in.getInt());
+        int playedCount = in.getInt();
+        Map<String, Card> played = new ConcurrentHashMap<>();
+        for (int i = 0; i < playedCount; i++) {
+            played.put(JournalBuffer.getString(in), getCard(in));
+        }
+        room.setPlayedCardsThisTurn(played);
+        room.setPlayerChoosingRowSessionId(JournalBuffer.getString(in));
+        room.setCardPendingChoice(JournalBuffer.getBoolean(in) ? getCard(in) : null);
+        int remainingCount = in.getInt();
+        if (remainingCount >= 0) {
+            List<Map.Entry<String, Card>> remaining = new ArrayList<>(remainingCount);
+            for (int i = 0; i < remainingCount; i++) {
+                remaining.add(new AbstractMap.SimpleEntry<>(JournalBuffer.getString(in), getCard(in)));
+            }
+            room.setCardsRemainingInTrick(remaining);
+        }
+        int requestedCount = in.getInt();
+        Set<String> requested = new HashSet<>();
+        for (int i = 0; i < requestedCount; i++) {
+            requested.add(JournalBuffer.getString(in));
+        }
+        room.setPlayersRequestedNewGame(requested);
+        room.setWinnerDisplayName(JournalBuffer.getString(in));
+        int handCount = in.getInt();
+        if (handCount >= 0) {
+            Map<String, List<Card>> hands = new HashMap<>();
+            for (int i = 0; i < handCount; i++) {
+                hands.put(JournalBuffer.getString(in), getCards(in));
+            }
+            room.setAllPlayerHandsForAI(hands);
+        }
+        room.setGameSeed(in.getLong());
+        if (JournalBuffer.getBoolean(in)) {
+            String gameId = JournalBuffer.getString(in);
+            long startedAt = in.getLong();
+            room.setReplayLog(ReplayLog.restore(gameId, room.getGameSeed(), startedAt, JournalBuffer.getBytes(in)));
+        }
+        return room;
+    }
+
+    private static void putPlayer(JournalBuffer out, Player player) {
+        out.putString(player.getSessionId());
+        putNullableLong(out, player.getUserId());
+        out.putString(player.getDisplayName());
+        out.putString(player.getAvatarUrl());
+        out.putInt(player.getScore());
+        out.putInt(player.getVipStatus());
+        int flags = (player.isReady() ? READY : 0)
+                | (player.isTrustee() ? TRUSTEE : 0)
+                | (player.isRequestedNewGame() ? REQUESTED_NEW_GAME : 0)
+                | (player.isHost() ? HOST : 0)
+                | (player.isRobot() ? ROBOT : 0)
+                | (player.isPendingLeave() ? PENDING_LEAVE : 0);
+        out.putByte(flags);
+        putCards(out, player.getHand());
+        putCards(out, player.getCollectedCards());
+    }
+
+    private static Player getPlayer(ByteBuffer in) {
+        Player player = new Player(JournalBuffer.getString(in), getNullableLong(in), JournalBuffer.getString(in), 0);
+        player.setAvatarUrl(JournalBuffer.getString(in));
+        player.setScore(in.getInt());
+        player.setVipStatus(in.getInt());
+        int flags = in.get();
+        player.setReady((flags & READY) != 0);
+        player.setTrustee((flags & TRUSTEE) != 0);
+        player.setRequestedNewGame((flags & REQUESTED_NEW_GAME) != 0);
+        player.setHost((flags & HOST) != 0);
+        player.setRobot((flags & ROBOT) != 0);
+        player.setPendingLeave((flags & PENDING_LEAVE) != 0);
+        List<Card> hand = getCards(in);
+        player.setHand(hand != null ? hand : new ArrayList<>());
+        List<Card> collected = getCards(in);
+        player.setCollectedCards(collected != null ? collected : new ArrayList<>());
+        return player;
+    }
+
+    static void putCard(JournalBuffer out, Card card) {
+        out.putShort(card.getNumber());
+        out.putByte(card.getBullheads());
+    }
+
+    static Card getCard(ByteBuffer in) {
+        return new Card(in.getShort(), in.get());
+    }
+
+    private static void putCards(JournalBuffer out, Collection<Card> cards) {
+        out.putInt(cards == null ? -1 : cards.size());
+        if (cards != null) {
+            for (Card card : cards) {
+                putCard(out, card);
+            }
+        }
+    }
+
+    private static List<Card> getCards(ByteBuffer in) {
+        int count = in.getInt();
+        if (count < 0) {
+            return null;
+        }
+        List<Card> cards = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            cards.add(getCard(in));
+        }
+        return cards;
+    }
+
+    private static void putNullableLong(JournalBuffer out, Long value) {
+        out.putBoolean(value != null);
+        if (value != null) {
+            out.putLong(value);
+        }
+    }
+
+    private static Long getNullableLong(ByteBuffer in) {
+        return JournalBuffer.getBoolean(in) ? in.getLong() : null;
+    }
+}
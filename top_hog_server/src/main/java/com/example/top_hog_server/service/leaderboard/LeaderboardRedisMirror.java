@@ -0,0 +1,86 @@
+package com.example.top_hog_server.service.leaderboard;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把内存排行榜的变化镜像到 Redis 有序集合，供其他实例或运营工具读取。
+ * <p>
+ * 默认关闭。写入在单独线程执行，不占用游戏线程；队列满时丢弃本次更新——ZADD 写的是绝对值，
+ * 该用户下一次对局会重新覆盖，所以丢弃只会让镜像短暂落后。
+ */
+@Component
+public class LeaderboardRedisMirror {
+
+    private static final Logger logger = LoggerFactory.getLogger(LeaderboardRedisMirror.class);
+
+    private static final String KEY_PREFIX = "leaderboard:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final boolean enabled;
+    private final ThreadPoolExecutor executor;
+
+    @Autowired
+    public LeaderboardRedisMirror(ObjectProvider<StringRedisTemplate> redisTemplateProvider,
+            @Value("${game.leaderboard.redis.enabled:false}") boolean enabled) {
+        this.redisTemplate = enabled ? redisTemplateProvider.getIfAvailable() : null;
+        this.enabled = this.redisTemplate != null;
+        if (enabled && !this.enabled) {
+            logger.warn("game.leaderboard.redis.enabled=true，但没有可用的 StringRedisTemplate，Redis 镜像关闭。");
+        }
+        this.executor = this.enabled
+                ? new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(10_000),
+                        r -> {
+                            Thread t = new Thread(r, "leaderboard-redis-mirror");
+                            t.setDaemon(true);
+                            return t;
+                        },
+                        new ThreadPoolExecutor.DiscardPolicy())
+                : null;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 镜像一个用户在某个榜单上的分数。
+     *
+     * @param boardKey 榜单标识，例如 WEEKLY:2024-05-06:TOTAL_SCORE
+     * @param ttl      周榜、月榜的过期时间；总榜传 null
+     */
+    public void publish(String boardKey, long userId, double score, Duration ttl) {
+        if (!enabled) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                String key = KEY_PREFIX + boardKey;
+                redisTemplate.opsForZSet().add(key, Long.toString(userId), score);
+                if (ttl != null) {
+                    redisTemplate.expire(key, ttl);
+                }
+            } catch (RuntimeException e) {
+                logger.warn("镜像排行榜到 Redis 失败: {}", e.getMessage());
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.top_hog_server.service.leaderboard;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 带子树大小的 Treap，用于排行榜排序。
+ * <p>
+ * 排序规则：primary 降序、secondary 降序、userId 升序。更新、删除、查询名次均为 O(log n)，
+ * 取前 N 名为 O(log n + N)。非线程安全，由调用方加锁。
+ */
+public class RankedBoard {
+
+    private static final class Node {
+        final long userId;
+        final double primary;
+        final long secondary;
+        final int priority;
+        Node left;
+        Node right;
+        int size = 1;
+
+        Node(long userId, double primary, long secondary) {
+            this.userId = userId;
+            this.primary = primary;
+            this.secondary = secondary;
+            this.priority = ThreadLocalRandom.current().nextInt();
+        }
+    }
+
+    private Node root;
+    // userId -> 当前节点，用于按旧键删除
+    private final Map<Long, Node> index = new HashMap<>();
+
+    public int size() {
+        return index.size();
+    }
+
+    public boolean contains(long userId) {
+        return index.containsKey(userId);
+    }
+
+    /**
+     * 插入或更新用户的排序键。
+     */
+    public void update(long userId, double primary, long secondary) {
+        Node old = index.get(userId);
+        if (old != null) {
+            if (old.primary == primary && old.secondary == secondary) {
+                return;
+            }
+            root = delete(root, old);
+        }
+        Node node = new Node(userId, primary, secondary);
+        index.put(userId, node);
+        root = insert(root, node);
+    }
+
+    public void remove(long userId) {
+        Node old = index.remove(userId);
+        if (old != null) {
+            root = delete(root, old);
+        }
+    }
+
+    /**
+     * @return 1 开始的名次，不在榜上返回 -1
+     */
+    public int rankOf(long userId) {
+        Node target = index.get(userId);
+        if (target == null) {
+            return -1;
+        }
+        int rank = 1;
+        Node node = root;
+        while (node != null) {
+            int c = compare(target, node);
+            if (c < 0) {
+                node = node.left;
+            } else {
+                rank += size(node.left);
+                if (c == 0) {
+                    return rank;
+                }
+                rank++;
+                node = node.right;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 按名次返回前 limit 个用户 ID。
+     */
+    public List<Long> top(int limit) {
+        List<Long> result = new ArrayList<>(Math.min(Math.max(limit, 0), size()));
+        collect(root, result, limit);
+        return result;
+    }
+
+    private static void collect(Node node, List<Long> out, int limit) {
+        if (node == null || out.size() >= limit) {
+            return;
+        }
+        collect(node.left, out, limit);
+        if (out.size() < limit) {
+            out.add(node.userId);
+            collect(node.right, out, limit);
+        }
+    }
+
+    private static int compare(Node a, Node b) {
+        int c = Double.compare(b.primary, a.primary);
+        if (c != 0) {
+            return c;
+        }
+        c = Long.compare(b.secondary, a.secondary);
+        if (c != 0) {
+            return c;
+        }
+        return Long.compare(a.userId, b.userId);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static void resize(Node node) {
+        node.size = 1 + size(node.left) + size(node.right);
+    }
+
+    private static Node insert(Node node, Node added) {
+        if (node == null) {
+            return added;
+        }
+        if (compare(added, node) < 0) {
+            node.left = insert(node.left, added);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, added);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        resize(node);
+        return node;
+    }
+
+    private static Node delete(Node node, Node removed) {
+        if (node == null) {
+            return null;
+        }
+        int c = compare(removed, node);
+        if (c < 0) {
+            node.left = delete(node.left, removed);
+        } else if (c > 0) {
+            node.right = delete(node.right, removed);
+        } else {
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            if (node.left.priority > node.right.priority) {
+                node = rotateRight(node);
+                node.right = delete(node.right, removed);
+            } else {
+                node = rotateLeft(node);
+                node.left = delete(node.left, removed);
+            }
+        }
+        resize(node);
+        return node;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        resize(node);
+        resize(left);
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        resize(node);
+        resize(right);
+        return right;
+    }
+}
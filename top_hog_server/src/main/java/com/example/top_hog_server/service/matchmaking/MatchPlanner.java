@@ -0,0 +1,94 @@
+package com.example.top_hog_server.service.matchmaking;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把等待中的匹配请求分组成对局（纯计算，不创建房间）。
+ * <p>
+ * 每个请求可接受的分差（窗口）从 baseWindow 开始，按等待时间每秒增加 windowGrowthPerSecond，最大 maxWindow。
+ * 一组内最高分与最低分之差不能超过组内任何成员的窗口。请求按匹配分升序排列后从低到高贪心组队，
+ * 每组凑满 roomSize 人即成局；凑不满但组内有人等待超过 botFillAfterMs 时，也按已有人数成局，由调用方补机器人。
+ */
+public class MatchPlanner {
+
+    private final int roomSize;
+    private final int baseWindow;
+    private final int windowGrowthPerSecond;
+    private final int maxWindow;
+    private final long botFillAfterNanos;
+
+    public MatchPlanner(int roomSize, int baseWindow, int windowGrowthPerSecond, int maxWindow, long botFillAfterMs) {
+        this.roomSize = Math.max(2, roomSize);
+        this.baseWindow = Math.max(0, baseWindow);
+        this.windowGrowthPerSecond = Math.max(0, windowGrowthPerSecond);
+        this.maxWindow = Math.max(this.baseWindow, maxWindow);
+        this.botFillAfterNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, botFillAfterMs));
+    }
+
+    public int getRoomSize() {
+        return roomSize;
+    }
+
+    /**
+     * 请求当前可接受的分差。
+     */
+    public int windowOf(MatchTicket ticket, long nowNanos) {
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(Math.max(0, nowNanos - ticket.getEnqueuedAtNanos()));
+        long window = baseWindow + windowGrowthPerSecond * waitedMs / 1000;
+        return (int) Math.min(maxWindow, window);
+    }
+
+    /**
+     * @param waiting 按匹配分升序排列的等待中请求
+     * @return 成局的分组；人数不足 roomSize 的分组需要补机器人
+     */
+    public List<List<MatchTicket>> plan(List<MatchTicket> waiting, long nowNanos) {
+        int n = waiting.size();
+        int[] windows = new int[n];
+        for (int i = 0; i < n; i++) {
+            windows[i] = windowOf(waiting.get(i), nowNanos);
+        }
+        boolean[] used = new boolean[n];
+        List<List<MatchTicket>> groups = new ArrayList<>();
+        List<Integer> members = new ArrayList<>(roomSize);
+
+        for (int i = 0; i < n; i++) {
+            if (used[i]) {
+                continue;
+            }
+            MatchTicket lowest = waiting.get(i);
+            members.clear();
+            members.add(i);
+            int groupWindow = windows[i];
+            boolean overdue = nowNanos - lowest.getEnqueuedAtNanos() >= botFillAfterNanos;
+
+            for (int j = i + 1; j < n && members.size() < roomSize; j++) {
+                if (used[j]) {
+                    continue;
+                }
+                int spread = waiting.get(j).getRating() - lowest.getRating();
+                if (spread > groupWindow) {
+                    // 之后的请求分差只会更大
+                    break;
+                }
+                if (spread <= windows[j]) {
+                    members.add(j);
+                    groupWindow = Math.min(groupWindow, windows[j]);
+                    overdue |= nowNanos - waiting.get(j).getEnqueuedAtNanos() >= botFillAfterNanos;
+                }
+            }
+
+            if (members.size() == roomSize || overdue) {
+                List<MatchTicket> group = new ArrayList<>(members.size());
+                for (int index : members) {
+                    used[index] = true;
+                    group.add(waiting.get(index));
+                }
+                groups.add(group);
+            }
+        }
+        return groups;
+    }
+}
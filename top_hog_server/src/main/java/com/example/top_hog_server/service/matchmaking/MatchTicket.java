@@ -0,0 +1,85 @@
+package com.example.top_hog_server.service.matchmaking;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 一名玩家的匹配请求。
+ * 状态从 WAITING 变为 MATCHED（匹配线程认领）或 CANCELLED（玩家取消）都通过 CAS 完成，两者不会同时成功。
+ * 认领后房间创建完成前 roomId 为 null。
+ */
+public class MatchTicket {
+
+    public enum Status {
+        WAITING, MATCHED, CANCELLED
+    }
+
+    private final Long userId;
+    private final int rating;
+    private final long enqueuedAtNanos;
+    private final AtomicReference<Status> status = new AtomicReference<>(Status.WAITING);
+    private volatile String roomId;
+    private volatile String roomPassword;
+    private volatile long matchedAtNanos;
+
+    public MatchTicket(Long userId, int rating, long enqueuedAtNanos) {
+        this.userId = userId;
+        this.rating = rating;
+        this.enqueuedAtNanos = enqueuedAtNanos;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public int getRating() {
+        return rating;
+    }
+
+    public long getEnqueuedAtNanos() {
+        return enqueuedAtNanos;
+    }
+
+    public Status getStatus() {
+        return status.get();
+    }
+
+    public boolean isWaiting() {
+        return status.get() == Status.WAITING;
+    }
+
+    public boolean cancel() {
+        return status.compareAndSet(Status.WAITING, Status.CANCELLED);
+    }
+
+    /**
+     * 匹配线程认领该请求，之后取消不再生效。
+     */
+    boolean claim() {
+        return status.compareAndSet(Status.WAITING, Status.MATCHED);
+    }
+
+    /**
+     * 认领后创建房间失败时放回等待状态。
+     */
+    void release() {
+        status.compareAndSet(Status.MATCHED, Status.WAITING);
+    }
+
+    void assignRoom(String roomId, String roomPassword, long nowNanos) {
+        this.roomPassword = roomPassword;
+        this.matchedAtNanos = nowNanos;
+        this.roomId = roomId;
+    }
+
+    public String getRoomId() {
+        return roomId;
+    }
+
+    public String getRoomPassword() {
+        return roomPassword;
+    }
+
+    public long getMatchedAtNanos() {
+        return matchedAtNanos;
+    }
+}
@@ -0,0 +1,303 @@
+package com.example.top_hog_server.service.matchmaking;
+
+import com.example.top_hog_server.exception.BusinessException;
+import com.example.top_hog_server.exception.ErrorCode;
+import com.example.top_hog_server.model.GameRoom;
+import com.example.top_hog_server.service.GameLogicService;
+import com.example.top_hog_server.service.GameRoomService;
+import com.example.top_hog_server.service.UserStatsService;
+import com.example.top_hog_server.service.stats.UserGameStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按水平匹配的排队服务。
+ * <p>
+ * 玩家入队时根据历史战绩（{@link UserStatsService}）计算匹配分，请求进入无锁队列后立即返回。
+ * 匹配线程每隔 game.matchmaking.intervalMs 批量取出新请求，由 {@link MatchPlanner} 按匹配分分组，
+ * 每组创建一个私密房间（密码只发给匹配到的玩家），人数不足时用机器人补齐。
+ * 玩家通过 {@link #getTicket} 轮询结果，拿到房间号和密码后按普通流程加入房间。
+ */
+@Service
+public class MatchmakingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MatchmakingService.class);
+
+    // 没有对局记录的玩家的匹配分
+    static final int DEFAULT_RATING = 1000;
+    // 胜率每偏离平均水平 1（100%）对应的匹配分
+    private static final int RATING_SCALE = 2000;
+    // 胜率向平均水平收缩的先验局数，对局少的玩家匹配分不会大起大落
+    private static final double PRIOR_GAMES = 4;
+
+    private final UserStatsService userStatsService;
+    private final GameRoomService gameRoomService;
+    private final GameLogicService gameLogicService;
+    private final MatchPlanner planner;
+    private final int maxQueueSize;
+    private final long resultTtlNanos;
+
+    // 新请求先进入无锁队列，由匹配线程批量取出
+    private final Queue<MatchTicket> incoming = new ConcurrentLinkedQueue<>();
+    // 每个用户当前的请求（等待中或最近匹配成功的）
+    private final Map<Long, MatchTicket> tickets = new ConcurrentHashMap<>();
+    // 尚未被匹配线程移出的请求数（含已取消但还没清理的）
+    private final AtomicInteger queued = new AtomicInteger();
+    // 以下两个集合只由匹配线程访问
+    private final List<MatchTicket> waiting = new ArrayList<>();
+    private final Deque<MatchTicket> matchedResults = new ArrayDeque<>();
+
+    // 统计
+    private final LongAdder enqueuedCount = new LongAdder();
+    private final LongAdder matchedCount = new LongAdder();
+    private final LongAdder cancelledCount = new LongAdder();
+    private final LongAdder roomsFormed = new LongAdder();
+    private final LongAdder botsAdded = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private volatile long oldestWaitNanos;
+    private volatile long lastTickNanos;
+
+    @Autowired
+    public MatchmakingService(UserStatsService userStatsService,
+            GameRoomService gameRoomService,
+            GameLogicService gameLogicService,
+            @Value("${game.matchmaking.roomSize:4}") int roomSize,
+            @Value("${game.matchmaking.baseWindow:100}") int baseWindow,
+            @Value("${game.matchmaking.windowGrowthPerSecond:50}") int windowGrowthPerSecond,
+            @Value("${game.matchmaking.maxWindow:1000}") int maxWindow,
+            @Value("${game.matchmaking.botFillAfterMs:15000}") long botFillAfterMs,
+            @Value("${game.matchmaking.maxQueueSize:100000}") int maxQueueSize,
+            @Value("${game.matchmaking.resultTtlMs:60000}") long resultTtlMs) {
+        this.userStatsService = userStatsService;
+        this.gameRoomService = gameRoomService;
+        this.gameLogicService = gameLogicService;
+        this.planner = new MatchPlanner(roomSize, baseWindow, windowGrowthPerSecond, maxWindow, botFillAfterMs);
+        this.maxQueueSize = maxQueueSize;
+        this.resultTtlNanos = TimeUnit.MILLISECONDS.toNanos(resultTtlMs);
+    }
+
+    /**
+     * 加入匹配队列。已在排队时返回原来的请求。
+     */
+    public MatchTicket enqueue(Long userId) {
+        MatchTicket current = tickets.get(userId);
+        if (current != null && isPending(current)) {
+            return current;
+        }
+        if (queued.get() >= maxQueueSize) {
+            throw new BusinessException(ErrorCode.BUSINESS_ERROR, "匹配人数过多，请稍后再试");
+        }
+        MatchTicket created = new MatchTicket(userId, ratingOf(userId), System.nanoTime());
+        MatchTicket ticket = tickets.compute(userId, (id, existing) ->
+                existing != null && isPending(existing) ? existing : created);
+        if (ticket == created) {
+            queued.incrementAndGet();
+            enqueuedCount.increment();
+            incoming.add(created);
+        }
+        return ticket;
+    }
+
+    /**
+     * 取消排队。已经匹配成功时返回 false。
+     */
+    public boolean cancel(Long userId) {
+        MatchTicket ticket = tickets.get(userId);
+        if (ticket != null && ticket.cancel()) {
+            tickets.remove(userId, ticket);
+            cancelledCount.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 用户当前的匹配请求，没有时返回 null。
+     */
+    public MatchTicket getTicket(Long userId) {
+        return tickets.get(userId);
+    }
+
+    // 等待中，或已被认领但房间尚未创建好
+    private static boolean isPending(MatchTicket ticket) {
+        return ticket.isWaiting() || (ticket.getStatus() == MatchTicket.Status.MATCHED && ticket.getRoomId() == null);
+    }
+
+    /**
+     * 由历史战绩估算的匹配分：胜率先向平均水平（1 / 房间人数）收缩，再按偏离程度换算。
+     */
+    int ratingOf(Long userId) {
+        UserGameStats stats = userStatsService.getStats(userId);
+        double expected = 1.0 / planner.getRoomSize();
+        double shrunk = (stats.getWins() + expected * PRIOR_GAMES) / (stats.getGames() + PRIOR_GAMES);
+        return (int) Math.round(DEFAULT_RATING + RATING_SCALE * (shrunk - expected));
+    }
+
+    /**
+     * 一轮匹配：取出新请求，清理已取消的请求，按匹配分分组并创建房间。
+     */
+    @Scheduled(fixedDelayString = "${game.matchmaking.intervalMs:500}")
+    public void matchTick() {
+        long now = System.nanoTime();
+        MatchTicket ticket;
+        while ((ticket = incoming.poll()) != null) {
+            waiting.add(ticket);
+        }
+        removeSettled();
+        if (!waiting.isEmpty()) {
+            waiting.sort(Comparator.comparingInt(MatchTicket::getRating)
+                    .thenComparingLong(MatchTicket::getEnqueuedAtNanos));
+            for (List<MatchTicket> group : planner.plan(waiting, now)) {
+                formRoom(group, now);
+            }
+            removeSettled();
+        }
+
+        long oldest = 0;
+        for (MatchTicket t : waiting) {
+            oldest = Math.max(oldest, now - t.getEnqueuedAtNanos());
+        }
+        oldestWaitNanos = oldest;
+        expireResults(now);
+        lastTickNanos = System.nanoTime() - now;
+    }
+
+    private void removeSettled() {
+        waiting.removeIf(t -> {
+            if (t.isWaiting()) {
+                return false;
+            }
+            queued.decrementAndGet();
+            return true;
+        });
+    }
+
+    private void formRoom(List<MatchTicket> group, long now) {
+        List<MatchTicket> claimed = new ArrayList<>(group.size());
+        for (MatchTicket t : group) {
+            if (t.claim()) {
+                claimed.add(t);
+            }
+        }
+        if (claimed.isEmpty()) {
+            return;
+        }
+        // 等得最久的玩家做房主
+        MatchTicket owner = claimed.get(0);
+        for (MatchTicket t : claimed) {
+            if (t.getEnqueuedAtNanos() < owner.getEnqueuedAtNanos()) {
+                owner = t;
+            }
+        }
+
+        String password = UUID.randomUUID().toString().substring(0, 8);
+        int bots = planner.getRoomSize() - claimed.size();
+        GameRoom room = null;
+        try {
+            room = gameRoomService.createMatchedRoom(owner.getUserId(), planner.getRoomSize(), password);
+            if (bots > 0) {
+                gameLogicService.addBotsToRoom(room.getRoomId(), bots);
+            }
+        } catch (RuntimeException e) {
+            logger.error("创建匹配房间失败，{} 名玩家重新排队", claimed.size(), e);
+            if (room != null) {
+                discardRoom(room.getRoomId());
+            }
+            claimed.forEach(MatchTicket::release);
+            return;
+        }
+
+        botsAdded.add(bots);
+        for (MatchTicket t : claimed) {
+            t.assignRoom(room.getRoomId(), password, now);
+            matchedResults.add(t);
+            long waited = now - t.getEnqueuedAtNanos();
+            totalWaitNanos.add(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+        }
+        matchedCount.add(claimed.size());
+        roomsFormed.increment();
+        logger.debug("匹配成功: 房间 {}, {} 名玩家, {} 个机器人", room.getRoomId(), claimed.size(), bots);
+    }
+
+    // 补充机器人失败时移除已创建的房间，玩家不会拿到半成品房间
+    private void discardRoom(String roomId) {
+        try {
+            gameRoomService.removeRoom(roomId);
+        } catch (RuntimeException e) {
+            logger.error("移除创建失败的匹配房间 {} 失败", roomId, e);
+        }
+    }
+
+    // 匹配结果保留 resultTtlMs 供玩家查询，之后移除
+    private void expireResults(long now) {
+        MatchTicket head;
+        while ((head = matchedResults.peek()) != null && now - head.getMatchedAtNanos() > resultTtlNanos) {
+            matchedResults.poll();
+            tickets.remove(head.getUserId(), head);
+        }
+    }
+
+    /**
+     * 导出统计快照：排队人数、最长等待、平均/最大匹配耗时、成局数和补充的机器人数。
+     */
+    public Map<String, Object> metrics() {
+        long matched = matchedCount.sum();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("queueDepth", queued.get());
+        result.put("oldestWaitMs", TimeUnit.NANOSECONDS.toMillis(oldestWaitNanos));
+        result.put("enqueued", enqueuedCount.sum());
+        result.put("matched", matched);
+        result.put("cancelled", cancelledCount.sum());
+        result.put("roomsFormed", roomsFormed.sum());
+        result.put("botsAdded", botsAdded.sum());
+        result.put("avgWaitMs", matched == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.sum() / matched));
+        result.put("maxWaitMs", TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()));
+        result.put("lastTickMicros", TimeUnit.NANOSECONDS.toMicros(lastTickNanos));
+        result.put("roomSize", planner.getRoomSize());
+        return result;
+    }
+
+    /**
+     * 用户的匹配状态：status 为 NONE / WAITING / MATCHED，匹配成功时附带房间号和房间密码。
+     */
+    public Map<String, Object> statusOf(Long userId) {
+        MatchTicket ticket = tickets.get(userId);
+        Map<String, Object> result = new LinkedHashMap<>();
+        if (ticket == null || ticket.getStatus() == MatchTicket.Status.CANCELLED) {
+            result.put("status", "NONE");
+            return result;
+        }
+        String roomId = ticket.getRoomId();
+        result.put("status", roomId != null ? "MATCHED" : "WAITING");
+        result.put("rating", ticket.getRating());
+        if (roomId != null) {
+            result.put("roomId", roomId);
+            result.put("roomPassword", ticket.getRoomPassword());
+        } else {
+            result.put("waitedMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - ticket.getEnqueuedAtNanos()));
+        }
+        return result;
+    }
+}
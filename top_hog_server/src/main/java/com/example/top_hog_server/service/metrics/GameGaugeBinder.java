@@ -0,0 +1,69 @@
+package com.example.top_hog_server.service.metrics;
+
+import com.example.top_hog_server.handler.GameWebSocketHandler;
+import com.example.top_hog_server.service.GameRoomService;
+import com.example.top_hog_server.service.room.GameTimerWheel;
+import com.example.top_hog_server.service.room.RoomExecutor;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 注册游戏相关的 Gauge：内存中的房间数、WebSocket 会话数和出站排队字节数、等待中的计时器数和房间锁等待时间。
+ * 只在抓取指标时读取各组件的计数，不在热路径上做任何额外工作。
+ * 单独成类是为了不让被观测的组件反过来依赖指标组件（GameWebSocketHandler 本身也要记录消息数）。
+ */
+@Component
+public class GameGaugeBinder implements MeterBinder {
+
+    private final GameRoomService gameRoomService;
+    private final GameWebSocketHandler gameWebSocketHandler;
+    private final GameTimerWheel gameTimerWheel;
+    private final RoomExecutor roomExecutor;
+
+    @Autowired
+    public GameGaugeBinder(GameRoomService gameRoomService,
+            GameWebSocketHandler gameWebSocketHandler,
+            GameTimerWheel gameTimerWheel,
+            RoomExecutor roomExecutor) {
+        this.gameRoomService = gameRoomService;
+        this.gameWebSocketHandler = gameWebSocketHandler;
+        this.gameTimerWheel = gameTimerWheel;
+        this.roomExecutor = roomExecutor;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("game.rooms.active", gameRoomService, s -> s.getAllActiveRoomsInMemory().size())
+                .description("内存中的房间数")
+                .register(registry);
+        Gauge.builder("game.ws.sessions", gameWebSocketHandler, GameWebSocketHandler::getSessionCount)
+                .description("已建立的 WebSocket 会话数")
+                .register(registry);
+        Gauge.builder("game.ws.outbound.queued", gameWebSocketHandler, GameWebSocketHandler::getOutboundQueuedBytes)
+                .description("所有会话出站队列中等待发送的字节数")
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder("game.ws.outbound.evictions", gameWebSocketHandler,
+                        GameWebSocketHandler::getSlowConsumerEvictions)
+                .description("因跟不上出站消息而被断开的会话数")
+                .register(registry);
+        Gauge.builder("game.timers.pending", gameTimerWheel, GameTimerWheel::getPendingCount)
+                .description("时间轮中等待触发的计时器数")
+                .register(registry);
+        FunctionTimer.builder("game.room.lock.wait", roomExecutor,
+                        RoomExecutor::getWaitCount, RoomExecutor::getWaitTotalNanos, TimeUnit.NANOSECONDS)
+                .description("房间命令开始执行前的等待时间（锁模式为等锁，Actor 模式为在邮箱中排队）")
+                .register(registry);
+        Gauge.builder("game.room.lock.wait.max", roomExecutor, e -> e.getWaitMaxNanos() / 1_000_000.0)
+                .description("启动以来单次房间命令等待的最长时间")
+                .baseUnit("milliseconds")
+                .register(registry);
+    }
+}
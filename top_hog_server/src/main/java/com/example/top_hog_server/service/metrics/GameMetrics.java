@@ -0,0 +1,91 @@
+package com.example.top_hog_server.service.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 游戏热路径的 Micrometer 指标：出牌、结算、广播、出牌提示、保存战绩的耗时，以及按类型统计的 WebSocket 入站消息数。
+ * 通过 /actuator/prometheus 导出。房间数、会话数、计时器等队列深度类的指标由 {@link GameGaugeBinder} 注册。
+ */
+@Component
+public class GameMetrics {
+
+    // 客户端发来的未知消息类型统一记为该标签，避免标签数量无限增长
+    public static final String UNKNOWN_MESSAGE_TYPE = "unknown";
+
+    private final MeterRegistry registry;
+    private final Timer playCardTimer;
+    private final Timer processTrickTimer;
+    private final Timer broadcastTimer;
+    private final Timer playTipTimer;
+    private final Timer saveHistoryTimer;
+    private final Map<String, Counter> inboundCounters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public GameMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.playCardTimer = timer("game.play.card", "玩家出牌（房间上下文内）");
+        this.processTrickTimer = timer("game.trick.process", "结算本轮的牌（一次调用内联结算的后续牌只计一次，在等待玩家选列处中断）");
+        this.broadcastTimer = timer("game.state.broadcast", "向房间广播游戏状态（编码和发送）");
+        this.playTipTimer = timer("game.play.tip", "出牌提示（含蒙特卡洛搜索）");
+        this.saveHistoryTimer = timer("game.history.save", "对局结束时组装并提交战绩");
+    }
+
+    private Timer timer(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    public Timer getPlayCardTimer() {
+        return playCardTimer;
+    }
+
+    public Timer getProcessTrickTimer() {
+        return processTrickTimer;
+    }
+
+    public Timer getBroadcastTimer() {
+        return broadcastTimer;
+    }
+
+    public Timer getPlayTipTimer() {
+        return playTipTimer;
+    }
+
+    public Timer getSaveHistoryTimer() {
+        return saveHistoryTimer;
+    }
+
+    /**
+     * 预先注册入站消息分发表中已有类型的计数器，使其从 0 开始导出。
+     */
+    public void registerInboundTypes(Collection<String> types) {
+        for (String type : types) {
+            inboundCounters.computeIfAbsent(type, this::inboundCounter);
+        }
+        inboundCounters.computeIfAbsent(UNKNOWN_MESSAGE_TYPE, this::inboundCounter);
+    }
+
+    /**
+     * 入站消息计数，type 应为入站消息分发表中注册过的类型或 {@link #UNKNOWN_MESSAGE_TYPE}。
+     */
+    public void countInboundMessage(String type) {
+        inboundCounters.computeIfAbsent(type, this::inboundCounter).increment();
+    }
+
+    private Counter inboundCounter(String type) {
+        return Counter.builder("game.ws.inbound")
+                .description("WebSocket 入站消息数")
+                .tag("type", type)
+                .register(registry);
+    }
+}
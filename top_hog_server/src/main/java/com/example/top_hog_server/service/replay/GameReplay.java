@@ -0,0 +1,116 @@
+package com.example.top_hog_server.service.replay;
+
+import com.example.top_hog_server.model.ReplayLog;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 一局已结束游戏的回放记录：种子、开始/结束时间、目标分数和 {@link ReplayLog} 的事件。
+ * <p>
+ * 二进制格式（大端）：版本字节，gameId、roomId（各为 2 字节长度 + UTF-8），种子、开始时间、结束时间（各 8 字节），
+ * 目标分数（2 字节），事件长度（4 字节）和事件本身。离线分析工具可以直接按此格式解析回放段文件。
+ */
+public final class GameReplay {
+
+    static final int FORMAT_VERSION = 1;
+
+    private final String gameId;
+    private final String roomId;
+    private final long seed;
+    private final long startedAt;
+    private final long finishedAt;
+    private final int targetScore;
+    private final byte[] events;
+    private List<ReplayLog.Seat> seats;
+
+    public GameReplay(String gameId, String roomId, long seed, long startedAt, long finishedAt, int targetScore,
+            byte[] events) {
+        this.gameId = gameId;
+        this.roomId = roomId;
+        this.seed = seed;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+        this.targetScore = targetScore;
+        this.events = events;
+    }
+
+    public String getGameId() {
+        return gameId;
+    }
+
+    public String getRoomId() {
+        return roomId;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public int getTargetScore() {
+        return targetScore;
+    }
+
+    public byte[] getEvents() {
+        return events;
+    }
+
+    /**
+     * 按座位号顺序排列的座位。
+     */
+    public List<ReplayLog.Seat> getSeats() {
+        if (seats == null) {
+            seats = ReplayLog.readSeats(events);
+        }
+        return seats;
+    }
+
+    byte[] encode() {
+        byte[] gameIdBytes = gameId.getBytes(StandardCharsets.UTF_8);
+        byte[] roomIdBytes = roomId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer out = ByteBuffer.allocate(1 + 2 + gameIdBytes.length + 2 + roomIdBytes.length + 8 * 3 + 2 + 4
+                + events.length);
+        out.put((byte) FORMAT_VERSION);
+        out.putShort((short) gameIdBytes.length).put(gameIdBytes);
+        out.putShort((short) roomIdBytes.length).put(roomIdBytes);
+        out.putLong(seed);
+        out.putLong(startedAt);
+        out.putLong(finishedAt);
+        out.putShort((short) targetScore);
+        out.putInt(events.length).put(events);
+        return out.array();
+    }
+
+    /**
+     * @return 解码得到的回放；格式版本不认识时返回 null
+     */
+    static GameReplay decode(ByteBuffer in) {
+        if (in.get() != FORMAT_VERSION) {
+            return null;
+        }
+        String gameId = getString(in);
+        String roomId = getString(in);
+        long seed = in.getLong();
+        long startedAt = in.getLong();
+        long finishedAt = in.getLong();
+        int targetScore = in.getShort();
+        byte[] events = new byte[in.getInt()];
+        in.get(events);
+        return new GameReplay(gameId, roomId, seed, startedAt, finishedAt, targetScore, events);
+    }
+
+    private static String getString(ByteBuffer in) {
+        byte[] bytes = new byte[Short.toUnsignedInt(in.getShort())];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,298 @@
+package com.example.top_hog_server.service.replay;
+
+import com.example.top_hog_server.model.Card;
+import com.example.top_hog_server.model.CardTable;
+import com.example.top_hog_server.model.GameRow;
+import com.example.top_hog_server.model.Player;
+import com.example.top_hog_server.model.ReplayLog;
+import com.example.top_hog_server.service.game.TopHogGameEngine;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按种子和操作记录重新运行一局游戏。
+ * <p>
+ * 洗牌、发牌、放牌和收列都调用 {@link TopHogGameEngine} 的同一套规则，处理顺序与 GameLogicService 一致：
+ * 本手的牌按牌号从小到大逐张结算，遇到需要选列的牌时等待记录中的 TAKE_ROW；
+ * 已离开玩家的牌被跳过，正在选列的玩家离开时这张牌作废。
+ */
+final class GameReplayer {
+
+    private final GameReplay replay;
+    private final List<GameRow> rows = new ArrayList<>(4);
+    private final List<Card> deck;
+    private final List<Player> seats = new ArrayList<>();
+    private final List<Boolean> left = new ArrayList<>();
+    // 本手已出的牌：座位号 -> 牌
+    private final Map<Integer, Card> played = new LinkedHashMap<>();
+    // 本手尚未结算的牌（按牌号排序）
+    private final List<Map.Entry<Integer, Card>> remaining = new ArrayList<>();
+    private int choosingSeat = -1;
+    private Card pendingCard;
+    private int round;
+    private int turn;
+
+    // 目标一手的状态
+    private final int targetRound;
+    private final int targetTurn;
+    private Map<String, Object> frame;
+    private List<Map<String, Object>> framePlayers;
+    private boolean frameDone;
+
+    private GameReplayer(GameReplay replay, int targetRound, int targetTurn) {
+        this.replay = replay;
+        this.targetRound = targetRound;
+        this.targetTurn = targetTurn;
+        this.deck = TopHogGameEngine.shuffledDeck(replay.getSeed());
+        // 与 TopHogGameEngine.initializeGame 相同：每列先发一张起始牌
+        for (int i = 0; i < 4; i++) {
+            GameRow row = new GameRow();
+            row.addCard(TopHogGameEngine.dealCard(deck));
+            rows.add(row);
+        }
+    }
+
+    /**
+     * 第 round 轮第 turn 手结算前后的状态：各玩家剩余的手牌、本手出的牌、选择的牌列、结算前后的牌列和分数。
+     *
+     * @return 记录中没有这一手时返回 null
+     * @throws IllegalArgumentException 记录损坏或与规则不一致
+     */
+    static Map<String, Object> frame(GameReplay replay, int round, int turn) {
+        GameReplayer replayer = new GameReplayer(replay, round, turn);
+        replayer.run();
+        return replayer.frame;
+    }
+
+    /**
+     * 整局的概要：座位、最终分数、进行的轮数。
+     *
+     * @throws IllegalArgumentException 记录损坏或与规则不一致
+     */
+    static Map<String, Object> summary(GameReplay replay) {
+        GameReplayer replayer = new GameReplayer(replay, -1, -1);
+        replayer.run();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("gameId", replay.getGameId());
+        result.put("roomId", replay.getRoomId());
+        result.put("startedAt", replay.getStartedAt());
+        result.put("finishedAt", replay.getFinishedAt());
+        result.put("targetScore", replay.getTargetScore());
+        result.put("seed", replay.getSeed());
+        result.put("bytes", replay.getEvents().length);
+        result.put("rounds", replayer.round);
+        List<Map<String, Object>> players = new ArrayList<>();
+        for (int seat = 0; seat < replayer.seats.size(); seat++) {
+            Map<String, Object> player = replayer.describeSeat(seat);
+            player.put("score", replayer.seats.get(seat).getScore());
+            players.add(player);
+        }
+        result.put("players", players);
+        return result;
+    }
+
+    private void run() {
+        ByteBuffer in = ByteBuffer.wrap(replay.getEvents());
+        try {
+            while (in.hasRemaining() && !frameDone) {
+                byte type = in.get();
+                switch (type) {
+                    case ReplayLog.SEAT:
+                        addSeat(ReplayLog.readSeat(in));
+                        break;
+                    case ReplayLog.DEAL:
+                        deal(in);
+                        break;
+                    case ReplayLog.PLAY:
+                        play(seat(in.get()), Byte.toUnsignedInt(in.get()));
+                        break;
+                    case ReplayLog.RESOLVE:
+                        resolve();
+                        break;
+                    case ReplayLog.TAKE_ROW:
+                        takeRow(seat(in.get()), in.get());
+                        break;
+                    case ReplayLog.LEAVE:
+                        leave(seat(in.get()));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("未知的回放事件类型: " + type);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("回放记录损坏: " + replay.getGameId(), e);
+        }
+        if (frame != null && !frameDone) {
+            finishFrame();
+        }
+    }
+
+    private void addSeat(ReplayLog.Seat seat) {
+        String sessionId = seat.getSessionId() != null ? seat.getSessionId() : "user-" + seat.getUserId();
+        Player player = new Player(sessionId, seat.getUserId(), seat.getDisplayName(), 0);
+        player.setRobot(seat.isRobot());
+        seats.add(player);
+        left.add(false);
+    }
+
+    private int seat(byte value) {
+        int seat = Byte.toUnsignedInt(value);
+        if (seat >= seats.size()) {
+            throw new IllegalArgumentException("回放记录引用了未登记的座位: " + seat);
+        }
+        return seat;
+    }
+
+    // 与 TopHogGameEngine.startNewRound 相同：按记录的顺序每人发 10 张，手牌排序；牌堆不足时没有发牌，不算一轮
+    private void deal(ByteBuffer in) {
+        int count = Byte.toUnsignedInt(in.get());
+        for (Player player : seats) {
+            player.getHand().clear();
+        }
+        if (count == 0) {
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            Player player = seats.get(seat(in.get()));
+            for (int j = 0; j < 10 && !deck.isEmpty(); j++) {
+                player.addCardToHand(TopHogGameEngine.dealCard(deck));
+            }
+            player.getHand().sort(Comparator.comparingInt(Card::getNumber));
+        }
+        played.clear();
+        round++;
+        turn = 1;
+    }
+
+    private void play(int seat, int number) {
+        if (!CardTable.isValid(number)) {
+            throw new IllegalArgumentException("回放记录中的牌号无效: " + number);
+        }
+        Card card = CardTable.card(number);
+        seats.get(seat).removeCardFromHand(card);
+        played.put(seat, card);
+    }
+
+    private void resolve() {
+        remaining.clear();
+        for (Map.Entry<Integer, Card> entry : played.entrySet()) {
+            remaining.add(new AbstractMap.SimpleEntry<>(entry));
+        }
+        remaining.sort(Map.Entry.comparingByValue(Comparator.comparingInt(Card::getNumber)));
+        if (round == targetRound && turn == targetTurn) {
+            startFrame();
+        }
+        processTrick();
+    }
+
+    // 与 GameLogicService.processNextCardInTrick 相同的结算顺序
+    private void processTrick() {
+        while (!remaining.isEmpty()) {
+            Map.Entry<Integer, Card> entry = remaining.remove(0);
+            int seat = entry.getKey();
+            if (left.get(seat)) {
+                continue;
+            }
+            Card card = entry.getValue();
+            int targetRowIndex = TopHogGameEngine.findTargetRowIndex(rows, card.getNumber());
+            if (targetRowIndex == -1) {
+                choosingSeat = seat;
+                pendingCard = card;
+                return;
+            }
+            GameRow row = rows.get(targetRowIndex);
+            if (row.size() == row.getMAX_CARDS_IN_ROW()) {
+                TopHogGameEngine.takeRow(rows, seats.get(seat), targetRowIndex, card);
+            } else {
+                row.addCard(card);
+            }
+        }
+        played.clear();
+        turn++;
+        if (frame != null && !frameDone) {
+            finishFrame();
+        }
+    }
+
+    private void takeRow(int seat, int rowIndex) {
+        if (seat != choosingSeat || rowIndex < 0 || rowIndex >= rows.size()) {
+            throw new IllegalArgumentException("回放记录中的选列与规则不一致: 座位 " + seat + ", 牌列 " + rowIndex);
+        }
+        if (framePlayers != null && !frameDone) {
+            framePlayers.get(seat).put("takenRow", rowIndex);
+        }
+        TopHogGameEngine.takeRow(rows, seats.get(seat), rowIndex, pendingCard);
+        choosingSeat = -1;
+        pendingCard = null;
+        processTrick();
+    }
+
+    private void leave(int seat) {
+        left.set(seat, true);
+        played.remove(seat);
+        if (seat == choosingSeat) {
+            // 与选列超时时找不到玩家的处理相同：这张牌作废，继续结算
+            choosingSeat = -1;
+            pendingCard = null;
+            processTrick();
+        }
+    }
+
+    private void startFrame() {
+        frame = new LinkedHashMap<>();
+        frame.put("gameId", replay.getGameId());
+        frame.put("round", round);
+        frame.put("turn", turn);
+        frame.put("rowsBefore", rowNumbers());
+        framePlayers = new ArrayList<>();
+        for (int seat = 0; seat < seats.size(); seat++) {
+            Map<String, Object> player = describeSeat(seat);
+            Card card = played.get(seat);
+            player.put("hand", seats.get(seat).getHand().stream().map(Card::getNumber).toList());
+            player.put("played", card != null ? card.getNumber() : null);
+            player.put("takenRow", null);
+            player.put("scoreBefore", seats.get(seat).getScore());
+            framePlayers.add(player);
+        }
+    }
+
+    private void finishFrame() {
+        frame.put("rowsAfter", rowNumbers());
+        for (int seat = 0; seat < framePlayers.size(); seat++) {
+            framePlayers.get(seat).put("scoreAfter", seats.get(seat).getScore());
+        }
+        frame.put("players", framePlayers);
+        frameDone = true;
+    }
+
+    private Map<String, Object> describeSeat(int seat) {
+        Player player = seats.get(seat);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("seat", seat);
+        result.put("userId", player.getUserId());
+        result.put("displayName", player.getDisplayName());
+        result.put("robot", player.isRobot());
+        result.put("left", left.get(seat));
+        return result;
+    }
+
+    private List<List<Integer>> rowNumbers() {
+        List<List<Integer>> result = new ArrayList<>(rows.size());
+        for (GameRow row : rows) {
+            List<Integer> numbers = new ArrayList<>(row.size());
+            for (int i = 0; i < row.size(); i++) {
+                numbers.add(row.numberAt(i));
+            }
+            result.add(numbers);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.top_hog_server.service.replay;
+
+import com.example.top_hog_server.exception.BusinessException;
+import com.example.top_hog_server.exception.ErrorCode;
+import com.example.top_hog_server.model.GameRoom;
+import com.example.top_hog_server.model.ReplayLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * 对局回放：开局时为房间生成随机种子和操作记录，游戏结束时归档到 {@link ReplayStore}，
+ * 查询时按种子和操作记录重新运行规则（{@link GameReplayer}）得到任意一手的状态。
+ */
+@Service
+public class ReplayService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplayService.class);
+
+    private final ReplayStore replayStore;
+
+    @Autowired
+    public ReplayService(ReplayStore replayStore) {
+        this.replayStore = replayStore;
+    }
+
+    /**
+     * 开始记录新的一局：生成洗牌种子并创建空的操作记录。需在引擎洗牌之前、在房间执行上下文中调用。
+     */
+    public void beginGame(GameRoom room) {
+        long seed = ThreadLocalRandom.current().nextLong();
+        long now = System.currentTimeMillis();
+        room.setGameSeed(seed);
+        room.setReplayLog(new ReplayLog(room.getRoomId() + "-" + Long.toString(now, 36), seed, now));
+    }
+
+    /**
+     * 游戏结束时归档本局的操作记录。需在房间执行上下文中调用。
+     */
+    public void finishGame(GameRoom room) {
+        ReplayLog log = room.getReplayLog();
+        if (log == null) {
+            return;
+        }
+        room.setReplayLog(null);
+        replayStore.append(new GameReplay(log.getGameId(), room.getRoomId(), log.getSeed(), log.getStartedAt(),
+                System.currentTimeMillis(), room.getTargetScore(), log.toByteArray()));
+        logger.debug("房间 {} 的对局 {} 已归档，回放 {} 字节", room.getRoomId(), log.getGameId(), log.size());
+    }
+
+    /**
+     * 用户参与过的对局概要（最近的在前）。
+     */
+    public List<Map<String, Object>> listForUser(Long userId, int limit) {
+        return summaries(replayStore.listByUser(userId, limit));
+    }
+
+    /**
+     * 房间内进行过的对局概要（最近的在前）。
+     */
+    public List<Map<String, Object>> listForRoom(String roomId, int limit) {
+        return summaries(replayStore.listByRoom(roomId, limit));
+    }
+
+    private List<Map<String, Object>> summaries(List<String> gameIds) {
+        List<Map<String, Object>> result = new ArrayList<>(gameIds.size());
+        for (String gameId : gameIds) {
+            GameReplay replay = replayStore.find(gameId);
+            if (replay != null) {
+                Map<String, Object> summary = new LinkedHashMap<>();
+                summary.put("gameId", replay.getGameId());
+                summary.put("roomId", replay.getRoomId());
+                summary.put("startedAt", replay.getStartedAt());
+                summary.put("finishedAt", replay.getFinishedAt());
+                result.add(summary);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 整局的概要：座位、最终分数、进行的轮数。
+     */
+    public Map<String, Object> summary(String gameId) {
+        return replay(gameId, GameReplayer::summary);
+    }
+
+    /**
+     * 第 round 轮第 turn 手结算前后的状态。
+     */
+    public Map<String, Object> frame(String gameId, int round, int turn) {
+        Map<String, Object> frame = replay(gameId, replay -> GameReplayer.frame(replay, round, turn));
+        if (frame == null) {
+            throw new BusinessException(ErrorCode.NOT_FOUND, "该对局没有第 " + round + " 轮第 " + turn + " 手");
+        }
+        return frame;
+    }
+
+    /**
+     * 回放记录的原始二进制编码（格式见 {@link GameReplay}），供离线分析。
+     */
+    public byte[] raw(String gameId) {
+        return load(gameId).encode();
+    }
+
+    /**
+     * 用户是否参与了该对局。
+     */
+    public boolean isParticipant(String gameId, Long userId) {
+        return userId != null && replayStore.participantsOf(gameId).contains(userId);
+    }
+
+    private Map<String, Object> replay(String gameId, Function<GameReplay, Map<String, Object>> run) {
+        GameReplay replay = load(gameId);
+        try {
+            return run.apply(replay);
+        } catch (IllegalArgumentException e) {
+            logger.error("回放对局 {} 失败", gameId, e);
+            throw new BusinessException(ErrorCode.BUSINESS_ERROR, "回放记录无法解析");
+        }
+    }
+
+    private GameReplay load(String gameId) {
+        GameReplay replay = replayStore.find(gameId);
+        if (replay == null) {
+            throw new BusinessException(ErrorCode.NOT_FOUND, "回放不存在");
+        }
+        return replay;
+    }
+
+    /**
+     * 导出回放存储的统计快照。
+     */
+    public Map<String, Object> metrics() {
+        return replayStore.metrics();
+    }
+}
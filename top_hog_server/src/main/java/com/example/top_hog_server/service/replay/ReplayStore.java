@@ -0,0 +1,365 @@
+package com.example.top_hog_server.service.replay;
+
+import com.example.top_hog_server.model.ReplayLog;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * 回放记录的滚动段文件存储，带按 gameId、roomId、userId 的内存索引。
+ * <p>
+ * 记录追加到 game.replay.dir 下的段文件，每条为 长度(4) + CRC32C(4) + {@link GameReplay} 编码；
+ * 当前段超过 game.replay.segmentBytes 时换新段，段数超过 game.replay.maxSegments 时删除最旧的段。
+ * 启动时扫描所有段重建索引，遇到校验失败（写了一半）的记录即停止读取该段，并总是写入新的段。
+ * 追加只写入页缓存、不 fsync：回放只用于事后查询，进程崩溃前最后几局丢失可以接受。
+ */
+@Component
+public class ReplayStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplayStore.class);
+
+    // 记录头：长度 + CRC32C
+    private static final int HEADER_BYTES = 8;
+    private static final String SEGMENT_PREFIX = "replay-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final int maxSegments;
+
+    // 以下字段由 this 保护
+    private FileChannel current;
+    private long currentSeq;
+    private long currentSize;
+    // 段号 -> 段内的 gameId，删除段时据此清理索引
+    private final TreeMap<Long, List<String>> segments = new TreeMap<>();
+    private final Map<String, Location> byGame = new HashMap<>();
+    private final Map<String, List<String>> byRoom = new HashMap<>();
+    private final Map<Long, List<String>> byUser = new HashMap<>();
+
+    // 统计
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder appendedBytes = new LongAdder();
+    private final LongAdder deletedSegments = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    @Autowired
+    public ReplayStore(@Value("${game.replay.dir:data/replays}") String dir,
+            @Value("${game.replay.segmentBytes:16777216}") long segmentBytes,
+            @Value("${game.replay.maxSegments:64}") int maxSegments) {
+        this.dir = Paths.get(dir);
+        this.segmentBytes = Math.max(4096, segmentBytes);
+        this.maxSegments = Math.max(1, maxSegments);
+    }
+
+    /**
+     * 扫描已有的段重建索引，然后打开新的段开始写入（不向可能写了一半的旧段追加）。
+     */
+    @PostConstruct
+    public synchronized void start() throws IOException {
+        Files.createDirectories(dir);
+        List<Long> existing = listSegments();
+        for (Long seq : existing) {
+            // 上次运行期间没有写入任何记录的段直接删除
+            if (Files.size(segmentPath(seq)) == 0) {
+                Files.delete(segmentPath(seq));
+                continue;
+            }
+            segments.put(seq, new ArrayList<>());
+            scan(seq);
+        }
+        openSegment(existing.isEmpty() ? 1 : existing.get(existing.size() - 1) + 1);
+        while (segments.size() > maxSegments) {
+            deleteSegment(segments.firstKey());
+        }
+        logger.info("回放存储已启用: 目录 {}, 段 {} 个, 回放 {} 局", dir.toAbsolutePath(), segments.size(),
+                byGame.size());
+    }
+
+    /**
+     * 追加一局的回放。失败时只记录日志，不影响游戏。
+     */
+    public void append(GameReplay replay) {
+        byte[] body = replay.encode();
+        CRC32C crc = new CRC32C();
+        crc.update(body);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + body.length);
+        record.putInt(body.length).putInt((int) crc.getValue()).put(body).flip();
+        try {
+            synchronized (this) {
+                if (current == null) {
+                    return; // 已关闭
+                }
+                if (currentSize > 0 && currentSize + record.remaining() > segmentBytes) {
+                    rollSegment();
+                }
+                long offset = currentSize;
+                while (record.hasRemaining()) {
+                    currentSize += current.write(record, currentSize);
+                }
+                index(replay, currentSeq, offset, body.length);
+            }
+            appended.increment();
+            appendedBytes.add(HEADER_BYTES + body.length);
+        } catch (IOException | RuntimeException e) {
+            failures.increment();
+            logger.error("写入回放记录 {} 失败", replay.getGameId(), e);
+        }
+    }
+
+    /**
+     * 读取一局的回放。
+     *
+     * @return 不存在（或所在的段已被删除）时返回 null
+     */
+    public GameReplay find(String gameId) {
+        Location location;
+        synchronized (this) {
+            location = byGame.get(gameId);
+        }
+        if (location == null) {
+            return null;
+        }
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + location.length);
+        try (FileChannel channel = FileChannel.open(segmentPath(location.seq), StandardOpenOption.READ)) {
+            while (record.hasRemaining()) {
+                if (channel.read(record, location.offset + record.position()) < 0) {
+                    return null;
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("读取回放记录 {} 失败", gameId, e);
+            return null;
+        }
+        record.flip();
+        return readRecord(record);
+    }
+
+    /**
+     * 用户参与过的对局（最近的在前）。
+     */
+    public synchronized List<String> listByUser(Long userId, int limit) {
+        return newestFirst(byUser.get(userId), limit);
+    }
+
+    /**
+     * 房间内进行过的对局（最近的在前）。
+     */
+    public synchronized List<String> listByRoom(String roomId, int limit) {
+        return newestFirst(byRoom.get(roomId), limit);
+    }
+
+    /**
+     * 对局的参与者（人类玩家的 userId），不存在时返回空列表。
+     */
+    public synchronized List<Long> participantsOf(String gameId) {
+        Location location = byGame.get(gameId);
+        return location != null ? location.userIds : Collections.emptyList();
+    }
+
+    private static List<String> newestFirst(List<String> gameIds, int limit) {
+        if (gameIds == null) {
+            return Collections.emptyList();
+        }
+        List<String> result = new ArrayList<>(Math.min(limit, gameIds.size()));
+        for (int i = gameIds.size() - 1; i >= 0 && result.size() < limit; i--) {
+            result.add(gameIds.get(i));
+        }
+        return result;
+    }
+
+    // 调用方持有 this
+    private void scan(long seq) throws IOException {
+        ByteBuffer segment;
+        try (FileChannel channel = FileChannel.open(segmentPath(seq), StandardOpenOption.READ)) {
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        while (segment.remaining() >= HEADER_BYTES) {
+            int start = segment.position();
+            int length = segment.getInt(start);
+            if (length <= 0 || length > segment.remaining() - HEADER_BYTES) {
+                break;
+            }
+            GameReplay replay = readRecord(segment.slice(start, HEADER_BYTES + length));
+            if (replay == null) {
+                logger.warn("回放段 {} 在偏移 {} 处的记录无法读取，忽略该段剩余部分", seq, start);
+                break;
+            }
+            index(replay, seq, start, length);
+            segment.position(start + HEADER_BYTES + length);
+        }
+    }
+
+    // 校验并解码一条记录，校验失败或格式不认识时返回 null
+    private static GameReplay readRecord(ByteBuffer record) {
+        int length = record.getInt();
+        int checksum = record.getInt();
+        ByteBuffer body = record.slice(record.position(), length);
+        CRC32C crc = new CRC32C();
+        crc.update(body.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        try {
+            return GameReplay.decode(body);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    // 调用方持有 this
+    private void index(GameReplay replay, long seq, long offset, int length) {
+        List<Long> userIds = new ArrayList<>();
+        for (ReplayLog.Seat seat : replay.getSeats()) {
+            if (seat.getUserId() != null && !userIds.contains(seat.getUserId())) {
+                userIds.add(seat.getUserId());
+            }
+        }
+        byGame.put(replay.getGameId(), new Location(seq, offset, length, replay.getRoomId(), userIds));
+        segments.get(seq).add(replay.getGameId());
+        byRoom.computeIfAbsent(replay.getRoomId(), k -> new ArrayList<>()).add(replay.getGameId());
+        for (Long userId : userIds) {
+            byUser.computeIfAbsent(userId, k -> new ArrayList<>()).add(replay.getGameId());
+        }
+    }
+
+    // 调用方持有 this
+    private void rollSegment() throws IOException {
+        current.close();
+        openSegment(currentSeq + 1);
+        while (segments.size() > maxSegments) {
+            deleteSegment(segments.firstKey());
+        }
+    }
+
+    // 调用方持有 this
+    private void openSegment(long seq) throws IOException {
+        current = FileChannel.open(segmentPath(seq), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        currentSeq = seq;
+        currentSize = 0;
+        segments.put(seq, new ArrayList<>());
+    }
+
+    // 调用方持有 this
+    private void deleteSegment(long seq) {
+        List<String> gameIds = segments.remove(seq);
+        for (String gameId : gameIds) {
+            Location location = byGame.remove(gameId);
+            if (location == null) {
+                continue;
+            }
+            removeFrom(byRoom, location.roomId, gameId);
+            for (Long userId : location.userIds) {
+                removeFrom(byUser, userId, gameId);
+            }
+        }
+        try {
+            Files.deleteIfExists(segmentPath(seq));
+            deletedSegments.increment();
+        } catch (IOException e) {
+            failures.increment();
+            logger.warn("删除旧的回放段 {} 失败", seq, e);
+        }
+    }
+
+    // 最旧的记录在列表前部，删除段时通常只移动很少的元素
+    private static <K> void removeFrom(Map<K, List<String>> index, K key, String gameId) {
+        List<String> gameIds = index.get(key);
+        if (gameIds != null) {
+            gameIds.remove(gameId);
+            if (gameIds.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    private List<Long> listSegments() throws IOException {
+        List<Long> seqs = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .forEach(name -> {
+                        try {
+                            seqs.add(Long.parseLong(
+                                    name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                        } catch (NumberFormatException e) {
+                            logger.warn("忽略无法识别的回放文件 {}", name);
+                        }
+                    });
+        }
+        Collections.sort(seqs);
+        return seqs;
+    }
+
+    private Path segmentPath(long seq) {
+        return dir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, seq, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * 导出统计快照：写入的局数和字节数、段数、索引中的局数。
+     */
+    public Map<String, Object> metrics() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("appended", appended.sum());
+        result.put("appendedBytes", appendedBytes.sum());
+        result.put("avgBytesPerGame", appended.sum() == 0 ? 0 : appendedBytes.sum() / appended.sum());
+        result.put("deletedSegments", deletedSegments.sum());
+        result.put("failures", failures.sum());
+        synchronized (this) {
+            result.put("segments", segments.size());
+            result.put("games", byGame.size());
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (current != null) {
+            try {
+                current.force(false);
+                current.close();
+            } catch (IOException e) {
+                logger.warn("关闭回放段失败", e);
+            }
+            current = null;
+        }
+    }
+
+    private static final class Location {
+        final long seq;
+        final long offset;
+        final int length;
+        final String roomId;
+        final List<Long> userIds;
+
+        Location(long seq, long offset, int length, String roomId, List<Long> userIds) {
+            this.seq = seq;
+            this.offset = offset;
+            this.length = length;
+            this.roomId = roomId;
+            this.userIds = userIds;
+        }
+    }
+}
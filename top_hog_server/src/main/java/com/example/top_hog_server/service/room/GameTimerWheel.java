@@ -0,0 +1,446 @@
+package com.example.top_hog_server.service.room;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 游戏计时器（哈希时间轮）。
+ * <p>
+ * 用于选择牌列超时、机器人出牌延迟、回合切换延迟和房间销毁检查。与基于堆的 ScheduledExecutor 相比：
+ * <ul>
+ *     <li>调度和取消都是 O(1)：调度只是入队，由时间轮线程每个 tick 批量放入槽位；取消只做 CAS 并登记，
+ *     由时间轮线程从槽位的双向链表中摘除。</li>
+ *     <li>计时器按 (roomId, key) 登记。同一个 key 再次调度时替换旧的计时器（{@link #schedule}），
+ *     或在已有计时器时直接复用（{@link #scheduleIfAbsent}），避免每次广播都堆积一个机器人检查任务。</li>
+ *     <li>同一 tick 到期的同一房间的计时器合并为一个任务，投递到分发线程池顺序执行，时间轮线程本身不执行业务逻辑。</li>
+ * </ul>
+ * 超过一圈的延迟记录剩余圈数（与 Netty HashedWheelTimer 相同）。精度为一个 tick。
+ */
+@Component
+public class GameTimerWheel {
+
+    private static final Logger logger = LoggerFactory.getLogger(GameTimerWheel.class);
+
+    // 每个 tick 最多从队列转移的新计时器数，防止调度风暴时 tick 被拖长
+    private static final int MAX_TRANSFER_PER_TICK = 100_000;
+
+    private final long tickNanos;
+    private final int mask;
+    private final Bucket[] wheel;
+    private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+    // roomId -> (key -> 计时器)，只在 ConcurrentHashMap 的 compute 系列方法中读写内层 Map
+    private final Map<String, Map<String, Timeout>> roomTimers = new ConcurrentHashMap<>();
+    private final ExecutorService dispatcher;
+    private final Thread worker;
+    private final long startTime;
+    private volatile boolean running = true;
+
+    // 统计
+    private final AtomicLong pending = new AtomicLong();
+    private final LongAdder fired = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder totalLagNanos = new LongAdder();
+    private final AtomicLong maxLagNanos = new AtomicLong();
+
+    @Autowired
+    public GameTimerWheel(@Value("${game.timer.tickMs:10}") long tickMs,
+            @Value("${game.timer.wheelSize:512}") int wheelSize,
+            @Value("${game.timer.dispatchThreads:4}") int dispatchThreads) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMs));
+        int size = Integer.highestOneBit(Math.max(16, wheelSize) - 1) << 1;
+        this.mask = size - 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.dispatcher = Executors.newFixedThreadPool(Math.max(1, dispatchThreads), r -> {
+            Thread t = new Thread(r, "game-timer-dispatch-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.startTime = System.nanoTime();
+        this.worker = new Thread(this::run, "game-timer-wheel");
+        this.worker.setDaemon(true);
+        this.worker.start();
+        logger.info("游戏计时器时间轮已启动：tick {}ms，槽位 {}，分发线程 {}", tickMs, size, dispatchThreads);
+    }
+
+    /**
+     * 调度房间计时器；同一 (roomId, key) 已有计时器时先取消旧的。
+     */
+    public Timeout schedule(String roomId, String key, long delayMs, Runnable task) {
+        Timeout timeout = newTimeout(roomId, key, delayMs, task);
+        Timeout[] previous = new Timeout[1];
+        roomTimers.compute(roomId, (id, timers) -> {
+            Map<String, Timeout> map = timers != null ? timers : new HashMap<>();
+            previous[0] = map.put(key, timeout);
+            return map;
+        });
+        if (previous[0] != null) {
+            previous[0].cancelInternal();
+        }
+        submit(timeout);
+        return timeout;
+    }
+
+    /**
+     * 仅当 (roomId, key) 没有等待中的计时器时才调度，否则返回已有的计时器（合并重复调度）。
+     */
+    public Timeout scheduleIfAbsent(String roomId, String key, long delayMs, Runnable task) {
+        Timeout candidate = newTimeout(roomId, key, delayMs, task);
+        Timeout[] result = new Timeout[1];
+        roomTimers.compute(roomId, (id, timers) -> {
+            Map<String, Timeout> map = timers != null ? timers : new HashMap<>();
+            Timeout existing = map.get(key);
+            if (existing != null && existing.isPending()) {
+                result[0] = existing;
+            } else {
+                map.put(key, candidate);
+                result[0] = candidate;
+            }
+            return map;
+        });
+        if (result[0] == candidate) {
+            submit(candidate);
+        }
+        return result[0];
+    }
+
+    /**
+     * 取消指定计时器。
+     *
+     * @return 是否取消了一个尚未触发的计时器
+     */
+    public boolean cancel(String roomId, String key) {
+        Timeout[] removed = new Timeout[1];
+        roomTimers.computeIfPresent(roomId, (id, timers) -> {
+            removed[0] = timers.remove(key);
+            return timers.isEmpty() ? null : timers;
+        });
+        return removed[0] != null && removed[0].cancelInternal();
+    }
+
+    /**
+     * 取消房间内 key 以指定前缀开头的所有计时器。
+     *
+     * @return 取消的数量
+     */
+    public int cancelAll(String roomId, String keyPrefix) {
+        List<Timeout> removed = new ArrayList<>();
+        roomTimers.computeIfPresent(roomId, (id, timers) -> {
+            timers.entrySet().removeIf(entry -> {
+                if (entry.getKey().startsWith(keyPrefix)) {
+                    removed.add(entry.getValue());
+                    return true;
+                }
+                return false;
+            });
+            return timers.isEmpty() ? null : timers;
+        });
+        int count = 0;
+        for (Timeout timeout : removed) {
+            if (timeout.cancelInternal()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 房间销毁时取消其全部计时器。
+     */
+    public int cancelRoom(String roomId) {
+        return cancelAll(roomId, "");
+    }
+
+    public boolean hasPending(String roomId, String key) {
+        Timeout[] found = new Timeout[1];
+        roomTimers.computeIfPresent(roomId, (id, timers) -> {
+            found[0] = timers.get(key);
+            return timers;
+        });
+        return found[0] != null && found[0].isPending();
+    }
+
+    /**
+     * 等待触发的计时器数。
+     */
+    public long getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * 导出统计快照：等待中的计时器数、已触发/已取消数量以及触发延迟（实际触发时间 - 截止时间）。
+     */
+    public Map<String, Object> metrics() {
+        long firedCount = fired.sum();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("tickMs", TimeUnit.NANOSECONDS.toMillis(tickNanos));
+        result.put("wheelSize", wheel.length);
+        result.put("pending", pending.get());
+        result.put("fired", firedCount);
+        result.put("cancelled", cancelled.sum());
+        result.put("avgLagMicros", firedCount == 0 ? 0 : totalLagNanos.sum() / firedCount / 1000);
+        result.put("maxLagMicros", maxLagNanos.get() / 1000);
+        return result;
+    }
+
+    private Timeout newTimeout(String roomId, String key, long delayMs, Runnable task) {
+        long deadline = System.nanoTime() - startTime + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMs));
+        return new Timeout(roomId, key, task, deadline);
+    }
+
+    private void submit(Timeout timeout) {
+        pending.incrementAndGet();
+        pendingTimeouts.add(timeout);
+    }
+
+    private void run() {
+        long tick = 0;
+        while (running) {
+            long deadline = waitForNextTick(tick);
+            if (deadline < 0) {
+                break;
+            }
+            removeCancelled();
+            transferPending(tick);
+            List<Timeout> expired = wheel[(int) (tick & mask)].expire(deadline);
+            if (!expired.isEmpty()) {
+                dispatch(expired);
+            }
+            tick++;
+        }
+    }
+
+    // 等待下一个 tick 的结束时间，返回相对 startTime 的时间；被关闭时返回 -1
+    private long waitForNextTick(long tick) {
+        long deadline = tickNanos * (tick + 1);
+        while (true) {
+            long sleepNanos = deadline - (System.nanoTime() - startTime);
+            if (sleepNanos <= 0) {
+                return deadline;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    return -1;
+                }
+            }
+        }
+    }
+
+    private void transferPending(long tick) {
+        for (int i = 0; i < MAX_TRANSFER_PER_TICK; i++) {
+            Timeout timeout = pendingTimeouts.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (!timeout.isPending()) {
+                continue;
+            }
+            long calculated = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+            // 已经过期的计时器放到当前槽位，本 tick 触发
+            long ticks = Math.max(calculated, tick);
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelledTimeouts.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    // 同一房间本 tick 到期的计时器合并为一个分发任务
+    private void dispatch(List<Timeout> expired) {
+        Map<String, List<Timeout>> byRoom = new LinkedHashMap<>();
+        for (Timeout timeout : expired) {
+            byRoom.computeIfAbsent(timeout.roomId, id -> new ArrayList<>(2)).add(timeout);
+        }
+        for (List<Timeout> timeouts : byRoom.values()) {
+            try {
+                dispatcher.execute(() -> {
+                    for (Timeout timeout : timeouts) {
+                        recordLag(timeout);
+                        try {
+                            timeout.task.run();
+                        } catch (Throwable t) {
+                            logger.error("房间 {} 的计时器 {} 执行异常", timeout.roomId, timeout.key, t);
+                        }
+                    }
+                });
+            } catch (RuntimeException e) {
+                logger.warn("计时器分发失败（可能正在关闭）: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void recordLag(Timeout timeout) {
+        long lag = Math.max(0, System.nanoTime() - startTime - timeout.deadline);
+        fired.increment();
+        totalLagNanos.add(lag);
+        maxLagNanos.accumulateAndGet(lag, Math::max);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        worker.interrupt();
+        dispatcher.shutdownNow();
+    }
+
+    /**
+     * 计时器句柄。
+     */
+    public final class Timeout {
+        private static final int ST_PENDING = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+
+        private final String roomId;
+        private final String key;
+        private final Runnable task;
+        // 相对 startTime 的截止时间
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(ST_PENDING);
+
+        // 以下字段只由时间轮线程访问
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(String roomId, String key, Runnable task, long deadline) {
+            this.roomId = roomId;
+            this.key = key;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        public boolean isPending() {
+            return state.get() == ST_PENDING;
+        }
+
+        /**
+         * 取消计时器并从房间登记中移除。
+         */
+        public boolean cancel() {
+            roomTimers.computeIfPresent(roomId, (id, timers) -> {
+                timers.remove(key, this);
+                return timers.isEmpty() ? null : timers;
+            });
+            return cancelInternal();
+        }
+
+        // 只改状态，不动房间登记（调用方已处理）
+        private boolean cancelInternal() {
+            if (!state.compareAndSet(ST_PENDING, ST_CANCELLED)) {
+                return false;
+            }
+            pending.decrementAndGet();
+            cancelled.increment();
+            cancelledTimeouts.add(this);
+            return true;
+        }
+
+        private boolean expire() {
+            if (!state.compareAndSet(ST_PENDING, ST_EXPIRED)) {
+                return false;
+            }
+            pending.decrementAndGet();
+            roomTimers.computeIfPresent(roomId, (id, timers) -> {
+                timers.remove(key, this);
+                return timers.isEmpty() ? null : timers;
+            });
+            return true;
+        }
+    }
+
+    /**
+     * 时间轮槽位：计时器的双向链表，只由时间轮线程访问。
+     */
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (next != null) {
+                next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        // 摘下本轮到期的计时器，其余计时器剩余圈数减一
+        List<Timeout> expire(long deadline) {
+            List<Timeout> expired = new ArrayList<>();
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (!timeout.isPending()) {
+                    remove(timeout);
+                } else if (timeout.remainingRounds <= 0 && timeout.deadline <= deadline) {
+                    remove(timeout);
+                    if (timeout.expire()) {
+                        expired.add(timeout);
+                    }
+                } else if (timeout.remainingRounds > 0) {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+            return expired;
+        }
+    }
+}
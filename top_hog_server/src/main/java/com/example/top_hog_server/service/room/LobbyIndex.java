@@ -0,0 +1,216 @@
+package com.example.top_hog_server.service.room;
+
+import com.example.top_hog_server.model.GameRoom;
+import com.example.top_hog_server.model.GameState;
+import com.example.top_hog_server.model.GameType;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 大厅索引：房间列表和快速匹配的查询结构。
+ * <p>
+ * 房间状态变化（创建、加入/离开、开局/结束、移除）时由 {@link #update} / {@link #remove} 维护，查询不再遍历全部房间：
+ * <ul>
+ *     <li>全部房间、可加入房间（WAITING 且有空位）各一个按 (创建时间, roomId) 排序的跳表，
+ *     列表用 {@link Cursor} 做键集分页，翻页期间有房间增删也不会重复或遗漏。</li>
+ *     <li>每种游戏类型的可加入公开房间按 (空位数, 创建时间, roomId) 排序，快速匹配直接取表头，
+ *     即空位最少（最接近开局）的房间中最早创建的一个。</li>
+ * </ul>
+ * 写操作串行执行，读操作无锁。索引记录的是更新时房间的状态，读取方使用前应再校验一次房间当前状态。
+ */
+public class LobbyIndex {
+
+    private static final Comparator<Entry> BY_CREATION =
+            Comparator.comparingLong((Entry e) -> e.createdAt).thenComparing(e -> e.roomId);
+    private static final Comparator<Entry> BY_OPEN_SEATS =
+            Comparator.comparingInt((Entry e) -> e.openSeats).thenComparing(BY_CREATION);
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Entry, GameRoom> allRooms = new ConcurrentSkipListMap<>(BY_CREATION);
+    private final ConcurrentSkipListMap<Entry, GameRoom> joinableRooms = new ConcurrentSkipListMap<>(BY_CREATION);
+    private final Map<GameType, ConcurrentSkipListMap<Entry, GameRoom>> quickMatchRooms = new ConcurrentHashMap<>();
+
+    /**
+     * 按房间当前状态更新索引；状态与已登记的一致时不做任何事。
+     */
+    public synchronized void update(GameRoom room) {
+        Entry entry = new Entry(room);
+        Entry previous = entries.get(entry.roomId);
+        if (entry.equals(previous)) {
+            return;
+        }
+        if (previous != null) {
+            unlink(previous);
+        }
+        entries.put(entry.roomId, entry);
+        allRooms.put(entry, room);
+        if (entry.joinable) {
+            joinableRooms.put(entry, room);
+            if (!entry.isPrivate) {
+                quickMatchRooms.computeIfAbsent(entry.gameType, t -> new ConcurrentSkipListMap<>(BY_OPEN_SEATS))
+                        .put(entry, room);
+            }
+        }
+    }
+
+    public synchronized void remove(String roomId) {
+        Entry previous = entries.remove(roomId);
+        if (previous != null) {
+            unlink(previous);
+        }
+    }
+
+    private void unlink(Entry entry) {
+        allRooms.remove(entry);
+        joinableRooms.remove(entry);
+        ConcurrentSkipListMap<Entry, GameRoom> bucket = quickMatchRooms.get(entry.gameType);
+        if (bucket != null) {
+            bucket.remove(entry);
+        }
+    }
+
+    /**
+     * 快速匹配候选：指定游戏类型中空位最少的公开可加入房间，没有时返回 null。
+     */
+    public GameRoom bestQuickMatch(GameType gameType) {
+        ConcurrentSkipListMap<Entry, GameRoom> bucket = quickMatchRooms.get(gameType);
+        if (bucket == null) {
+            return null;
+        }
+        Map.Entry<Entry, GameRoom> first = bucket.firstEntry();
+        return first != null ? first.getValue() : null;
+    }
+
+    /**
+     * 从 after 之后（不含）按创建时间取至多 limit 个房间。
+     *
+     * @param after 上一页的游标，为 null 时从头开始
+     */
+    public List<GameRoom> page(boolean onlyJoinable, Cursor after, int limit) {
+        NavigableMap<Entry, GameRoom> source = onlyJoinable ? joinableRooms : allRooms;
+        if (after != null) {
+            source = source.tailMap(after.toEntry(), false);
+        }
+        List<GameRoom> result = new ArrayList<>(Math.min(limit, 64));
+        for (GameRoom room : source.values()) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(room);
+        }
+        return result;
+    }
+
+    /**
+     * 跳过前 offset 个房间后取至多 limit 个（兼容按页码分页，offset 越大越慢）。
+     */
+    public List<GameRoom> pageByOffset(boolean onlyJoinable, int offset, int limit) {
+        NavigableMap<Entry, GameRoom> source = onlyJoinable ? joinableRooms : allRooms;
+        List<GameRoom> result = new ArrayList<>(Math.min(limit, 64));
+        int skipped = 0;
+        for (GameRoom room : source.values()) {
+            if (skipped < offset) {
+                skipped++;
+                continue;
+            }
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(room);
+        }
+        return result;
+    }
+
+    public int size(boolean onlyJoinable) {
+        return onlyJoinable ? joinableRooms.size() : allRooms.size();
+    }
+
+    /**
+     * 房间可被加入：等待中且有空位。
+     */
+    public static boolean isJoinable(GameRoom room) {
+        return room.getGameState() == GameState.WAITING && room.getCurrentPlayers() < room.getMaxPlayers();
+    }
+
+    /**
+     * 键集分页游标：上一页最后一个房间的 (创建时间, roomId)，文本形式为 "createdAt_roomId"。
+     */
+    public static final class Cursor {
+        private final long createdAt;
+        private final String roomId;
+
+        private Cursor(long createdAt, String roomId) {
+            this.createdAt = createdAt;
+            this.roomId = roomId;
+        }
+
+        public static Cursor after(GameRoom room) {
+            return new Cursor(room.getCreatedAtTimestamp(), room.getRoomId());
+        }
+
+        /**
+         * @throws IllegalArgumentException 游标格式不正确
+         */
+        public static Cursor parse(String text) {
+            int separator = text.indexOf('_');
+            if (separator <= 0 || separator == text.length() - 1) {
+                throw new IllegalArgumentException("Invalid cursor: " + text);
+            }
+            return new Cursor(Long.parseLong(text.substring(0, separator)), text.substring(separator + 1));
+        }
+
+        private Entry toEntry() {
+            return new Entry(roomId, createdAt, null, false, 0, false);
+        }
+
+        @Override
+        public String toString() {
+            return createdAt + "_" + roomId;
+        }
+    }
+
+    private static final class Entry {
+        final String roomId;
+        final long createdAt;
+        final GameType gameType;
+        final boolean isPrivate;
+        final int openSeats;
+        final boolean joinable;
+
+        Entry(GameRoom room) {
+            this(room.getRoomId(), room.getCreatedAtTimestamp(), room.getGameType(), room.isPrivate(),
+                    Math.max(0, room.getMaxPlayers() - room.getCurrentPlayers()), isJoinable(room));
+        }
+
+        Entry(String roomId, long createdAt, GameType gameType, boolean isPrivate, int openSeats, boolean joinable) {
+            this.roomId = roomId;
+            this.createdAt = createdAt;
+            this.gameType = gameType;
+            this.isPrivate = isPrivate;
+            this.openSeats = openSeats;
+            this.joinable = joinable;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry other = (Entry) o;
+            return createdAt == other.createdAt && isPrivate == other.isPrivate && openSeats == other.openSeats
+                    && joinable == other.joinable && roomId.equals(other.roomId) && gameType == other.gameType;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(roomId, createdAt, gameType, isPrivate, openSeats, joinable);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.top_hog_server.service.room;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 房间命令执行器。
+ * 保证同一个房间内的所有游戏逻辑串行执行，支持两种模式：
+ * <ul>
+ *     <li>锁模式（默认）：调用线程获取房间的 ReentrantLock 后同步执行，与原有行为一致。</li>
+ *     <li>Actor 模式：房间按 roomId 哈希分配到固定的单线程事件循环（分片），
+ *     调用线程只负责投递命令，不会阻塞在房间锁上。</li>
+ * </ul>
+ * 在房间所属的事件循环线程内再次投递命令时会直接内联执行，语义上等同于锁的可重入。
+ */
+@Component
+public class RoomExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoomExecutor.class);
+
+    private final boolean actorMode;
+    // Actor 模式下的事件循环分片，每个分片一个线程
+    private final ExecutorService[] shards;
+    // 记录每个分片对应的线程，用于判断是否已在房间所属线程中
+    private final Thread[] shardThreads;
+    // 锁模式下每个房间的锁
+    private final Map<String, Lock> roomLocks = new ConcurrentHashMap<>();
+    // 命令开始执行前的等待统计：锁模式为等锁时间，Actor 模式为在分片邮箱中的排队时间
+    private final LongAdder waitCount = new LongAdder();
+    private final LongAdder waitTotalNanos = new LongAdder();
+    private final AtomicLong waitMaxNanos = new AtomicLong();
+
+    @Autowired
+    public RoomExecutor(@Value("${game.room.actor.enabled:false}") boolean actorMode,
+            @Value("${game.room.actor.shards:0}") int shardCount) {
+        this.actorMode = actorMode;
+        if (actorMode) {
+            int count = shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors();
+            this.shards = new ExecutorService[count];
+            this.shardThreads = new Thread[count];
+            for (int i = 0; i < count; i++) {
+                final int shardIndex = i;
+                this.shards[i] = Executors.newSingleThreadExecutor(r -> {
+                    Thread t = new Thread(r, "game-room-actor-" + shardIndex);
+                    t.setDaemon(true);
+                    shardThreads[shardIndex] = t;
+                    return t;
+                });
+            }
+            logger.info("房间 Actor 模式已启用，事件循环分片数: {}", count);
+        } else {
+            this.shards = new ExecutorService[0];
+            this.shardThreads = new Thread[0];
+        }
+    }
+
+    public boolean isActorMode() {
+        return actorMode;
+    }
+
+    /**
+     * 在房间上下文中执行命令。
+     * 锁模式下同步执行；Actor 模式下投递到房间的邮箱后立即返回。
+     */
+    public void execute(String roomId, Runnable command) {
+        if (!actorMode) {
+            Lock lock = getRoomLock(roomId);
+            acquire(lock);
+            try {
+                command.run();
+            } finally {
+                lock.unlock();
+            }
+            return;
+        }
+        int shard = shardIndex(roomId);
+        if (Thread.currentThread() == shardThreads[shard]) {
+            command.run();
+            return;
+        }
+        long submittedAt = System.nanoTime();
+        shards[shard].execute(() -> {
+            recordWait(System.nanoTime() - submittedAt);
+            try {
+                command.run();
+            } catch (Exception e) {
+                logger.error("房间 {} 的命令执行失败", roomId, e);
+            }
+        });
+    }
+
+    /**
+     * 在房间上下文中执行并等待结果，异常会原样抛给调用方。
+     * 仅用于必须同步返回结果的调用（如 HTTP 接口），游戏热路径应使用 {@link #execute}。
+     */
+    public <T> T call(String roomId, Supplier<T> command) {
+        if (!actorMode) {
+            Lock lock = getRoomLock(roomId);
+            acquire(lock);
+            try {
+                return command.get();
+            } finally {
+                lock.unlock();
+            }
+        }
+        int shard = shardIndex(roomId);
+        if (Thread.currentThread() == shardThreads[shard]) {
+            return command.get();
+        }
+        long submittedAt = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                recordWait(System.nanoTime() - submittedAt);
+                return command.get();
+            }, shards[shard]).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待房间 " + roomId + " 的命令执行时被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    public long getWaitCount() {
+        return waitCount.sum();
+    }
+
+    public double getWaitTotalNanos() {
+        return waitTotalNanos.sum();
+    }
+
+    public long getWaitMaxNanos() {
+        return waitMaxNanos.get();
+    }
+
+    /**
+     * 房间销毁时释放相关资源。
+     */
+    public void release(String roomId) {
+        if (roomId != null) {
+            roomLocks.remove(roomId);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ExecutorService shard : shards) {
+            shard.shutdown();
+        }
+        for (ExecutorService shard : shards) {
+            try {
+                if (!shard.awaitTermination(5, TimeUnit.SECONDS)) {
+                    shard.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                shard.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // 无竞争时直接拿到锁，不读时钟；只有需要等待时才计时
+    private void acquire(Lock lock) {
+        if (lock.tryLock()) {
+            waitCount.increment();
+            return;
+        }
+        long start = System.nanoTime();
+        lock.lock();
+        recordWait(System.nanoTime() - start);
+    }
+
+    private void recordWait(long nanos) {
+        waitCount.increment();
+        waitTotalNanos.add(nanos);
+        if (nanos > waitMaxNanos.get()) {
+            waitMaxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    // 获取指定房间的锁，如果不存在则创建一个新的
+    private Lock getRoomLock(String roomId) {
+        return roomLocks.computeIfAbsent(roomId, k -> new ReentrantLock());
+    }
+
+    private int shardIndex(String roomId) {
+        return Math.floorMod(roomId.hashCode(), shards.length);
+    }
+}
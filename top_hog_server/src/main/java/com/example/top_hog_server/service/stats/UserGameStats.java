@@ -0,0 +1,94 @@
+package com.example.top_hog_server.service.stats;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 单个用户的累计战绩（不可变）：场次、胜场、总分、最高分、最低分。
+ * score 是牛头数，最高分即最差的一局。
+ */
+public final class UserGameStats {
+
+    public static final UserGameStats EMPTY = new UserGameStats(0, 0, 0, 0, 0);
+
+    private final int games;
+    private final int wins;
+    private final long totalScore;
+    private final int maxScore;
+    private final int minScore;
+
+    public UserGameStats(int games, int wins, long totalScore, int maxScore, int minScore) {
+        this.games = games;
+        this.wins = wins;
+        this.totalScore = totalScore;
+        this.maxScore = maxScore;
+        this.minScore = minScore;
+    }
+
+    /**
+     * 一局的战绩。
+     */
+    public static UserGameStats ofGame(int score, int rank) {
+        return new UserGameStats(1, rank == 1 ? 1 : 0, score, score, score);
+    }
+
+    /**
+     * 合并两份累计数据。
+     */
+    public UserGameStats plus(UserGameStats other) {
+        if (games == 0) {
+            return other;
+        }
+        if (other.games == 0) {
+            return this;
+        }
+        return new UserGameStats(games + other.games, wins + other.wins, totalScore + other.totalScore,
+                Math.max(maxScore, other.maxScore), Math.min(minScore, other.minScore));
+    }
+
+    public int getGames() {
+        return games;
+    }
+
+    public int getWins() {
+        return wins;
+    }
+
+    public long getTotalScore() {
+        return totalScore;
+    }
+
+    public int getMaxScore() {
+        return maxScore;
+    }
+
+    public int getMinScore() {
+        return minScore;
+    }
+
+    public double getAvgScore() {
+        return games > 0 ? (double) totalScore / games : 0;
+    }
+
+    /**
+     * 胜率（百分比）。
+     */
+    public double getWinRate() {
+        return games > 0 ? (double) wins / games * 100 : 0;
+    }
+
+    /**
+     * 转成接口返回的统计字段（与原先按明细计算的字段一致）。
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("totalGames", games);
+        stats.put("totalScore", (int) totalScore);
+        stats.put("avgScore", getAvgScore());
+        stats.put("wins", (long) wins);
+        stats.put("winRate", getWinRate());
+        stats.put("bestScore", maxScore);
+        stats.put("worstScore", minScore);
+        return stats;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.top_hog_server.service.wallet;
+
+/**
+ * 钱包币种，name() 即 transaction_log.currency 的取值。
+ */
+public enum WalletCurrency {
+    COINS("coins", "金币"),
+    DIAMONDS("diamonds", "钻石");
+
+    // user_balance 中的列名（固定取值，可直接拼进 SQL）
+    private final String column;
+    private final String displayName;
+
+    WalletCurrency(String column, String displayName) {
+        this.column = column;
+        this.displayName = displayName;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * 解析请求中的币种（COINS / DIAMONDS），无效时返回 null。
+     */
+    public static WalletCurrency parse(String value) {
+        for (WalletCurrency currency : values()) {
+            if (currency.name().equals(value)) {
+                return currency;
+            }
+        }
+        return null;
+    }
+}
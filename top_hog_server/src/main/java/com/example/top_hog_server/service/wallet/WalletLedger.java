@@ -0,0 +1,323 @@
+package com.example.top_hog_server.service.wallet;
+
+import com.example.top_hog_server.exception.BusinessException;
+import com.example.top_hog_server.exception.ErrorCode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 用户钱包（user_balance）与交易流水（transaction_log）的读写。
+ * <p>
+ * 余额只通过条件 SQL 原子修改，不再在内存中读-改-写：
+ * <ul>
+ *     <li>入账：INSERT ... ON DUPLICATE KEY UPDATE coins = coins + ?，余额记录不存在时一并创建。</li>
+ *     <li>扣款：UPDATE ... SET coins = coins - ? WHERE coins >= ?，影响 0 行即余额不足。</li>
+ * </ul>
+ * 修改后在同一事务内读回余额（行锁由本事务持有），流水的变动前/后余额据此计算。
+ * 余额的正确性只依赖这些条件 SQL，多个应用实例之间同样成立。
+ * <p>
+ * 单用户操作先取按用户 ID 分段的进程内锁，再开启事务，锁保持到提交之后：
+ * 热点账户的并发请求在应用内排队，不占用连接池里的连接去等待行锁。
+ * 调用方已在事务中时加入该事务，此时连接已被调用方占用，锁保持到调用方的事务结束，
+ * 其他请求不会读到尚未提交的余额；这类调用方在一个事务内只应修改一个用户的钱包。
+ * 批量发放（{@link #grantBatch}）按用户 ID 排序分批，每批一条多行 upsert 加一条多行流水 INSERT。
+ */
+@Component
+public class WalletLedger {
+
+    private static final Logger logger = LoggerFactory.getLogger(WalletLedger.class);
+
+    static final String CREDIT_SQL = "INSERT INTO user_balance (user_id, coins, diamonds, total_recharge, updated_at) "
+            + "VALUES (?, ?, ?, 0, ?) ON DUPLICATE KEY UPDATE coins = coins + VALUES(coins), "
+            + "diamonds = diamonds + VALUES(diamonds), updated_at = VALUES(updated_at)";
+    static final String CREDIT_ROW = "(?, ?, ?, 0, ?)";
+    static final String RECHARGE_TOTAL_SQL = "INSERT INTO user_balance (user_id, coins, diamonds, total_recharge, updated_at) "
+            + "VALUES (?, 0, 0, ?, ?) ON DUPLICATE KEY UPDATE total_recharge = total_recharge + VALUES(total_recharge), "
+            + "updated_at = VALUES(updated_at)";
+    static final String LEDGER_PREFIX = "INSERT INTO transaction_log "
+            + "(user_id, type, currency, amount, balance_before, balance_after, reason, order_no, created_at) VALUES ";
+    static final String LEDGER_ROW = "(?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ReentrantLock[] stripes;
+    private final int batchSize;
+
+    @Autowired
+    public WalletLedger(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            @Value("${wallet.lockStripes:256}") int lockStripes,
+            @Value("${wallet.batchSize:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        int n = Integer.highestOneBit(Math.max(1, lockStripes - 1)) << 1;
+        this.stripes = new ReentrantLock[n];
+        for (int i = 0; i < n; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * 入账并记一条流水。
+     *
+     * @return 入账后的余额
+     */
+    public long credit(Long userId, WalletCurrency currency, long amount, String type, String reason, String orderNo) {
+        if (amount < 0) {
+            throw new BusinessException(ErrorCode.INVALID_INPUT, "入账金额不能为负");
+        }
+        return withUserLock(userId, () -> {
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            try {
+                jdbcTemplate.update(CREDIT_SQL, userId,
+                        currency == WalletCurrency.COINS ? amount : 0L,
+                        currency == WalletCurrency.DIAMONDS ? amount : 0L, now);
+            } catch (DataIntegrityViolationException e) {
+                // user_balance.user_id 外键指向 Users
+                throw new BusinessException(ErrorCode.USER_NOT_FOUND, "用户不存在");
+            }
+            long after = balanceOf(userId, currency);
+            appendLedger(List.of(new Entry(userId, type, currency, amount, after - amount, after, reason, orderNo)), now);
+            return after;
+        });
+    }
+
+    /**
+     * 扣款并记一条流水，余额不足时抛出异常且不做任何修改。
+     *
+     * @return 扣款后的余额
+     */
+    public long debit(Long userId, WalletCurrency currency, long amount, String type, String reason) {
+        if (amount < 0) {
+            throw new BusinessException(ErrorCode.INVALID_INPUT, "扣款金额不能为负");
+        }
+        return withUserLock(userId, () -> {
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            String column = currency.getColumn();
+            int updated = jdbcTemplate.update("UPDATE user_balance SET " + column + " = " + column + " - ?, updated_at = ? "
+                    + "WHERE user_id = ? AND " + column + " >= ?", amount, now, userId, amount);
+            if (updated == 0) {
+                Long current = findBalance(userId, currency);
+                if (current == null) {
+                    throw new BusinessException(ErrorCode.RESOURCE_NOT_FOUND, "余额不存在");
+                }
+                throw new BusinessException(ErrorCode.INVALID_INPUT, currency.getDisplayName() + "余额不足");
+            }
+            long after = balanceOf(userId, currency);
+            appendLedger(List.of(new Entry(userId, type, currency, amount, after + amount, after, reason, null)), now);
+            return after;
+        });
+    }
+
+    /**
+     * 累加充值总额（余额记录不存在时创建）。
+     */
+    public void addTotalRecharge(Long userId, BigDecimal amount) {
+        withUserLock(userId, () -> jdbcTemplate.update(RECHARGE_TOTAL_SQL, userId, amount,
+                new Timestamp(System.currentTimeMillis())));
+    }
+
+    /**
+     * 批量发放（活动奖励等）：按用户 ID 排序、每 batchSize 个用户一个事务。
+     * 不存在的用户跳过；金额不大于 0 的条目忽略。
+     *
+     * @param amounts 用户ID -> 发放数量
+     * @return 实际入账的用户数
+     */
+    public int grantBatch(Map<Long, Long> amounts, WalletCurrency currency, String type, String reason) {
+        // 按 ID 顺序加行锁，避免并发批量发放之间死锁
+        TreeMap<Long, Long> sorted = new TreeMap<>();
+        amounts.forEach((userId, amount) -> {
+            if (userId != null && amount != null && amount > 0) {
+                sorted.put(userId, amount);
+            }
+        });
+        int granted = 0;
+        List<Long> chunk = new ArrayList<>(batchSize);
+        for (Long userId : sorted.keySet()) {
+            chunk.add(userId);
+            if (chunk.size() >= batchSize) {
+                granted += grantChunk(chunk, sorted, currency, type, reason);
+                chunk = new ArrayList<>(batchSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            granted += grantChunk(chunk, sorted, currency, type, reason);
+        }
+        logger.info("批量发放{}: {} 个用户, 原因={}", currency.getDisplayName(), granted, reason);
+        return granted;
+    }
+
+    private int grantChunk(List<Long> userIds, Map<Long, Long> amounts, WalletCurrency currency,
+            String type, String reason) {
+        Integer granted = transactionTemplate.execute(status -> {
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            Set<Long> existing = new HashSet<>();
+            jdbcTemplate.query("SELECT id FROM Users WHERE id IN (" + placeholders(userIds.size()) + ")",
+                    (RowCallbackHandler) rs -> existing.add(rs.getLong(1)), userIds.toArray());
+            List<Long> targets = new ArrayList<>(existing.size());
+            for (Long userId : userIds) {
+                if (existing.contains(userId)) {
+                    targets.add(userId);
+                }
+            }
+            if (targets.size() < userIds.size()) {
+                logger.warn("批量发放跳过 {} 个不存在的用户", userIds.size() - targets.size());
+            }
+            if (targets.isEmpty()) {
+                return 0;
+            }
+
+            StringBuilder sql = new StringBuilder("INSERT INTO user_balance (user_id, coins, diamonds, total_recharge, updated_at) VALUES ");
+            List<Object> args = new ArrayList<>(targets.size() * 4);
+            for (int i = 0; i < targets.size(); i++) {
+                Long userId = targets.get(i);
+                long amount = amounts.get(userId);
+                sql.append(i > 0 ? ", " : "").append(CREDIT_ROW);
+                args.add(userId);
+                args.add(currency == WalletCurrency.COINS ? amount : 0L);
+                args.add(currency == WalletCurrency.DIAMONDS ? amount : 0L);
+                args.add(now);
+            }
+            sql.append(" ON DUPLICATE KEY UPDATE coins = coins + VALUES(coins), "
+                    + "diamonds = diamonds + VALUES(diamonds), updated_at = VALUES(updated_at)");
+            jdbcTemplate.update(sql.toString(), args.toArray());
+
+            Map<Long, Long> after = new HashMap<>();
+            jdbcTemplate.query("SELECT user_id, " + currency.getColumn() + " FROM user_balance WHERE user_id IN ("
+                    + placeholders(targets.size()) + ")",
+                    (RowCallbackHandler) rs -> after.put(rs.getLong(1), rs.getLong(2)), targets.toArray());
+
+            List<Entry> entries = new ArrayList<>(targets.size());
+            for (Long userId : targets) {
+                long amount = amounts.get(userId);
+                long balanceAfter = after.get(userId);
+                entries.add(new Entry(userId, type, currency, amount, balanceAfter - amount, balanceAfter, reason, null));
+            }
+            appendLedger(entries, now);
+            return targets.size();
+        });
+        return granted != null ? granted : 0;
+    }
+
+    /**
+     * 当前余额，没有余额记录时返回 null。
+     */
+    public Long findBalance(Long userId, WalletCurrency currency) {
+        List<Long> result = jdbcTemplate.queryForList(
+                "SELECT " + currency.getColumn() + " FROM user_balance WHERE user_id = ?", Long.class, userId);
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    private long balanceOf(Long userId, WalletCurrency currency) {
+        Long balance = findBalance(userId, currency);
+        if (balance == null) {
+            throw new IllegalStateException("余额记录不存在: userId=" + userId);
+        }
+        return balance;
+    }
+
+    private void appendLedger(List<Entry> entries, Timestamp now) {
+        StringBuilder sql = new StringBuilder(LEDGER_PREFIX.length() + entries.size() * (LEDGER_ROW.length() + 2));
+        sql.append(LEDGER_PREFIX);
+        List<Object> args = new ArrayList<>(entries.size() * 9);
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            sql.append(i > 0 ? ", " : "").append(LEDGER_ROW);
+            args.add(entry.userId);
+            args.add(entry.type);
+            args.add(entry.currency.name());
+            args.add(entry.amount);
+            args.add(entry.balanceBefore);
+            args.add(entry.balanceAfter);
+            args.add(entry.reason);
+            args.add(entry.orderNo);
+            args.add(now);
+        }
+        jdbcTemplate.update(sql.toString(), args.toArray());
+    }
+
+    /**
+     * 持有用户所在分段的锁执行一个事务，锁覆盖到提交；加入调用方的事务时保持到该事务结束。
+     */
+    private <T> T withUserLock(Long userId, Supplier<T> action) {
+        ReentrantLock lock = stripes[stripeOf(userId)];
+        lock.lock();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    lock.unlock();
+                }
+            });
+            return transactionTemplate.execute(status -> action.get());
+        }
+        try {
+            return transactionTemplate.execute(status -> action.get());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isLocked(Long userId) {
+        return stripes[stripeOf(userId)].isLocked();
+    }
+
+    int stripeOf(Long userId) {
+        long h = userId * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & (stripes.length - 1);
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder(count * 3);
+        for (int i = 0; i < count; i++) {
+            sb.append(i > 0 ? ", ?" : "?");
+        }
+        return sb.toString();
+    }
+
+    private static final class Entry {
+        final Long userId;
+        final String type;
+        final WalletCurrency currency;
+        final long amount;
+        final long balanceBefore;
+        final long balanceAfter;
+        final String reason;
+        final String orderNo;
+
+        Entry(Long userId, String type, WalletCurrency currency, long amount, long balanceBefore, long balanceAfter,
+                String reason, String orderNo) {
+            this.userId = userId;
+            this.type = type;
+            this.currency = currency;
+            this.amount = amount;
+            this.balanceBefore = balanceBefore;
+            this.balanceAfter = balanceAfter;
+            this.reason = reason;
+            this.orderNo = orderNo;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.top_hog_server.handler;
+
+import com.example.top_hog_server.model.Card;
+import com.example.top_hog_server.model.GameRoom;
+import com.example.top_hog_server.model.GameState;
+import com.example.top_hog_server.model.Player;
+import com.example.top_hog_server.payload.dto.response.GameRoomDTO;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameStateFrameEncoderTest {
+
+    private static final String MESSAGE = "Alice 已出牌。";
+
+    private ObjectMapper objectMapper;
+    private GameStateFrameEncoder encoder;
+    private GameRoom room;
+    private Player alice;
+    private Player bob;
+
+    @BeforeEach
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        encoder = new GameStateFrameEncoder(objectMapper, new CborMessageCodec(objectMapper));
+
+        room = new GameRoom("R1", "Test \"Room\"");
+        room.setGameState(GameState.PLAYING);
+        room.setCurrentTurnNumber(3);
+        room.getRows().get(0).addCard(new Card(10, 3));
+        room.getRows().get(1).addCard(new Card(55, 7));
+
+        alice = new Player("s1", 1L, "Alice", 0);
+        alice.addCardToHand(new Card(12, 1));
+        alice.addCardToHand(new Card(90, 3));
+        bob = new Player("s2", 2L, "Bob", 1);
+        bob.addCardToHand(new Card(33, 5));
+        Player bot = new Player("bot1", "Bot");
+        bot.setRobot(true);
+
+        room.getPlayers().put("s1", alice);
+        room.getPlayers().put("s2", bob);
+        room.getPlayers().put("bot1", bot);
+        room.getPlayedCardsThisTurn().put("s1", new Card(44, 5));
+    }
+
+    @Test
+    public void testFrameMatchesPerPlayerDtoSerialization() throws Exception {
+        GameStateFrameEncoder.GameStateFrames frames = encoder.encode(room, MESSAGE);
+
+        assertEquals(expected(alice), objectMapper.readTree(frames.frameFor(alice).getPayload()));
+        assertEquals(expected(bob), objectMapper.readTree(frames.frameFor(bob).getPayload()));
+    }
+
+    @Test
+    public void testOwnFaceDownCardOnlyVisibleToOwner() throws Exception {
+        GameStateFrameEncoder.GameStateFrames frames = encoder.encode(room, "msg");
+
+        JsonNode forAlice = objectMapper.readTree(frames.frameFor(alice).getPayload());
+        JsonNode forBob = objectMapper.readTree(frames.frameFor(bob).getPayload());
+
+        assertEquals(44, forAlice.at("/roomState/playedCardsThisTurn/s1/number").asInt());
+        assertEquals(-1, forBob.at("/roomState/playedCardsThisTurn/s1/number").asInt());
+        assertTrue(forBob.at("/roomState/players/s1/hand").isNull());
+    }
+
+    @Test
+    public void testPublicFrameIsReused() throws Exception {
+        GameStateFrameEncoder.GameStateFrames frames = encoder.encode(room, "msg");
+
+        assertSame(frames.publicFrame(), frames.frameFor(new Player("spectator", "Guest")));
+    }
+
+    @Test
+    public void testBinaryFrameMatchesJsonWithEnumOrdinals() throws Exception {
+        GameStateFrameEncoder.GameStateFrames frames = encoder.encode(room, MESSAGE);
+
+        BinaryMessage binary = frames.binaryFrameFor(alice);
+        JsonNode decoded = new ObjectMapper(new CBORFactory()).readTree(binary.getPayload().array());
+        ObjectNode expected = (ObjectNode) expected(alice);
+        // 二进制帧中的枚举写为序号
+        ((ObjectNode) expected.get("roomState")).put("gameState", GameState.PLAYING.ordinal());
+        assertEquals(expected, objectMapper.readTree(decoded.toString()));
+        assertTrue(binary.getPayloadLength() < frames.frameFor(alice).getPayloadLength());
+
+        assertSame(frames.binaryFrameFor(null), frames.binaryFrameFor(new Player("spectator", "Guest")));
+    }
+
+    private JsonNode expected(Player recipient) throws Exception {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("type", "gameStateUpdate");
+        payload.put("message", MESSAGE);
+        payload.put("roomState", GameRoomDTO.from(room, String.valueOf(recipient.getUserId())));
+        // 经过一次文本序列化，使 long 字段与解析帧得到的数值节点类型一致
+        return objectMapper.readTree(objectMapper.writeValueAsString(payload));
+    }
+}
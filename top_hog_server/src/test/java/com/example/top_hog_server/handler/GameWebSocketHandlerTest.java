@@ -1,11 +1,14 @@
 package com.example.top_hog_server.handler;
 
+import com.example.top_hog_server.handler.inbound.InboundMessageRegistry;
 import com.example.top_hog_server.model.GameRoom;
 import com.example.top_hog_server.model.Player;
 import com.example.top_hog_server.model.User;
 import com.example.top_hog_server.repository.UserRepository;
 import com.example.top_hog_server.service.GameLogicService;
+import com.example.top_hog_server.service.metrics.GameMetrics;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -16,8 +19,10 @@ import org.springframework.web.socket.WebSocketSession;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -35,6 +40,8 @@ public class GameWebSocketHandlerTest {
 
     private GameWebSocketHandler gameWebSocketHandler;
     private ObjectMapper objectMapper;
+    private SimpleMeterRegistry meterRegistry;
+    private GameMetrics gameMetrics;
 
     // Must match UserHandshakeInterceptorRaw.USER_IDENTIFIER_SESSION_KEY
     private static final String USER_IDENTIFIER_SESSION_KEY = "userIdentifier_websocket_session_attr";
@@ -42,7 +49,11 @@ public class GameWebSocketHandlerTest {
     @BeforeEach
     public void setUp() {
         objectMapper = new ObjectMapper();
-        gameWebSocketHandler = new GameWebSocketHandler(gameLogicService, userRepository, objectMapper);
+        meterRegistry = new SimpleMeterRegistry();
+        gameMetrics = new GameMetrics(meterRegistry);
+        gameWebSocketHandler = new GameWebSocketHandler(gameLogicService, userRepository, objectMapper,
+                gameMetrics, new InboundMessageRegistry(objectMapper),
+                new CborMessageCodec(objectMapper), true, 524288, 5000, 1);
     }
 
     @Test
@@ -99,5 +110,36 @@ public class GameWebSocketHandlerTest {
 
         // Assert
         verify(gameLogicService).togglePlayerAutoPlay(roomId, sessionId);
+        assertEquals(1.0, meterRegistry.get("game.ws.inbound").tag("type", "toggleAutoPlay").counter().count());
+    }
+
+    @Test
+    public void testInboundCountersFollowDispatchTable() {
+        // 分发表里的每种类型启动时就有计数器
+        for (String type : List.of("joinRoom", "playCard", "selectRow", "toggleHosting", "leaveRoom")) {
+            assertEquals(0.0, meterRegistry.get("game.ws.inbound").tag("type", type).counter().count());
+        }
+        assertEquals(0.0, meterRegistry.get("game.ws.inbound").tag("type", GameMetrics.UNKNOWN_MESSAGE_TYPE)
+                .counter().count());
+    }
+
+    @Test
+    public void testBinarySubProtocolOffered() {
+        assertEquals(List.of(CborMessageCodec.SUBPROTOCOL), gameWebSocketHandler.getSubProtocols());
+    }
+
+    @Test
+    public void testPlayCardWithTypeAfterData() throws Exception {
+        Long userId = 1L;
+        // type 不在第一个字段，嵌套的 data 中带有多余字段
+        String payload = "{\"roomId\":\"123\",\"data\":{\"cardNumber\":42,\"extra\":{\"a\":[1,2]}},\"type\":\"playCard\"}";
+
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(USER_IDENTIFIER_SESSION_KEY, userId);
+        when(session.getAttributes()).thenReturn(attributes);
+
+        gameWebSocketHandler.handleTextMessage(session, new TextMessage(payload));
+
+        verify(gameLogicService).playerPlaysCardRaw("123", session, userId, 42);
     }
 }
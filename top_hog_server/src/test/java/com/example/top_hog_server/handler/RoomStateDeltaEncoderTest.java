@@ -0,0 +1,147 @@
+package com.example.top_hog_server.handler;
+
+import com.example.top_hog_server.model.Card;
+import com.example.top_hog_server.model.GameRoom;
+import com.example.top_hog_server.model.GameState;
+import com.example.top_hog_server.model.Player;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RoomStateDeltaEncoderTest {
+
+    private ObjectMapper objectMapper;
+    private RoomStateDeltaEncoder encoder;
+    private GameRoom room;
+    private Player alice;
+    private Player bob;
+
+    @BeforeEach
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        encoder = new RoomStateDeltaEncoder(objectMapper, new CborMessageCodec(objectMapper));
+
+        room = new GameRoom("R1", "Test Room");
+        room.setGameState(GameState.PLAYING);
+        room.getRows().get(0).addCard(new Card(10, 3));
+
+        alice = new Player("s1", 1L, "Alice", 0);
+        alice.addCardToHand(new Card(12, 1));
+        alice.addCardToHand(new Card(44, 5));
+        bob = new Player("s2", 2L, "Bob", 1);
+        bob.addCardToHand(new Card(33, 5));
+        room.getPlayers().put("s1", alice);
+        room.getPlayers().put("s2", bob);
+    }
+
+    @Test
+    public void testFirstBroadcastHasNoPatchBaseline() throws Exception {
+        RoomStateDeltaEncoder.RoomDelta first = encoder.encode(room, "start");
+        RoomStateDeltaEncoder.RoomDelta second = encoder.encode(room, "again");
+
+        assertFalse(first.hasPatch());
+        assertEquals(1, first.getVersion());
+        assertTrue(second.hasPatch());
+        assertEquals(2, second.getVersion());
+        assertEquals(2, room.getStateVersion());
+    }
+
+    @Test
+    public void testPatchContainsOnlyChangedState() throws Exception {
+        encoder.encode(room, "start");
+        room.getRows().get(0).addCard(new Card(11, 5));
+        bob.setScore(7);
+
+        JsonNode patch = objectMapper.readTree(encoder.encode(room, "msg").frameFor("s2").getPayload());
+
+        assertEquals("roomPatch", patch.get("type").asText());
+        assertEquals(1, patch.get("baseVersion").asLong());
+        assertEquals(2, patch.get("version").asLong());
+        assertEquals(2, patch.get("events").size());
+
+        JsonNode scoreChanged = patch.at("/events/0");
+        assertEquals("scoreChanged", scoreChanged.get("type").asText());
+        assertEquals("s2", scoreChanged.get("sessionId").asText());
+        assertEquals(7, scoreChanged.get("score").asInt());
+
+        JsonNode cardPlaced = patch.at("/events/1");
+        assertEquals("cardPlaced", cardPlaced.get("type").asText());
+        assertEquals(1, cardPlaced.get("cards").size());
+        assertEquals(11, cardPlaced.at("/cards/0/number").asInt());
+        assertEquals(8, cardPlaced.get("totalBullheads").asInt());
+    }
+
+    @Test
+    public void testFaceDownCardAndHandOnlyVisibleToOwner() throws Exception {
+        encoder.encode(room, "start");
+        Card played = alice.getHand().remove(1);
+        room.getPlayedCardsThisTurn().put("s1", played);
+
+        RoomStateDeltaEncoder.RoomDelta delta = encoder.encode(room, "Alice 已出牌。");
+        JsonNode forAlice = objectMapper.readTree(delta.frameFor("s1").getPayload());
+        JsonNode forBob = objectMapper.readTree(delta.frameFor("s2").getPayload());
+
+        assertEquals(44, forAlice.at("/events/0/card/number").asInt());
+        assertEquals("handChanged", forAlice.at("/events/1/type").asText());
+        assertEquals(1, forAlice.at("/events/1/hand").size());
+        assertEquals(-1, forBob.at("/events/0/card/number").asInt());
+        assertEquals(1, forBob.get("events").size());
+    }
+
+    @Test
+    public void testBinaryPatchMatchesJsonPatch() throws Exception {
+        encoder.encode(room, "start");
+        room.getPlayedCardsThisTurn().put("s1", alice.getHand().remove(1));
+        bob.setScore(7);
+        RoomStateDeltaEncoder.RoomDelta delta = encoder.encode(room, "Alice 已出牌。");
+
+        ObjectMapper cbor = new ObjectMapper(new CBORFactory());
+        for (String sessionId : List.of("s1", "s2")) {
+            JsonNode json = objectMapper.readTree(delta.frameFor(sessionId).getPayload());
+            JsonNode binary = cbor.readTree(delta.binaryFrameFor(sessionId).getPayload().array());
+            assertEquals(json, objectMapper.readTree(binary.toString()), sessionId);
+        }
+        // 没有私有事件的会话共用同一个二进制帧
+        assertSame(delta.binaryFrameFor("spectator"), delta.binaryFrameFor("s3"));
+
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("s2");
+        assertTrue(delta.frameFor(session) instanceof TextMessage);
+        when(session.getAcceptedProtocol()).thenReturn(CborMessageCodec.SUBPROTOCOL);
+        assertTrue(delta.frameFor(session) instanceof BinaryMessage);
+    }
+
+    @Test
+    public void testPatchAppliesOnlyToDeltaSessionsAtBaseVersion() throws Exception {
+        Map<String, Object> attributes = new HashMap<>();
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getAttributes()).thenReturn(attributes);
+
+        encoder.encode(room, "start");
+        RoomStateDeltaEncoder.RoomDelta delta = encoder.encode(room, "msg");
+        assertFalse(delta.appliesTo(session));
+
+        attributes.put(UserHandshakeInterceptorRaw.DELTA_PROTOCOL_SESSION_KEY, Boolean.TRUE);
+        assertFalse(delta.appliesTo(session));
+
+        RoomStateDeltaEncoder.markSent(session, 1L);
+        assertTrue(delta.appliesTo(session));
+
+        // 版本缺口：客户端持有的版本不是补丁基线
+        RoomStateDeltaEncoder.markSent(session, 0L);
+        assertFalse(delta.appliesTo(session));
+    }
+}
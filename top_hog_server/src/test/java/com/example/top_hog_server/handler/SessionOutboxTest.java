@@ -0,0 +1,298 @@
+package com.example.top_hog_server.handler;
+
+import jakarta.websocket.Session;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.standard.StandardWebSocketSession;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SessionOutboxTest {
+
+    // 手动驱动的写线程：测试决定何时运行发送任务
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+    // 手动驱动的关闭线程
+    private final ArrayDeque<Runnable> closes = new ArrayDeque<>();
+
+    private void runTasks() {
+        while (!tasks.isEmpty()) {
+            tasks.poll().run();
+        }
+    }
+
+    private void runCloses() {
+        while (!closes.isEmpty()) {
+            closes.poll().run();
+        }
+    }
+
+    private static TextMessage text(String payload) {
+        return new TextMessage(payload);
+    }
+
+    private static List<String> payloads(FakeSession session) {
+        List<String> result = new ArrayList<>();
+        for (WebSocketMessage<?> message : session.sent) {
+            result.add((String) message.getPayload());
+        }
+        return result;
+    }
+
+    @Test
+    public void testMessagesSentInOrderByOneWriter() {
+        FakeSession session = new FakeSession();
+        SessionOutbox outbox = new SessionOutbox(session, tasks::add, closes::add, 4096, 1000);
+
+        assertEquals(SessionOutbox.Result.QUEUED, outbox.offer(text("a"), false, false));
+        assertEquals(SessionOutbox.Result.QUEUED, outbox.offer(text("b"), true, false));
+        assertEquals(SessionOutbox.Result.QUEUED, outbox.offer(text("c"), false, false));
+        // 只提交一个发送任务
+        assertEquals(1, tasks.size());
+        assertEquals(3, outbox.getQueuedBytes());
+
+        runTasks();
+        assertEquals(List.of("a", "b", "c"), payloads(session));
+        assertEquals(0, outbox.getQueuedBytes());
+    }
+
+    @Test
+    public void testSnapshotReplacesPendingStateFrames() {
+        FakeSession session = new FakeSession();
+        SessionOutbox outbox = new SessionOutbox(session, tasks::add, closes::add, 4096, 1000);
+
+        outbox.offer(text("patch-1"), true, false);
+        outbox.offer(text("chat"), false, false);
+        outbox.offer(text("patch-2"), true, false);
+        assertTrue(outbox.hasPendingState());
+        assertEquals(SessionOutbox.Result.COALESCED, outbox.offer(text("snapshot-3"), true, true));
+
+        runTasks();
+        assertEquals(List.of("chat", "snapshot-3"), payloads(session));
+        assertFalse(outbox.hasPendingState());
+    }
+
+    @Test
+    public void testLongQueueYieldsWriter() {
+        FakeSession session = new FakeSession();
+        SessionOutbox outbox = new SessionOutbox(session, tasks::add, closes::add, 4096, 1000);
+        for (int i = 0; i < SessionOutbox.BATCH + 4; i++) {
+            outbox.offer(text("m" + i), false, false);
+        }
+
+        tasks.poll().run();
+        assertEquals(SessionOutbox.BATCH, session.sent.size());
+        assertEquals(1, tasks.size(), "剩余的消息应重新排队发送");
+        runTasks();
+        assertEquals(SessionOutbox.BATCH + 4, session.sent.size());
+    }
+
+    @Test
+    public void testBufferLimitReportsOverflow() {
+        FakeSession session = new FakeSession();
+        SessionOutbox outbox = new SessionOutbox(session, tasks::add, closes::add, 1024, 1000);
+        String big = "x".repeat(600);
+
+        assertEquals(SessionOutbox.Result.QUEUED, outbox.offer(text(big), false, false));
+        assertEquals(SessionOutbox.Result.OVERFLOW, outbox.offer(text(big), false, false));
+        // 快照取代积压的状态帧后不算超限
+        SessionOutbox states = new SessionOutbox(session, tasks::add, closes::add, 1024, 1000);
+        states.offer(text(big), true, false);
+        assertEquals(SessionOutbox.Result.COALESCED, states.offer(text(big), true, true));
+
+        assertEquals(600, outbox.close());
+        assertEquals(SessionOutbox.Result.CLOSED, outbox.offer(text("a"), false, false));
+    }
+
+    @Test
+    public void testStuckSendIsLagging() throws Exception {
+        FakeSession session = new FakeSession();
+        session.gate = new CountDownLatch(1);
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        try {
+            SessionOutbox outbox = new SessionOutbox(session, writer, Runnable::run, 4096, 200);
+            outbox.offer(text("a"), false, false);
+            assertTrue(session.sending.await(5, TimeUnit.SECONDS));
+            assertFalse(outbox.isLagging(System.nanoTime()));
+
+            Thread.sleep(300);
+            assertTrue(outbox.isLagging(System.nanoTime()));
+            assertEquals(SessionOutbox.Result.OVERFLOW, outbox.offer(text("b"), false, false));
+        } finally {
+            session.gate.countDown();
+            writer.shutdown();
+        }
+    }
+
+    @Test
+    public void testCloseAfterFlushSendsQueuedMessagesFirst() {
+        FakeSession session = new FakeSession();
+        SessionOutbox outbox = new SessionOutbox(session, tasks::add, closes::add, 4096, 1000);
+        outbox.offer(text("kicked"), false, false);
+        outbox.closeAfterFlush(CloseStatus.NORMAL);
+        assertEquals(SessionOutbox.Result.CLOSED, outbox.offer(text("late"), false, false));
+
+        runTasks();
+        assertEquals(List.of("kicked"), payloads(session));
+        assertNull(session.closeStatus);
+        runCloses();
+        assertEquals(CloseStatus.NORMAL, session.closeStatus);
+    }
+
+    @Test
+    public void testSendFailureDropsQueue() {
+        FakeSession session = new FakeSession();
+        session.failSends = true;
+        SessionOutbox outbox = new SessionOutbox(session, tasks::add, closes::add, 4096, 1000);
+        outbox.offer(text("a"), false, false);
+        outbox.offer(text("b"), false, false);
+
+        runTasks();
+        assertEquals(0, outbox.getQueuedBytes());
+        assertEquals(SessionOutbox.Result.CLOSED, outbox.offer(text("c"), false, false));
+        // 关闭在关闭线程中执行，不占用写线程
+        assertNull(session.closeStatus);
+        runCloses();
+        assertEquals(CloseStatus.SESSION_NOT_RELIABLE, session.closeStatus);
+    }
+
+    @Test
+    public void testBlockingSendBoundedBySendTimeLimit() {
+        Map<String, Object> userProperties = new HashMap<>();
+        Session nativeSession = mock(Session.class);
+        when(nativeSession.getUserProperties()).thenReturn(userProperties);
+        StandardWebSocketSession session = new StandardWebSocketSession(new HttpHeaders(), new HashMap<>(), null, null);
+        session.initializeNativeSession(nativeSession);
+
+        new SessionOutbox(session, tasks::add, closes::add, 4096, 1500);
+
+        assertEquals(1500L, userProperties.get(SessionOutbox.BLOCKING_SEND_TIMEOUT));
+    }
+
+    private static final class FakeSession implements WebSocketSession {
+        final List<WebSocketMessage<?>> sent = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch sending = new CountDownLatch(1);
+        final Map<String, Object> attributes = new HashMap<>();
+        volatile CountDownLatch gate;
+        volatile boolean failSends;
+        volatile boolean open = true;
+        volatile CloseStatus closeStatus;
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            sending.countDown();
+            if (gate != null) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failSends) {
+                throw new IOException("broken pipe");
+            }
+            sent.add(message);
+        }
+
+        @Override
+        public String getId() {
+            return "s1";
+        }
+
+        @Override
+        public URI getUri() {
+            return null;
+        }
+
+        @Override
+        public HttpHeaders getHandshakeHeaders() {
+            return new HttpHeaders();
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return attributes;
+        }
+
+        @Override
+        public Principal getPrincipal() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return null;
+        }
+
+        @Override
+        public String getAcceptedProtocol() {
+            return null;
+        }
+
+        @Override
+        public void setTextMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getTextMessageSizeLimit() {
+            return 0;
+        }
+
+        @Override
+        public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getBinaryMessageSizeLimit() {
+            return 0;
+        }
+
+        @Override
+        public List<WebSocketExtension> getExtensions() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            close(CloseStatus.NORMAL);
+        }
+
+        @Override
+        public void close(CloseStatus status) {
+            open = false;
+            closeStatus = status;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.top_hog_server.handler.inbound;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InboundMessageRegistryTest {
+
+    private final InboundMessageRegistry registry = new InboundMessageRegistry(new ObjectMapper());
+
+    @Test
+    public void testHeaderReadWithoutBindingNestedData() throws Exception {
+        InboundMessageRegistry.Header header = registry.readHeader(
+                "{\"data\":{\"type\":\"nested\",\"roomId\":\"X\"},\"roomId\":\"R1\",\"type\":\"chat\"}");
+        assertEquals("chat", header.type());
+        assertEquals("R1", header.roomId());
+
+        InboundMessageRegistry.Header missing = registry.readHeader("{\"type\":5,\"roomId\":null}");
+        assertNull(missing.type());
+        assertNull(missing.roomId());
+
+        assertThrows(JsonProcessingException.class, () -> registry.readHeader("[\"chat\"]"));
+        assertThrows(JsonProcessingException.class, () -> registry.readHeader("{\"type\":"));
+    }
+
+    @Test
+    public void testDecodeValidateAndDispatch() throws Exception {
+        List<Integer> played = new ArrayList<>();
+        registry.register("playCard", GameCommand.PlayCard.class,
+                (session, userId, m) -> played.add(m.cardNumber()));
+
+        InboundMessageRegistry.Route<?> route = registry.route("playCard");
+        InboundMessage ok = route.decode(
+                "{\"type\":\"playCard\",\"roomId\":\"R1\",\"data\":{\"cardNumber\":42,\"ignored\":true},\"extra\":1}");
+        assertNull(ok.validate());
+        route.dispatch(null, 1L, ok);
+        assertEquals(List.of(42), played);
+
+        assertEquals("出牌请求缺少 roomId 或有效的 data 负载。",
+                route.decode("{\"type\":\"playCard\",\"roomId\":\"R1\"}").validate());
+        assertEquals("出牌请求中的 cardNumber 无效。",
+                route.decode("{\"type\":\"playCard\",\"roomId\":\"R1\",\"data\":{}}").validate());
+        // 小数不会被截断成整数
+        assertThrows(JsonProcessingException.class,
+                () -> route.decode("{\"type\":\"playCard\",\"roomId\":\"R1\",\"data\":{\"cardNumber\":4.5}}"));
+    }
+
+    @Test
+    public void testSelectRowAcceptsBothFormats() throws Exception {
+        registry.register("selectRow", GameCommand.SelectRow.class, (session, userId, m) -> {
+        });
+        InboundMessageRegistry.Route<?> route = registry.route("selectRow");
+
+        GameCommand.SelectRow direct = (GameCommand.SelectRow) route.decode("{\"roomId\":\"R1\",\"rowIndex\":2}");
+        assertEquals(2, direct.chosenRow());
+        GameCommand.SelectRow legacy =
+                (GameCommand.SelectRow) route.decode("{\"roomId\":\"R1\",\"data\":{\"chosenRowIndex\":3}}");
+        assertEquals(3, legacy.chosenRow());
+        assertEquals("选择牌列的消息中 rowIndex 无效。", route.decode("{\"roomId\":\"R1\"}").validate());
+        assertEquals("选择牌列的消息缺少 roomId。", route.decode("{\"rowIndex\":1}").validate());
+    }
+
+    @Test
+    public void testDuplicateTypeRejected() {
+        registry.register("joinRoom", GameCommand.JoinRoom.class, (session, userId, m) -> {
+        });
+        assertTrue(registry.isRegistered("joinRoom"));
+        assertFalse(registry.isRegistered("leaveRoom"));
+        assertNull(registry.route("leaveRoom"));
+        assertThrows(IllegalStateException.class, () -> registry.register("joinRoom", GameCommand.LeaveRoom.class,
+                (session, userId, m) -> {
+                }));
+    }
+}
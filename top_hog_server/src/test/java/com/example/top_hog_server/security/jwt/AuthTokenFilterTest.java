@@ -1,5 +1,6 @@
 package com.example.top_hog_server.security.jwt;
 
+import com.example.top_hog_server.security.services.PrincipalCache;
 import com.example.top_hog_server.security.services.UserDetailsServiceImpl;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.http.HttpServletRequest;
@@ -45,6 +46,7 @@ public class AuthTokenFilterTest {
     public void setUp() {
         // Since AuthTokenFilter uses field injection, we might need to set them manually if InjectMocks doesn't handle it or if we want to be sure.
         // But InjectMocks should work for the fields.
+        ReflectionTestUtils.setField(authTokenFilter, "principalCache", new PrincipalCache(60000, 100));
     }
 
     @Test
@@ -78,4 +80,19 @@ public class AuthTokenFilterTest {
         verify(userDetailsService, times(1)).loadUserByUsername("testuser");
         verify(filterChain, times(1)).doFilter(request, response);
     }
+
+    @Test
+    public void testDoFilterInternal_SameSubjectServedFromCache() throws Exception {
+        when(request.getHeader("Authorization")).thenReturn("Bearer test.token.jwt");
+        when(request.getServletPath()).thenReturn("/api/some/protected/resource");
+        when(jwtUtils.validateJwtToken("test.token.jwt")).thenReturn(true);
+        when(jwtUtils.getUserNameFromJwtToken("test.token.jwt")).thenReturn("testuser");
+        when(userDetailsService.loadUserByUsername("testuser")).thenReturn(userDetails);
+
+        authTokenFilter.doFilterInternal(request, response, filterChain);
+        authTokenFilter.doFilterInternal(request, response, filterChain);
+
+        verify(userDetailsService, times(1)).loadUserByUsername("testuser");
+        verify(filterChain, times(2)).doFilter(request, response);
+    }
 }
@@ -0,0 +1,75 @@
+package com.example.top_hog_server.security.services;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PrincipalCacheTest {
+
+    private static UserDetailsImpl principal(long id, String username) {
+        return new UserDetailsImpl(id, username, null, "pwd", username, null, null, null, null, null, 0, null);
+    }
+
+    @Test
+    public void testSecondLookupIsServedFromCache() {
+        PrincipalCache cache = new PrincipalCache(60000, 100);
+        AtomicInteger loads = new AtomicInteger();
+
+        UserDetails first = cache.get("alice", name -> {
+            loads.incrementAndGet();
+            return principal(1L, name);
+        });
+        UserDetails second = cache.get("alice", name -> {
+            loads.incrementAndGet();
+            return principal(1L, name);
+        });
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+        assertEquals(1L, cache.getHits());
+        assertEquals(1L, cache.getMisses());
+    }
+
+    @Test
+    public void testInvalidateUserForcesReload() {
+        PrincipalCache cache = new PrincipalCache(60000, 100);
+        cache.get("alice", name -> principal(1L, name));
+        cache.get("bob", name -> principal(2L, name));
+
+        cache.invalidateUser(1L);
+
+        assertEquals(1, cache.size());
+        AtomicInteger loads = new AtomicInteger();
+        cache.get("alice", name -> {
+            loads.incrementAndGet();
+            return principal(1L, name);
+        });
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        PrincipalCache cache = new PrincipalCache(60000, 10);
+        for (long i = 0; i < 50; i++) {
+            cache.get("user" + i, name -> principal(0L, name));
+        }
+        assertTrue(cache.size() <= 10);
+    }
+
+    @Test
+    public void testZeroTtlDisablesCaching() {
+        PrincipalCache cache = new PrincipalCache(0, 10);
+        AtomicInteger loads = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            cache.get("alice", name -> {
+                loads.incrementAndGet();
+                return principal(1L, name);
+            });
+        }
+        assertEquals(3, loads.get());
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.top_hog_server.service;
+
+import com.example.top_hog_server.model.Order;
+import com.example.top_hog_server.repository.OrderRepository;
+import com.example.top_hog_server.repository.TransactionLogRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class FinanceServiceTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private TransactionLogRepository transactionLogRepository;
+
+    @InjectMocks
+    private FinanceService financeService;
+
+    private static List<Order> orders(int fromId, int count, LocalDateTime createdAt) {
+        List<Order> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Order order = new Order();
+            order.setId((long) (fromId + i));
+            order.setOrderNo("NO" + (fromId + i));
+            order.setUserId(1L);
+            order.setProductName("钻石,礼包");
+            order.setAmount(new BigDecimal("6.00"));
+            order.setStatus("PAID");
+            order.setCreatedAt(createdAt);
+            result.add(order);
+        }
+        return result;
+    }
+
+    @Test
+    public void testExportPagesWithKeysetCursorAndGzip() throws Exception {
+        LocalDateTime time = LocalDate.of(2024, 5, 1).atTime(12, 0);
+        List<Order> first = orders(1, FinanceService.EXPORT_PAGE_SIZE, time);
+        List<Order> second = orders(1 + FinanceService.EXPORT_PAGE_SIZE, 3, time);
+        when(orderRepository.findPageAfter(any(), anyLong(), any(), any())).thenReturn(first, second);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = financeService.exportFinanceData(LocalDate.of(2024, 5, 1), LocalDate.of(2024, 5, 31), out, true);
+
+        assertEquals(FinanceService.EXPORT_PAGE_SIZE + 3, rows);
+        verify(orderRepository, times(2)).findPageAfter(any(), anyLong(), any(), any());
+        // 第二页从第一页最后一条之后开始
+        verify(orderRepository).findPageAfter(eq(time), eq((long) FinanceService.EXPORT_PAGE_SIZE), any(), any());
+
+        String csv = new String(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())).readAllBytes(),
+                StandardCharsets.UTF_8);
+        String[] lines = csv.split("\n");
+        assertEquals(FinanceService.EXPORT_PAGE_SIZE + 4, lines.length);
+        assertTrue(lines[0].startsWith("订单号,"));
+        assertTrue(lines[1].startsWith("NO1,1,\"钻石,礼包\",6.00,PAID,"));
+    }
+
+    @Test
+    public void testCsvEscaping() {
+        assertEquals("", FinanceService.csv(null));
+        assertEquals("plain", FinanceService.csv("plain"));
+        assertEquals("\"a,b\"", FinanceService.csv("a,b"));
+        assertEquals("\"say \"\"hi\"\"\"", FinanceService.csv("say \"hi\""));
+    }
+
+    @Test
+    public void testReconciliationMatchesByOrderNo() {
+        LocalDate date = LocalDate.of(2024, 5, 1);
+        List<Object[]> summary = new ArrayList<>();
+        summary.add(new Object[] {"PAID", 3L, new BigDecimal("18.00")});
+        summary.add(new Object[] {"PENDING", 1L, new BigDecimal("6.00")});
+        when(orderRepository.summarizeByStatus(any(), any())).thenReturn(summary);
+        when(orderRepository.findOrderNos(eq("PAID"), any(), any())).thenReturn(List.of("A", "B", "C"));
+        when(transactionLogRepository.findOrderNosWithType(eq("RECHARGE"), any())).thenReturn(List.of("A", "C"));
+
+        Map<String, Object> result = financeService.reconciliation(date);
+
+        assertEquals(4L, result.get("orderCount"));
+        assertEquals(3L, result.get("paidOrderCount"));
+        assertEquals(new BigDecimal("18.00"), result.get("orderTotalAmount"));
+        assertEquals(List.of("B"), result.get("unmatchedOrders"));
+        assertEquals(false, result.get("isBalanced"));
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.top_hog_server.service;
+
+import com.example.top_hog_server.model.GameConfiguration;
+import com.example.top_hog_server.repository.GameConfigurationRepository;
+import com.example.top_hog_server.service.config.GameConfigSnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class GameConfigurationServiceTest {
+
+    @Mock
+    private GameConfigurationRepository configRepository;
+
+    private GameConfigurationService configService;
+
+    @BeforeEach
+    public void setup() {
+        configService = new GameConfigurationService(configRepository);
+    }
+
+    private static GameConfiguration config(long id, String code, boolean enabled, int displayOrder, String specific) {
+        GameConfiguration config = new GameConfiguration();
+        config.setId(id);
+        config.setGameTypeCode(code);
+        config.setDisplayName(code);
+        config.setEnabled(enabled);
+        config.setDisplayOrder(displayOrder);
+        config.setGameSpecificConfig(specific);
+        return config;
+    }
+
+    @Test
+    public void testQueriesAreServedFromSnapshot() {
+        when(configRepository.findAll()).thenReturn(List.of(
+                config(1L, "top_hog", true, 2, "{\"playerChoiceTimeoutMs\": 15000}"),
+                config(2L, "example_game", true, 1, null),
+                config(3L, "disabled_game", false, 0, null)));
+        configService.reloadConfigurations();
+
+        for (int i = 0; i < 10; i++) {
+            List<GameConfiguration> enabled = configService.getAllEnabledGames();
+            assertEquals(2, enabled.size());
+            assertEquals("example_game", enabled.get(0).getGameTypeCode());
+            assertEquals("top_hog", enabled.get(1).getGameTypeCode());
+            assertTrue(configService.getGameConfiguration("disabled_game").isPresent());
+        }
+        assertFalse(configService.getGameConfiguration("missing").isPresent());
+        assertEquals(15000L, configService.getSnapshot().getLongSetting("top_hog", "playerChoiceTimeoutMs", 30000L));
+        assertEquals(30000L, configService.getSnapshot().getLongSetting("example_game", "playerChoiceTimeoutMs", 30000L));
+
+        verify(configRepository, times(1)).findAll();
+        verify(configRepository, never()).findByEnabledTrueOrderByDisplayOrder();
+        verify(configRepository, never()).findByGameTypeCode(any());
+    }
+
+    @Test
+    public void testUpdatePublishesNewVersionAndKeepsOldSnapshotIntact() {
+        when(configRepository.findAll()).thenReturn(List.of(
+                config(1L, "top_hog", true, 1, "{\"playerChoiceTimeoutMs\": 30000}")));
+        configService.reloadConfigurations();
+        GameConfigSnapshot before = configService.getSnapshot();
+
+        List<GameConfigSnapshot[]> notifications = new ArrayList<>();
+        configService.addChangeListener((previous, current) -> notifications.add(new GameConfigSnapshot[]{previous, current}));
+
+        GameConfiguration updated = config(1L, "top_hog", true, 1, "{\"playerChoiceTimeoutMs\": 10000}");
+        when(configRepository.save(any())).thenReturn(updated);
+        configService.saveOrUpdateConfiguration(updated);
+
+        GameConfigSnapshot after = configService.getSnapshot();
+        assertEquals(before.getVersion() + 1, after.getVersion());
+        assertEquals(10000L, after.getLongSetting("top_hog", "playerChoiceTimeoutMs", 0L));
+        assertEquals(30000L, before.getLongSetting("top_hog", "playerChoiceTimeoutMs", 0L));
+        assertEquals(1, notifications.size());
+        assertSame(before, notifications.get(0)[0]);
+        assertSame(after, notifications.get(0)[1]);
+
+        // 快照持有的是副本，调用方修改实体不影响已发布的配置
+        updated.setEnabled(false);
+        assertEquals(1, configService.getAllEnabledGames().size());
+    }
+
+    @Test
+    public void testDisableAndDeleteAreVisibleWithoutReload() {
+        GameConfiguration stored = config(1L, "top_hog", true, 1, null);
+        when(configRepository.findAll()).thenReturn(List.of(stored));
+        when(configRepository.findByGameTypeCode("top_hog")).thenReturn(Optional.of(stored));
+        when(configRepository.save(any())).thenReturn(stored);
+        configService.reloadConfigurations();
+
+        assertTrue(configService.setGameEnabled("top_hog", false));
+        assertTrue(configService.getAllEnabledGames().isEmpty());
+        assertTrue(configService.getGameConfiguration("top_hog").isPresent());
+
+        assertTrue(configService.deleteConfiguration("top_hog"));
+        assertFalse(configService.getGameConfiguration("top_hog").isPresent());
+        verify(configRepository, times(1)).findAll();
+    }
+}
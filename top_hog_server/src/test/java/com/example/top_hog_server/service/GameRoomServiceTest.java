@@ -0,0 +1,112 @@
+package com.example.top_hog_server.service;
+
+import com.example.top_hog_server.handler.RoomStateDeltaEncoder;
+import com.example.top_hog_server.model.GameRoom;
+import com.example.top_hog_server.model.GameState;
+import com.example.top_hog_server.model.Player;
+import com.example.top_hog_server.repository.GameRoomRepository;
+import com.example.top_hog_server.service.room.GameTimerWheel;
+import com.example.top_hog_server.service.room.RoomExecutor;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class GameRoomServiceTest {
+
+    private final GameTimerWheel timerWheel = mock(GameTimerWheel.class);
+    private final RoomStateDeltaEncoder deltaEncoder = mock(RoomStateDeltaEncoder.class);
+
+    private GameRoomService service(long matchedRoomGraceMs) {
+        return new GameRoomService(mock(GameRoomRepository.class), new RoomExecutor(false, 0), timerWheel,
+                deltaEncoder, matchedRoomGraceMs);
+    }
+
+    private static void addPlayer(GameRoom room, String sessionId, Long userId) {
+        room.getPlayers().put(sessionId, new Player(sessionId, userId, "p" + userId, 0));
+    }
+
+    @Test
+    public void testMatchedRoomSurvivesHostlessSweepUntilResultsExpire() {
+        GameRoomService service = service(60000);
+        GameRoom room = service.createMatchedRoom(1L, 4, "pw");
+        // 房主超过 HOSTLESS_GRACE_MS 仍未进房，但其他玩家的匹配结果还指向这个房间
+        room.setCreatedAtTimestamp(System.currentTimeMillis() - GameRoomService.HOSTLESS_GRACE_MS - 1000);
+        addPlayer(room, "s2", 2L);
+
+        service.removeHostlessRooms();
+
+        assertSame(room, service.getRoom(room.getRoomId()));
+    }
+
+    @Test
+    public void testMatchedRoomIsSweptAfterResultsExpire() throws InterruptedException {
+        GameRoomService service = service(0);
+        GameRoom room = service.createMatchedRoom(1L, 4, "pw");
+        Thread.sleep(2);
+        room.setCreatedAtTimestamp(System.currentTimeMillis() - GameRoomService.HOSTLESS_GRACE_MS - 1000);
+
+        service.removeHostlessRooms();
+
+        assertNull(service.getRoom(room.getRoomId()));
+        // 移除时释放计时器和增量快照
+        verify(timerWheel).cancelRoom(room.getRoomId());
+        verify(deltaEncoder).forget(room.getRoomId());
+    }
+
+    @Test
+    public void testSweepLeavesStartedRoomsAlone() {
+        GameRoomService service = service(0);
+        GameRoom room = service.createMatchedRoom(1L, 4, "pw");
+        room.setGameState(GameState.PLAYING);
+        room.setCreatedAtTimestamp(System.currentTimeMillis() - GameRoomService.HOSTLESS_GRACE_MS - 1000);
+
+        service.removeHostlessRooms();
+
+        assertSame(room, service.getRoom(room.getRoomId()));
+        verify(timerWheel, never()).cancelRoom(room.getRoomId());
+    }
+
+    @Test
+    public void testFirstPlayerToJoinClaimsAbsentMatchedOwner() {
+        GameRoomService service = service(60000);
+        GameRoom room = service.createMatchedRoom(1L, 4, "pw");
+
+        assertTrue(service.claimMatchedRoomOwner(room, 2L));
+        assertEquals(2L, room.getOwnerId());
+        addPlayer(room, "s2", 2L);
+        // 接任的房主已在房间里，后来的玩家（包括原房主）不再接任
+        assertFalse(service.claimMatchedRoomOwner(room, 1L));
+        assertEquals(2L, room.getOwnerId());
+
+        // 接任后按普通房间处理：房主在场就不清理
+        room.setCreatedAtTimestamp(System.currentTimeMillis() - GameRoomService.HOSTLESS_GRACE_MS - 1000);
+        service.removeHostlessRooms();
+        assertSame(room, service.getRoom(room.getRoomId()));
+    }
+
+    @Test
+    public void testOrdinaryRoomOwnerIsNotReassigned() {
+        GameRoomService service = service(60000);
+        GameRoom room = new GameRoom("R1", "r");
+        room.setOwnerId(1L);
+
+        assertFalse(service.claimMatchedRoomOwner(room, 2L));
+        assertEquals(1L, room.getOwnerId());
+    }
+
+    @Test
+    public void testRoomIdsAreWideAndUnique() {
+        GameRoomService service = service(60000);
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 2000; i++) {
+            String roomId = service.createMatchedRoom((long) i, 4, "pw").getRoomId();
+            assertEquals(GameRoomService.ROOM_ID_LENGTH, roomId.length());
+            assertTrue(roomId.matches("[0-9A-F]+"));
+            assertTrue(ids.add(roomId));
+        }
+    }
+}
@@ -3,16 +3,32 @@ package com.example.top_hog_server.service;
 import com.example.top_hog_server.model.GameRoom;
 import com.example.top_hog_server.model.GameState;
 import com.example.top_hog_server.model.Player;
-import com.example.top_hog_server.repository.GameHistoryRepository;
+import com.example.top_hog_server.service.history.GameHistoryWriter;
+import com.example.top_hog_server.repository.GameConfigurationRepository;
 import com.example.top_hog_server.repository.UserRepository;
+import com.example.top_hog_server.handler.CborMessageCodec;
+import com.example.top_hog_server.handler.GameStateFrameEncoder;
+import com.example.top_hog_server.handler.RoomStateDeltaEncoder;
 import com.example.top_hog_server.handler.GameWebSocketHandler;
 import com.example.top_hog_server.service.game.GameEngineFactory;
+import com.example.top_hog_server.service.game.PlayTipEngine;
+import com.example.top_hog_server.service.game.bot.BotDecisionService;
+import com.example.top_hog_server.service.game.bot.LowestCardBotStrategy;
+import com.example.top_hog_server.service.journal.GameJournal;
+import com.example.top_hog_server.service.metrics.GameMetrics;
+import com.example.top_hog_server.service.replay.ReplayService;
+import com.example.top_hog_server.service.replay.ReplayStore;
+import com.example.top_hog_server.service.room.GameTimerWheel;
+import com.example.top_hog_server.service.room.RoomExecutor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.scheduling.TaskScheduler;
+
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -28,13 +44,16 @@ public class RoomDestructionTest {
     private UserRepository userRepository;
 
     @Mock
-    private GameHistoryRepository gameHistoryRepository;
+    private GameHistoryWriter gameHistoryWriter;
+
+    @Mock
+    private TaskProgressService taskProgressService;
 
     @Mock
     private GameWebSocketHandler gameWebSocketHandler;
 
     @Mock
-    private TaskScheduler taskScheduler;
+    private GameTimerWheel gameTimerWheel;
 
     @Mock
     private BotProfileService botProfileService;
@@ -42,6 +61,9 @@ public class RoomDestructionTest {
     @Mock
     private GameEngineFactory gameEngineFactory;
 
+    @Mock
+    private GameConfigurationRepository gameConfigurationRepository;
+
     private GameLogicService gameLogicService;
 
     @BeforeEach
@@ -49,11 +71,21 @@ public class RoomDestructionTest {
         gameLogicService = new GameLogicService(
                 gameRoomService,
                 userRepository,
-                gameHistoryRepository,
+                gameHistoryWriter,
+                taskProgressService,
                 gameWebSocketHandler,
-                taskScheduler,
+                gameTimerWheel,
                 botProfileService,
-                gameEngineFactory
+                gameEngineFactory,
+                new RoomExecutor(false, 0),
+                new GameStateFrameEncoder(new ObjectMapper(), new CborMessageCodec(new ObjectMapper())),
+                new RoomStateDeltaEncoder(new ObjectMapper(), new CborMessageCodec(new ObjectMapper())),
+                new PlayTipEngine(50, 2, 1000, 1),
+                new BotDecisionService(List.of(new LowestCardBotStrategy()), "easy", 20, 1),
+                new GameConfigurationService(gameConfigurationRepository),
+                new GameMetrics(new SimpleMeterRegistry()),
+                new GameJournal(gameRoomService, new RoomExecutor(false, 0), false, "data/journal", 0, 5, 0),
+                new ReplayService(new ReplayStore("data/replays", 1 << 20, 1))
         );
     }
 
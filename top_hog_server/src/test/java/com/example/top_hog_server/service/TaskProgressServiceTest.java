@@ -0,0 +1,70 @@
+package com.example.top_hog_server.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TaskProgressServiceTest {
+
+    @Mock
+    private AchievementService achievementService;
+
+    @Mock
+    private DailyTaskService dailyTaskService;
+
+    @InjectMocks
+    private TaskProgressService taskProgressService;
+
+    @Test
+    public void testEventsAreCoalescedIntoOneBatchPerFlush() {
+        taskProgressService.onGameFinished(1L, true, 3);
+        taskProgressService.onGameFinished(1L, false, 12);
+        taskProgressService.onGameFinished(2L, false, 7);
+        taskProgressService.onLogin(1L);
+
+        taskProgressService.flush();
+
+        verify(dailyTaskService, times(1)).applyProgress(eq(LocalDate.now()), eq(Map.of(
+                1L, Map.of("GAME_PLAY", 2L, "GAME_WIN", 1L, "LOGIN", 1L),
+                2L, Map.of("GAME_PLAY", 1L))));
+        verify(achievementService, times(1)).applyProgress(eq(Map.of(
+                1L, Map.of("GAMES_PLAYED", 2L, "TOTAL_SCORE", 15L, "GAMES_WON", 1L),
+                2L, Map.of("GAMES_PLAYED", 1L, "TOTAL_SCORE", 7L))));
+        assertEquals(0, taskProgressService.getPendingCount());
+
+        // 缓冲已清空，再次 flush 不写库
+        taskProgressService.flush();
+        verify(dailyTaskService, times(1)).applyProgress(any(), any());
+    }
+
+    @Test
+    public void testFailedBatchIsRetriedOnNextFlush() {
+        doThrow(new RuntimeException("db down")).when(achievementService).applyProgress(any());
+        taskProgressService.onGameFinished(1L, false, 5);
+
+        taskProgressService.flush();
+
+        // 每日任务照常写入，成就增量留在缓冲中
+        verify(dailyTaskService, times(1)).applyProgress(eq(LocalDate.now()), eq(Map.of(1L, Map.of("GAME_PLAY", 1L))));
+        assertEquals(2, taskProgressService.getPendingCount());
+
+        doNothing().when(achievementService).applyProgress(any());
+        taskProgressService.onGameFinished(1L, false, 4);
+        taskProgressService.flush();
+
+        verify(achievementService, times(1)).applyProgress(eq(Map.of(
+                1L, Map.of("GAMES_PLAYED", 2L, "TOTAL_SCORE", 9L))));
+        assertEquals(0, taskProgressService.getPendingCount());
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.top_hog_server.service;
+
+import com.example.top_hog_server.model.GameHistory;
+import com.example.top_hog_server.repository.GameHistoryRepository;
+import com.example.top_hog_server.service.history.GameHistoryWriter;
+import com.example.top_hog_server.service.stats.UserGameStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class UserStatsServiceTest {
+
+    @Mock
+    private GameHistoryRepository gameHistoryRepository;
+
+    private UserStatsService userStatsService;
+
+    @BeforeEach
+    public void setUp() {
+        // 写线程不启动，测试直接调用 apply 模拟写库通知
+        GameHistoryWriter writer = new GameHistoryWriter(null, 10, 10, 10, "target/user-stats-spill.log");
+        userStatsService = new UserStatsService(gameHistoryRepository, writer);
+    }
+
+    private static List<Object[]> rows(Object[]... rows) {
+        List<Object[]> result = new ArrayList<>();
+        for (Object[] row : rows) {
+            result.add(row);
+        }
+        return result;
+    }
+
+    @Test
+    public void testLoadsAggregatesOnceAndAnswersBatchLookups() {
+        when(gameHistoryRepository.aggregateStatsByUser()).thenReturn(rows(
+                new Object[]{1L, 4L, 1L, 40L, 20, 3},
+                new Object[]{2L, 2L, 2L, 6L, 4, 2}));
+
+        Map<Long, UserGameStats> stats = userStatsService.getStats(List.of(1L, 2L, 3L));
+
+        assertEquals(3, stats.size());
+        assertEquals(4, stats.get(1L).getGames());
+        assertEquals(10.0, stats.get(1L).getAvgScore(), 1e-9);
+        assertEquals(25.0, stats.get(1L).getWinRate(), 1e-9);
+        assertEquals(100.0, stats.get(2L).getWinRate(), 1e-9);
+        assertSame(UserGameStats.EMPTY, stats.get(3L));
+
+        userStatsService.getStats(2L);
+        verify(gameHistoryRepository, times(1)).aggregateStatsByUser();
+    }
+
+    @Test
+    public void testRecordGameUpdatesAggregatesIncrementally() {
+        when(gameHistoryRepository.aggregateStatsByUser()).thenReturn(rows(new Object[]{1L, 1L, 0L, 10L, 10, 10}));
+        userStatsService.init();
+
+        List<GameHistory> game = new ArrayList<>();
+        game.add(new GameHistory(1L, "R1", 2, 1, 8.0));
+        game.add(new GameHistory(5L, "R1", 14, 2, 8.0));
+        userStatsService.apply(game);
+
+        UserGameStats first = userStatsService.getStats(1L);
+        assertEquals(2, first.getGames());
+        assertEquals(1, first.getWins());
+        assertEquals(12L, first.getTotalScore());
+        assertEquals(10, first.getMaxScore());
+        assertEquals(2, first.getMinScore());
+
+        UserGameStats newcomer = userStatsService.getStats(5L);
+        assertEquals(1, newcomer.getGames());
+        assertEquals(0, newcomer.getWins());
+        assertEquals(14, newcomer.getMaxScore());
+    }
+
+    @Test
+    public void testToMapKeepsExistingFieldTypes() {
+        Map<String, Object> map = UserGameStats.ofGame(7, 1).plus(UserGameStats.ofGame(3, 2)).toMap();
+
+        assertEquals(Integer.valueOf(2), map.get("totalGames"));
+        assertEquals(Integer.valueOf(10), map.get("totalScore"));
+        assertEquals(Double.valueOf(5.0), map.get("avgScore"));
+        assertEquals(Long.valueOf(1L), map.get("wins"));
+        assertEquals(Double.valueOf(50.0), map.get("winRate"));
+        assertEquals(Integer.valueOf(7), map.get("bestScore"));
+        assertEquals(Integer.valueOf(3), map.get("worstScore"));
+    }
+}
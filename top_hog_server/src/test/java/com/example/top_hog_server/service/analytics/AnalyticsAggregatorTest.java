@@ -0,0 +1,188 @@
+package com.example.top_hog_server.service.analytics;
+
+import com.example.top_hog_server.model.GameHistory;
+import com.example.top_hog_server.service.history.GameHistoryWriter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class AnalyticsAggregatorTest {
+
+    /**
+     * 按表名返回预设行的 JdbcTemplate，并检查回填查询是否以流式方式读取。
+     */
+    static class FakeJdbcTemplate extends JdbcTemplate {
+        final Map<String, List<Object[]>> tables = new HashMap<>();
+        boolean down;
+
+        @Override
+        public void query(PreparedStatementCreator psc, RowCallbackHandler rch) {
+            if (down) {
+                throw new DataAccessResourceFailureException("db down");
+            }
+            try {
+                Connection con = mock(Connection.class);
+                PreparedStatement ps = mock(PreparedStatement.class);
+                when(con.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(ps);
+                psc.createPreparedStatement(con);
+                verify(ps).setFetchSize(Integer.MIN_VALUE);
+
+                ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+                verify(con).prepareStatement(sql.capture(), anyInt(), anyInt());
+                String table = sql.getValue().replaceAll("(?s).* FROM (\\w+) .*", "$1");
+                for (Object[] row : tables.getOrDefault(table, List.of())) {
+                    rch.processRow(resultSet(row));
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static ResultSet resultSet(Object[] row) throws SQLException {
+            ResultSet rs = mock(ResultSet.class);
+            boolean[] lastNull = new boolean[1];
+            when(rs.getLong(anyInt())).thenAnswer(inv -> {
+                Object value = row[(int) inv.getArgument(0) - 1];
+                lastNull[0] = value == null;
+                return value == null ? 0L : ((Number) value).longValue();
+            });
+            when(rs.wasNull()).thenAnswer(inv -> lastNull[0]);
+            when(rs.getInt(anyInt())).thenAnswer(inv -> ((Number) row[(int) inv.getArgument(0) - 1]).intValue());
+            when(rs.getString(anyInt())).thenAnswer(inv -> (String) row[(int) inv.getArgument(0) - 1]);
+            when(rs.getTimestamp(anyInt())).thenAnswer(inv -> (Timestamp) row[(int) inv.getArgument(0) - 1]);
+            when(rs.getBigDecimal(anyInt())).thenAnswer(inv -> (BigDecimal) row[(int) inv.getArgument(0) - 1]);
+            return rs;
+        }
+    }
+
+    private FakeJdbcTemplate jdbc;
+    private AnalyticsAggregator aggregator;
+
+    @BeforeEach
+    public void setUp() {
+        jdbc = new FakeJdbcTemplate();
+        // 写线程不启动，测试直接调用 apply 模拟写库通知
+        GameHistoryWriter writer = new GameHistoryWriter(null, 10, 10, 10, "target/analytics-spill.log");
+        aggregator = new AnalyticsAggregator(jdbc, writer, 120);
+    }
+
+    private static List<GameHistory> game(String roomId, LocalDateTime finishedAt, long... userIds) {
+        List<GameHistory> records = new ArrayList<>();
+        for (int i = 0; i < userIds.length; i++) {
+            GameHistory h = new GameHistory(userIds[i], roomId, 10 * i, i + 1, 15.0);
+            h.setCreatedAt(Timestamp.valueOf(finishedAt));
+            records.add(h);
+        }
+        return records;
+    }
+
+    @Test
+    public void testGamesRanksAndActiveUsersRollUpPerDay() {
+        aggregator.init();
+        LocalDate today = LocalDate.now();
+        aggregator.apply(game("R1", today.atTime(10, 0), 1, 2, 3));
+        aggregator.apply(game("R1", today.atTime(10, 20), 1, 2, 4));
+        aggregator.recordLogin(5L);
+
+        DailyRollup day = aggregator.day(today);
+        assertEquals(2, day.getGames());
+        assertEquals(5, day.getDau());
+
+        Map<Integer, Long> ranks = aggregator.rankCountsBetween(today, today);
+        assertEquals(Long.valueOf(2), ranks.get(1));
+        assertEquals(Long.valueOf(2), ranks.get(3));
+
+        Map<Long, Integer> gamesPerUser = aggregator.gamesPerUserBetween(today, today);
+        assertEquals(Integer.valueOf(2), gamesPerUser.get(1L));
+        assertEquals(Integer.valueOf(1), gamesPerUser.get(4L));
+        assertNull(gamesPerUser.get(5L));
+    }
+
+    @Test
+    public void testActiveUsersUnionAcrossDays() {
+        aggregator.init();
+        LocalDate today = LocalDate.now();
+        aggregator.apply(game("R1", today.minusDays(1).atTime(9, 0), 1, 2));
+        aggregator.apply(game("R2", today.atTime(9, 0), 2, 3));
+
+        assertEquals(3, aggregator.activeUsersBetween(today.minusDays(1), today).estimate());
+        assertEquals(0, aggregator.day(today.minusDays(2)).getDau());
+    }
+
+    @Test
+    public void testPaidOrdersAndRetention() {
+        aggregator.init();
+        LocalDate today = LocalDate.now();
+        aggregator.recordRegistration(7L);
+        aggregator.recordRegistration(7L); // 重复注册事件只计一次
+        aggregator.recordRegistration(8L);
+        aggregator.recordOrderPaid(1L, 7L, new BigDecimal("6.00"), today.atTime(12, 0));
+        aggregator.recordOrderPaid(2L, 7L, new BigDecimal("30.00"), today.atTime(13, 0));
+
+        DailyRollup day = aggregator.day(today);
+        assertEquals(2, day.getNewUsers());
+        assertEquals(1, day.getPayingUsers());
+        assertEquals(2, day.getPaidOrders());
+        assertEquals(new BigDecimal("36.00"), day.getRevenue());
+        assertEquals(Integer.valueOf(2), aggregator.paidOrdersPerUserBetween(today, today).get(7L));
+
+        // 注册当天活跃不算留存
+        aggregator.recordLogin(7L);
+        assertEquals(0, day.getRetained(1));
+    }
+
+    @Test
+    public void testBackfillRetriesAndMergesWithoutDoubleCounting() {
+        LocalDate today = LocalDate.now();
+        Timestamp morning = Timestamp.valueOf(today.atTime(9, 0));
+        Timestamp noon = Timestamp.valueOf(today.atTime(12, 0));
+        jdbc.down = true;
+        aggregator.init();
+        assertFalse(aggregator.isLoaded());
+
+        // 回填成功前到达的事件：这些注册和订单也会出现在回填查询中
+        aggregator.recordRegistration(7L);
+        aggregator.recordOrderPaid(1L, 7L, new BigDecimal("6.00"), today.atTime(10, 0));
+        aggregator.recordLogin(9L);
+
+        jdbc.down = false;
+        jdbc.tables.put("Users", List.of(new Object[]{7L, morning}, new Object[]{8L, morning}));
+        jdbc.tables.put("orders", List.of(
+                new Object[]{1L, 7L, new BigDecimal("6.00"), morning},
+                new Object[]{2L, 8L, new BigDecimal("30.00"), morning}));
+        // R1 这一局有一条记录在回填时已写库，另一条在回填后的批次中
+        jdbc.tables.put("game_history", List.<Object[]>of(new Object[]{7L, "R1", 1, noon}));
+
+        DailyRollup day = aggregator.day(today);
+        assertTrue(aggregator.isLoaded());
+        List<GameHistory> rest = game("R1", today.atTime(12, 0), 7, 8);
+        aggregator.apply(rest.subList(1, 2));
+
+        assertEquals(2, day.getNewUsers());
+        assertEquals(2, day.getPaidOrders());
+        assertEquals(new BigDecimal("36.00"), day.getRevenue());
+        assertEquals(1, day.getGames());
+        assertEquals(3, day.getDau());
+    }
+}
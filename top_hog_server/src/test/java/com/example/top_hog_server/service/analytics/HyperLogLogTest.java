@@ -0,0 +1,45 @@
+package com.example.top_hog_server.service.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HyperLogLogTest {
+
+    @Test
+    public void testSmallCardinalityIsNearlyExact() {
+        HyperLogLog hll = new HyperLogLog(14);
+        for (long id = 1; id <= 100; id++) {
+            hll.add(id);
+            hll.add(id); // 重复不计
+        }
+        assertEquals(100, hll.estimate(), 1);
+    }
+
+    @Test
+    public void testLargeCardinalityWithinTwoPercent() {
+        HyperLogLog hll = new HyperLogLog(14);
+        for (long id = 0; id < 200_000; id++) {
+            hll.add(id);
+        }
+        assertEquals(200_000, hll.estimate(), 4_000);
+    }
+
+    @Test
+    public void testMergeIsUnion() {
+        HyperLogLog a = new HyperLogLog(14);
+        HyperLogLog b = new HyperLogLog(14);
+        for (long id = 0; id < 30_000; id++) {
+            a.add(id);
+        }
+        for (long id = 20_000; id < 50_000; id++) {
+            b.add(id);
+        }
+        HyperLogLog union = a.copy();
+        union.merge(b);
+
+        assertEquals(50_000, union.estimate(), 1_000);
+        assertEquals(30_000, a.estimate(), 600);
+        assertThrows(IllegalArgumentException.class, () -> a.merge(new HyperLogLog(10)));
+    }
+}
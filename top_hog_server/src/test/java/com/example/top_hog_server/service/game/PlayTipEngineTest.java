@@ -0,0 +1,91 @@
+package com.example.top_hog_server.service.game;
+
+import com.example.top_hog_server.model.Card;
+import com.example.top_hog_server.model.CardTable;
+import com.example.top_hog_server.model.GameRoom;
+import com.example.top_hog_server.model.GameState;
+import com.example.top_hog_server.model.Player;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PlayTipEngineTest {
+
+    private PlayTipEngine engine;
+    private GameRoom room;
+
+    @BeforeEach
+    public void setUp() {
+        engine = new PlayTipEngine(50, 2, 2000, 2);
+
+        room = new GameRoom("R1", "Test Room");
+        room.setGameState(GameState.PLAYING);
+        int[][] rows = {{10, 12, 13, 14, 15}, {20}, {30, 31}, {40}};
+        for (int i = 0; i < rows.length; i++) {
+            for (int number : rows[i]) {
+                room.getRows().get(i).addCard(CardTable.card(number));
+            }
+        }
+
+        Player me = new Player("me", 1L, "Me", 1);
+        me.addCardToHand(CardTable.card(5));
+        me.addCardToHand(CardTable.card(16));
+        me.addCardToHand(CardTable.card(45));
+        room.getPlayers().put("me", me);
+
+        Map<String, List<Card>> knownHands = new HashMap<>();
+        for (int k = 0; k < 3; k++) {
+            Player opponent = new Player("o" + k, (long) (k + 2), "Opponent" + k, 0);
+            for (int j = 0; j < 3; j++) {
+                opponent.addCardToHand(CardTable.card(60 + k * 10 + j));
+            }
+            room.getPlayers().put("o" + k, opponent);
+            knownHands.put("o" + k, new ArrayList<>(opponent.getHand()));
+        }
+        room.setAllPlayerHandsForAI(knownHands);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    public void testSnapshotExcludesVisibleAndKnownCards() {
+        PlayTipSnapshot snapshot = PlayTipSnapshot.of(room, "me");
+
+        // 104 - 牌列 9 张 - 自己 3 张 - 已知对手 9 张
+        assertEquals(83, snapshot.unseenPool.length);
+        assertArrayEquals(new int[]{5, 16, 45}, snapshot.getMyHand());
+        assertEquals(3, snapshot.waitingOpponents.length);
+    }
+
+    @Test
+    public void testSuggestsCardWithLowestExpectedBullheads() {
+        // 16 现在收 8 猪头，但之后 45、5 都不再收牌；先出 5 收 3 猪头，下一手 16 仍要收 8
+        PlayTipEngine.PlayTip tip = engine.suggest(PlayTipSnapshot.of(room, "me"));
+
+        assertEquals(16, tip.getCardNumber());
+        assertEquals(1.0, tip.getConfidence(), 1e-9);
+        assertTrue(tip.getSamples() >= 1 && tip.getSamples() <= 2000);
+    }
+
+    @Test
+    public void testUnknownOpponentHandsAreSampled() {
+        room.setAllPlayerHandsForAI(null);
+        PlayTipSnapshot snapshot = PlayTipSnapshot.of(room, "me");
+
+        PlayTipEngine.PlayTip tip = engine.suggest(snapshot);
+
+        assertEquals(92, snapshot.unseenPool.length);
+        assertTrue(List.of(5, 16, 45).contains(tip.getCardNumber()));
+        assertTrue(tip.getConfidence() > 0 && tip.getConfidence() <= 1.0);
+    }
+}
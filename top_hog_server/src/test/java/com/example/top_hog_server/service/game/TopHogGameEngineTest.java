@@ -0,0 +1,94 @@
+package com.example.top_hog_server.service.game;
+
+import com.example.top_hog_server.model.Card;
+import com.example.top_hog_server.model.CardTable;
+import com.example.top_hog_server.model.GameRoom;
+import com.example.top_hog_server.model.GameRow;
+import com.example.top_hog_server.model.Player;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TopHogGameEngineTest {
+
+    private TopHogGameEngine engine;
+    private GameRoom room;
+
+    @BeforeEach
+    public void setUp() {
+        engine = new TopHogGameEngine();
+        room = new GameRoom("R1", "Test Room");
+        List<GameRow> rows = room.getRows();
+        rows.get(0).addCard(CardTable.card(10));
+        rows.get(1).addCard(CardTable.card(20));
+        rows.get(1).addCard(CardTable.card(55));
+        rows.get(2).addCard(CardTable.card(40));
+        rows.get(3).addCard(CardTable.card(90));
+    }
+
+    @Test
+    public void testBullheadTable() {
+        assertEquals(7, CardTable.bullheads(55));
+        assertEquals(5, CardTable.bullheads(22));
+        assertEquals(3, CardTable.bullheads(30));
+        assertEquals(2, CardTable.bullheads(15));
+        assertEquals(1, CardTable.bullheads(104));
+        assertSame(CardTable.card(42), CardTable.card(42));
+    }
+
+    @Test
+    public void testShuffledDeckContainsEveryCardOnce() {
+        List<Card> deck = TopHogGameEngine.shuffledDeck();
+
+        Set<Integer> numbers = new HashSet<>();
+        for (Card card : deck) {
+            numbers.add(card.getNumber());
+            assertEquals(CardTable.bullheads(card.getNumber()), card.getBullheads());
+        }
+        assertEquals(104, deck.size());
+        assertEquals(104, numbers.size());
+    }
+
+    @Test
+    public void testFindTargetRowIndex() {
+        assertEquals(2, engine.findTargetRowIndex(room, CardTable.card(45)));
+        assertEquals(1, engine.findTargetRowIndex(room, CardTable.card(60)));
+        assertEquals(3, engine.findTargetRowIndex(room, CardTable.card(104)));
+        assertEquals(-1, engine.findTargetRowIndex(room, CardTable.card(5)));
+    }
+
+    @Test
+    public void testFindRowWithMinBullheads() {
+        // 行猪头数: 3, 10, 3, 3 -> 取第一个最小值
+        assertEquals(0, engine.findRowWithMinBullheads(room));
+    }
+
+    @Test
+    public void testExecuteTakeRowCollectsCardsAndReplacesRow() {
+        Player player = new Player("s1", 1L, "Alice", 0);
+
+        int taken = engine.executeTakeRow(room, player, 1, CardTable.card(3));
+
+        GameRow row = room.getRows().get(1);
+        assertEquals(10, taken);
+        assertEquals(10, player.getScore());
+        assertEquals(List.of(CardTable.card(20), CardTable.card(55)), player.getCollectedCards());
+        assertEquals(1, row.size());
+        assertEquals(3, row.lastNumber());
+        assertEquals(1, row.getBullheadSum());
+    }
+
+    @Test
+    public void testRowViewMatchesPrimitiveState() {
+        GameRow row = room.getRows().get(1);
+
+        assertEquals(List.of(new Card(20, 3), new Card(55, 7)), row.getCards());
+        assertEquals(55, row.getLastCard().getNumber());
+        assertThrows(UnsupportedOperationException.class, () -> row.getCards().clear());
+    }
+}
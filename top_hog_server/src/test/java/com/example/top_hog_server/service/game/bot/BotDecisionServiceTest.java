@@ -0,0 +1,136 @@
+package com.example.top_hog_server.service.game.bot;
+
+import com.example.top_hog_server.model.BotDifficulty;
+import com.example.top_hog_server.model.CardTable;
+import com.example.top_hog_server.model.GameRoom;
+import com.example.top_hog_server.model.GameState;
+import com.example.top_hog_server.model.Player;
+import com.example.top_hog_server.service.game.PlayTipEngine;
+import com.example.top_hog_server.service.game.PlayTipSnapshot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BotDecisionServiceTest {
+
+    private PlayTipEngine playTipEngine;
+    private BotDecisionService service;
+    private GameRoom room;
+    private Player bot;
+
+    @BeforeEach
+    public void setUp() {
+        playTipEngine = new PlayTipEngine(50, 2, 2000, 1);
+        service = new BotDecisionService(List.of(new LowestCardBotStrategy(), new HeuristicBotStrategy(),
+                new SearchBotStrategy(playTipEngine)), "normal", 20, 1);
+
+        room = new GameRoom("R1", "Test Room");
+        room.setGameState(GameState.PLAYING);
+        int[][] rows = {{10, 12, 13, 14, 15}, {20}, {30, 31}, {40}};
+        for (int i = 0; i < rows.length; i++) {
+            for (int number : rows[i]) {
+                room.getRows().get(i).addCard(CardTable.card(number));
+            }
+        }
+
+        bot = new Player("BOT_1", "Bot");
+        bot.setRobot(true);
+        bot.setTrustee(true);
+        for (int number : new int[]{5, 16, 21, 45}) {
+            bot.addCardToHand(CardTable.card(number));
+        }
+        room.getPlayers().put("BOT_1", bot);
+        for (int k = 0; k < 3; k++) {
+            Player opponent = new Player("o" + k, (long) (k + 2), "Opponent" + k, 0);
+            for (int j = 0; j < 4; j++) {
+                opponent.addCardToHand(CardTable.card(60 + k * 10 + j));
+            }
+            room.getPlayers().put("o" + k, opponent);
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        service.shutdown();
+        playTipEngine.shutdown();
+    }
+
+    @Test
+    public void testHeuristicAvoidsSixthCardAndForcedTake() {
+        PlayTipSnapshot snapshot = PlayTipSnapshot.of(room, "BOT_1", false);
+
+        // 16 是满行的第6张，5 必须收行；21 紧贴第二行末尾，几乎没有风险
+        assertEquals(21, service.decide(new HeuristicBotStrategy(), snapshot));
+        assertEquals(5, service.decide(new LowestCardBotStrategy(), snapshot));
+    }
+
+    @Test
+    public void testStrategySelectionByRoomDifficulty() {
+        assertEquals(BotDifficulty.NORMAL, service.strategyFor(room, bot).getDifficulty());
+
+        room.setBotDifficulty(BotDifficulty.HARD);
+        BotStrategy strategy = service.strategyFor(room, bot);
+        assertEquals(BotDifficulty.HARD, strategy.getDifficulty());
+        assertFalse(strategy.isInline());
+
+        // 人类托管不受房间机器人难度影响
+        Player human = room.getPlayers().get("o0");
+        human.setTrustee(true);
+        assertEquals(BotDifficulty.NORMAL, service.strategyFor(room, human).getDifficulty());
+    }
+
+    @Test
+    public void testFailingStrategyFallsBackToLowestCard() {
+        BotStrategy failing = new BotStrategy() {
+            @Override
+            public BotDifficulty getDifficulty() {
+                return BotDifficulty.NORMAL;
+            }
+
+            @Override
+            public int chooseCard(PlayTipSnapshot snapshot, long deadline) {
+                throw new IllegalStateException("boom");
+            }
+        };
+
+        assertEquals(5, service.decide(failing, PlayTipSnapshot.of(room, "BOT_1", false)));
+        assertEquals(1, service.getMetrics().getFallbacks(BotDifficulty.NORMAL));
+    }
+
+    @Test
+    public void testSlowStrategyIsCutOffAtHardBudget() throws Exception {
+        BotStrategy slow = new BotStrategy() {
+            @Override
+            public BotDifficulty getDifficulty() {
+                return BotDifficulty.HARD;
+            }
+
+            @Override
+            public boolean isInline() {
+                return false;
+            }
+
+            @Override
+            public int chooseCard(PlayTipSnapshot snapshot, long deadline) {
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return 45;
+            }
+        };
+
+        long start = System.nanoTime();
+        int card = service.decideAsync(slow, PlayTipSnapshot.of(room, "BOT_1", false)).get(1, TimeUnit.SECONDS);
+
+        assertEquals(5, card);
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(1, service.getMetrics().getOverBudget(BotDifficulty.HARD));
+    }
+}
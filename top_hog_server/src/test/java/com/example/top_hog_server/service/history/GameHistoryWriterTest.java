@@ -0,0 +1,298 @@
+package com.example.top_hog_server.service.history;
+
+import com.example.top_hog_server.model.GameHistory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.invocation.Invocation;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+
+public class GameHistoryWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * 只记录 SQL，不连接数据库；down=true 时模拟数据库不可用，
+     * 批次中含有 badRoom 的记录时按 badError 失败（默认为数据完整性错误）。
+     */
+    static class RecordingJdbcTemplate extends JdbcTemplate {
+        final List<String> statements = new ArrayList<>();
+        boolean down;
+        String badRoom;
+        RuntimeException badError = new DataIntegrityViolationException("Data too long for column 'room_id'");
+
+        @Override
+        public int update(String sql, PreparedStatementSetter pss) {
+            if (down) {
+                throw new DataAccessResourceFailureException("db down");
+            }
+            if (badRoom != null && roomIds(pss).contains(badRoom)) {
+                throw badError;
+            }
+            statements.add(sql);
+            return 0;
+        }
+
+        private static List<Object> roomIds(PreparedStatementSetter pss) {
+            PreparedStatement ps = mock(PreparedStatement.class);
+            try {
+                pss.setValues(ps);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            List<Object> values = new ArrayList<>();
+            for (Invocation invocation : mockingDetails(ps).getInvocations()) {
+                if (invocation.getMethod().getName().equals("setString")) {
+                    values.add(invocation.getArgument(1));
+                }
+            }
+            return values;
+        }
+    }
+
+    private static List<GameHistory> game(String roomId, int players) {
+        List<GameHistory> records = new ArrayList<>();
+        for (int i = 0; i < players; i++) {
+            records.add(new GameHistory((long) (i + 1), roomId, 10 * i, i + 1, 15.0));
+        }
+        return records;
+    }
+
+    private static int rowsIn(String sql) {
+        return sql.split("\\(\\?, \\?, \\?, \\?, \\?, \\?\\)", -1).length - 1;
+    }
+
+    @Test
+    public void testBatchesIntoMultiRowInsert() throws Exception {
+        RecordingJdbcTemplate jdbc = new RecordingJdbcTemplate();
+        GameHistoryWriter writer = new GameHistoryWriter(jdbc, 100, 5, 10, tempDir.resolve("spill.log").toString());
+
+        writer.enqueue(game("R1", 4));
+        writer.enqueue(game("R2", 4));
+
+        assertEquals(5, writer.flushOnce(0));
+        assertEquals(3, writer.flushOnce(0));
+        assertEquals(0, writer.flushOnce(0));
+        assertEquals(2, jdbc.statements.size());
+        assertEquals(5, rowsIn(jdbc.statements.get(0)));
+        assertTrue(jdbc.statements.get(0).contains("`rank`"));
+        assertEquals(8L, writer.metrics().get("written"));
+    }
+
+    @Test
+    public void testQueueOverflowSpillsAndReplays() throws Exception {
+        RecordingJdbcTemplate jdbc = new RecordingJdbcTemplate();
+        Path spill = tempDir.resolve("spill.log");
+        GameHistoryWriter writer = new GameHistoryWriter(jdbc, 2, 10, 10, spill.toString());
+
+        writer.enqueue(game("R1", 5));
+
+        assertEquals(3L, writer.metrics().get("spilled"));
+        assertEquals(3, Files.readAllLines(spill).size());
+
+        assertEquals(2, writer.flushOnce(0));
+        assertTrue(writer.replaySpill());
+        assertFalse(Files.exists(spill));
+        assertEquals(3L, writer.metrics().get("replayed"));
+        assertEquals(5L, writer.metrics().get("written"));
+    }
+
+    @Test
+    public void testFailedBatchIsSpilledAndKeptUntilDatabaseRecovers() throws Exception {
+        RecordingJdbcTemplate jdbc = new RecordingJdbcTemplate();
+        Path spill = tempDir.resolve("spill.log");
+        GameHistoryWriter writer = new GameHistoryWriter(jdbc, 100, 10, 10, spill.toString());
+        jdbc.down = true;
+
+        writer.enqueue(game("R1", 4));
+        assertEquals(-1, writer.flushOnce(0));
+        assertEquals(4, Files.readAllLines(spill).size());
+
+        // 数据库仍不可用：回放失败，记录保留在溢出文件中
+        assertFalse(writer.replaySpill());
+        assertEquals(4, Files.readAllLines(spill).size());
+
+        jdbc.down = false;
+        assertTrue(writer.replaySpill());
+        assertFalse(Files.exists(spill));
+        assertEquals(1, jdbc.statements.size());
+        assertEquals(4, rowsIn(jdbc.statements.get(0)));
+    }
+
+    @Test
+    public void testReplayRetriesOnTimerWithoutNewWrites() throws Exception {
+        RecordingJdbcTemplate jdbc = new RecordingJdbcTemplate();
+        Path spill = tempDir.resolve("spill.log");
+        GameHistoryWriter writer = new GameHistoryWriter(jdbc, 100, 10, 10, spill.toString());
+        jdbc.down = true;
+        writer.enqueue(game("R1", 4));
+        assertEquals(-1, writer.flushOnce(0));
+
+        assertTrue(writer.replayIfDue(1_000));
+        // 退避期间不回放
+        assertFalse(writer.replayIfDue(1_100));
+        jdbc.down = false;
+        assertFalse(writer.replayIfDue(1_400));
+
+        // 之后没有新的对局结束，计时器到期后仍会回放
+        assertTrue(writer.replayIfDue(1_500));
+        assertFalse(Files.exists(spill));
+        assertEquals(4L, writer.metrics().get("replayed"));
+        assertTrue(writer.replayIfDue(1_501));
+    }
+
+    @Test
+    public void testBadRecordIsQuarantinedWithoutHoldingBackOthers() throws Exception {
+        RecordingJdbcTemplate jdbc = new RecordingJdbcTemplate();
+        Path spill = tempDir.resolve("spill.log");
+        Path dead = tempDir.resolve("spill.log.dead");
+        GameHistoryWriter writer = new GameHistoryWriter(jdbc, 100, 8, 10, spill.toString());
+        jdbc.badRoom = "BAD";
+        List<GameHistory> records = game("R1", 3);
+        records.add(new GameHistory(9L, "BAD", 0, 4, 15.0));
+        records.addAll(game("R2", 4));
+        writer.enqueue(records);
+        assertEquals(-1, writer.flushOnce(0));
+
+        assertTrue(writer.replaySpill());
+
+        assertFalse(Files.exists(spill));
+        List<String> deadLines = Files.readAllLines(dead);
+        assertEquals(1, deadLines.size());
+        assertEquals("BAD", GameHistoryWriter.parse(deadLines.get(0)).getRoomId());
+        assertEquals(7L, writer.metrics().get("replayed"));
+        assertEquals(1L, writer.metrics().get("quarantined"));
+    }
+
+    @Test
+    public void testBatchFailingWhileDatabaseWritesIsQuarantinedAfterRepeatedReplays() throws Exception {
+        RecordingJdbcTemplate jdbc = new RecordingJdbcTemplate();
+        Path spill = tempDir.resolve("spill.log");
+        GameHistoryWriter writer = new GameHistoryWriter(jdbc, 100, 10, 10, spill.toString());
+        jdbc.badRoom = "BAD";
+        jdbc.badError = new UncategorizedSQLException("insert", "INSERT", new SQLException("Incorrect string value"));
+        writer.enqueue(game("BAD", 1));
+        writer.enqueue(game("R1", 2));
+        assertEquals(-1, writer.flushOnce(0));
+
+        // 无法分类的错误先按暂时性失败处理，记录保留在溢出文件中
+        for (int i = 0; i < GameHistoryWriter.POISON_REPLAY_ATTEMPTS; i++) {
+            assertFalse(writer.replaySpill());
+            assertEquals(3, Files.readAllLines(spill).size());
+        }
+        // 数据库能写入新战绩，回放仍连续失败：二分隔离坏记录
+        writer.enqueue(game("R2", 2));
+        assertEquals(2, writer.flushOnce(0));
+        assertTrue(writer.replaySpill());
+
+        assertFalse(Files.exists(spill));
+        assertEquals(1, Files.readAllLines(tempDir.resolve("spill.log.dead")).size());
+        assertEquals(2L, writer.metrics().get("replayed"));
+    }
+
+    /**
+     * 统计已落库行数的汇总：加载时读取 jdbc 中已写入的行数，之后累加写库通知。
+     */
+    static class CountingProjection extends GameHistoryProjection {
+        final RecordingJdbcTemplate jdbc;
+        int failLoads;
+        int count;
+
+        CountingProjection(GameHistoryWriter writer, RecordingJdbcTemplate jdbc) {
+            super(writer);
+            this.jdbc = jdbc;
+        }
+
+        @Override
+        protected void load() {
+            if (failLoads > 0) {
+                failLoads--;
+                throw new DataAccessResourceFailureException("db down");
+            }
+            count = jdbc.statements.stream().mapToInt(GameHistoryWriterTest::rowsIn).sum();
+        }
+
+        @Override
+        protected void apply(List<GameHistory> records) {
+            count += records.size();
+        }
+    }
+
+    @Test
+    public void testProjectionCountsQueuedAndSpilledRecordsExactlyOnce() throws Exception {
+        RecordingJdbcTemplate jdbc = new RecordingJdbcTemplate();
+        GameHistoryWriter writer = new GameHistoryWriter(jdbc, 4, 10, 10, tempDir.resolve("spill.log").toString());
+        writer.enqueue(game("R1", 3));
+        assertEquals(3, writer.flushOnce(0));
+        // 加载时 R2 一部分在队列中，一部分在溢出文件中
+        writer.enqueue(game("R2", 6));
+
+        CountingProjection projection = new CountingProjection(writer, jdbc);
+        projection.init();
+        assertTrue(projection.isLoaded());
+        assertEquals(3, projection.count);
+
+        assertEquals(4, writer.flushOnce(0));
+        assertTrue(writer.replaySpill());
+        assertEquals(9, projection.count);
+    }
+
+    @Test
+    public void testProjectionLoadRetriesAndIgnoresWritesBeforeLoad() throws Exception {
+        RecordingJdbcTemplate jdbc = new RecordingJdbcTemplate();
+        GameHistoryWriter writer = new GameHistoryWriter(jdbc, 100, 10, 10, tempDir.resolve("spill.log").toString());
+        CountingProjection projection = new CountingProjection(writer, jdbc);
+        projection.failLoads = 1;
+        projection.init();
+        assertFalse(projection.isLoaded());
+
+        // 未加载期间写库的记录由下次加载统计，不会重复累加
+        writer.enqueue(game("R1", 4));
+        assertEquals(4, writer.flushOnce(0));
+        assertEquals(0, projection.count);
+
+        projection.ensureLoaded();
+        writer.enqueue(game("R2", 2));
+        assertEquals(2, writer.flushOnce(0));
+        assertEquals(6, projection.count);
+
+        // 写库失败的批次不通知汇总
+        jdbc.down = true;
+        writer.enqueue(game("R3", 2));
+        assertEquals(-1, writer.flushOnce(0));
+        assertEquals(6, projection.count);
+    }
+
+    @Test
+    public void testSpillLineRoundTrip() {
+        GameHistory record = new GameHistory(7L, "R\t9", 23, 2, 17.5);
+        record.setCreatedAt(new Timestamp(1_700_000_000_000L));
+
+        GameHistory parsed = GameHistoryWriter.parse(GameHistoryWriter.format(record));
+
+        assertNotNull(parsed);
+        assertEquals(Long.valueOf(7L), parsed.getUserId());
+        assertEquals("R 9", parsed.getRoomId());
+        assertEquals(23, parsed.getScore());
+        assertEquals(2, parsed.getRank());
+        assertEquals(Double.valueOf(17.5), parsed.getRoomAvgScore());
+        assertEquals(1_700_000_000_000L, parsed.getCreatedAt().getTime());
+        assertNull(GameHistoryWriter.parse("garbage"));
+    }
+}
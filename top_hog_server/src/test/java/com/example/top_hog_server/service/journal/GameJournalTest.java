@@ -0,0 +1,307 @@
+package com.example.top_hog_server.service.journal;
+
+import com.example.top_hog_server.handler.RoomStateDeltaEncoder;
+import com.example.top_hog_server.model.Card;
+import com.example.top_hog_server.model.GameRoom;
+import com.example.top_hog_server.model.GameState;
+import com.example.top_hog_server.model.Player;
+import com.example.top_hog_server.model.ReplayLog;
+import com.example.top_hog_server.repository.GameRoomRepository;
+import com.example.top_hog_server.service.GameRoomService;
+import com.example.top_hog_server.service.room.GameTimerWheel;
+import com.example.top_hog_server.service.room.RoomExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class GameJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final List<GameJournal> opened = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() {
+        opened.forEach(GameJournal::shutdown);
+    }
+
+    private GameJournal open() throws Exception {
+        // 测试中直接调用 compact，不需要 GameRoomService
+        GameJournal journal = new GameJournal(null, new RoomExecutor(false, 0), true, tempDir.toString(), 4096, 1, 0);
+        journal.start();
+        opened.add(journal);
+        return journal;
+    }
+
+    private static GameRoom playingRoom(String roomId) {
+        GameRoom room = new GameRoom(roomId, "Journal Room");
+        room.setOwnerId(1L);
+        room.setGameState(GameState.PLAYING);
+        room.setCurrentTurnNumber(3);
+        room.setStateVersion(42);
+        Player alice = new Player("s1", 1L, "Alice", 1);
+        alice.setHost(true);
+        Player bob = new Player("s2", 2L, "Bob", 0);
+        bob.setTrustee(true);
+        bob.collectCard(new Card(55, 7));
+        Player bot = new Player("BOT_" + roomId + "_1", "Bot");
+        bot.setRobot(true);
+        bot.setTrustee(true);
+        Map<String, List<Card>> hands = new HashMap<>();
+        int next = 10;
+        for (Player p : List.of(alice, bob, bot)) {
+            for (int i = 0; i < 3; i++) {
+                p.addCardToHand(new Card(next++, 1));
+            }
+            hands.put(p.getSessionId(), new ArrayList<>(p.getHand()));
+            room.getPlayers().put(p.getSessionId(), p);
+        }
+        room.setAllPlayerHandsForAI(hands);
+        for (int i = 0; i < 4; i++) {
+            room.getRows().get(i).addCard(new Card(60 + i, 2));
+        }
+        room.setDeck(new ArrayList<>(List.of(new Card(100, 3), new Card(101, 1))));
+        return room;
+    }
+
+    // 与 GameLogicService 出牌时的状态变化一致
+    private static void play(GameJournal journal, GameRoom room, String sessionId, int number) {
+        Player player = room.getPlayers().get(sessionId);
+        Card card = player.getHand().stream().filter(c -> c.getNumber() == number).findFirst().orElseThrow();
+        room.getPlayedCardsThisTurn().put(sessionId, card);
+        player.removeCardFromHand(card);
+        room.getAllPlayerHandsForAI().get(sessionId).removeIf(c -> c.getNumber() == number);
+        journal.cardPlayed(room, player, card);
+    }
+
+    private static GameRoom only(Collection<GameRoom> rooms) {
+        assertEquals(1, rooms.size());
+        return rooms.iterator().next();
+    }
+
+    @Test
+    public void testRecoversSnapshotAndReplaysCardsPlayed() throws Exception {
+        GameJournal journal = open();
+        GameRoom room = playingRoom("R1");
+        journal.checkpoint(room);
+        play(journal, room, "s1", 10);
+        play(journal, room, "BOT_R1_1", 17);
+        journal.shutdown();
+
+        GameRoom recovered = only(open().takeRecoveredRooms());
+
+        assertEquals("R1", recovered.getRoomId());
+        assertEquals(GameState.PLAYING, recovered.getGameState());
+        assertEquals(3, recovered.getCurrentTurnNumber());
+        assertEquals(42, recovered.getStateVersion());
+        assertEquals(room.getPlayedCardsThisTurn(), recovered.getPlayedCardsThisTurn());
+        for (Player expected : room.getPlayers().values()) {
+            Player actual = recovered.getPlayers().get(expected.getSessionId());
+            assertEquals(expected.getHand(), actual.getHand());
+            assertEquals(expected.getScore(), actual.getScore());
+            assertEquals(expected.isHost(), actual.isHost());
+            assertEquals(expected.isRobot(), actual.isRobot());
+            assertEquals(expected.getUserId(), actual.getUserId());
+        }
+        assertEquals(room.getAllPlayerHandsForAI(), recovered.getAllPlayerHandsForAI());
+        assertEquals(room.getRows(), recovered.getRows());
+        assertEquals(room.getDeck(), recovered.getDeck());
+    }
+
+    @Test
+    public void testReplayLogSurvivesRecovery() throws Exception {
+        GameJournal journal = open();
+        GameRoom room = playingRoom("R1");
+        ReplayLog log = new ReplayLog("R1-game", 99L, 5L);
+        log.roundDealt(room.getPlayers().values());
+        room.setGameSeed(99L);
+        room.setReplayLog(log);
+        journal.checkpoint(room);
+        play(journal, room, "s1", 10);
+        // GameLogicService 在写日志之后追加回放事件，恢复时由日志重放补上
+        log.cardPlayed(room.getPlayers().get("s1"), room.getPlayedCardsThisTurn().get("s1"));
+        journal.shutdown();
+
+        GameRoom recovered = only(open().takeRecoveredRooms());
+
+        assertEquals(99L, recovered.getGameSeed());
+        assertEquals("R1-game", recovered.getReplayLog().getGameId());
+        assertEquals(5L, recovered.getReplayLog().getStartedAt());
+        assertArrayEquals(log.toByteArray(), recovered.getReplayLog().toByteArray());
+    }
+
+    @Test
+    public void testCardPlayedFollowsHumanAcrossRejoin() throws Exception {
+        GameJournal journal = open();
+        GameRoom room = playingRoom("R1");
+        journal.checkpoint(room);
+        // 重连后 sessionId 变化，日志按 userId 找到玩家
+        Player alice = room.getPlayers().remove("s1");
+        alice.setSessionId("s1-new");
+        room.getPlayers().put("s1-new", alice);
+        room.getAllPlayerHandsForAI().put("s1-new", room.getAllPlayerHandsForAI().remove("s1"));
+        play(journal, room, "s1-new", 11);
+        journal.shutdown();
+
+        GameRoom recovered = only(open().takeRecoveredRooms());
+
+        assertEquals(2, recovered.getPlayers().get("s1").getHand().size());
+        assertEquals(11, recovered.getPlayedCardsThisTurn().get("s1").getNumber());
+    }
+
+    @Test
+    public void testTornRecordIsIgnored() throws Exception {
+        GameJournal journal = open();
+        GameRoom room = playingRoom("R1");
+        journal.checkpoint(room);
+        play(journal, room, "s1", 10);
+        play(journal, room, "s2", 13);
+        long written = (long) journal.metrics().get("appendedBytes");
+        journal.shutdown();
+
+        // 模拟最后一条记录只写了一半
+        Path segment = tempDir.resolve(String.format("journal-%020d.log", 1));
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            int offset = (int) written - 2;
+            buffer.put(offset, (byte) (buffer.get(offset) ^ 0x5A));
+            buffer.force();
+        }
+
+        GameRoom recovered = only(open().takeRecoveredRooms());
+
+        assertEquals(1, recovered.getPlayedCardsThisTurn().size());
+        assertTrue(recovered.getPlayedCardsThisTurn().containsKey("s1"));
+        assertEquals(3, recovered.getPlayers().get("s2").getHand().size());
+    }
+
+    @Test
+    public void testFinishedGamesAreNotRecovered() throws Exception {
+        GameJournal journal = open();
+        GameRoom room = playingRoom("R1");
+        journal.checkpoint(room);
+        room.setGameState(GameState.GAME_OVER);
+        journal.checkpoint(room);
+        journal.shutdown();
+
+        assertTrue(open().takeRecoveredRooms().isEmpty());
+    }
+
+    @Test
+    public void testCompactionKeepsOnlyLiveRooms() throws Exception {
+        GameJournal journal = open();
+        GameRoom live = playingRoom("R1");
+        GameRoom closed = playingRoom("R2");
+        journal.checkpoint(live);
+        journal.checkpoint(closed);
+        // 写满几个段
+        for (int i = 0; i < 200; i++) {
+            journal.checkpoint(live);
+        }
+        assertTrue((int) journal.metrics().get("segments") > 1);
+        play(journal, live, "s1", 10);
+
+        journal.compact(List.of(live));
+        play(journal, live, "s2", 14);
+
+        assertEquals(1, journal.metrics().get("segments"));
+        journal.shutdown();
+        GameRoom recovered = only(open().takeRecoveredRooms());
+        assertEquals("R1", recovered.getRoomId());
+        assertEquals(2, recovered.getPlayedCardsThisTurn().size());
+    }
+
+    @Test
+    public void testRestartCompactRestartKeepsRecoveredRooms() throws Exception {
+        GameJournal first = open();
+        GameRoom room = playingRoom("R1");
+        first.checkpoint(room);
+        play(first, room, "s1", 10);
+        first.shutdown();
+
+        // 重启：内存中先是数据库加载的同名空房间
+        GameRoom shell = new GameRoom("R1", "Journal Room");
+        shell.setGameState(GameState.PLAYING);
+        GameRoomRepository repository = mock(GameRoomRepository.class);
+        when(repository.findByGameState(GameState.PLAYING)).thenReturn(List.of(shell));
+        RoomExecutor roomExecutor = new RoomExecutor(false, 0);
+        GameRoomService roomService = new GameRoomService(repository, roomExecutor, mock(GameTimerWheel.class),
+                mock(RoomStateDeltaEncoder.class), 60000);
+        GameJournal second = new GameJournal(roomService, roomExecutor, true, tempDir.toString(), 4096, 1, 0);
+        second.start();
+        opened.add(second);
+
+        // 恢复完成前定时压缩不动旧段
+        second.compactIfNeeded();
+        assertEquals(2, second.metrics().get("segments"));
+        assertEquals(0L, second.metrics().get("compactions"));
+
+        // 与 GameLogicService.recoverJournaledRooms 一致：放回内存、写快照、再开放压缩
+        GameRoom recovered = only(second.takeRecoveredRooms());
+        assertTrue(roomService.restoreRoom(recovered));
+        second.checkpoint(recovered);
+        second.recoveryFinished();
+        second.compactIfNeeded();
+        assertEquals(1, second.metrics().get("segments"));
+        play(second, recovered, "s2", 13);
+        second.shutdown();
+
+        GameRoom again = only(open().takeRecoveredRooms());
+        assertEquals(2, again.getPlayedCardsThisTurn().size());
+        assertEquals(2, again.getPlayers().get("s1").getHand().size());
+        assertEquals(2, again.getPlayers().get("s2").getHand().size());
+        assertEquals(room.getRows(), again.getRows());
+    }
+
+    @Test
+    public void testCompactionDoesNotSnapshotRoomShells() throws Exception {
+        GameJournal journal = open();
+        GameRoom shell = new GameRoom("R1", "Journal Room");
+        shell.setGameState(GameState.PLAYING);
+
+        journal.compact(List.of(shell));
+        journal.shutdown();
+
+        // 没有玩家的房间外壳不会在下次启动时被当作进行中的牌局恢复
+        assertTrue(open().takeRecoveredRooms().isEmpty());
+    }
+
+    @Test
+    public void testAppendCostStaysSmall() throws Exception {
+        GameJournal journal = new GameJournal(null, new RoomExecutor(false, 0), true, tempDir.toString(),
+                64 * 1024 * 1024, 5, 0);
+        journal.start();
+        opened.add(journal);
+        GameRoom room = playingRoom("R1");
+        Player alice = room.getPlayers().get("s1");
+        Card card = alice.getHand().get(0);
+        int events = 200_000;
+        for (int i = 0; i < events / 10; i++) {
+            journal.cardPlayed(room, alice, card); // 预热
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < events; i++) {
+            journal.cardPlayed(room, alice, card);
+        }
+        long avgNanos = (System.nanoTime() - start) / events;
+
+        assertTrue(avgNanos < TimeUnit.MICROSECONDS.toNanos(20), "avg append " + avgNanos + " ns");
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.top_hog_server.service.leaderboard;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RankedBoardTest {
+
+    @Test
+    public void testOrdersByPrimaryThenSecondaryThenUserId() {
+        RankedBoard board = new RankedBoard();
+        board.update(1, 50, 0);
+        board.update(2, 80, 0);
+        board.update(3, 80, 3);
+        board.update(4, 50, 0);
+
+        assertEquals(List.of(3L, 2L, 1L, 4L), board.top(10));
+        assertEquals(List.of(3L, 2L), board.top(2));
+        assertEquals(1, board.rankOf(3));
+        assertEquals(4, board.rankOf(4));
+        assertEquals(-1, board.rankOf(99));
+    }
+
+    @Test
+    public void testUpdateMovesUserAndRemoveDropsIt() {
+        RankedBoard board = new RankedBoard();
+        board.update(1, 10, 0);
+        board.update(2, 20, 0);
+        board.update(3, 30, 0);
+
+        board.update(1, 40, 0);
+        assertEquals(1, board.rankOf(1));
+        assertEquals(3, board.rankOf(2));
+
+        board.remove(3);
+        assertEquals(2, board.size());
+        assertEquals(List.of(1L, 2L), board.top(10));
+        assertFalse(board.contains(3));
+    }
+
+    @Test
+    public void testRanksMatchFullSortAfterRandomUpdates() {
+        RankedBoard board = new RankedBoard();
+        Map<Long, Integer> scores = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            long userId = random.nextInt(500);
+            int score = scores.getOrDefault(userId, 0) + random.nextInt(20);
+            scores.put(userId, score);
+            board.update(userId, score, 0);
+        }
+
+        List<Long> expected = new ArrayList<>(scores.keySet());
+        expected.sort(Comparator.comparing((Long id) -> -scores.get(id)).thenComparing(id -> id));
+
+        assertEquals(expected, board.top(expected.size()));
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(i + 1, board.rankOf(expected.get(i)));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.top_hog_server.service.matchmaking;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MatchPlannerTest {
+
+    private static final long NOW = TimeUnit.SECONDS.toNanos(1000);
+
+    private static MatchTicket ticket(long userId, int rating, long waitedMs) {
+        return new MatchTicket(userId, rating, NOW - TimeUnit.MILLISECONDS.toNanos(waitedMs));
+    }
+
+    private static List<MatchTicket> sorted(List<MatchTicket> tickets) {
+        List<MatchTicket> copy = new ArrayList<>(tickets);
+        copy.sort(Comparator.comparingInt(MatchTicket::getRating));
+        return copy;
+    }
+
+    @Test
+    public void testGroupsOnlyPlayersWithinRatingWindow() {
+        MatchPlanner planner = new MatchPlanner(4, 100, 50, 1000, 15000);
+        List<MatchTicket> waiting = sorted(List.of(
+                ticket(1, 1000, 0), ticket(2, 1020, 0), ticket(3, 1050, 0), ticket(4, 1090, 0),
+                ticket(5, 1500, 0), ticket(6, 1510, 0), ticket(7, 1520, 0)));
+
+        List<List<MatchTicket>> groups = planner.plan(waiting, NOW);
+
+        assertEquals(1, groups.size());
+        assertEquals(List.of(1L, 2L, 3L, 4L), groups.get(0).stream().map(MatchTicket::getUserId).toList());
+    }
+
+    @Test
+    public void testWindowWidensWithWaitTime() {
+        MatchPlanner planner = new MatchPlanner(2, 100, 50, 1000, 60000);
+        MatchTicket fresh = ticket(1, 1000, 0);
+        MatchTicket far = ticket(2, 1300, 0);
+        assertTrue(planner.plan(sorted(List.of(fresh, far)), NOW).isEmpty());
+
+        // 两人都等了 4 秒，窗口 100 + 4 * 50 = 300
+        MatchTicket waitedLow = ticket(3, 1000, 4000);
+        MatchTicket waitedHigh = ticket(4, 1300, 4000);
+        assertEquals(300, planner.windowOf(waitedLow, NOW));
+        assertEquals(1, planner.plan(sorted(List.of(waitedLow, waitedHigh)), NOW).size());
+
+        // 分差要同时在双方的窗口内：一方刚入队时不能匹配
+        MatchTicket newcomer = ticket(5, 1300, 0);
+        assertTrue(planner.plan(sorted(List.of(waitedLow, newcomer)), NOW).isEmpty());
+        assertEquals(1000, planner.windowOf(ticket(6, 1000, 3_600_000), NOW));
+    }
+
+    @Test
+    public void testOverdueTicketFormsPartialGroupForBots() {
+        MatchPlanner planner = new MatchPlanner(4, 100, 0, 100, 15000);
+        List<MatchTicket> waiting = sorted(List.of(ticket(1, 1000, 16000), ticket(2, 1050, 0), ticket(3, 2000, 1000)));
+
+        List<List<MatchTicket>> groups = planner.plan(waiting, NOW);
+
+        assertEquals(1, groups.size());
+        assertEquals(List.of(1L, 2L), groups.get(0).stream().map(MatchTicket::getUserId).toList());
+    }
+
+    @Test
+    public void testLargeQueueIsPlannedInOnePass() {
+        MatchPlanner planner = new MatchPlanner(4, 100, 50, 1000, 15000);
+        Random random = new Random(42);
+        List<MatchTicket> tickets = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            tickets.add(ticket(i, 500 + random.nextInt(2000), random.nextInt(10000)));
+        }
+        List<MatchTicket> waiting = sorted(tickets);
+
+        long start = System.nanoTime();
+        List<List<MatchTicket>> groups = planner.plan(waiting, NOW);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        int matched = 0;
+        for (List<MatchTicket> group : groups) {
+            assertEquals(4, group.size());
+            int spread = group.get(group.size() - 1).getRating() - group.get(0).getRating();
+            for (MatchTicket t : group) {
+                assertTrue(spread <= planner.windowOf(t, NOW));
+            }
+            matched += group.size();
+        }
+        // 分数分布稠密，几乎所有人都能凑满一局
+        assertTrue(matched >= 49_000, "matched " + matched);
+        assertTrue(elapsedMs < 2000, "planning took " + elapsedMs + " ms");
+    }
+}
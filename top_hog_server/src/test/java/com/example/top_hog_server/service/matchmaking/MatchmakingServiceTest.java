@@ -0,0 +1,68 @@
+package com.example.top_hog_server.service.matchmaking;
+
+import com.example.top_hog_server.model.GameRoom;
+import com.example.top_hog_server.service.GameLogicService;
+import com.example.top_hog_server.service.GameRoomService;
+import com.example.top_hog_server.service.UserStatsService;
+import com.example.top_hog_server.service.stats.UserGameStats;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class MatchmakingServiceTest {
+
+    private final UserStatsService userStatsService = mock(UserStatsService.class);
+    private final GameRoomService gameRoomService = mock(GameRoomService.class);
+    private final GameLogicService gameLogicService = mock(GameLogicService.class);
+
+    // 不等待，单人也立即用机器人补齐
+    private MatchmakingService service() {
+        when(userStatsService.getStats(anyLong())).thenReturn(UserGameStats.EMPTY);
+        return new MatchmakingService(userStatsService, gameRoomService, gameLogicService,
+                4, 100, 50, 1000, 0, 1000, 60000);
+    }
+
+    @Test
+    public void testBotFillFailureRemovesRoomAndRequeuesPlayers() {
+        MatchmakingService service = service();
+        when(gameRoomService.createMatchedRoom(eq(1L), eq(4), anyString())).thenReturn(new GameRoom("R1", "r"));
+        doThrow(new IllegalStateException("bot pool exhausted")).when(gameLogicService).addBotsToRoom("R1", 3);
+        MatchTicket ticket = service.enqueue(1L);
+
+        service.matchTick();
+
+        // 房间已移除，请求回到等待状态，不会停在“已认领但没有房间”
+        verify(gameRoomService).removeRoom("R1");
+        assertTrue(ticket.isWaiting());
+        assertNull(ticket.getRoomId());
+        assertEquals("WAITING", service.statusOf(1L).get("status"));
+        assertEquals(0L, service.metrics().get("roomsFormed"));
+        assertEquals(0L, service.metrics().get("botsAdded"));
+
+        // 下一轮重新成局
+        when(gameRoomService.createMatchedRoom(eq(1L), eq(4), anyString())).thenReturn(new GameRoom("R2", "r"));
+        service.matchTick();
+
+        assertEquals("R2", ticket.getRoomId());
+        assertEquals("MATCHED", service.statusOf(1L).get("status"));
+        assertEquals(1L, service.metrics().get("roomsFormed"));
+        assertEquals(3L, service.metrics().get("botsAdded"));
+        assertEquals(0, service.metrics().get("queueDepth"));
+    }
+
+    @Test
+    public void testRoomCreationFailureRequeuesPlayers() {
+        MatchmakingService service = service();
+        when(gameRoomService.createMatchedRoom(eq(1L), eq(4), anyString()))
+                .thenThrow(new IllegalStateException("db down"));
+        MatchTicket ticket = service.enqueue(1L);
+
+        service.matchTick();
+
+        assertTrue(ticket.isWaiting());
+        verify(gameRoomService, never()).removeRoom(anyString());
+        verify(gameLogicService, never()).addBotsToRoom(anyString(), anyInt());
+    }
+}
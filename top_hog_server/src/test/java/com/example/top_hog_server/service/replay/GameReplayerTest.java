@@ -0,0 +1,223 @@
+package com.example.top_hog_server.service.replay;
+
+import com.example.top_hog_server.model.Card;
+import com.example.top_hog_server.model.GameRoom;
+import com.example.top_hog_server.model.GameRow;
+import com.example.top_hog_server.model.Player;
+import com.example.top_hog_server.model.ReplayLog;
+import com.example.top_hog_server.service.game.TopHogGameEngine;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameReplayerTest {
+
+    private static final long SEED = 20240611L;
+
+    private final TopHogGameEngine engine = new TopHogGameEngine();
+
+    // 每一手结算前后的真实状态：key 为 "round/turn"
+    private final Map<String, Map<String, Object>> expected = new HashMap<>();
+
+    private GameRoom room;
+    private ReplayLog log;
+    private int round;
+
+    private void startGame(long seed) {
+        room = new GameRoom("R1", "Replay Room");
+        Player alice = new Player("s1", 1L, "Alice", 0);
+        Player bob = new Player("s2", 2L, "Bob", 0);
+        Player bot = new Player("BOT_R1_1", "Bot");
+        bot.setRobot(true);
+        for (Player p : List.of(alice, bob, bot)) {
+            room.getPlayers().put(p.getSessionId(), p);
+        }
+        room.setGameSeed(seed);
+        log = new ReplayLog("R1-game", seed, 1000L);
+        engine.initializeGame(room);
+    }
+
+    private boolean startRound() {
+        engine.startNewRound(room);
+        log.roundDealt(room.getPlayers().values());
+        if (room.getPlayers().values().stream().allMatch(p -> p.getHand().isEmpty())) {
+            return false;
+        }
+        round++;
+        return true;
+    }
+
+    // 与 GameLogicService 相同的出牌、结算顺序；机器人出最小的牌，其他人出最大的牌，选列时收猪头最少的一列
+    private void playTurn() {
+        Map<String, Card> played = new LinkedHashMap<>();
+        for (Player player : room.getPlayers().values()) {
+            if (player.getHand().isEmpty()) {
+                continue;
+            }
+            Card card = player.isRobot() ? player.getHand().get(0) : player.getHand().get(player.getHand().size() - 1);
+            player.removeCardFromHand(card);
+            played.put(player.getSessionId(), card);
+            log.cardPlayed(player, card);
+        }
+        log.trickResolved();
+
+        int turn = room.getCurrentTurnNumber();
+        Map<String, Object> before = new HashMap<>();
+        before.put("rowsBefore", rowNumbers(room.getRows()));
+        expected.put(round + "/" + turn, before);
+
+        List<Map.Entry<String, Card>> order = new ArrayList<>(played.entrySet());
+        order.sort(Map.Entry.comparingByValue(Comparator.comparingInt(Card::getNumber)));
+        for (Map.Entry<String, Card> entry : order) {
+            Player player = room.getPlayers().get(entry.getKey());
+            Card card = entry.getValue();
+            int target = engine.findTargetRowIndex(room, card);
+            if (target == -1) {
+                int chosen = engine.findRowWithMinBullheads(room);
+                log.rowTaken(player, chosen);
+                engine.executeTakeRow(room, player, chosen, card);
+            } else if (room.getRows().get(target).size() == room.getRows().get(target).getMAX_CARDS_IN_ROW()) {
+                engine.executeTakeRow(room, player, target, card);
+            } else {
+                room.getRows().get(target).addCard(card);
+            }
+        }
+        before.put("rowsAfter", rowNumbers(room.getRows()));
+        Map<Long, Integer> scores = new HashMap<>();
+        room.getPlayers().values().forEach(p -> scores.put(p.getUserId(), p.getScore()));
+        before.put("scores", scores);
+        room.setCurrentTurnNumber(turn + 1);
+    }
+
+    private GameReplay playFullGame(long seed) {
+        startGame(seed);
+        while (startRound()) {
+            for (int i = 0; i < 10; i++) {
+                playTurn();
+            }
+        }
+        return new GameReplay(log.getGameId(), room.getRoomId(), seed, 1000L, 2000L, 66, log.toByteArray());
+    }
+
+    private static List<List<Integer>> rowNumbers(List<GameRow> rows) {
+        List<List<Integer>> result = new ArrayList<>();
+        for (GameRow row : rows) {
+            List<Integer> numbers = new ArrayList<>();
+            for (int i = 0; i < row.size(); i++) {
+                numbers.add(row.numberAt(i));
+            }
+            result.add(numbers);
+        }
+        return result;
+    }
+
+    @Test
+    public void testSameSeedShufflesSameDeck() {
+        assertEquals(TopHogGameEngine.shuffledDeck(SEED), TopHogGameEngine.shuffledDeck(SEED));
+        assertNotEquals(TopHogGameEngine.shuffledDeck(SEED), TopHogGameEngine.shuffledDeck(SEED + 1));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEveryTurnReplaysToRecordedState() {
+        GameReplay replay = playFullGame(SEED);
+
+        assertEquals(3, round, "三名玩家共 100 张牌，应进行三轮后牌堆不足");
+        for (Map.Entry<String, Map<String, Object>> entry : expected.entrySet()) {
+            String[] key = entry.getKey().split("/");
+            Map<String, Object> frame = GameReplayer.frame(replay, Integer.parseInt(key[0]), Integer.parseInt(key[1]));
+            assertNotNull(frame, entry.getKey());
+            assertEquals(entry.getValue().get("rowsBefore"), frame.get("rowsBefore"), entry.getKey());
+            assertEquals(entry.getValue().get("rowsAfter"), frame.get("rowsAfter"), entry.getKey());
+            Map<Long, Integer> scores = (Map<Long, Integer>) entry.getValue().get("scores");
+            for (Map<String, Object> player : (List<Map<String, Object>>) frame.get("players")) {
+                assertEquals(scores.get((Long) player.get("userId")), player.get("scoreAfter"), entry.getKey());
+            }
+        }
+        assertNull(GameReplayer.frame(replay, 1, 11));
+        assertNull(GameReplayer.frame(replay, 4, 1));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSummaryMatchesFinalScoresAndIsCompact() {
+        GameReplay replay = playFullGame(SEED);
+
+        Map<String, Object> summary = GameReplayer.summary(replay);
+        assertEquals(3, summary.get("rounds"));
+        List<Map<String, Object>> players = (List<Map<String, Object>>) summary.get("players");
+        assertEquals(3, players.size());
+        for (Map<String, Object> player : players) {
+            Player real = room.getPlayers().values().stream()
+                    .filter(p -> p.getDisplayName().equals(player.get("displayName")))
+                    .findFirst().orElseThrow();
+            assertEquals(real.getScore(), player.get("score"));
+            assertEquals(real.isRobot(), player.get("robot"));
+        }
+        // 三轮 90 张出牌，每张 3 字节，加上座位登记和发牌
+        assertTrue(replay.getEvents().length < 512, "回放记录过大: " + replay.getEvents().length);
+    }
+
+    @Test
+    public void testFrameShowsHandsAndPlayedCardsBeforeResolve() {
+        GameReplay replay = playFullGame(SEED);
+
+        Map<String, Object> frame = GameReplayer.frame(replay, 2, 1);
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> players = (List<Map<String, Object>>) frame.get("players");
+        for (Map<String, Object> player : players) {
+            assertEquals(9, ((List<?>) player.get("hand")).size());
+            assertNotNull(player.get("played"));
+        }
+    }
+
+    @Test
+    public void testLeavingPlayerIsSkipped() {
+        startGame(SEED);
+        startRound();
+        playTurn();
+        // Bob 离开后，服务器不再结算他的牌，也不再给他发牌
+        Player bob = room.getPlayers().remove("s2");
+        log.playerLeft(bob);
+        for (int i = 0; i < 9; i++) {
+            playTurn();
+        }
+        GameReplay replay = new GameReplay(log.getGameId(), "R1", SEED, 1000L, 2000L, 66, log.toByteArray());
+
+        Map<String, Object> frame = GameReplayer.frame(replay, 1, 10);
+        assertEquals(expected.get("1/10").get("rowsAfter"), frame.get("rowsAfter"));
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> players = (List<Map<String, Object>>) frame.get("players");
+        Map<String, Object> bobSeat = players.stream()
+                .filter(p -> "Bob".equals(p.get("displayName")))
+                .findFirst().orElseThrow();
+        assertEquals(true, bobSeat.get("left"));
+        assertNull(bobSeat.get("played"));
+    }
+
+    @Test
+    public void testEncodingRoundTripAndCorruptEvents() {
+        GameReplay replay = playFullGame(SEED);
+
+        GameReplay decoded = GameReplay.decode(ByteBuffer.wrap(replay.encode()));
+        assertEquals(replay.getGameId(), decoded.getGameId());
+        assertEquals(replay.getRoomId(), decoded.getRoomId());
+        assertEquals(replay.getSeed(), decoded.getSeed());
+        assertEquals(replay.getTargetScore(), decoded.getTargetScore());
+        assertArrayEquals(replay.getEvents(), decoded.getEvents());
+        assertEquals(3, decoded.getSeats().size());
+
+        byte[] events = replay.getEvents().clone();
+        events[events.length - 1] = 99;
+        GameReplay corrupt = new GameReplay("bad", "R1", SEED, 0L, 0L, 66, events);
+        assertThrows(IllegalArgumentException.class, () -> GameReplayer.summary(corrupt));
+    }
+}
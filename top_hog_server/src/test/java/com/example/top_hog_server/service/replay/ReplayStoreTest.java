@@ -0,0 +1,138 @@
+package com.example.top_hog_server.service.replay;
+
+import com.example.top_hog_server.model.Card;
+import com.example.top_hog_server.model.Player;
+import com.example.top_hog_server.model.ReplayLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplayStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final List<ReplayStore> opened = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() {
+        opened.forEach(ReplayStore::shutdown);
+    }
+
+    private ReplayStore open(long segmentBytes, int maxSegments) throws Exception {
+        ReplayStore store = new ReplayStore(tempDir.toString(), segmentBytes, maxSegments);
+        store.start();
+        opened.add(store);
+        return store;
+    }
+
+    private static GameReplay replay(String gameId, String roomId, long... userIds) {
+        ReplayLog log = new ReplayLog(gameId, 7L, 1000L);
+        int number = 1;
+        for (long userId : userIds) {
+            log.cardPlayed(new Player("s" + userId, userId, "P" + userId, 0), new Card(number++, 1));
+        }
+        Player bot = new Player("BOT_" + roomId + "_1", "Bot");
+        bot.setRobot(true);
+        log.cardPlayed(bot, new Card(number, 1));
+        log.trickResolved();
+        return new GameReplay(gameId, roomId, 7L, 1000L, 2000L, 66, log.toByteArray());
+    }
+
+    private List<Path> segmentFiles() throws Exception {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.sorted().toList();
+        }
+    }
+
+    @Test
+    public void testAppendFindAndIndex() throws Exception {
+        ReplayStore store = open(1 << 20, 4);
+        GameReplay first = replay("g1", "R1", 1L, 2L);
+        store.append(first);
+        store.append(replay("g2", "R1", 2L, 3L));
+        store.append(replay("g3", "R2", 1L));
+
+        GameReplay found = store.find("g1");
+        assertNotNull(found);
+        assertEquals("R1", found.getRoomId());
+        assertArrayEquals(first.getEvents(), found.getEvents());
+        assertNull(store.find("missing"));
+
+        assertEquals(List.of("g3", "g1"), store.listByUser(1L, 10));
+        assertEquals(List.of("g2"), store.listByUser(2L, 1));
+        assertEquals(List.of("g2", "g1"), store.listByRoom("R1", 10));
+        assertEquals(List.of(2L, 3L), store.participantsOf("g2"));
+        assertTrue(store.participantsOf("missing").isEmpty());
+
+        Map<String, Object> metrics = store.metrics();
+        assertEquals(3L, metrics.get("appended"));
+        assertEquals(3, metrics.get("games"));
+    }
+
+    @Test
+    public void testIndexRebuiltAfterRestart() throws Exception {
+        ReplayStore store = open(1 << 20, 4);
+        store.append(replay("g1", "R1", 1L));
+        store.append(replay("g2", "R1", 1L, 2L));
+        store.shutdown();
+
+        ReplayStore restarted = open(1 << 20, 4);
+        assertEquals(List.of("g2", "g1"), restarted.listByUser(1L, 10));
+        assertNotNull(restarted.find("g2"));
+        restarted.append(replay("g3", "R1", 2L));
+        assertEquals(List.of("g3", "g2", "g1"), restarted.listByRoom("R1", 10));
+    }
+
+    @Test
+    public void testOldestSegmentsDeletedBeyondRetention() throws Exception {
+        ReplayStore store = open(4096, 2);
+        int games = 0;
+        while ((long) store.metrics().get("deletedSegments") == 0) {
+            store.append(replay("g" + games, "R1", games));
+            games++;
+        }
+        assertNull(store.find("g0"));
+        assertTrue(store.listByUser(0L, 10).isEmpty());
+        assertNotNull(store.find("g" + (games - 1)));
+        assertEquals(2, segmentFiles().size());
+        assertEquals(2, store.metrics().get("segments"));
+    }
+
+    @Test
+    public void testTornRecordIgnoredOnRestart() throws Exception {
+        ReplayStore store = open(1 << 20, 4);
+        store.append(replay("g1", "R1", 1L));
+        store.append(replay("g2", "R1", 1L));
+        store.shutdown();
+
+        // 模拟最后一条记录只写了一半
+        Path segment = segmentFiles().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+        ReplayStore restarted = open(1 << 20, 4);
+        assertNotNull(restarted.find("g1"));
+        assertNull(restarted.find("g2"));
+
+        // 校验和不匹配的记录同样被忽略
+        restarted.shutdown();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x7F}), 20);
+        }
+        ReplayStore corrupted = open(1 << 20, 4);
+        assertNull(corrupted.find("g1"));
+    }
+}
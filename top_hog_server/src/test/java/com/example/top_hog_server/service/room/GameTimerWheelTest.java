@@ -0,0 +1,95 @@
+package com.example.top_hog_server.service.room;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameTimerWheelTest {
+
+    private GameTimerWheel wheel;
+
+    @BeforeEach
+    public void setUp() {
+        // 1ms tick、16 个槽位，40ms 的延迟需要转两圈以上
+        wheel = new GameTimerWheel(1, 16, 2);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        wheel.shutdown();
+    }
+
+    @Test
+    public void testTimerFiresAfterDelayAcrossRotations() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        wheel.schedule("R1", "k", 40, latch::countDown);
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40));
+        assertFalse(wheel.hasPending("R1", "k"));
+        assertEquals(1L, wheel.metrics().get("fired"));
+    }
+
+    @Test
+    public void testScheduleReplacesSameKey() throws Exception {
+        List<String> fired = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        wheel.schedule("R1", "choice:s1", 20, () -> fired.add("old"));
+        wheel.schedule("R1", "choice:s1", 30, () -> {
+            fired.add("new");
+            latch.countDown();
+        });
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        Thread.sleep(30);
+        assertEquals(List.of("new"), fired);
+    }
+
+    @Test
+    public void testScheduleIfAbsentCoalesces() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        GameTimerWheel.Timeout first = wheel.scheduleIfAbsent("R1", "bot-turn", 20, () -> {
+            runs.incrementAndGet();
+            latch.countDown();
+        });
+        for (int i = 0; i < 100; i++) {
+            assertSame(first, wheel.scheduleIfAbsent("R1", "bot-turn", 20, runs::incrementAndGet));
+        }
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        Thread.sleep(30);
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void testCancelAndCancelRoom() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        wheel.schedule("R1", "choice:s1", 20, runs::incrementAndGet);
+        wheel.schedule("R1", "choice:s2", 20, runs::incrementAndGet);
+        wheel.schedule("R1", "next-round", 20, runs::incrementAndGet);
+        wheel.schedule("R2", "next-round", 20, runs::incrementAndGet);
+
+        assertTrue(wheel.cancel("R2", "next-round"));
+        assertFalse(wheel.cancel("R2", "next-round"));
+        assertEquals(2, wheel.cancelAll("R1", "choice:"));
+        assertEquals(1, wheel.cancelRoom("R1"));
+
+        Thread.sleep(60);
+        assertEquals(0, runs.get());
+        assertEquals(0L, wheel.metrics().get("pending"));
+        assertEquals(4L, wheel.metrics().get("cancelled"));
+    }
+}
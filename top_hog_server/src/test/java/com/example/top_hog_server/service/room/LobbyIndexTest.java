@@ -0,0 +1,121 @@
+package com.example.top_hog_server.service.room;
+
+import com.example.top_hog_server.model.GameRoom;
+import com.example.top_hog_server.model.GameState;
+import com.example.top_hog_server.model.GameType;
+import com.example.top_hog_server.model.Player;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LobbyIndexTest {
+
+    private static GameRoom room(String roomId, long createdAt, int maxPlayers, int players) {
+        GameRoom room = new GameRoom(roomId, roomId);
+        room.setCreatedAtTimestamp(createdAt);
+        room.setMaxPlayers(maxPlayers);
+        room.setGameState(GameState.WAITING);
+        for (int i = 0; i < players; i++) {
+            Player player = new Player();
+            player.setSessionId(roomId + "-" + i);
+            room.getPlayers().put(player.getSessionId(), player);
+        }
+        return room;
+    }
+
+    private static List<String> ids(List<GameRoom> rooms) {
+        List<String> ids = new ArrayList<>();
+        for (GameRoom room : rooms) {
+            ids.add(room.getRoomId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void testQuickMatchPrefersFewestOpenSeats() {
+        LobbyIndex index = new LobbyIndex();
+        GameRoom empty = room("A", 1, 6, 1);
+        GameRoom nearlyFull = room("B", 3, 6, 5);
+        GameRoom nearlyFullOlder = room("C", 2, 6, 5);
+        GameRoom full = room("D", 0, 6, 6);
+        GameRoom privateRoom = room("E", 0, 6, 5);
+        privateRoom.setPrivate(true);
+        for (GameRoom room : List.of(empty, nearlyFull, nearlyFullOlder, full, privateRoom)) {
+            index.update(room);
+        }
+
+        assertSame(nearlyFullOlder, index.bestQuickMatch(GameType.TOP_HOG));
+
+        // 开局后退出候选
+        nearlyFullOlder.setGameState(GameState.PLAYING);
+        index.update(nearlyFullOlder);
+        assertSame(nearlyFull, index.bestQuickMatch(GameType.TOP_HOG));
+
+        // 有人离开后空位变多，排到空位更少的房间之后
+        nearlyFull.getPlayers().remove("B-0");
+        nearlyFull.getPlayers().remove("B-1");
+        index.update(nearlyFull);
+        assertSame(nearlyFull, index.bestQuickMatch(GameType.TOP_HOG));
+        nearlyFull.getPlayers().remove("B-2");
+        nearlyFull.getPlayers().remove("B-3");
+        index.update(nearlyFull);
+        assertSame(empty, index.bestQuickMatch(GameType.TOP_HOG));
+
+        index.remove("A");
+        index.remove("B");
+        assertNull(index.bestQuickMatch(GameType.TOP_HOG));
+    }
+
+    @Test
+    public void testKeysetPaginationIsStableWhileRoomsChange() {
+        LobbyIndex index = new LobbyIndex();
+        for (int i = 0; i < 10; i++) {
+            index.update(room("R" + i, 100 + i, 6, 1));
+        }
+
+        List<GameRoom> first = index.page(false, null, 4);
+        assertEquals(List.of("R0", "R1", "R2", "R3"), ids(first));
+        LobbyIndex.Cursor cursor = LobbyIndex.Cursor.parse(
+                LobbyIndex.Cursor.after(first.get(first.size() - 1)).toString());
+
+        // 翻页期间前面的房间被移除、后面新建了房间
+        index.remove("R1");
+        index.remove("R4");
+        index.update(room("R10", 200, 6, 1));
+
+        assertEquals(List.of("R5", "R6", "R7", "R8"), ids(index.page(false, cursor, 4)));
+        assertEquals(List.of("R0", "R2", "R3", "R5"), ids(index.pageByOffset(false, 0, 4)));
+        assertEquals(9, index.size(false));
+    }
+
+    @Test
+    public void testJoinableListingExcludesFullAndStartedRooms() {
+        LobbyIndex index = new LobbyIndex();
+        GameRoom open = room("A", 1, 6, 2);
+        GameRoom full = room("B", 2, 2, 2);
+        GameRoom playing = room("C", 3, 6, 2);
+        playing.setGameState(GameState.PLAYING);
+        GameRoom privateOpen = room("D", 4, 6, 1);
+        privateOpen.setPrivate(true);
+        for (GameRoom room : List.of(open, full, playing, privateOpen)) {
+            index.update(room);
+        }
+
+        assertEquals(List.of("A", "D"), ids(index.page(true, null, 10)));
+        assertEquals(List.of("A", "B", "C", "D"), ids(index.page(false, null, 10)));
+
+        full.getPlayers().remove("B-0");
+        index.update(full);
+        assertEquals(List.of("A", "B", "D"), ids(index.page(true, null, 10)));
+    }
+
+    @Test
+    public void testInvalidCursorIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> LobbyIndex.Cursor.parse("abc"));
+        assertThrows(IllegalArgumentException.class, () -> LobbyIndex.Cursor.parse("x_R1"));
+        assertThrows(IllegalArgumentException.class, () -> LobbyIndex.Cursor.parse("100_"));
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.top_hog_server.service.room;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RoomExecutorTest {
+
+    private RoomExecutor roomExecutor;
+
+    @AfterEach
+    public void tearDown() {
+        if (roomExecutor != null) {
+            roomExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void testLockModeRunsInline() {
+        roomExecutor = new RoomExecutor(false, 0);
+        List<String> calls = new ArrayList<>();
+
+        roomExecutor.execute("R1", () -> calls.add("outer"));
+        String result = roomExecutor.call("R1", () -> "value");
+
+        assertEquals(Collections.singletonList("outer"), calls);
+        assertEquals("value", result);
+    }
+
+    @Test
+    public void testActorModeSerializesCommandsPerRoom() throws Exception {
+        roomExecutor = new RoomExecutor(true, 2);
+        int commands = 1000;
+        CountDownLatch done = new CountDownLatch(commands);
+        int[] counter = new int[1];
+
+        for (int i = 0; i < commands; i++) {
+            new Thread(() -> roomExecutor.execute("R1", () -> {
+                // 非原子自增，只有在串行执行时结果才正确
+                counter[0]++;
+                done.countDown();
+            })).start();
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(commands, roomExecutor.call("R1", () -> counter[0]));
+    }
+
+    @Test
+    public void testActorModeNestedCommandRunsInline() {
+        roomExecutor = new RoomExecutor(true, 1);
+        List<String> calls = new ArrayList<>();
+
+        roomExecutor.call("R1", () -> {
+            calls.add("outer-start");
+            roomExecutor.execute("R1", () -> calls.add("nested"));
+            calls.add("outer-end");
+            return null;
+        });
+
+        assertEquals(List.of("outer-start", "nested", "outer-end"), calls);
+    }
+
+    @Test
+    public void testActorModeCallPropagatesException() {
+        roomExecutor = new RoomExecutor(true, 1);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> roomExecutor.call("R1", () -> {
+                    throw new IllegalArgumentException("boom");
+                }));
+        assertEquals("boom", e.getMessage());
+    }
+
+    @Test
+    public void testLockModeRecordsContendedWait() throws Exception {
+        roomExecutor = new RoomExecutor(false, 0);
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> roomExecutor.execute("R1", () -> {
+            holding.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        holder.start();
+        assertTrue(holding.await(5, TimeUnit.SECONDS));
+
+        Thread waiter = new Thread(() -> roomExecutor.execute("R1", () -> { }));
+        waiter.start();
+        Thread.sleep(50);
+        release.countDown();
+        holder.join(5000);
+        waiter.join(5000);
+
+        assertEquals(2, roomExecutor.getWaitCount());
+        // 只有第二条命令需要等锁
+        assertTrue(roomExecutor.getWaitMaxNanos() >= TimeUnit.MILLISECONDS.toNanos(40));
+        assertTrue(roomExecutor.getWaitTotalNanos() == roomExecutor.getWaitMaxNanos());
+    }
+}
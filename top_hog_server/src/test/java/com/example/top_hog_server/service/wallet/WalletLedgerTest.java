@@ -0,0 +1,196 @@
+package com.example.top_hog_server.service.wallet;
+
+import com.example.top_hog_server.exception.BusinessException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WalletLedgerTest {
+
+    private WalletTestDatabase db;
+
+    @BeforeEach
+    public void setUp() {
+        db = WalletTestDatabase.create("wallet");
+        db.addUsers(1, 10);
+    }
+
+    private long coins(long userId) {
+        return db.getJdbcTemplate().queryForObject("SELECT coins FROM user_balance WHERE user_id = ?", Long.class, userId);
+    }
+
+    private List<Long> ledgerAfters(long userId, String type) {
+        return db.getJdbcTemplate().queryForList("SELECT balance_after FROM transaction_log WHERE user_id = ? AND type = ? "
+                + "ORDER BY balance_after", Long.class, userId, type);
+    }
+
+    private static void runConcurrently(int threads, Callable<Void> task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testDebitsFromTwoInstancesNeverOverdraw() throws Exception {
+        // 两个实例的进程内锁互不相干，只靠条件 UPDATE 保证不透支
+        WalletLedger first = db.ledger(64, 500);
+        WalletLedger second = db.ledger(64, 500);
+        first.credit(1L, WalletCurrency.COINS, 100, "REWARD", "seed", null);
+        AtomicInteger attempts = new AtomicInteger();
+        AtomicInteger succeeded = new AtomicInteger();
+
+        runConcurrently(8, () -> {
+            int i;
+            while ((i = attempts.getAndIncrement()) < 300) {
+                try {
+                    (i % 2 == 0 ? first : second).debit(1L, WalletCurrency.COINS, 1, "CONSUME", "buy");
+                    succeeded.incrementAndGet();
+                } catch (BusinessException e) {
+                    assertTrue(e.getMessage().contains("余额不足"));
+                }
+            }
+            return null;
+        });
+
+        assertEquals(100, succeeded.get());
+        assertEquals(0L, coins(1L));
+        // 每次扣款读回的都是自己提交后的余额：0..99 各出现一次
+        List<Long> afters = ledgerAfters(1L, "CONSUME");
+        assertEquals(100, afters.size());
+        for (int i = 0; i < afters.size(); i++) {
+            assertEquals(i, afters.get(i).longValue());
+        }
+    }
+
+    @Test
+    public void testConcurrentCreditsOnHotAccountsLoseNoUpdates() throws Exception {
+        WalletLedger first = db.ledger(64, 500);
+        WalletLedger second = db.ledger(64, 500);
+        long[] hotUsers = {1L, 2L, 3L, 4L};
+        AtomicInteger counter = new AtomicInteger();
+        int total = 1600;
+
+        runConcurrently(16, () -> {
+            int i;
+            while ((i = counter.getAndIncrement()) < total) {
+                (i % 3 == 0 ? first : second).credit(hotUsers[i % hotUsers.length], WalletCurrency.COINS, 1,
+                        "REWARD", "test", null);
+            }
+            return null;
+        });
+
+        long perUser = total / hotUsers.length;
+        for (long userId : hotUsers) {
+            assertEquals(perUser, coins(userId));
+            List<Long> afters = ledgerAfters(userId, "REWARD");
+            assertEquals(perUser, afters.size());
+            for (int i = 0; i < afters.size(); i++) {
+                assertEquals(i + 1, afters.get(i).longValue());
+            }
+        }
+    }
+
+    @Test
+    public void testDebitRejectsOverdraftWithoutWritingLedger() {
+        WalletLedger ledger = db.ledger(64, 500);
+        ledger.credit(7L, WalletCurrency.COINS, 100, "REWARD", "test", null);
+
+        assertEquals(40L, ledger.debit(7L, WalletCurrency.COINS, 60, "CONSUME", "buy"));
+        assertThrows(BusinessException.class, () -> ledger.debit(7L, WalletCurrency.COINS, 41, "CONSUME", "buy"));
+        assertThrows(BusinessException.class, () -> ledger.debit(8L, WalletCurrency.COINS, 1, "CONSUME", "buy"));
+        assertThrows(BusinessException.class, () -> ledger.credit(99L, WalletCurrency.COINS, 1, "REWARD", "x", null));
+
+        assertEquals(40L, coins(7L));
+        assertEquals(Integer.valueOf(2), db.getJdbcTemplate().queryForObject("SELECT COUNT(*) FROM transaction_log",
+                Integer.class));
+        Map<String, Object> debit = db.getJdbcTemplate().queryForMap(
+                "SELECT balance_before, balance_after FROM transaction_log WHERE type = 'CONSUME'");
+        assertEquals(100L, ((Number) debit.get("BALANCE_BEFORE")).longValue());
+        assertEquals(40L, ((Number) debit.get("BALANCE_AFTER")).longValue());
+    }
+
+    @Test
+    public void testLockHeldUntilCallerTransactionCompletes() {
+        WalletLedger ledger = db.ledger(64, 500);
+        TransactionTemplate outer = new TransactionTemplate(new DataSourceTransactionManager(db.getDataSource()));
+
+        outer.executeWithoutResult(status -> {
+            ledger.credit(3L, WalletCurrency.COINS, 10, "RECHARGE", "order", "O1");
+            assertTrue(ledger.isLocked(3L), "锁应保持到调用方的事务提交");
+        });
+        assertFalse(ledger.isLocked(3L));
+        assertEquals(10L, coins(3L));
+
+        assertThrows(IllegalStateException.class, () -> outer.executeWithoutResult(status -> {
+            ledger.credit(3L, WalletCurrency.COINS, 5, "RECHARGE", "order", "O2");
+            throw new IllegalStateException("回调处理失败");
+        }));
+        assertFalse(ledger.isLocked(3L));
+        assertEquals(10L, coins(3L));
+    }
+
+    @Test
+    public void testGrantBatchUsesMultiRowStatementsPerChunk() {
+        List<String> statements = new ArrayList<>();
+        JdbcTemplate counting = new JdbcTemplate(db.getDataSource()) {
+            @Override
+            public int update(String sql, Object... args) {
+                statements.add(sql);
+                return super.update(sql, args);
+            }
+        };
+        WalletLedger ledger = new WalletLedger(counting, new DataSourceTransactionManager(db.getDataSource()), 64, 3);
+        ledger.credit(2L, WalletCurrency.DIAMONDS, 5, "REWARD", "seed", null);
+        statements.clear();
+        Map<Long, Long> amounts = new HashMap<>();
+        for (long userId = 1; userId <= 7; userId++) {
+            amounts.put(userId, 10L);
+        }
+        amounts.put(99L, 10L); // 不存在的用户
+
+        int granted = ledger.grantBatch(amounts, WalletCurrency.DIAMONDS, "REWARD", "event");
+
+        assertEquals(7, granted);
+        // 8 个用户分 3 批，每批一条 upsert 和一条流水 INSERT
+        assertEquals(6, statements.size());
+        JdbcTemplate jdbc = db.getJdbcTemplate();
+        assertEquals(Long.valueOf(15L), jdbc.queryForObject("SELECT diamonds FROM user_balance WHERE user_id = 2", Long.class));
+        assertEquals(Long.valueOf(10L), jdbc.queryForObject("SELECT diamonds FROM user_balance WHERE user_id = 7", Long.class));
+        assertEquals(Integer.valueOf(0), jdbc.queryForObject("SELECT COUNT(*) FROM user_balance WHERE user_id = 99", Integer.class));
+        Map<String, Object> row = jdbc.queryForMap("SELECT currency, balance_before, balance_after FROM transaction_log "
+                + "WHERE user_id = 2 AND reason = 'event'");
+        assertEquals("DIAMONDS", row.get("CURRENCY"));
+        assertEquals(5L, ((Number) row.get("BALANCE_BEFORE")).longValue());
+        assertEquals(15L, ((Number) row.get("BALANCE_AFTER")).longValue());
+    }
+}
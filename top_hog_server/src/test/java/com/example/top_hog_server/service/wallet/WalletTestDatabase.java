@@ -0,0 +1,64 @@
+package com.example.top_hog_server.service.wallet;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+
+/**
+ * MySQL 兼容模式的 H2 内存库，表结构与钱包用到的 Users / user_balance / transaction_log 列一致。
+ * 钱包的测试和 JMH 基准共用。
+ */
+public final class WalletTestDatabase {
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+
+    private WalletTestDatabase(DataSource dataSource) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    public static String url(String name) {
+        return "jdbc:h2:mem:" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=30000";
+    }
+
+    public static WalletTestDatabase create(String name) {
+        return create(new DriverManagerDataSource(url(name)));
+    }
+
+    /**
+     * 在给定数据源（例如基准里的连接池）上重建表结构。
+     */
+    public static WalletTestDatabase create(DataSource dataSource) {
+        WalletTestDatabase db = new WalletTestDatabase(dataSource);
+        db.jdbcTemplate.execute("DROP ALL OBJECTS");
+        db.jdbcTemplate.execute("CREATE TABLE Users (id BIGINT PRIMARY KEY)");
+        db.jdbcTemplate.execute("CREATE TABLE user_balance (user_id BIGINT PRIMARY KEY, coins BIGINT NOT NULL, "
+                + "diamonds BIGINT NOT NULL, total_recharge DECIMAL(12, 2) NOT NULL, updated_at TIMESTAMP, "
+                + "FOREIGN KEY (user_id) REFERENCES Users (id))");
+        db.jdbcTemplate.execute("CREATE TABLE transaction_log (id BIGINT AUTO_INCREMENT PRIMARY KEY, user_id BIGINT, "
+                + "type VARCHAR(32), currency VARCHAR(16), amount BIGINT, balance_before BIGINT, balance_after BIGINT, "
+                + "reason VARCHAR(255), order_no VARCHAR(64), created_at TIMESTAMP)");
+        return db;
+    }
+
+    public void addUsers(long fromId, long toId) {
+        for (long id = fromId; id <= toId; id++) {
+            jdbcTemplate.update("INSERT INTO Users (id) VALUES (?)", id);
+        }
+    }
+
+    public WalletLedger ledger(int lockStripes, int batchSize) {
+        return new WalletLedger(jdbcTemplate, new DataSourceTransactionManager(dataSource), lockStripes, batchSize);
+    }
+
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    public JdbcTemplate getJdbcTemplate() {
+        return jdbcTemplate;
+    }
+}